@@ -11,7 +11,10 @@ import com.scalar.db.io.Key;
 import com.scalar.db.service.StorageFactory;
 import com.scalar.dl.client.service.AuditorClient;
 import com.scalar.dl.tools.common.AuditorInternalValues;
+import com.scalar.dl.tools.common.CheckpointStore;
 import com.scalar.dl.tools.common.CompletionToken;
+import com.scalar.dl.tools.common.FileCheckpointStore;
+import com.scalar.dl.tools.common.PropertyUtils;
 import com.scalar.dl.tools.common.ScalarDlCleanupException;
 import com.scalar.dl.tools.common.StorageValidator;
 import com.scalar.dl.tools.scan.ResumableScanner;
@@ -24,6 +27,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,9 +42,30 @@ import org.slf4j.LoggerFactory;
  * <p>The workflow is resumable: progress is checkpointed per namespace, so a failure only requires
  * re-invocation with the same checkpoint directory. The start timestamp and the target namespace
  * set are captured once on the first invocation and reused across resumptions.
+ *
+ * <p>A lock still active when scanned is not waited for on the scan worker; it is parked on a
+ * {@link DeferredLockRetryQueue} and retried by {@value #LOCK_RETRY_THREADS_PROPERTY} threads (4 by
+ * default) once it may have expired, while the scan goes on. A namespace is marked completed only
+ * once its parked locks are finalized. The parked locks are recorded in the checkpoint state, so a
+ * resumed run retries the ones an interrupted run left.
+ *
+ * <p>Each scan worker keeps up to {@value #RPC_WINDOW_PROPERTY} {@code RecoverAssetLock} RPCs of a
+ * page in flight at once (16 by default) through a {@link LockRecoveryPipeline}, rather than one at
+ * a time, and a page is checkpointed once all of its RPCs have resolved.
  */
 public final class AuditorFinalizeOrchestrator implements AutoCloseable {
 
+  /** The number of threads retrying the locks that were still active when scanned. */
+  public static final String LOCK_RETRY_THREADS_PROPERTY =
+      "scalar.dl.tools.auditor_finalize.lock_retry_threads";
+
+  private static final int DEFAULT_LOCK_RETRY_THREADS = 4;
+
+  /** The maximum number of {@code RecoverAssetLock} RPCs each scan worker has in flight at once. */
+  public static final String RPC_WINDOW_PROPERTY = "scalar.dl.tools.auditor_finalize.rpc_window";
+
+  private static final int DEFAULT_RPC_WINDOW = 16;
+
   private static final Logger logger = LoggerFactory.getLogger(AuditorFinalizeOrchestrator.class);
 
   private final DistributedStorageAdmin admin;
@@ -47,7 +73,10 @@ public final class AuditorFinalizeOrchestrator implements AutoCloseable {
   private final AuditorClient auditorClient;
   private final ResumableScannerFactory scannerFactory;
   private final Path checkpointDir;
+  private final CheckpointStore checkpointStore;
   private final String baseNamespace;
+  private final int lockRetryThreads;
+  @Nullable private final LockRecoveryPipeline recoveryPipeline;
 
   @VisibleForTesting
   AuditorFinalizeOrchestrator(
@@ -57,12 +86,57 @@ public final class AuditorFinalizeOrchestrator implements AutoCloseable {
       ResumableScannerFactory scannerFactory,
       Path checkpointDir,
       String baseNamespace) {
+    this(
+        admin,
+        storage,
+        auditorClient,
+        scannerFactory,
+        checkpointDir,
+        baseNamespace,
+        new FileCheckpointStore());
+  }
+
+  @VisibleForTesting
+  AuditorFinalizeOrchestrator(
+      DistributedStorageAdmin admin,
+      DistributedStorage storage,
+      AuditorClient auditorClient,
+      ResumableScannerFactory scannerFactory,
+      Path checkpointDir,
+      String baseNamespace,
+      CheckpointStore checkpointStore) {
+    this(
+        admin,
+        storage,
+        auditorClient,
+        scannerFactory,
+        checkpointDir,
+        baseNamespace,
+        checkpointStore,
+        DEFAULT_LOCK_RETRY_THREADS,
+        null);
+  }
+
+  @VisibleForTesting
+  AuditorFinalizeOrchestrator(
+      DistributedStorageAdmin admin,
+      DistributedStorage storage,
+      AuditorClient auditorClient,
+      ResumableScannerFactory scannerFactory,
+      Path checkpointDir,
+      String baseNamespace,
+      CheckpointStore checkpointStore,
+      int lockRetryThreads,
+      @Nullable LockRecoveryPipeline recoveryPipeline) {
     this.admin = admin;
     this.storage = storage;
     this.auditorClient = auditorClient;
     this.scannerFactory = scannerFactory;
     this.checkpointDir = checkpointDir;
+    this.checkpointStore = checkpointStore;
     this.baseNamespace = baseNamespace;
+    this.lockRetryThreads = lockRetryThreads;
+    this.recoveryPipeline = recoveryPipeline;
   }
 
   /**
@@ -73,11 +147,20 @@ public final class AuditorFinalizeOrchestrator implements AutoCloseable {
    * @param checkpointDir root directory for checkpoint state
    * @return a new orchestrator instance
    * @throws ScalarDlCleanupException if the configuration is not supported
+   * @throws IllegalArgumentException if {@value #LOCK_RETRY_THREADS_PROPERTY} or {@value
+   *     #RPC_WINDOW_PROPERTY} is not a positive integer
    */
   public static AuditorFinalizeOrchestrator create(Properties props, Path checkpointDir) {
+    int lockRetryThreads =
+        PropertyUtils.getPositiveIntProperty(
+            props, LOCK_RETRY_THREADS_PROPERTY, DEFAULT_LOCK_RETRY_THREADS);
+    int rpcWindow =
+        PropertyUtils.getPositiveIntProperty(props, RPC_WINDOW_PROPERTY, DEFAULT_RPC_WINDOW);
     DistributedStorageAdmin admin = null;
     DistributedStorage storage = null;
     AuditorClient auditorClient = null;
+    CheckpointStore checkpointStore = null;
+    LockRecoveryPipeline recoveryPipeline = null;
     try {
       DatabaseConfig databaseConfig = new DatabaseConfig(props);
       StorageValidator.validate(databaseConfig);
@@ -88,10 +171,27 @@ public final class AuditorFinalizeOrchestrator implements AutoCloseable {
       AuditorFinalizeConfig config = new AuditorFinalizeConfig(props);
       auditorClient = new AuditorClient(config.getAuditorTargetConfig());
 
-      ResumableScannerFactory scannerFactory = new ResumableScannerFactory(databaseConfig);
+      checkpointStore = CheckpointStore.create(props);
+      ResumableScannerFactory scannerFactory =
+          new ResumableScannerFactory(databaseConfig, checkpointStore);
+      recoveryPipeline = new LockRecoveryPipeline(rpcWindow);
       return new AuditorFinalizeOrchestrator(
-          admin, storage, auditorClient, scannerFactory, checkpointDir, config.getBaseNamespace());
+          admin,
+          storage,
+          auditorClient,
+          scannerFactory,
+          checkpointDir,
+          config.getBaseNamespace(),
+          checkpointStore,
+          lockRetryThreads,
+          recoveryPipeline);
     } catch (Exception e) {
+      if (recoveryPipeline != null) {
+        recoveryPipeline.close();
+      }
+      if (checkpointStore != null) {
+        checkpointStore.close();
+      }
       if (auditorClient != null) {
         auditorClient.shutdown();
       }
@@ -113,7 +213,21 @@ public final class AuditorFinalizeOrchestrator implements AutoCloseable {
    * @throws Exception if any processing or state persistence fails
    */
   public String execute() throws Exception {
-    AuditorFinalizeStateManager stateManager = new AuditorFinalizeStateManager(checkpointDir);
+    return execute(checkpointDir);
+  }
+
+  /**
+   * Executes the full orchestration workflow with the given checkpoint directory instead of the one
+   * given on creation. A long-running process runs successive runs this way, each with its own
+   * checkpoint directory, on the clients of a single orchestrator.
+   *
+   * @param checkpointDir root directory for the checkpoint state of this run
+   * @return the base64url-encoded completion token
+   * @throws Exception if any processing or state persistence fails
+   */
+  public String execute(Path checkpointDir) throws Exception {
+    AuditorFinalizeStateManager stateManager =
+        new AuditorFinalizeStateManager(checkpointStore, checkpointDir);
     AuditorFinalizeState state = loadOrInitializeState(stateManager);
 
     long startedAtMs = state.getStartedAtMs();
@@ -202,7 +316,8 @@ public final class AuditorFinalizeOrchestrator implements AutoCloseable {
 
   /**
    * Scans a single namespace's {@code asset_lock} table using a resumable scanner, finalizes
-   * unreleased locks via the {@link LockFinalizer}, and marks the namespace as completed in the
+   * unreleased locks via the {@link LockFinalizer}, waits for the locks deferred by the scan or
+   * left by an interrupted run to be finalized, and marks the namespace as completed in the
    * checkpoint state.
    */
   private void processAssetLockTable(
@@ -218,19 +333,61 @@ public final class AuditorFinalizeOrchestrator implements AutoCloseable {
     logger.info("Processing asset_lock table in namespace: {}", logicalNamespace);
 
     LockFinalizer lockFinalizer = new LockFinalizer(auditorClient);
-    FinalizeAssetLockHandler handler =
-        new FinalizeAssetLockHandler(stateChecker, lockFinalizer, logicalNamespace);
+    // The scan workers record the locks they defer concurrently, and the state is persisted once
+    // for the locks of a page
+    ReentrantLock stateLock = new ReentrantLock();
+    DeferredLockRetryQueue.DeferralRecorder recorder =
+        assetIds -> {
+          stateLock.lock();
+          try {
+            boolean added = false;
+            for (String assetId : assetIds) {
+              added |= state.addDeferredLock(logicalNamespace, assetId);
+            }
+            if (added) {
+              stateManager.persist(state);
+            }
+          } finally {
+            stateLock.unlock();
+          }
+        };
 
-    try (ResumableScanner scanner = scannerFactory.create(scanCheckpointDir)) {
+    try (DeferredLockRetryQueue retryQueue =
+            new DeferredLockRetryQueue(lockFinalizer, logicalNamespace, lockRetryThreads, recorder);
+        ResumableScanner scanner = scannerFactory.create(scanCheckpointDir)) {
+      Set<String> resumedLocks = state.getDeferredLocks(logicalNamespace);
+      if (!resumedLocks.isEmpty()) {
+        logger.info(
+            "Retrying {} locks deferred by the previous run in namespace {}.",
+            resumedLocks.size(),
+            logicalNamespace);
+        resumedLocks.forEach(retryQueue::resume);
+      }
+
+      FinalizeAssetLockHandler handler =
+          new FinalizeAssetLockHandler(
+              stateChecker, lockFinalizer, logicalNamespace, retryQueue, recoveryPipeline);
       ScanResult scanResult =
-          scanner.scan(physicalNamespace, AuditorInternalValues.ASSET_LOCK_TABLE_NAME, handler);
+          scanner.scan(
+              physicalNamespace,
+              AuditorInternalValues.ASSET_LOCK_TABLE_NAME,
+              stateChecker.getScanConditions(),
+              handler);
+      retryQueue.awaitDrained();
 
       logger.info(
           "Finished asset_lock table in namespace {}: {} records were scanned, {} locks were"
-              + " finalized.",
+              + " finalized, {} of {} deferred locks were finalized after a retry.",
           logicalNamespace,
           scanResult.getTotalScanned(),
-          handler.getFinalizedCount());
+          handler.getFinalizedCount() + retryQueue.getFinalizedCount(),
+          retryQueue.getFinalizedCount(),
+          retryQueue.getDeferredCount());
+      if (recoveryPipeline != null) {
+        logger.info(
+            "RecoverAssetLock RPCs so far: at most {} in flight at once.",
+            recoveryPipeline.getMaxInFlightCount());
+      }
     }
 
     state.markNamespaceCompleted(logicalNamespace);
@@ -243,6 +400,18 @@ public final class AuditorFinalizeOrchestrator implements AutoCloseable {
    */
   @Override
   public void close() {
+    try {
+      scannerFactory.close();
+    } catch (Exception e) {
+      logger.warn("Failed to close ResumableScannerFactory.", e);
+    }
+    if (recoveryPipeline != null) {
+      try {
+        recoveryPipeline.close();
+      } catch (Exception e) {
+        logger.warn("Failed to close LockRecoveryPipeline.", e);
+      }
+    }
     try {
       admin.close();
     } catch (Exception e) {
@@ -258,5 +427,10 @@ public final class AuditorFinalizeOrchestrator implements AutoCloseable {
     } catch (Exception e) {
       logger.warn("Failed to close AuditorClient.", e);
     }
+    try {
+      checkpointStore.close();
+    } catch (Exception e) {
+      logger.warn("Failed to close CheckpointStore.", e);
+    }
   }
 }
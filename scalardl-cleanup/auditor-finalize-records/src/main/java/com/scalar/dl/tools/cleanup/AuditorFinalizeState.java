@@ -4,8 +4,10 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -15,6 +17,10 @@ import java.util.Set;
  * namespaces whose {@code asset_lock} table has already been finalized. The namespace list is
  * captured on the first invocation and reused on resumption, so a resumed run sweeps the same set
  * of namespaces and skips the ones already finalized.
+ *
+ * <p>It also holds, per namespace not yet finalized, the asset IDs of the locks whose finalization
+ * was deferred because they were still active when scanned. The pages they were scanned from are
+ * already checkpointed, so a resumed run retries them from here rather than from the scan.
  */
 public final class AuditorFinalizeState {
 
@@ -27,22 +33,37 @@ public final class AuditorFinalizeState {
   @JsonProperty("completed_namespaces")
   private final Set<String> completedNamespaces;
 
+  @JsonProperty("deferred_locks")
+  private final Map<String, Set<String>> deferredLocks;
+
   /** Creates an initial state with no completed namespaces. */
   public AuditorFinalizeState(long startedAtMs, List<String> namespaceList) {
     this(startedAtMs, namespaceList, null);
   }
 
+  public AuditorFinalizeState(
+      long startedAtMs, List<String> namespaceList, List<String> completedNamespaces) {
+    this(startedAtMs, namespaceList, completedNamespaces, null);
+  }
+
   @JsonCreator
   public AuditorFinalizeState(
       @JsonProperty("started_at_ms") long startedAtMs,
       @JsonProperty("namespace_list") List<String> namespaceList,
-      @JsonProperty("completed_namespaces") List<String> completedNamespaces) {
+      @JsonProperty("completed_namespaces") List<String> completedNamespaces,
+      @JsonProperty("deferred_locks") Map<String, List<String>> deferredLocks) {
     this.startedAtMs = startedAtMs;
     this.namespaceList = namespaceList != null ? new ArrayList<>(namespaceList) : new ArrayList<>();
     this.completedNamespaces =
         completedNamespaces != null
             ? new LinkedHashSet<>(completedNamespaces)
             : new LinkedHashSet<>();
+    this.deferredLocks = new LinkedHashMap<>();
+    if (deferredLocks != null) {
+      deferredLocks.forEach(
+          (namespace, assetIds) ->
+              this.deferredLocks.put(namespace, new LinkedHashSet<>(assetIds)));
+    }
   }
 
   public long getStartedAtMs() {
@@ -57,7 +78,24 @@ public final class AuditorFinalizeState {
     return Collections.unmodifiableSet(completedNamespaces);
   }
 
+  /** Returns the asset IDs of the locks deferred in the given namespace. */
+  public Set<String> getDeferredLocks(String namespace) {
+    Set<String> assetIds = deferredLocks.get(namespace);
+    return assetIds != null ? Collections.unmodifiableSet(assetIds) : Collections.emptySet();
+  }
+
+  /**
+   * Records a lock deferred in the given namespace.
+   *
+   * @return true if the lock was not recorded yet
+   */
+  public boolean addDeferredLock(String namespace, String assetId) {
+    return deferredLocks.computeIfAbsent(namespace, k -> new LinkedHashSet<>()).add(assetId);
+  }
+
+  /** Marks the namespace completed, dropping the locks deferred in it as they are finalized. */
   public void markNamespaceCompleted(String namespace) {
     completedNamespaces.add(namespace);
+    deferredLocks.remove(namespace);
   }
 }
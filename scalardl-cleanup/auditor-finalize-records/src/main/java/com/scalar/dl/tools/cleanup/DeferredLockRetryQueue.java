@@ -0,0 +1,279 @@
+package com.scalar.dl.tools.cleanup;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.scalar.dl.tools.common.ScalarDlCleanupError;
+import com.scalar.dl.tools.common.ScalarDlCleanupException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retries the finalization of the asset locks of a namespace that were still active when scanned,
+ * without holding up the scan.
+ *
+ * <p>A lock found {@code NOT_RECOVERABLE} is parked on a queue ordered by the time its next attempt
+ * is due, {@link LockFinalizer#getRetryIntervalMs()} after the previous one, and the scan worker
+ * moves on to the next record. A separate pool of threads takes the locks off the queue as they
+ * come due and makes the next attempt, parking the lock again while it is still active, up to
+ * {@link LockFinalizer#MAX_ATTEMPTS} attempts in all. A lock still active after the last attempt
+ * fails the namespace, like a lock failing to be recovered does.
+ *
+ * <p>The locks of a page parked for the first time are passed together to a {@link
+ * DeferralRecorder} before the scan goes on, so that a resumed run can retry the locks parked by an
+ * interrupted one: the pages they were scanned from are already checkpointed and are not scanned
+ * again.
+ */
+@ThreadSafe
+public final class DeferredLockRetryQueue implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(DeferredLockRetryQueue.class);
+
+  /** Records the locks of a page parked for the first time, before the scan goes on. */
+  @FunctionalInterface
+  public interface DeferralRecorder {
+    void record(Collection<String> assetIds) throws Exception;
+  }
+
+  private final LockFinalizer lockFinalizer;
+  private final String namespace;
+  private final DeferralRecorder recorder;
+  private final DelayQueue<DeferredLock> queue = new DelayQueue<>();
+  private final ExecutorService executor;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition drained = lock.newCondition();
+  private final AtomicLong deferredCount = new AtomicLong();
+  private final AtomicLong finalizedCount = new AtomicLong();
+
+  // The number of locks parked or being retried, guarded by lock
+  private int pendingCount;
+  // The first failure of a retry, guarded by lock
+  @Nullable private Throwable failure;
+
+  /**
+   * @param lockFinalizer the finalizer making each attempt
+   * @param namespace the logical namespace of the locks
+   * @param threadCount the number of threads retrying the locks
+   * @param recorder records the locks of each page parked for the first time
+   */
+  public DeferredLockRetryQueue(
+      LockFinalizer lockFinalizer, String namespace, int threadCount, DeferralRecorder recorder) {
+    if (threadCount <= 0) {
+      throw new IllegalArgumentException("threadCount must be positive: " + threadCount);
+    }
+    this.lockFinalizer = lockFinalizer;
+    this.namespace = namespace;
+    this.recorder = recorder;
+    this.executor =
+        Executors.newFixedThreadPool(
+            threadCount,
+            new ThreadFactoryBuilder().setNameFormat("lock-retry-%d").setDaemon(true).build());
+    for (int i = 0; i < threadCount; i++) {
+      executor.execute(this::retryLoop);
+    }
+  }
+
+  /**
+   * Parks a lock whose first attempt found it still active, to be retried once the retry interval
+   * has elapsed.
+   *
+   * @param assetId the asset ID of the lock
+   * @throws Exception if the lock cannot be recorded by the {@link DeferralRecorder}
+   */
+  public void defer(String assetId) throws Exception {
+    deferAll(Collections.singletonList(assetId));
+  }
+
+  /**
+   * Parks the locks of a page whose first attempt found them still active, recording them with a
+   * single call to the {@link DeferralRecorder}.
+   *
+   * @param assetIds the asset IDs of the locks
+   * @throws Exception if the locks cannot be recorded by the {@link DeferralRecorder}
+   */
+  public void deferAll(Collection<String> assetIds) throws Exception {
+    if (assetIds.isEmpty()) {
+      return;
+    }
+    recorder.record(assetIds);
+    long due = dueAfterRetryInterval();
+    for (String assetId : assetIds) {
+      deferredCount.incrementAndGet();
+      logger.info(
+          "Asset {} in namespace {} is still in use. Deferring finalization (attempt 1/{})",
+          assetId,
+          namespace,
+          LockFinalizer.MAX_ATTEMPTS);
+      park(new DeferredLock(assetId, 2, due));
+    }
+  }
+
+  /**
+   * Parks a lock recorded by an interrupted run, to be attempted right away as if it had not been
+   * attempted yet.
+   *
+   * @param assetId the asset ID of the lock
+   */
+  public void resume(String assetId) {
+    deferredCount.incrementAndGet();
+    park(new DeferredLock(assetId, 1, System.nanoTime()));
+  }
+
+  private void park(DeferredLock deferredLock) {
+    lock.lock();
+    try {
+      pendingCount++;
+    } finally {
+      lock.unlock();
+    }
+    queue.put(deferredLock);
+  }
+
+  private long dueAfterRetryInterval() {
+    return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lockFinalizer.getRetryIntervalMs());
+  }
+
+  private void retryLoop() {
+    while (!Thread.currentThread().isInterrupted()) {
+      DeferredLock deferredLock;
+      try {
+        deferredLock = queue.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+      retry(deferredLock);
+    }
+  }
+
+  private void retry(DeferredLock deferredLock) {
+    String assetId = deferredLock.assetId;
+    int attempt = deferredLock.attempt;
+    try {
+      if (lockFinalizer.tryFinalize(namespace, assetId)) {
+        finalizedCount.incrementAndGet();
+        finish(null);
+        return;
+      }
+      if (attempt < LockFinalizer.MAX_ATTEMPTS) {
+        logger.info(
+            "Asset {} in namespace {} is still in use. Deferring finalization (attempt {}/{})",
+            assetId,
+            namespace,
+            attempt,
+            LockFinalizer.MAX_ATTEMPTS);
+        // The lock stays pending, so the queue cannot be seen drained in between
+        queue.put(new DeferredLock(assetId, attempt + 1, dueAfterRetryInterval()));
+        return;
+      }
+      finish(
+          new ScalarDlCleanupException(
+              ScalarDlCleanupError.RECOVER_ASSET_LOCK_NOT_RECOVERABLE,
+              assetId,
+              namespace,
+              LockFinalizer.MAX_ATTEMPTS));
+    } catch (Throwable e) {
+      // Errors too, as the lock would otherwise stay pending and awaitDrained() would never return
+      finish(e);
+    }
+  }
+
+  private void finish(@Nullable Throwable e) {
+    lock.lock();
+    try {
+      if (e != null && failure == null) {
+        failure = e;
+      }
+      pendingCount--;
+      drained.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits until every parked lock is finalized, or until a retry fails.
+   *
+   * @throws Exception the first exception thrown by a retry, or a {@link ScalarDlCleanupException}
+   *     if a lock is still active after the last attempt
+   * @throws Error the first error thrown by a retry
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void awaitDrained() throws Exception {
+    lock.lock();
+    try {
+      while (pendingCount > 0 && failure == null) {
+        drained.await();
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      if (failure != null) {
+        throw (Exception) failure;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns the number of locks parked so far, including the ones resumed. */
+  public long getDeferredCount() {
+    return deferredCount.get();
+  }
+
+  /** Returns the number of parked locks finalized so far. */
+  public long getFinalizedCount() {
+    return finalizedCount.get();
+  }
+
+  @VisibleForTesting
+  boolean isShutdown() {
+    return executor.isShutdown();
+  }
+
+  /**
+   * Stops the threads. The locks still parked are dropped and are retried by a resumed run, as they
+   * have been recorded.
+   */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /** A lock waiting for its next attempt. */
+  private static final class DeferredLock implements Delayed {
+    private final String assetId;
+    private final int attempt;
+    private final long dueNanos;
+
+    private DeferredLock(String assetId, int attempt, long dueNanos) {
+      this.assetId = assetId;
+      this.attempt = attempt;
+      this.dueNanos = dueNanos;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      if (other instanceof DeferredLock) {
+        // Compare the difference, as System.nanoTime() values may overflow
+        return Long.compare(dueNanos - ((DeferredLock) other).dueNanos, 0);
+      }
+      return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+    }
+  }
+}
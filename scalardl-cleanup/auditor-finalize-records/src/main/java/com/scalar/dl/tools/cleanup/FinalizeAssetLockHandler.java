@@ -1,8 +1,14 @@
 package com.scalar.dl.tools.cleanup;
 
 import com.scalar.db.api.Result;
+import com.scalar.dl.tools.common.AuditorInternalValues;
 import com.scalar.dl.tools.scan.RecordHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,6 +19,14 @@ import org.slf4j.LoggerFactory;
  * <p>For each scanned asset-lock record it decides whether the lock needs finalization ({@link
  * LockStateChecker}) and, if so, finalizes it by issuing a recovery RPC ({@link LockFinalizer})
  * that carries the namespace.
+ *
+ * <p>Given a {@link DeferredLockRetryQueue}, it makes a single attempt per lock and parks a lock
+ * still active on the queue, so that the scan is not held up while the lock expires. Otherwise it
+ * waits for such a lock to expire on the scan worker.
+ *
+ * <p>Given also a {@link LockRecoveryPipeline}, the handler receives whole pages and keeps several
+ * RPCs of a page in flight at once, returning once all of them have resolved, so that a page is
+ * checkpointed only after its locks are finalized or deferred.
  */
 @ThreadSafe
 public final class FinalizeAssetLockHandler implements RecordHandler {
@@ -22,16 +36,57 @@ public final class FinalizeAssetLockHandler implements RecordHandler {
   /** The number of finalizations between successive progress log lines. */
   private static final long PROGRESS_LOG_INTERVAL = 100_000L;
 
+  /**
+   * The columns read by {@link LockStateChecker}. {@link LockFinalizer} needs only the asset ID,
+   * which is the partition key and is always included by the scanner.
+   */
+  private static final List<String> PROJECTIONS =
+      Collections.unmodifiableList(
+          Arrays.asList(
+              AuditorInternalValues.ASSET_LOCK_TABLE_LOCK_TYPE_COLUMN_NAME,
+              AuditorInternalValues.ASSET_LOCK_TABLE_LAST_UPDATED_AT_COLUMN_NAME));
+
   private final LockStateChecker stateChecker;
   private final LockFinalizer lockFinalizer;
   private final String namespace;
+  @Nullable private final DeferredLockRetryQueue retryQueue;
+  @Nullable private final LockRecoveryPipeline recoveryPipeline;
   private final AtomicLong finalizedCount = new AtomicLong();
 
   public FinalizeAssetLockHandler(
       LockStateChecker stateChecker, LockFinalizer lockFinalizer, String namespace) {
+    this(stateChecker, lockFinalizer, namespace, null);
+  }
+
+  /**
+   * @param retryQueue the queue the locks still active are parked on, or null to wait for them to
+   *     expire on the scan worker
+   */
+  public FinalizeAssetLockHandler(
+      LockStateChecker stateChecker,
+      LockFinalizer lockFinalizer,
+      String namespace,
+      @Nullable DeferredLockRetryQueue retryQueue) {
+    this(stateChecker, lockFinalizer, namespace, retryQueue, null);
+  }
+
+  /**
+   * @param retryQueue the queue the locks still active are parked on, or null to wait for them to
+   *     expire on the scan worker
+   * @param recoveryPipeline the pipeline issuing the RPCs of each page, or null to issue them one
+   *     at a time on the scan worker; used only together with a retry queue
+   */
+  public FinalizeAssetLockHandler(
+      LockStateChecker stateChecker,
+      LockFinalizer lockFinalizer,
+      String namespace,
+      @Nullable DeferredLockRetryQueue retryQueue,
+      @Nullable LockRecoveryPipeline recoveryPipeline) {
     this.stateChecker = stateChecker;
     this.lockFinalizer = lockFinalizer;
     this.namespace = namespace;
+    this.retryQueue = retryQueue;
+    this.recoveryPipeline = recoveryPipeline;
   }
 
   @Override
@@ -39,9 +94,50 @@ public final class FinalizeAssetLockHandler implements RecordHandler {
     if (!stateChecker.needsFinalization(record)) {
       return;
     }
-    lockFinalizer.execute(namespace, record);
-    long finalized = finalizedCount.incrementAndGet();
-    if (finalized % PROGRESS_LOG_INTERVAL == 0) {
+    if (retryQueue == null) {
+      lockFinalizer.execute(namespace, record);
+    } else {
+      String assetId = LockFinalizer.getAssetId(record);
+      if (!lockFinalizer.tryFinalize(namespace, assetId)) {
+        retryQueue.defer(assetId);
+        return;
+      }
+    }
+    countFinalized(1);
+  }
+
+  @Override
+  public boolean handlesPages() {
+    return retryQueue != null && recoveryPipeline != null;
+  }
+
+  @Override
+  public void handlePage(List<Result> records) throws Exception {
+    if (!handlesPages()) {
+      RecordHandler.super.handlePage(records);
+      return;
+    }
+    List<String> assetIds = new ArrayList<>();
+    for (Result record : records) {
+      if (stateChecker.needsFinalization(record)) {
+        assetIds.add(LockFinalizer.getAssetId(record));
+      }
+    }
+    if (assetIds.isEmpty()) {
+      return;
+    }
+    List<String> stillActiveAssetIds = new ArrayList<>();
+    int released =
+        recoveryPipeline.finalizeAll(lockFinalizer, namespace, assetIds, stillActiveAssetIds::add);
+    // The locks still active are parked together, so that they are recorded once per page
+    retryQueue.deferAll(stillActiveAssetIds);
+    // Only the released locks are counted
+    countFinalized(released);
+  }
+
+  private void countFinalized(int count) {
+    long finalized = finalizedCount.addAndGet(count);
+    if (finalized / PROGRESS_LOG_INTERVAL != (finalized - count) / PROGRESS_LOG_INTERVAL) {
       logger.info(
           "Finalized {} locks in the asset_lock table in namespace {} so far.",
           finalized,
@@ -49,7 +145,15 @@ public final class FinalizeAssetLockHandler implements RecordHandler {
     }
   }
 
-  /** Returns the number of locks finalized so far for this namespace's asset_lock table. */
+  @Override
+  public List<String> getProjections() {
+    return PROJECTIONS;
+  }
+
+  /**
+   * Returns the number of locks finalized so far for this namespace's asset_lock table, excluding
+   * the ones parked on the {@link DeferredLockRetryQueue}.
+   */
   public long getFinalizedCount() {
     return finalizedCount.get();
   }
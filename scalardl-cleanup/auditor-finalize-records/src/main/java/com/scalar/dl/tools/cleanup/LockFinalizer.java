@@ -49,35 +49,13 @@ public final class LockFinalizer {
    *     the scan can be canceled promptly.
    */
   public void execute(String namespace, Result result) throws InterruptedException {
-    String assetId = result.getText(AuditorInternalValues.ASSET_LOCK_TABLE_ID_COLUMN_NAME);
-    if (assetId == null) {
-      // The id column is the partition key of the asset_lock table, so it should never be null for
-      // a real record; guard against unexpected/corrupted data.
-      throw new IllegalStateException(
-          "Column "
-              + AuditorInternalValues.ASSET_LOCK_TABLE_ID_COLUMN_NAME
-              + " not found in the result");
-    }
-
-    AssetLockRecoveryRequest rpcRequest =
-        AssetLockRecoveryRequest.newBuilder().setNamespace(namespace).setAssetId(assetId).build();
+    String assetId = getAssetId(result);
 
     for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
-      LockRecoveryResult rpcResult = auditorClient.recover(rpcRequest);
-
-      if (rpcResult == LockRecoveryResult.SUCCEEDED || rpcResult == LockRecoveryResult.NOT_NEEDED) {
+      if (tryFinalize(namespace, assetId)) {
         return;
       }
 
-      if (rpcResult == LockRecoveryResult.FAILED) {
-        throw new ScalarDlCleanupException(
-            ScalarDlCleanupError.RECOVER_ASSET_LOCK_RPC_FAILED, assetId, namespace);
-      }
-
-      if (rpcResult != LockRecoveryResult.NOT_RECOVERABLE) {
-        throw new IllegalStateException("Unexpected lock recovery result: " + rpcResult);
-      }
-
       // NOT_RECOVERABLE: the lock is not yet expired. Retry unless this was the last attempt.
       if (attempt < MAX_ATTEMPTS) {
         logger.info(
@@ -93,4 +71,54 @@ public final class LockFinalizer {
     throw new ScalarDlCleanupException(
         ScalarDlCleanupError.RECOVER_ASSET_LOCK_NOT_RECOVERABLE, assetId, namespace, MAX_ATTEMPTS);
   }
+
+  /**
+   * Makes a single {@code RecoverAssetLock} attempt for the given asset, without retrying.
+   *
+   * @return true if the lock is released, or false if it is still active ({@code
+   *     NOT_RECOVERABLE}) and has to be retried once {@link #getRetryIntervalMs()} has elapsed
+   * @throws ScalarDlCleanupException if the RPC reports that the recovery failed
+   */
+  public boolean tryFinalize(String namespace, String assetId) {
+    AssetLockRecoveryRequest rpcRequest =
+        AssetLockRecoveryRequest.newBuilder().setNamespace(namespace).setAssetId(assetId).build();
+    LockRecoveryResult rpcResult = auditorClient.recover(rpcRequest);
+
+    if (rpcResult == LockRecoveryResult.SUCCEEDED || rpcResult == LockRecoveryResult.NOT_NEEDED) {
+      return true;
+    }
+
+    if (rpcResult == LockRecoveryResult.FAILED) {
+      throw new ScalarDlCleanupException(
+          ScalarDlCleanupError.RECOVER_ASSET_LOCK_RPC_FAILED, assetId, namespace);
+    }
+
+    if (rpcResult != LockRecoveryResult.NOT_RECOVERABLE) {
+      throw new IllegalStateException("Unexpected lock recovery result: " + rpcResult);
+    }
+    return false;
+  }
+
+  /** Returns the time to wait before retrying a lock that is still active. */
+  public long getRetryIntervalMs() {
+    return retryIntervalMs;
+  }
+
+  /**
+   * Returns the asset ID of a scanned lock record.
+   *
+   * @throws IllegalStateException if the record has no asset ID
+   */
+  public static String getAssetId(Result result) {
+    String assetId = result.getText(AuditorInternalValues.ASSET_LOCK_TABLE_ID_COLUMN_NAME);
+    if (assetId == null) {
+      // The id column is the partition key of the asset_lock table, so it should never be null for
+      // a real record; guard against unexpected/corrupted data.
+      throw new IllegalStateException(
+          "Column "
+              + AuditorInternalValues.ASSET_LOCK_TABLE_ID_COLUMN_NAME
+              + " not found in the result");
+    }
+    return assetId;
+  }
 }
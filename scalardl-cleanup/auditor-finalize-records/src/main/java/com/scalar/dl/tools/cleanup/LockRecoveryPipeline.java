@@ -0,0 +1,174 @@
+package com.scalar.dl.tools.cleanup;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Keeps several {@code RecoverAssetLock} RPCs of a page in flight at once, so that the sweep of an
+ * {@code asset_lock} table is not bound by the round-trip time of one RPC per scan worker.
+ *
+ * <p>{@link #finalizeAll} issues the RPCs of a page through a window of at most {@code window}
+ * in-flight RPCs per calling scan worker, handles their results in completion order, issuing the
+ * next RPC as each one resolves, and returns once all of them have resolved, so that the page is
+ * only checkpointed after its locks are finalized or deferred. The RPCs of all the scan workers
+ * share the single channel of the {@link com.scalar.dl.client.service.AuditorClient}.
+ */
+@ThreadSafe
+public final class LockRecoveryPipeline implements AutoCloseable {
+
+  /** Handles a lock found still active, on the calling scan worker. */
+  @FunctionalInterface
+  public interface StillActiveLockHandler {
+    void handle(String assetId) throws Exception;
+  }
+
+  private final int window;
+  private final ExecutorService executor;
+  private final AtomicInteger inFlightCount = new AtomicInteger();
+  private final AtomicInteger maxInFlightCount = new AtomicInteger();
+
+  /**
+   * @param window the maximum number of RPCs in flight at once for each calling scan worker
+   */
+  public LockRecoveryPipeline(int window) {
+    if (window <= 0) {
+      throw new IllegalArgumentException("window must be positive: " + window);
+    }
+    this.window = window;
+    // The window bounds the RPCs each scan worker has in flight, so the threads are bounded by the
+    // number of scan workers times the window, and idle ones are let go
+    this.executor =
+        Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("lock-recovery-%d").setDaemon(true).build());
+  }
+
+  /**
+   * Makes a single {@code RecoverAssetLock} attempt for each of the given locks and waits for all
+   * of them to resolve, even once one of them has failed, so that no RPC of a page is still in
+   * flight when the failure is propagated. No further RPC is issued once one has failed.
+   *
+   * @param lockFinalizer the finalizer making each attempt
+   * @param namespace the logical namespace of the locks
+   * @param assetIds the asset IDs of the locks of a page
+   * @param stillActiveLockHandler handles each lock found still active, in completion order
+   * @return the number of locks released
+   * @throws Exception the first exception thrown by an attempt or by {@code
+   *     stillActiveLockHandler}, with the others suppressed
+   * @throws InterruptedException if the calling thread is interrupted; the RPCs still in flight are
+   *     then cancelled
+   */
+  public int finalizeAll(
+      LockFinalizer lockFinalizer,
+      String namespace,
+      List<String> assetIds,
+      StillActiveLockHandler stillActiveLockHandler)
+      throws Exception {
+    CompletionService<String> completionService = new ExecutorCompletionService<>(executor);
+    List<Future<String>> futures = new ArrayList<>(Math.min(assetIds.size(), window));
+    int next = 0;
+    int inFlight = 0;
+    int released = 0;
+    Exception failure = null;
+    try {
+      while (next < assetIds.size() || inFlight > 0) {
+        // Fill the window unless an RPC has failed, in which case the in-flight ones are drained
+        while (failure == null && inFlight < window && next < assetIds.size()) {
+          futures.add(submit(completionService, lockFinalizer, namespace, assetIds.get(next++)));
+          inFlight++;
+        }
+        Future<String> completed = completionService.take();
+        inFlight--;
+        try {
+          String stillActiveAssetId = completed.get();
+          if (stillActiveAssetId == null) {
+            released++;
+          } else if (failure == null) {
+            stillActiveLockHandler.handle(stillActiveAssetId);
+          }
+        } catch (ExecutionException e) {
+          failure = addFailure(failure, toException(e.getCause()));
+        } catch (InterruptedException e) {
+          throw e;
+        } catch (Exception e) {
+          failure = addFailure(failure, e);
+        }
+      }
+    } catch (InterruptedException e) {
+      for (Future<String> future : futures) {
+        future.cancel(true);
+      }
+      throw e;
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return released;
+  }
+
+  /** Submits an attempt returning the asset ID if the lock is still active, or null if released. */
+  private Future<String> submit(
+      CompletionService<String> completionService,
+      LockFinalizer lockFinalizer,
+      String namespace,
+      String assetId) {
+    try {
+      return completionService.submit(
+          () -> {
+            maxInFlightCount.accumulateAndGet(inFlightCount.incrementAndGet(), Math::max);
+            try {
+              return lockFinalizer.tryFinalize(namespace, assetId) ? null : assetId;
+            } finally {
+              inFlightCount.decrementAndGet();
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      throw new IllegalStateException("The lock recovery pipeline is already closed", e);
+    }
+  }
+
+  private static Exception addFailure(@Nullable Exception failure, Exception cause) {
+    if (failure == null) {
+      return cause;
+    }
+    failure.addSuppressed(cause);
+    return failure;
+  }
+
+  private static Exception toException(Throwable cause) {
+    if (cause instanceof Exception) {
+      return (Exception) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new RuntimeException(cause);
+  }
+
+  /** Returns the largest number of RPCs that have been in flight at once across scan workers. */
+  public int getMaxInFlightCount() {
+    return maxInFlightCount.get();
+  }
+
+  @VisibleForTesting
+  boolean isShutdown() {
+    return executor.isShutdown();
+  }
+
+  /** Stops the threads. RPCs still in flight are interrupted. */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
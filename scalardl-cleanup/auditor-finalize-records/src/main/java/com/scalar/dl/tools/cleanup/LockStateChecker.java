@@ -2,6 +2,9 @@ package com.scalar.dl.tools.cleanup;
 
 import com.scalar.db.api.Result;
 import com.scalar.dl.tools.common.AuditorInternalValues;
+import com.scalar.dl.tools.scan.ScanCondition;
+import java.util.Collections;
+import java.util.List;
 
 /** Checks asset-lock state to determine if a lock record needs finalization. */
 public final class LockStateChecker {
@@ -42,4 +45,17 @@ public final class LockStateChecker {
     throw new IllegalStateException(
         String.format("Unexpected lock_type value in asset_lock record: %d", lockType));
   }
+
+  /**
+   * Returns scan conditions filtering out released locks, for which {@link
+   * #needsFinalization(Result)} always returns {@code false}. Write locks are not filtered by
+   * {@code last_updated_at} because read locks must match regardless of it; records with an
+   * unexpected {@code lock_type} still match so that they are reported.
+   */
+  public List<ScanCondition> getScanConditions() {
+    return Collections.singletonList(
+        ScanCondition.ne(
+            AuditorInternalValues.ASSET_LOCK_TABLE_LOCK_TYPE_COLUMN_NAME,
+            AuditorInternalValues.LOCK_TYPE_NONE));
+  }
 }
@@ -21,8 +21,10 @@ import com.scalar.db.api.Scan;
 import com.scalar.db.api.Scanner;
 import com.scalar.db.config.DatabaseConfig;
 import com.scalar.db.service.StorageFactory;
+import com.scalar.dl.auditor.ordering.LockRecoveryResult;
 import com.scalar.dl.client.config.ClientConfig;
 import com.scalar.dl.client.service.AuditorClient;
+import com.scalar.dl.rpc.AssetLockRecoveryRequest;
 import com.scalar.dl.tools.common.AuditorInternalValues;
 import com.scalar.dl.tools.common.CompletionToken;
 import com.scalar.dl.tools.common.ScalarDlCleanupException;
@@ -37,6 +39,7 @@ import java.util.Properties;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.MockedConstruction;
 import org.mockito.MockedStatic;
 
@@ -123,7 +126,7 @@ class AuditorFinalizeOrchestratorTest {
     // Arrange — no namespace registry table, so only the default namespace is swept.
     when(admin.tableExists(NAMESPACE, AuditorInternalValues.NAMESPACE_TABLE_NAME))
         .thenReturn(false);
-    when(scanner.scan(anyString(), anyString(), any())).thenReturn(new ScanResult(10));
+    when(scanner.scan(anyString(), anyString(), any(), any())).thenReturn(new ScanResult(10));
 
     // Act — the start timestamp is captured as now() - the lock validity period.
     long before = System.currentTimeMillis() - AuditorInternalValues.LOCK_VALID_PERIOD_MS;
@@ -135,7 +138,7 @@ class AuditorFinalizeOrchestratorTest {
     assertThat(token.getServerType()).isEqualTo(CompletionToken.ServerType.AUDITOR);
     assertThat(token.getStartedAtMs()).isBetween(before, after);
 
-    verify(scanner).scan(eq(NAMESPACE), eq("asset_lock"), any());
+    verify(scanner).scan(eq(NAMESPACE), eq("asset_lock"), any(), any());
     verify(scanner).close();
 
     // State is persisted with the default namespace completed and the token's start timestamp.
@@ -152,17 +155,17 @@ class AuditorFinalizeOrchestratorTest {
     Scanner namespaceScanner =
         createMockScanner(createMockNamespaceResult("ns1"), createMockNamespaceResult("ns2"));
     when(storage.scan(any(Scan.class))).thenReturn(namespaceScanner);
-    when(scanner.scan(anyString(), anyString(), any())).thenReturn(new ScanResult(0));
+    when(scanner.scan(anyString(), anyString(), any(), any())).thenReturn(new ScanResult(0));
 
     // Act
     orchestrator().execute();
 
     // Assert — default namespace (physical = base) + two registered namespaces, each resolved to
     // its physical namespace (<base>_<ns>), should be scanned, and nothing else.
-    verify(scanner).scan(eq(NAMESPACE), eq("asset_lock"), any());
-    verify(scanner).scan(eq("auditor_ns1"), eq("asset_lock"), any());
-    verify(scanner).scan(eq("auditor_ns2"), eq("asset_lock"), any());
-    verify(scanner, times(3)).scan(anyString(), anyString(), any());
+    verify(scanner).scan(eq(NAMESPACE), eq("asset_lock"), any(), any());
+    verify(scanner).scan(eq("auditor_ns1"), eq("asset_lock"), any(), any());
+    verify(scanner).scan(eq("auditor_ns2"), eq("asset_lock"), any(), any());
+    verify(scanner, times(3)).scan(anyString(), anyString(), any(), any());
   }
 
   @Test
@@ -170,7 +173,7 @@ class AuditorFinalizeOrchestratorTest {
     // Arrange — only the default namespace, whose scan fails.
     when(admin.tableExists(NAMESPACE, AuditorInternalValues.NAMESPACE_TABLE_NAME))
         .thenReturn(false);
-    when(scanner.scan(eq(NAMESPACE), eq("asset_lock"), any()))
+    when(scanner.scan(eq(NAMESPACE), eq("asset_lock"), any(), any()))
         .thenThrow(new RuntimeException("Cosmos DB unavailable"));
 
     // Act & Assert
@@ -187,8 +190,9 @@ class AuditorFinalizeOrchestratorTest {
     when(admin.tableExists(NAMESPACE, AuditorInternalValues.NAMESPACE_TABLE_NAME)).thenReturn(true);
     Scanner namespaceScanner = createMockScanner(createMockNamespaceResult("ns1"));
     when(storage.scan(any(com.scalar.db.api.Scan.class))).thenReturn(namespaceScanner);
-    when(scanner.scan(eq(NAMESPACE), eq("asset_lock"), any())).thenReturn(new ScanResult(10));
-    when(scanner.scan(eq("auditor_ns1"), eq("asset_lock"), any()))
+    when(scanner.scan(eq(NAMESPACE), eq("asset_lock"), any(), any()))
+        .thenReturn(new ScanResult(10));
+    when(scanner.scan(eq("auditor_ns1"), eq("asset_lock"), any(), any()))
         .thenThrow(new RuntimeException("Cosmos DB unavailable"));
 
     // Act
@@ -209,15 +213,15 @@ class AuditorFinalizeOrchestratorTest {
     stateManager.persist(
         new AuditorFinalizeState(
             startedAtMs, Arrays.asList("default", "ns1"), Collections.singletonList("default")));
-    when(scanner.scan(anyString(), anyString(), any())).thenReturn(new ScanResult(5));
+    when(scanner.scan(anyString(), anyString(), any(), any())).thenReturn(new ScanResult(5));
 
     // Act
     String token = orchestrator().execute();
 
     // Assert — the completed default namespace is skipped, only ns1 is scanned, and the original
     // start timestamp is carried over across the resume.
-    verify(scanner, never()).scan(eq(NAMESPACE), eq("asset_lock"), any());
-    verify(scanner).scan(eq("auditor_ns1"), eq("asset_lock"), any());
+    verify(scanner, never()).scan(eq(NAMESPACE), eq("asset_lock"), any(), any());
+    verify(scanner).scan(eq("auditor_ns1"), eq("asset_lock"), any(), any());
     assertThat(CompletionToken.decode(token).getStartedAtMs()).isEqualTo(startedAtMs);
 
     // The newly processed namespace is persisted alongside the pre-completed one.
@@ -226,6 +230,104 @@ class AuditorFinalizeOrchestratorTest {
     assertThat(finalState.getCompletedNamespaces()).containsExactlyInAnyOrder("default", "ns1");
   }
 
+  @Test
+  void execute_checkpointDirGiven_shouldPersistStateThereInsteadOfTheOneGivenOnCreation()
+      throws Exception {
+    // Arrange
+    when(admin.tableExists(NAMESPACE, AuditorInternalValues.NAMESPACE_TABLE_NAME))
+        .thenReturn(false);
+    when(scanner.scan(anyString(), anyString(), any(), any())).thenReturn(new ScanResult(0));
+    Path cycleDir = tempDir.resolve("cycle-1");
+
+    // Act
+    String completionToken = orchestrator().execute(cycleDir);
+
+    // Assert
+    AuditorFinalizeState state = new AuditorFinalizeStateManager(cycleDir).load();
+    assertThat(state).isNotNull();
+    assertThat(state.getStartedAtMs())
+        .isEqualTo(CompletionToken.decode(completionToken).getStartedAtMs());
+    assertThat(new AuditorFinalizeStateManager(tempDir).load()).isNull();
+  }
+
+  @Test
+  void create_invalidLockRetryThreadsGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(DatabaseConfig.STORAGE, "cosmos");
+    props.setProperty(AuditorFinalizeOrchestrator.LOCK_RETRY_THREADS_PROPERTY, "0");
+
+    // Act & Assert
+    assertThatThrownBy(() -> AuditorFinalizeOrchestrator.create(props, tempDir))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(AuditorFinalizeOrchestrator.LOCK_RETRY_THREADS_PROPERTY);
+  }
+
+  @Test
+  void create_invalidRpcWindowGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(DatabaseConfig.STORAGE, "cosmos");
+    props.setProperty(AuditorFinalizeOrchestrator.RPC_WINDOW_PROPERTY, "abc");
+
+    // Act & Assert
+    assertThatThrownBy(() -> AuditorFinalizeOrchestrator.create(props, tempDir))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(AuditorFinalizeOrchestrator.RPC_WINDOW_PROPERTY);
+  }
+
+  @Test
+  void execute_resumedStateWithDeferredLocksGiven_shouldRetryThemBeforeMarkingCompleted()
+      throws Exception {
+    // Arrange — an interrupted run deferred asset1 in the default namespace.
+    AuditorFinalizeStateManager stateManager = new AuditorFinalizeStateManager(tempDir);
+    AuditorFinalizeState resumed =
+        new AuditorFinalizeState(1000L, Collections.singletonList("default"));
+    resumed.addDeferredLock("default", "asset1");
+    stateManager.persist(resumed);
+    when(scanner.scan(anyString(), anyString(), any(), any())).thenReturn(new ScanResult(0));
+    when(auditorClient.recover(any(AssetLockRecoveryRequest.class)))
+        .thenReturn(LockRecoveryResult.SUCCEEDED);
+
+    // Act
+    orchestrator().execute();
+
+    // Assert — the deferred lock is retried although its page is not scanned again.
+    ArgumentCaptor<AssetLockRecoveryRequest> captor =
+        ArgumentCaptor.forClass(AssetLockRecoveryRequest.class);
+    verify(auditorClient).recover(captor.capture());
+    assertThat(captor.getValue().getNamespace()).isEqualTo("default");
+    assertThat(captor.getValue().getAssetId()).isEqualTo("asset1");
+    AuditorFinalizeState finalState = new AuditorFinalizeStateManager(tempDir).load();
+    assertThat(finalState).isNotNull();
+    assertThat(finalState.getCompletedNamespaces()).containsExactly("default");
+    assertThat(finalState.getDeferredLocks("default")).isEmpty();
+  }
+
+  @Test
+  void execute_deferredLockFailingGiven_shouldNotMarkCompletedAndKeepDeferredLock()
+      throws Exception {
+    // Arrange
+    AuditorFinalizeStateManager stateManager = new AuditorFinalizeStateManager(tempDir);
+    AuditorFinalizeState resumed =
+        new AuditorFinalizeState(1000L, Collections.singletonList("default"));
+    resumed.addDeferredLock("default", "asset1");
+    stateManager.persist(resumed);
+    when(scanner.scan(anyString(), anyString(), any(), any())).thenReturn(new ScanResult(0));
+    when(auditorClient.recover(any(AssetLockRecoveryRequest.class)))
+        .thenReturn(LockRecoveryResult.FAILED);
+
+    // Act
+    assertThatThrownBy(() -> orchestrator().execute())
+        .isInstanceOf(ScalarDlCleanupException.class);
+
+    // Assert
+    AuditorFinalizeState finalState = new AuditorFinalizeStateManager(tempDir).load();
+    assertThat(finalState).isNotNull();
+    assertThat(finalState.getCompletedNamespaces()).isEmpty();
+    assertThat(finalState.getDeferredLocks("default")).containsExactly("asset1");
+  }
+
   @Test
   void close_shouldCloseAdminAndStorageAndAuditorClient() {
     // Arrange
@@ -238,5 +340,6 @@ class AuditorFinalizeOrchestratorTest {
     verify(admin).close();
     verify(storage).close();
     verify(auditorClient).shutdown();
+    verify(scannerFactory).close();
   }
 }
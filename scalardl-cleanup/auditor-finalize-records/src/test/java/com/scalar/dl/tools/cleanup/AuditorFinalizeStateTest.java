@@ -75,4 +75,68 @@ class AuditorFinalizeStateTest {
     assertThat(deserialized.getNamespaceList()).containsExactly("default", "ns1");
     assertThat(deserialized.getCompletedNamespaces()).containsExactly("default");
   }
+
+  @Test
+  void addDeferredLock_shouldRecordOncePerNamespace() {
+    // Arrange
+    AuditorFinalizeState state = new AuditorFinalizeState(1000L, Arrays.asList("default", "ns1"));
+
+    // Act
+    boolean first = state.addDeferredLock("default", "asset1");
+    boolean duplicate = state.addDeferredLock("default", "asset1");
+    state.addDeferredLock("ns1", "asset2");
+
+    // Assert
+    assertThat(first).isTrue();
+    assertThat(duplicate).isFalse();
+    assertThat(state.getDeferredLocks("default")).containsExactly("asset1");
+    assertThat(state.getDeferredLocks("ns1")).containsExactly("asset2");
+    assertThat(state.getDeferredLocks("ns2")).isEmpty();
+  }
+
+  @Test
+  void markNamespaceCompleted_shouldDropDeferredLocksOfNamespace() {
+    // Arrange
+    AuditorFinalizeState state = new AuditorFinalizeState(1000L, Arrays.asList("default", "ns1"));
+    state.addDeferredLock("default", "asset1");
+    state.addDeferredLock("ns1", "asset2");
+
+    // Act
+    state.markNamespaceCompleted("default");
+
+    // Assert
+    assertThat(state.getDeferredLocks("default")).isEmpty();
+    assertThat(state.getDeferredLocks("ns1")).containsExactly("asset2");
+  }
+
+  @Test
+  void jsonRoundTrip_deferredLocksGiven_shouldPreserveDeferredLocks() throws Exception {
+    // Arrange
+    AuditorFinalizeState original =
+        new AuditorFinalizeState(1745000000000L, Arrays.asList("default", "ns1"));
+    original.addDeferredLock("ns1", "asset1");
+    original.addDeferredLock("ns1", "asset2");
+
+    // Act
+    String json = mapper.writeValueAsString(original);
+    AuditorFinalizeState deserialized = mapper.readValue(json, AuditorFinalizeState.class);
+
+    // Assert
+    assertThat(deserialized.getDeferredLocks("ns1")).containsExactly("asset1", "asset2");
+    assertThat(deserialized.getDeferredLocks("default")).isEmpty();
+  }
+
+  @Test
+  void jsonDeserialization_stateWithoutDeferredLocksGiven_shouldDefaultToNone() throws Exception {
+    // Arrange — a state persisted before locks were deferred.
+    String json =
+        "{\"started_at_ms\":1000,\"namespace_list\":[\"default\"],"
+            + "\"completed_namespaces\":[]}";
+
+    // Act
+    AuditorFinalizeState deserialized = mapper.readValue(json, AuditorFinalizeState.class);
+
+    // Assert
+    assertThat(deserialized.getDeferredLocks("default")).isEmpty();
+  }
 }
@@ -0,0 +1,272 @@
+package com.scalar.dl.tools.cleanup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.scalar.dl.auditor.ordering.LockRecoveryResult;
+import com.scalar.dl.client.service.AuditorClient;
+import com.scalar.dl.rpc.AssetLockRecoveryRequest;
+import com.scalar.dl.tools.common.ScalarDlCleanupError;
+import com.scalar.dl.tools.common.ScalarDlCleanupException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DeferredLockRetryQueueTest {
+
+  private static final String NAMESPACE = "default";
+
+  // Retry interval used in tests so that a deferred lock is retried right away.
+  private static final long NO_RETRY_INTERVAL_MS = 0L;
+
+  private AuditorClient auditorClient;
+  private List<String> recordedAssetIds;
+
+  @BeforeEach
+  void setUp() {
+    auditorClient = mock(AuditorClient.class);
+    recordedAssetIds = new CopyOnWriteArrayList<>();
+  }
+
+  private DeferredLockRetryQueue createQueue(long retryIntervalMs) {
+    return new DeferredLockRetryQueue(
+        new LockFinalizer(auditorClient, retryIntervalMs), NAMESPACE, 2, recordedAssetIds::addAll);
+  }
+
+  private static AssetLockRecoveryRequest requestFor(String assetId) {
+    return argThat(request -> request != null && request.getAssetId().equals(assetId));
+  }
+
+  @Test
+  void constructor_nonPositiveThreadCountGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    LockFinalizer lockFinalizer = new LockFinalizer(auditorClient, NO_RETRY_INTERVAL_MS);
+
+    // Act & Assert
+    assertThatThrownBy(() -> new DeferredLockRetryQueue(lockFinalizer, NAMESPACE, 0, id -> {}))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void awaitDrained_nothingDeferredGiven_shouldReturnImmediately() throws Exception {
+    // Arrange
+    try (DeferredLockRetryQueue queue = createQueue(NO_RETRY_INTERVAL_MS)) {
+      // Act
+      queue.awaitDrained();
+
+      // Assert
+      assertThat(queue.getDeferredCount()).isZero();
+      verify(auditorClient, never()).recover(any(AssetLockRecoveryRequest.class));
+    }
+  }
+
+  @Test
+  void defer_lockReleasedOnRetryGiven_shouldRecordRetryAndDrain() throws Exception {
+    // Arrange
+    when(auditorClient.recover(any(AssetLockRecoveryRequest.class)))
+        .thenReturn(LockRecoveryResult.SUCCEEDED);
+
+    try (DeferredLockRetryQueue queue = createQueue(NO_RETRY_INTERVAL_MS)) {
+      // Act
+      queue.defer("asset1");
+      queue.awaitDrained();
+
+      // Assert
+      assertThat(recordedAssetIds).containsExactly("asset1");
+      assertThat(queue.getDeferredCount()).isEqualTo(1);
+      assertThat(queue.getFinalizedCount()).isEqualTo(1);
+      verify(auditorClient).recover(requestFor("asset1"));
+    }
+  }
+
+  @Test
+  void defer_lockStillActiveForEveryAttemptGiven_shouldFailAfterMaxAttempts() throws Exception {
+    // Arrange
+    when(auditorClient.recover(any(AssetLockRecoveryRequest.class)))
+        .thenReturn(LockRecoveryResult.NOT_RECOVERABLE);
+
+    try (DeferredLockRetryQueue queue = createQueue(NO_RETRY_INTERVAL_MS)) {
+      // Act
+      queue.defer("asset1");
+
+      // Assert — the first attempt was made by the scan, so the queue makes the remaining ones.
+      assertThatThrownBy(queue::awaitDrained)
+          .isInstanceOf(ScalarDlCleanupException.class)
+          .hasMessageContaining(
+              ScalarDlCleanupError.RECOVER_ASSET_LOCK_NOT_RECOVERABLE.buildCode());
+      verify(auditorClient, times(LockFinalizer.MAX_ATTEMPTS - 1))
+          .recover(any(AssetLockRecoveryRequest.class));
+      assertThat(queue.getFinalizedCount()).isZero();
+    }
+  }
+
+  @Test
+  void defer_rpcFailedOnRetryGiven_shouldFailWithRpcFailed() throws Exception {
+    // Arrange
+    when(auditorClient.recover(any(AssetLockRecoveryRequest.class)))
+        .thenReturn(LockRecoveryResult.FAILED);
+
+    try (DeferredLockRetryQueue queue = createQueue(NO_RETRY_INTERVAL_MS)) {
+      // Act
+      queue.defer("asset1");
+
+      // Assert
+      assertThatThrownBy(queue::awaitDrained)
+          .isInstanceOf(ScalarDlCleanupException.class)
+          .hasMessageContaining(ScalarDlCleanupError.RECOVER_ASSET_LOCK_RPC_FAILED.buildCode());
+    }
+  }
+
+  @Test
+  void deferAll_shouldRecordLocksOnceAndRetryEachOfThem() throws Exception {
+    // Arrange
+    when(auditorClient.recover(any(AssetLockRecoveryRequest.class)))
+        .thenReturn(LockRecoveryResult.SUCCEEDED);
+    List<Collection<String>> recordings = new CopyOnWriteArrayList<>();
+
+    try (DeferredLockRetryQueue queue =
+        new DeferredLockRetryQueue(
+            new LockFinalizer(auditorClient, NO_RETRY_INTERVAL_MS),
+            NAMESPACE,
+            2,
+            assetIds -> recordings.add(new ArrayList<>(assetIds)))) {
+      // Act
+      queue.deferAll(Arrays.asList("asset1", "asset2"));
+      queue.awaitDrained();
+
+      // Assert
+      assertThat(recordings).containsExactly(Arrays.asList("asset1", "asset2"));
+      assertThat(queue.getDeferredCount()).isEqualTo(2);
+      assertThat(queue.getFinalizedCount()).isEqualTo(2);
+      verify(auditorClient).recover(requestFor("asset1"));
+      verify(auditorClient).recover(requestFor("asset2"));
+    }
+  }
+
+  @Test
+  void deferAll_noLockGiven_shouldNotRecord() throws Exception {
+    // Arrange
+    try (DeferredLockRetryQueue queue = createQueue(NO_RETRY_INTERVAL_MS)) {
+      // Act
+      queue.deferAll(Collections.emptyList());
+
+      // Assert
+      assertThat(recordedAssetIds).isEmpty();
+      assertThat(queue.getDeferredCount()).isZero();
+    }
+  }
+
+  @Test
+  void defer_errorThrownOnRetryGiven_shouldFailInsteadOfHanging() throws Exception {
+    // Arrange
+    AssertionError error = new AssertionError("finalizer broken");
+    when(auditorClient.recover(any(AssetLockRecoveryRequest.class))).thenThrow(error);
+
+    try (DeferredLockRetryQueue queue = createQueue(NO_RETRY_INTERVAL_MS)) {
+      // Act
+      queue.defer("asset1");
+
+      // Assert
+      assertTimeoutPreemptively(
+          Duration.ofSeconds(10),
+          () -> assertThatThrownBy(queue::awaitDrained).isSameAs(error));
+    }
+  }
+
+  @Test
+  void defer_recorderFailureGiven_shouldThrowWithoutParking() throws Exception {
+    // Arrange
+    DeferredLockRetryQueue queue =
+        new DeferredLockRetryQueue(
+            new LockFinalizer(auditorClient, NO_RETRY_INTERVAL_MS),
+            NAMESPACE,
+            1,
+            id -> {
+              throw new IllegalStateException("persist failed");
+            });
+
+    try {
+      // Act & Assert
+      assertThatThrownBy(() -> queue.defer("asset1"))
+          .isInstanceOf(IllegalStateException.class)
+          .hasMessageContaining("persist failed");
+      queue.awaitDrained();
+      assertThat(queue.getDeferredCount()).isZero();
+      verify(auditorClient, never()).recover(any(AssetLockRecoveryRequest.class));
+    } finally {
+      queue.close();
+    }
+  }
+
+  @Test
+  void resume_shouldAttemptRightAwayWithoutRecording() throws Exception {
+    // Arrange — a long retry interval, which a resumed lock does not wait for.
+    when(auditorClient.recover(any(AssetLockRecoveryRequest.class)))
+        .thenReturn(LockRecoveryResult.NOT_NEEDED);
+
+    try (DeferredLockRetryQueue queue = createQueue(TimeUnit.HOURS.toMillis(1))) {
+      // Act
+      queue.resume("asset1");
+      queue.awaitDrained();
+
+      // Assert
+      assertThat(recordedAssetIds).isEmpty();
+      assertThat(queue.getFinalizedCount()).isEqualTo(1);
+      verify(auditorClient).recover(requestFor("asset1"));
+    }
+  }
+
+  @Test
+  void defer_lockWaitingForItsIntervalGiven_shouldNotHoldUpLocksDueEarlier() throws Exception {
+    // Arrange — asset1 waits an hour, while asset2, resumed later, is due right away.
+    CountDownLatch asset2Recovered = new CountDownLatch(1);
+    when(auditorClient.recover(any(AssetLockRecoveryRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              AssetLockRecoveryRequest request = invocation.getArgument(0);
+              if (request.getAssetId().equals("asset2")) {
+                asset2Recovered.countDown();
+              }
+              return LockRecoveryResult.SUCCEEDED;
+            });
+
+    try (DeferredLockRetryQueue queue = createQueue(TimeUnit.HOURS.toMillis(1))) {
+      // Act
+      queue.defer("asset1");
+      queue.resume("asset2");
+
+      // Assert
+      assertThat(asset2Recovered.await(10, TimeUnit.SECONDS)).isTrue();
+      verify(auditorClient, never()).recover(requestFor("asset1"));
+      assertThat(queue.getDeferredCount()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  void close_shouldStopThreads() {
+    // Arrange
+    DeferredLockRetryQueue queue = createQueue(NO_RETRY_INTERVAL_MS);
+
+    // Act
+    queue.close();
+
+    // Assert
+    assertThat(queue.isShutdown()).isTrue();
+  }
+}
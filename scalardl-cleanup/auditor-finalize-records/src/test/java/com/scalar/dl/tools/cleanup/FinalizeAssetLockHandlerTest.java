@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -11,6 +12,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.scalar.db.api.Result;
+import com.scalar.dl.tools.common.AuditorInternalValues;
+import java.util.Arrays;
+import java.util.Collections;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -93,4 +97,126 @@ class FinalizeAssetLockHandlerTest {
         .hasMessageContaining("recovery failed");
     assertThat(handler.getFinalizedCount()).isZero();
   }
+
+  @Test
+  void handle_retryQueueAndStillActiveLockGiven_shouldDeferWithoutCounting() throws Exception {
+    // Arrange
+    DeferredLockRetryQueue retryQueue = mock(DeferredLockRetryQueue.class);
+    FinalizeAssetLockHandler deferringHandler =
+        new FinalizeAssetLockHandler(stateChecker, lockFinalizer, NAMESPACE, retryQueue);
+    Result record = mock(Result.class);
+    when(record.getText(AuditorInternalValues.ASSET_LOCK_TABLE_ID_COLUMN_NAME))
+        .thenReturn("asset1");
+    when(stateChecker.needsFinalization(record)).thenReturn(true);
+    when(lockFinalizer.tryFinalize(NAMESPACE, "asset1")).thenReturn(false);
+
+    // Act
+    deferringHandler.handle(record);
+
+    // Assert — the lock is parked instead of being waited for on the scan worker.
+    verify(retryQueue).defer("asset1");
+    verify(lockFinalizer, never()).execute(anyString(), any());
+    assertThat(deferringHandler.getFinalizedCount()).isZero();
+  }
+
+  @Test
+  void handle_retryQueueAndReleasedOnFirstAttemptGiven_shouldCountWithoutDeferring()
+      throws Exception {
+    // Arrange
+    DeferredLockRetryQueue retryQueue = mock(DeferredLockRetryQueue.class);
+    FinalizeAssetLockHandler deferringHandler =
+        new FinalizeAssetLockHandler(stateChecker, lockFinalizer, NAMESPACE, retryQueue);
+    Result record = mock(Result.class);
+    when(record.getText(AuditorInternalValues.ASSET_LOCK_TABLE_ID_COLUMN_NAME))
+        .thenReturn("asset1");
+    when(stateChecker.needsFinalization(record)).thenReturn(true);
+    when(lockFinalizer.tryFinalize(NAMESPACE, "asset1")).thenReturn(true);
+
+    // Act
+    deferringHandler.handle(record);
+
+    // Assert
+    verify(retryQueue, never()).defer(anyString());
+    assertThat(deferringHandler.getFinalizedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void handlesPages_pipelineWithoutRetryQueueGiven_shouldReturnFalse() {
+    // Arrange
+    FinalizeAssetLockHandler pipelinedHandler =
+        new FinalizeAssetLockHandler(
+            stateChecker, lockFinalizer, NAMESPACE, null, mock(LockRecoveryPipeline.class));
+
+    // Act & Assert
+    assertThat(pipelinedHandler.handlesPages()).isFalse();
+    assertThat(handler.handlesPages()).isFalse();
+  }
+
+  @Test
+  void handlePage_pipelineGiven_shouldFinalizeLocksNeedingFinalizationThroughPipeline()
+      throws Exception {
+    // Arrange
+    DeferredLockRetryQueue retryQueue = mock(DeferredLockRetryQueue.class);
+    LockRecoveryPipeline pipeline = mock(LockRecoveryPipeline.class);
+    FinalizeAssetLockHandler pipelinedHandler =
+        new FinalizeAssetLockHandler(stateChecker, lockFinalizer, NAMESPACE, retryQueue, pipeline);
+    Result needsFinalization1 = mock(Result.class);
+    Result needsFinalization2 = mock(Result.class);
+    Result released = mock(Result.class);
+    when(needsFinalization1.getText(AuditorInternalValues.ASSET_LOCK_TABLE_ID_COLUMN_NAME))
+        .thenReturn("asset1");
+    when(needsFinalization2.getText(AuditorInternalValues.ASSET_LOCK_TABLE_ID_COLUMN_NAME))
+        .thenReturn("asset2");
+    when(stateChecker.needsFinalization(needsFinalization1)).thenReturn(true);
+    when(stateChecker.needsFinalization(needsFinalization2)).thenReturn(true);
+    when(stateChecker.needsFinalization(released)).thenReturn(false);
+    when(pipeline.finalizeAll(eq(lockFinalizer), eq(NAMESPACE), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              LockRecoveryPipeline.StillActiveLockHandler stillActiveLockHandler =
+                  invocation.getArgument(3);
+              stillActiveLockHandler.handle("asset2");
+              return 1;
+            });
+
+    // Act
+    pipelinedHandler.handlePage(Arrays.asList(needsFinalization1, released, needsFinalization2));
+
+    // Assert — only the released locks are counted; the still-active ones are deferred at once.
+    assertThat(pipelinedHandler.handlesPages()).isTrue();
+    verify(pipeline)
+        .finalizeAll(
+            eq(lockFinalizer), eq(NAMESPACE), eq(Arrays.asList("asset1", "asset2")), any());
+    verify(retryQueue).deferAll(Collections.singletonList("asset2"));
+    verify(retryQueue, never()).defer(anyString());
+    verify(lockFinalizer, never()).execute(anyString(), any());
+    assertThat(pipelinedHandler.getFinalizedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void handlePage_pipelineAndNoLockNeedingFinalizationGiven_shouldNotCallPipeline()
+      throws Exception {
+    // Arrange
+    LockRecoveryPipeline pipeline = mock(LockRecoveryPipeline.class);
+    FinalizeAssetLockHandler pipelinedHandler =
+        new FinalizeAssetLockHandler(
+            stateChecker, lockFinalizer, NAMESPACE, mock(DeferredLockRetryQueue.class), pipeline);
+    Result released = mock(Result.class);
+    when(stateChecker.needsFinalization(released)).thenReturn(false);
+
+    // Act
+    pipelinedHandler.handlePage(Collections.singletonList(released));
+
+    // Assert
+    verify(pipeline, never()).finalizeAll(any(), anyString(), any(), any());
+  }
+
+  @Test
+  void getProjections_shouldReturnColumnsReadByStateChecker() {
+    // Act & Assert
+    assertThat(handler.getProjections())
+        .containsExactly(
+            AuditorInternalValues.ASSET_LOCK_TABLE_LOCK_TYPE_COLUMN_NAME,
+            AuditorInternalValues.ASSET_LOCK_TABLE_LAST_UPDATED_AT_COLUMN_NAME);
+  }
 }
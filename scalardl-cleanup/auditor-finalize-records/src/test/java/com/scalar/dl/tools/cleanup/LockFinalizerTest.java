@@ -177,4 +177,48 @@ class LockFinalizerTest {
         .hasMessageContaining(ScalarDlCleanupError.RECOVER_ASSET_LOCK_RPC_FAILED.buildCode());
     verify(auditorClient, times(2)).recover(any(AssetLockRecoveryRequest.class));
   }
+
+  @Test
+  void tryFinalize_notRecoverableGiven_shouldReturnFalseWithoutRetrying() {
+    // Arrange
+    when(auditorClient.recover(any(AssetLockRecoveryRequest.class)))
+        .thenReturn(LockRecoveryResult.NOT_RECOVERABLE);
+
+    // Act
+    boolean finalized = finalizer.tryFinalize("default", "asset1");
+
+    // Assert
+    assertThat(finalized).isFalse();
+    verify(auditorClient, times(1)).recover(any(AssetLockRecoveryRequest.class));
+  }
+
+  @Test
+  void tryFinalize_succeededGiven_shouldReturnTrue() {
+    // Arrange
+    when(auditorClient.recover(any(AssetLockRecoveryRequest.class)))
+        .thenReturn(LockRecoveryResult.SUCCEEDED);
+
+    // Act
+    boolean finalized = finalizer.tryFinalize("ns1", "asset1");
+
+    // Assert
+    assertThat(finalized).isTrue();
+    ArgumentCaptor<AssetLockRecoveryRequest> captor =
+        ArgumentCaptor.forClass(AssetLockRecoveryRequest.class);
+    verify(auditorClient).recover(captor.capture());
+    assertThat(captor.getValue().getNamespace()).isEqualTo("ns1");
+    assertThat(captor.getValue().getAssetId()).isEqualTo("asset1");
+  }
+
+  @Test
+  void tryFinalize_rpcFailedGiven_shouldThrowException() {
+    // Arrange
+    when(auditorClient.recover(any(AssetLockRecoveryRequest.class)))
+        .thenReturn(LockRecoveryResult.FAILED);
+
+    // Act & Assert
+    assertThatThrownBy(() -> finalizer.tryFinalize("default", "asset1"))
+        .isInstanceOf(ScalarDlCleanupException.class)
+        .hasMessageContaining(ScalarDlCleanupError.RECOVER_ASSET_LOCK_RPC_FAILED.buildCode());
+  }
 }
@@ -0,0 +1,181 @@
+package com.scalar.dl.tools.cleanup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LockRecoveryPipelineTest {
+
+  private static final String NAMESPACE = "default";
+
+  private LockFinalizer lockFinalizer;
+  private List<String> stillActiveAssetIds;
+
+  @BeforeEach
+  void setUp() {
+    lockFinalizer = mock(LockFinalizer.class);
+    stillActiveAssetIds = new CopyOnWriteArrayList<>();
+  }
+
+  @Test
+  void constructor_nonPositiveWindowGiven_shouldThrowIllegalArgumentException() {
+    // Act & Assert
+    assertThatThrownBy(() -> new LockRecoveryPipeline(0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void finalizeAll_shouldCountReleasedLocksAndHandStillActiveOnes() throws Exception {
+    // Arrange
+    when(lockFinalizer.tryFinalize(NAMESPACE, "asset1")).thenReturn(true);
+    when(lockFinalizer.tryFinalize(NAMESPACE, "asset2")).thenReturn(false);
+    when(lockFinalizer.tryFinalize(NAMESPACE, "asset3")).thenReturn(true);
+
+    try (LockRecoveryPipeline pipeline = new LockRecoveryPipeline(2)) {
+      // Act
+      int released =
+          pipeline.finalizeAll(
+              lockFinalizer,
+              NAMESPACE,
+              Arrays.asList("asset1", "asset2", "asset3"),
+              stillActiveAssetIds::add);
+
+      // Assert
+      assertThat(released).isEqualTo(2);
+      assertThat(stillActiveAssetIds).containsExactly("asset2");
+    }
+  }
+
+  @Test
+  void finalizeAll_emptyPageGiven_shouldReturnZero() throws Exception {
+    // Arrange
+    try (LockRecoveryPipeline pipeline = new LockRecoveryPipeline(2)) {
+      // Act
+      int released =
+          pipeline.finalizeAll(
+              lockFinalizer, NAMESPACE, Collections.emptyList(), stillActiveAssetIds::add);
+
+      // Assert
+      assertThat(released).isZero();
+    }
+  }
+
+  @Test
+  void finalizeAll_shouldKeepUpToWindowRpcsInFlight() throws Exception {
+    // Arrange — every RPC waits until the window is full, so they only finish if it is filled.
+    int window = 3;
+    CountDownLatch windowFilled = new CountDownLatch(window);
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    when(lockFinalizer.tryFinalize(eq(NAMESPACE), anyString()))
+        .thenAnswer(
+            invocation -> {
+              maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+              windowFilled.countDown();
+              windowFilled.await(10, TimeUnit.SECONDS);
+              inFlight.decrementAndGet();
+              return true;
+            });
+    List<String> assetIds = new ArrayList<>();
+    for (int i = 0; i < 12; i++) {
+      assetIds.add("asset" + i);
+    }
+
+    try (LockRecoveryPipeline pipeline = new LockRecoveryPipeline(window)) {
+      // Act
+      int released = pipeline.finalizeAll(lockFinalizer, NAMESPACE, assetIds, id -> {});
+
+      // Assert
+      assertThat(released).isEqualTo(12);
+      assertThat(maxInFlight.get()).isEqualTo(window);
+      assertThat(pipeline.getMaxInFlightCount()).isEqualTo(window);
+    }
+  }
+
+  @Test
+  void finalizeAll_rpcFailureGiven_shouldStopIssuingAndThrowAfterInFlightResolve()
+      throws Exception {
+    // Arrange
+    RuntimeException failure = new RuntimeException("RPC unavailable");
+    when(lockFinalizer.tryFinalize(NAMESPACE, "asset1")).thenThrow(failure);
+
+    try (LockRecoveryPipeline pipeline = new LockRecoveryPipeline(1)) {
+      // Act & Assert — with a window of one, no RPC follows the failed one.
+      assertThatThrownBy(
+              () ->
+                  pipeline.finalizeAll(
+                      lockFinalizer,
+                      NAMESPACE,
+                      Arrays.asList("asset1", "asset2"),
+                      stillActiveAssetIds::add))
+          .isSameAs(failure);
+      verify(lockFinalizer, times(1)).tryFinalize(eq(NAMESPACE), anyString());
+    }
+  }
+
+  @Test
+  void finalizeAll_stillActiveHandlerFailureGiven_shouldPropagateException() throws Exception {
+    // Arrange
+    when(lockFinalizer.tryFinalize(NAMESPACE, "asset1")).thenReturn(false);
+
+    try (LockRecoveryPipeline pipeline = new LockRecoveryPipeline(2)) {
+      // Act & Assert
+      assertThatThrownBy(
+              () ->
+                  pipeline.finalizeAll(
+                      lockFinalizer,
+                      NAMESPACE,
+                      Collections.singletonList("asset1"),
+                      id -> {
+                        throw new IllegalStateException("persist failed");
+                      }))
+          .isInstanceOf(IllegalStateException.class)
+          .hasMessageContaining("persist failed");
+    }
+  }
+
+  @Test
+  void finalizeAll_closedPipelineGiven_shouldThrowIllegalStateException() {
+    // Arrange
+    LockRecoveryPipeline pipeline = new LockRecoveryPipeline(2);
+    pipeline.close();
+
+    // Act & Assert
+    assertThatThrownBy(
+            () ->
+                pipeline.finalizeAll(
+                    lockFinalizer,
+                    NAMESPACE,
+                    Collections.singletonList("asset1"),
+                    stillActiveAssetIds::add))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void close_shouldStopThreads() {
+    // Arrange
+    LockRecoveryPipeline pipeline = new LockRecoveryPipeline(2);
+
+    // Act
+    pipeline.close();
+
+    // Assert
+    assertThat(pipeline.isShutdown()).isTrue();
+  }
+}
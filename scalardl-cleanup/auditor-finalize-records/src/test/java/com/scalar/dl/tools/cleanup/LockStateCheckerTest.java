@@ -7,6 +7,7 @@ import static org.mockito.Mockito.when;
 
 import com.scalar.db.api.Result;
 import com.scalar.dl.tools.common.AuditorInternalValues;
+import com.scalar.dl.tools.scan.ScanCondition;
 import org.junit.jupiter.api.Test;
 
 class LockStateCheckerTest {
@@ -101,4 +102,14 @@ class LockStateCheckerTest {
     assertThatThrownBy(() -> checker.needsFinalization(result))
         .isInstanceOf(IllegalArgumentException.class);
   }
+
+  @Test
+  void getScanConditions_shouldExcludeOnlyReleasedLocks() {
+    // Act & Assert
+    assertThat(checker.getScanConditions())
+        .containsExactly(
+            ScanCondition.ne(
+                AuditorInternalValues.ASSET_LOCK_TABLE_LOCK_TYPE_COLUMN_NAME,
+                AuditorInternalValues.LOCK_TYPE_NONE));
+  }
 }
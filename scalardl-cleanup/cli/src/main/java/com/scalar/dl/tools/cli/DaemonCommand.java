@@ -0,0 +1,342 @@
+package com.scalar.dl.tools.cli;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.annotations.VisibleForTesting;
+import com.scalar.dl.tools.cleanup.AuditorFinalizeOrchestrator;
+import com.scalar.dl.tools.cleanup.CoordinatorCleanupOrchestrator;
+import com.scalar.dl.tools.cleanup.LedgerFinalizeOrchestrator;
+import com.scalar.dl.tools.cleanup.RequestProofCleanupOrchestrator;
+import com.scalar.dl.tools.common.CheckpointStore;
+import com.scalar.dl.tools.common.CompletionToken;
+import com.scalar.dl.tools.common.FileUtils;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.ITypeConverter;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+
+/**
+ * {@code daemon}: runs the finalize and cleanup commands of one side on a schedule until the
+ * process is stopped, so that the coordinator and request proof tables stop growing.
+ *
+ * <p>The orchestrators, and so their database clients, Auditor client and scan sessions, are
+ * created once and reused by every cycle. Each cycle keeps its checkpoints under {@code
+ * <checkpointDir>/daemon/cycle-<n>}, so a cycle interrupted by a failure or a restart is resumed
+ * rather than restarted, and the directory is removed once the cycle completes.
+ *
+ * <ul>
+ *   <li>On the Ledger side, a cycle runs {@code finalize-ledger}, passing the completion token of
+ *       the previous cycle so that only the records written since then are scanned. If the Auditor
+ *       token file holds a token, it then runs {@code cleanup-coordinator} with both tokens, unless
+ *       the deletable-before boundary has not moved since the last cleanup.
+ *   <li>On the Auditor side, a cycle runs {@code finalize-auditor} and writes the completion token
+ *       to the token file, from which the Ledger side picks it up.
+ * </ul>
+ *
+ * <p>Each completed cycle prints its metrics as a success output, and each failed attempt prints
+ * an error output; a failed cycle is retried after the interval.
+ */
+@Command(
+    name = "daemon",
+    description = {
+      "Repeatedly finalize records and clean up settled records of one side on a schedule.",
+      "Run one daemon per side; the Auditor side hands its tokens over through a token file."
+    })
+public class DaemonCommand extends AbstractToolCommand {
+
+  private static final Logger logger = LoggerFactory.getLogger(DaemonCommand.class);
+
+  static final String CYCLE_KEY = "cycle";
+  static final String SIDE_KEY = "side";
+  static final String DURATION_MS_KEY = "duration_ms";
+  static final String FAILED_ATTEMPTS_KEY = "failed_attempts";
+  static final String COORDINATOR_CLEANUP_RAN_KEY = "coordinator_cleanup_ran";
+  static final String DELETABLE_BEFORE_MS_KEY = "deletable_before_ms";
+  static final String COORDINATOR_RECORD_COUNT_KEY = "coordinator_record_count";
+
+  private static final String CYCLE_DIRECTORY_PREFIX = "cycle-";
+
+  /** The side of the deployment a daemon runs on. */
+  enum Side {
+    LEDGER,
+    AUDITOR
+  }
+
+  /** Accepts the side in any case, as it is documented in lower case. */
+  static final class SideConverter implements ITypeConverter<Side> {
+    @Override
+    public Side convert(String value) {
+      return Side.valueOf(value.toUpperCase(Locale.ROOT));
+    }
+  }
+
+  private final CountDownLatch stopRequested = new CountDownLatch(1);
+
+  @Spec
+  @SuppressWarnings("unused")
+  private CommandSpec spec;
+
+  @Option(
+      names = {"--side"},
+      required = true,
+      paramLabel = "SIDE",
+      converter = SideConverter.class,
+      description = "The side to run on: 'ledger' or 'auditor'.")
+  private Side side;
+
+  private long intervalSeconds;
+
+  @Option(
+      names = {"--interval-seconds"},
+      paramLabel = "SECONDS",
+      defaultValue = "3600",
+      description = "The time to wait between the end of a cycle and the start of the next.")
+  void setIntervalSeconds(long intervalSeconds) {
+    if (intervalSeconds < 0) {
+      throw new ParameterException(
+          spec.commandLine(), "--interval-seconds must not be negative: " + intervalSeconds);
+    }
+    this.intervalSeconds = intervalSeconds;
+  }
+
+  @Option(
+      names = {"--token-file"},
+      paramLabel = "TOKEN_FILE",
+      description =
+          "A file to write the completion token of each completed cycle to. On the Auditor side,"
+              + " the Ledger side reads it as its Auditor token file.")
+  private String tokenFile;
+
+  @Option(
+      names = {"--auditor-token-file"},
+      paramLabel = "AUDITOR_TOKEN_FILE",
+      description =
+          "Ledger side only. A file holding the latest Auditor completion token, read at every"
+              + " cycle. Without it, only 'finalize-ledger' runs.")
+  private String auditorTokenFile;
+
+  @Option(
+      names = {"--max-cycles"},
+      hidden = true,
+      defaultValue = "0",
+      description = "Stop after this many cycle attempts; 0 runs until stopped.")
+  private long maxCycles;
+
+  @Override
+  protected Integer execute(Properties props, Path checkpointDir) throws Exception {
+    try (CheckpointStore checkpointStore = CheckpointStore.create(props)) {
+      return execute(props, new DaemonStateManager(checkpointStore, checkpointDir));
+    }
+  }
+
+  private Integer execute(Properties props, DaemonStateManager stateManager) throws Exception {
+    CountDownLatch stopped = new CountDownLatch(1);
+    // Let the cycle in progress complete on SIGTERM. If the process is killed before that, the
+    // cycle is resumed from its checkpoint on the next start.
+    Thread shutdownHook =
+        new Thread(
+            () -> {
+              requestStop();
+              try {
+                stopped.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            },
+            "scalardl-cleanup-daemon-shutdown");
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+    try {
+      if (side == Side.LEDGER) {
+        runLedgerSide(props, stateManager);
+      } else {
+        runAuditorSide(props, stateManager);
+      }
+    } finally {
+      stopped.countDown();
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        // The JVM is already shutting down
+      }
+    }
+    return SUCCESS_EXIT_CODE;
+  }
+
+  /** Makes the daemon stop once the cycle in progress, if any, completes. */
+  @VisibleForTesting
+  void requestStop() {
+    stopRequested.countDown();
+  }
+
+  private void runLedgerSide(Properties props, DaemonStateManager stateManager) throws Exception {
+    try (LedgerFinalizeOrchestrator finalizer =
+            createLedgerFinalizeOrchestrator(props, stateManager.getStateDir());
+        CoordinatorCleanupOrchestrator cleanup =
+            createCoordinatorCleanupOrchestrator(props, stateManager.getStateDir())) {
+      runCycles(
+          stateManager,
+          (state, cycleDir, metrics) -> {
+            String ledgerToken = finalizer.execute(cycleDir, state.getLastToken());
+            metrics.put(Common.COMPLETION_TOKEN_KEY, ledgerToken);
+
+            Long deletableBeforeMs = state.getLastDeletableBeforeMs();
+            String auditorToken = readAuditorToken();
+            boolean cleanupRan = false;
+            if (auditorToken != null) {
+              long boundary =
+                  Math.min(
+                      CompletionToken.decode(ledgerToken).getStartedAtMs(),
+                      CompletionToken.decode(auditorToken).getStartedAtMs());
+              // Nothing new becomes deletable until the Auditor side completes another cycle
+              if (deletableBeforeMs == null || boundary > deletableBeforeMs) {
+                cleanup.execute(cycleDir, ledgerToken, auditorToken);
+                deletableBeforeMs = boundary;
+                cleanupRan = true;
+              }
+            }
+            metrics.put(COORDINATOR_CLEANUP_RAN_KEY, cleanupRan);
+            metrics.put(DELETABLE_BEFORE_MS_KEY, deletableBeforeMs);
+            metrics.put(COORDINATOR_RECORD_COUNT_KEY, cleanup.estimateCoordinatorRecordCount());
+            return new DaemonState(state.getCycle() + 1, ledgerToken, deletableBeforeMs);
+          });
+    }
+  }
+
+  private void runAuditorSide(Properties props, DaemonStateManager stateManager) throws Exception {
+    try (AuditorFinalizeOrchestrator finalizer =
+            createAuditorFinalizeOrchestrator(props, stateManager.getStateDir());
+        RequestProofCleanupOrchestrator cleanup =
+            createRequestProofCleanupOrchestrator(props, stateManager.getStateDir())) {
+      runCycles(
+          stateManager,
+          (state, cycleDir, metrics) -> {
+            String auditorToken = finalizer.execute(cycleDir);
+            cleanup.execute(cycleDir, auditorToken);
+            metrics.put(Common.COMPLETION_TOKEN_KEY, auditorToken);
+            return new DaemonState(state.getCycle() + 1, auditorToken, null);
+          });
+    }
+  }
+
+  /** Runs the cycles until a stop is requested or {@code --max-cycles} attempts have been made. */
+  private void runCycles(DaemonStateManager stateManager, Cycle cycle)
+      throws InterruptedException {
+    DaemonState state = stateManager.load();
+    if (state == null) {
+      state = new DaemonState();
+    } else {
+      logger.info("Found existing daemon state; resuming from cycle {}.", state.getCycle());
+    }
+
+    long attempts = 0;
+    long failedAttempts = 0;
+    while (stopRequested.getCount() > 0) {
+      Path cycleDir = stateManager.getStateDir().resolve(CYCLE_DIRECTORY_PREFIX + state.getCycle());
+      ObjectNode metrics = JsonNodeFactory.instance.objectNode();
+      metrics.put(CYCLE_KEY, state.getCycle());
+      metrics.put(SIDE_KEY, side.name().toLowerCase(Locale.ROOT));
+      long start = System.nanoTime();
+      try {
+        logger.info("Starting cycle {}.", state.getCycle());
+        DaemonState next = cycle.run(state, cycleDir, metrics);
+        stateManager.persist(next);
+        writeToken(next.getLastToken());
+        // The next cycle no longer resumes from these checkpoints
+        stateManager.getStore().deleteRecursively(cycleDir);
+
+        metrics.put(DURATION_MS_KEY, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        metrics.put(FAILED_ATTEMPTS_KEY, failedAttempts);
+        Common.printOutput(metrics);
+        logger.info("Cycle {} completed.", state.getCycle());
+        state = next;
+        failedAttempts = 0;
+      } catch (Exception e) {
+        // Retry the cycle from its checkpoints after the interval
+        failedAttempts++;
+        Common.printError(e);
+        logStackTrace(e);
+      }
+
+      if (++attempts == maxCycles) {
+        break;
+      }
+      if (stopRequested.await(intervalSeconds, TimeUnit.SECONDS)) {
+        break;
+      }
+    }
+    logger.info("The daemon has stopped.");
+  }
+
+  /** Reads the Auditor token file, returning null if it is not set, missing, or empty. */
+  @Nullable
+  private String readAuditorToken() throws IOException {
+    if (auditorTokenFile == null) {
+      return null;
+    }
+    Path path = Paths.get(auditorTokenFile);
+    if (!Files.exists(path)) {
+      logger.info("The Auditor token file {} does not exist yet.", path);
+      return null;
+    }
+    String token = new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim();
+    return token.isEmpty() ? null : token;
+  }
+
+  /** Atomically writes the token to the token file, if set, so it never holds a partial token. */
+  private void writeToken(@Nullable String token) throws IOException {
+    if (tokenFile == null || token == null) {
+      return;
+    }
+    FileUtils.writeAtomic(Paths.get(tokenFile), token.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @VisibleForTesting
+  LedgerFinalizeOrchestrator createLedgerFinalizeOrchestrator(
+      Properties props, Path checkpointDir) {
+    return LedgerFinalizeOrchestrator.create(props, checkpointDir);
+  }
+
+  @VisibleForTesting
+  CoordinatorCleanupOrchestrator createCoordinatorCleanupOrchestrator(
+      Properties props, Path checkpointDir) {
+    return CoordinatorCleanupOrchestrator.create(props, checkpointDir, null, null);
+  }
+
+  @VisibleForTesting
+  AuditorFinalizeOrchestrator createAuditorFinalizeOrchestrator(
+      Properties props, Path checkpointDir) {
+    return AuditorFinalizeOrchestrator.create(props, checkpointDir);
+  }
+
+  @VisibleForTesting
+  RequestProofCleanupOrchestrator createRequestProofCleanupOrchestrator(
+      Properties props, Path checkpointDir) {
+    return RequestProofCleanupOrchestrator.create(props, checkpointDir, null);
+  }
+
+  /** One cycle of a side. */
+  @FunctionalInterface
+  private interface Cycle {
+    /**
+     * Runs the cycle of the given state with its checkpoints under the given directory.
+     *
+     * @param metrics the metrics of the cycle, to which the cycle adds its own
+     * @return the state to run the next cycle from
+     */
+    DaemonState run(DaemonState state, Path cycleDir, ObjectNode metrics) throws Exception;
+  }
+}
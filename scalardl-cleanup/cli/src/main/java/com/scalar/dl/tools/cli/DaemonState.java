@@ -0,0 +1,59 @@
+package com.scalar.dl.tools.cli;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import javax.annotation.Nullable;
+
+/**
+ * Checkpoint state for {@code daemon}. Stored as {@code state.json}.
+ *
+ * <p>Contains the number of the cycle to run next, whose checkpoints are kept under their own
+ * directory so that an interrupted cycle is resumed rather than restarted, the completion token of
+ * the last completed cycle, which lets the next Ledger-side cycle finalize only the records written
+ * since then, and the deletable-before boundary of the last coordinator state cleanup.
+ */
+public final class DaemonState {
+
+  @JsonProperty("cycle")
+  private final long cycle;
+
+  @Nullable
+  @JsonProperty("last_token")
+  private final String lastToken;
+
+  @Nullable
+  @JsonProperty("last_deletable_before_ms")
+  private final Long lastDeletableBeforeMs;
+
+  @JsonCreator
+  public DaemonState(
+      @JsonProperty("cycle") long cycle,
+      @JsonProperty("last_token") @Nullable String lastToken,
+      @JsonProperty("last_deletable_before_ms") @Nullable Long lastDeletableBeforeMs) {
+    this.cycle = cycle;
+    this.lastToken = lastToken;
+    this.lastDeletableBeforeMs = lastDeletableBeforeMs;
+  }
+
+  /** Creates the state of a daemon that has not completed any cycle yet. */
+  public DaemonState() {
+    this(0, null, null);
+  }
+
+  @JsonProperty("cycle")
+  public long getCycle() {
+    return cycle;
+  }
+
+  @Nullable
+  @JsonProperty("last_token")
+  public String getLastToken() {
+    return lastToken;
+  }
+
+  @Nullable
+  @JsonProperty("last_deletable_before_ms")
+  public Long getLastDeletableBeforeMs() {
+    return lastDeletableBeforeMs;
+  }
+}
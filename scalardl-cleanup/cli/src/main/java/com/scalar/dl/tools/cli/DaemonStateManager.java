@@ -0,0 +1,19 @@
+package com.scalar.dl.tools.cli;
+
+import com.scalar.dl.tools.common.CheckpointStore;
+import com.scalar.dl.tools.common.StateManager;
+import java.nio.file.Path;
+
+/** Manages {@link DaemonState} checkpoint persistence. */
+public final class DaemonStateManager extends StateManager<DaemonState> {
+
+  static final String SUBDIRECTORY = "daemon";
+
+  public DaemonStateManager(Path checkpointDir) {
+    super(checkpointDir, SUBDIRECTORY, DaemonState.class);
+  }
+
+  public DaemonStateManager(CheckpointStore store, Path checkpointDir) {
+    super(store, checkpointDir, SUBDIRECTORY, DaemonState.class);
+  }
+}
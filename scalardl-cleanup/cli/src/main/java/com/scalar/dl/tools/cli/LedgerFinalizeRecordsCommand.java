@@ -5,11 +5,16 @@ import com.scalar.dl.tools.cleanup.LedgerFinalizeOrchestrator;
 import java.nio.file.Path;
 import java.util.Properties;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
 
 /**
  * {@code finalize-ledger}: scans every transactional table managed by the Ledger-side ScalarDB and
  * finalizes records still in a non-terminal state, then emits a completion token consumed by {@code
  * cleanup-coordinator}.
+ *
+ * <p>When the token emitted by the previous run is passed with {@code --since-token}, only the
+ * records written since that run started (minus a safety margin) are scanned. The token is used
+ * only on the first run; on a resumed run the watermark persisted in the checkpoint is reused.
  */
 @Command(
     name = "finalize-ledger",
@@ -19,10 +24,19 @@ import picocli.CommandLine.Command;
     })
 public class LedgerFinalizeRecordsCommand extends AbstractToolCommand {
 
+  @Option(
+      names = {"--since-token"},
+      paramLabel = "PREVIOUS_LEDGER_TOKEN",
+      description =
+          "The completion token emitted by the previous 'finalize-ledger' run. When given, only"
+              + " the records written since that run are scanned.")
+  private String sinceToken;
+
   @Override
   protected Integer execute(Properties props, Path checkpointDir) throws Exception {
     String token;
-    try (LedgerFinalizeOrchestrator orchestrator = createOrchestrator(props, checkpointDir)) {
+    try (LedgerFinalizeOrchestrator orchestrator =
+        createOrchestrator(props, checkpointDir, sinceToken)) {
       token = orchestrator.execute();
     }
     // Emit the success output only after close() so a failure while releasing resources cannot
@@ -32,7 +46,8 @@ public class LedgerFinalizeRecordsCommand extends AbstractToolCommand {
   }
 
   @VisibleForTesting
-  LedgerFinalizeOrchestrator createOrchestrator(Properties props, Path checkpointDir) {
-    return LedgerFinalizeOrchestrator.create(props, checkpointDir);
+  LedgerFinalizeOrchestrator createOrchestrator(
+      Properties props, Path checkpointDir, String sinceToken) {
+    return LedgerFinalizeOrchestrator.create(props, checkpointDir, sinceToken);
   }
 }
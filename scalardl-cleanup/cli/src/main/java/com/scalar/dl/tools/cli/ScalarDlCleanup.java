@@ -22,6 +22,7 @@ import picocli.CommandLine.Spec;
       LedgerFinalizeRecordsCommand.class,
       AuditorFinalizeRecordsCommand.class,
       CoordinatorStateCleanupCommand.class,
+      DaemonCommand.class,
       HelpCommand.class,
     },
     description =
@@ -0,0 +1,353 @@
+package com.scalar.dl.tools.cli;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.scalar.dl.tools.cleanup.AuditorFinalizeOrchestrator;
+import com.scalar.dl.tools.cleanup.CoordinatorCleanupOrchestrator;
+import com.scalar.dl.tools.cleanup.LedgerFinalizeOrchestrator;
+import com.scalar.dl.tools.cleanup.RequestProofCleanupOrchestrator;
+import com.scalar.dl.tools.common.Category;
+import com.scalar.dl.tools.common.CompletionToken;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+public class DaemonCommandTest {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+  private final PrintStream originalOut = System.out;
+  @TempDir Path tempDir;
+  private ByteArrayOutputStream out;
+  private Path checkpointDir;
+  private Path daemonDir;
+
+  private LedgerFinalizeOrchestrator ledgerFinalizer;
+  private CoordinatorCleanupOrchestrator coordinatorCleanup;
+  private AuditorFinalizeOrchestrator auditorFinalizer;
+  private RequestProofCleanupOrchestrator requestProofCleanup;
+
+  @BeforeEach
+  void setUp() {
+    out = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+    checkpointDir = tempDir.resolve("checkpoint");
+    daemonDir = checkpointDir.resolve(DaemonStateManager.SUBDIRECTORY);
+    ledgerFinalizer = mock(LedgerFinalizeOrchestrator.class);
+    coordinatorCleanup = mock(CoordinatorCleanupOrchestrator.class);
+    auditorFinalizer = mock(AuditorFinalizeOrchestrator.class);
+    requestProofCleanup = mock(RequestProofCleanupOrchestrator.class);
+  }
+
+  @AfterEach
+  void tearDown() {
+    System.setOut(originalOut);
+  }
+
+  private static String ledgerToken(long startedAtMs) {
+    return CompletionToken.create(CompletionToken.ServerType.LEDGER, startedAtMs).encode();
+  }
+
+  private static String auditorToken(long startedAtMs) {
+    return CompletionToken.create(CompletionToken.ServerType.AUDITOR, startedAtMs).encode();
+  }
+
+  private String propertiesFile() throws Exception {
+    Path file = tempDir.resolve("daemon.properties");
+    Files.write(file, "scalar.db.storage=cosmos\n".getBytes(StandardCharsets.UTF_8));
+    return file.toString();
+  }
+
+  private DaemonCommand newCommand() {
+    return new DaemonCommand() {
+      @Override
+      LedgerFinalizeOrchestrator createLedgerFinalizeOrchestrator(
+          Properties props, Path checkpointDir) {
+        return ledgerFinalizer;
+      }
+
+      @Override
+      CoordinatorCleanupOrchestrator createCoordinatorCleanupOrchestrator(
+          Properties props, Path checkpointDir) {
+        return coordinatorCleanup;
+      }
+
+      @Override
+      AuditorFinalizeOrchestrator createAuditorFinalizeOrchestrator(
+          Properties props, Path checkpointDir) {
+        return auditorFinalizer;
+      }
+
+      @Override
+      RequestProofCleanupOrchestrator createRequestProofCleanupOrchestrator(
+          Properties props, Path checkpointDir) {
+        return requestProofCleanup;
+      }
+    };
+  }
+
+  private int execute(DaemonCommand command, String... options) throws Exception {
+    List<String> args = new ArrayList<>();
+    args.add("--properties");
+    args.add(propertiesFile());
+    args.add("--checkpoint-dir");
+    args.add(checkpointDir.toString());
+    args.add("--interval-seconds");
+    args.add("0");
+    args.addAll(List.of(options));
+    return new CommandLine(command).execute(args.toArray(new String[0]));
+  }
+
+  private List<JsonNode> capturedLines() throws Exception {
+    List<JsonNode> lines = new ArrayList<>();
+    for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+      if (!line.isBlank()) {
+        lines.add(mapper.readTree(line));
+      }
+    }
+    return lines;
+  }
+
+  @Test
+  void call_ledgerSideGiven_shouldFinalizeIncrementallyAndCleanUpWhenBoundaryMoves()
+      throws Exception {
+    // Arrange
+    String ledgerToken1 = ledgerToken(1000L);
+    String ledgerToken2 = ledgerToken(2000L);
+    String ledgerToken3 = ledgerToken(3000L);
+    String auditorToken = auditorToken(1500L);
+    Path auditorTokenFile = tempDir.resolve("auditor.token");
+    Files.write(auditorTokenFile, (auditorToken + "\n").getBytes(StandardCharsets.UTF_8));
+    when(ledgerFinalizer.execute(daemonDir.resolve("cycle-0"), null)).thenReturn(ledgerToken1);
+    when(ledgerFinalizer.execute(daemonDir.resolve("cycle-1"), ledgerToken1))
+        .thenReturn(ledgerToken2);
+    when(ledgerFinalizer.execute(daemonDir.resolve("cycle-2"), ledgerToken2))
+        .thenReturn(ledgerToken3);
+    when(coordinatorCleanup.estimateCoordinatorRecordCount()).thenReturn(7L);
+
+    // Act
+    int code =
+        execute(
+            newCommand(),
+            "--side",
+            "ledger",
+            "--auditor-token-file",
+            auditorTokenFile.toString(),
+            "--max-cycles",
+            "3");
+
+    // Assert
+    assertThat(code).isZero();
+    verify(coordinatorCleanup).execute(daemonDir.resolve("cycle-0"), ledgerToken1, auditorToken);
+    verify(coordinatorCleanup).execute(daemonDir.resolve("cycle-1"), ledgerToken2, auditorToken);
+    // The boundary stays at the Auditor token's timestamp, so the third cycle skips the cleanup
+    verify(coordinatorCleanup, never())
+        .execute(daemonDir.resolve("cycle-2"), ledgerToken3, auditorToken);
+    verify(ledgerFinalizer).close();
+    verify(coordinatorCleanup).close();
+
+    List<JsonNode> lines = capturedLines();
+    assertThat(lines).hasSize(3);
+    assertThat(lines.get(0).get("output").get(DaemonCommand.DELETABLE_BEFORE_MS_KEY).asLong())
+        .isEqualTo(1000L);
+    JsonNode last = lines.get(2).get("output");
+    assertThat(last.get(DaemonCommand.CYCLE_KEY).asLong()).isEqualTo(2);
+    assertThat(last.get(DaemonCommand.SIDE_KEY).asText()).isEqualTo("ledger");
+    assertThat(last.get(Common.COMPLETION_TOKEN_KEY).asText()).isEqualTo(ledgerToken3);
+    assertThat(last.get(DaemonCommand.COORDINATOR_CLEANUP_RAN_KEY).asBoolean()).isFalse();
+    assertThat(last.get(DaemonCommand.DELETABLE_BEFORE_MS_KEY).asLong()).isEqualTo(1500L);
+    assertThat(last.get(DaemonCommand.COORDINATOR_RECORD_COUNT_KEY).asLong()).isEqualTo(7L);
+    assertThat(last.has(DaemonCommand.DURATION_MS_KEY)).isTrue();
+
+    DaemonState state = new DaemonStateManager(checkpointDir).load();
+    assertThat(state).isNotNull();
+    assertThat(state.getCycle()).isEqualTo(3);
+    assertThat(state.getLastToken()).isEqualTo(ledgerToken3);
+    assertThat(state.getLastDeletableBeforeMs()).isEqualTo(1500L);
+  }
+
+  @Test
+  void call_ledgerSideWithoutAuditorTokenGiven_shouldOnlyFinalize() throws Exception {
+    // Arrange
+    String ledgerToken = ledgerToken(1000L);
+    when(ledgerFinalizer.execute(daemonDir.resolve("cycle-0"), null)).thenReturn(ledgerToken);
+
+    // Act
+    int code =
+        execute(
+            newCommand(),
+            "--side",
+            "ledger",
+            "--auditor-token-file",
+            tempDir.resolve("missing.token").toString(),
+            "--max-cycles",
+            "1");
+
+    // Assert
+    assertThat(code).isZero();
+    verify(coordinatorCleanup, never()).execute(any(), any(), any());
+    JsonNode output = capturedLines().get(0).get("output");
+    assertThat(output.get(DaemonCommand.COORDINATOR_CLEANUP_RAN_KEY).asBoolean()).isFalse();
+    assertThat(output.get(DaemonCommand.DELETABLE_BEFORE_MS_KEY).isNull()).isTrue();
+  }
+
+  @Test
+  void call_auditorSideGiven_shouldCleanUpWriteTokenFileAndRemoveCycleDirectories()
+      throws Exception {
+    // Arrange
+    String auditorToken1 = auditorToken(1000L);
+    String auditorToken2 = auditorToken(2000L);
+    Path tokenFile = tempDir.resolve("auditor.token");
+    when(auditorFinalizer.execute(daemonDir.resolve("cycle-0")))
+        .thenAnswer(
+            invocation -> {
+              Files.createDirectories(invocation.<Path>getArgument(0));
+              return auditorToken1;
+            });
+    when(auditorFinalizer.execute(daemonDir.resolve("cycle-1"))).thenReturn(auditorToken2);
+
+    // Act
+    int code =
+        execute(
+            newCommand(),
+            "--side",
+            "auditor",
+            "--token-file",
+            tokenFile.toString(),
+            "--max-cycles",
+            "2");
+
+    // Assert
+    assertThat(code).isZero();
+    verify(requestProofCleanup).execute(daemonDir.resolve("cycle-0"), auditorToken1);
+    verify(requestProofCleanup).execute(daemonDir.resolve("cycle-1"), auditorToken2);
+    verify(auditorFinalizer).close();
+    verify(requestProofCleanup).close();
+    assertThat(daemonDir.resolve("cycle-0")).doesNotExist();
+    assertThat(new String(Files.readAllBytes(tokenFile), StandardCharsets.UTF_8))
+        .isEqualTo(auditorToken2);
+    assertThat(capturedLines())
+        .extracting(line -> line.get("output").get(Common.COMPLETION_TOKEN_KEY).asText())
+        .containsExactly(auditorToken1, auditorToken2);
+  }
+
+  @Test
+  void call_cycleFailureGiven_shouldPrintErrorAndRetrySameCycle() throws Exception {
+    // Arrange
+    String auditorToken = auditorToken(1000L);
+    when(auditorFinalizer.execute(daemonDir.resolve("cycle-0")))
+        .thenThrow(new RuntimeException("finalize failed"))
+        .thenReturn(auditorToken);
+
+    // Act
+    int code = execute(newCommand(), "--side", "auditor", "--max-cycles", "2");
+
+    // Assert
+    assertThat(code).isZero();
+    List<JsonNode> lines = capturedLines();
+    assertThat(lines).hasSize(2);
+    assertThat(lines.get(0).get("status_code").asText())
+        .isEqualTo(Category.INTERNAL_ERROR.name());
+    assertThat(lines.get(0).get("error_message").asText()).isEqualTo("finalize failed");
+    JsonNode output = lines.get(1).get("output");
+    assertThat(output.get(DaemonCommand.CYCLE_KEY).asLong()).isZero();
+    assertThat(output.get(DaemonCommand.FAILED_ATTEMPTS_KEY).asLong()).isEqualTo(1);
+    assertThat(new DaemonStateManager(checkpointDir).load().getCycle()).isEqualTo(1);
+  }
+
+  @Test
+  void call_existingStateGiven_shouldResumeFromPersistedCycleAndToken() throws Exception {
+    // Arrange
+    String previousToken = ledgerToken(1000L);
+    String ledgerToken = ledgerToken(2000L);
+    new DaemonStateManager(checkpointDir).persist(new DaemonState(5, previousToken, 500L));
+    when(ledgerFinalizer.execute(daemonDir.resolve("cycle-5"), previousToken))
+        .thenReturn(ledgerToken);
+
+    // Act
+    int code = execute(newCommand(), "--side", "ledger", "--max-cycles", "1");
+
+    // Assert
+    assertThat(code).isZero();
+    DaemonState state = new DaemonStateManager(checkpointDir).load();
+    assertThat(state.getCycle()).isEqualTo(6);
+    assertThat(state.getLastToken()).isEqualTo(ledgerToken);
+    assertThat(state.getLastDeletableBeforeMs()).isEqualTo(500L);
+  }
+
+  @Test
+  void call_stopRequestedGiven_shouldNotStartCycleAndCloseOrchestrators() throws Exception {
+    // Arrange
+    DaemonCommand command = newCommand();
+    command.requestStop();
+
+    // Act
+    int code = execute(command, "--side", "ledger");
+
+    // Assert
+    assertThat(code).isZero();
+    verify(ledgerFinalizer, never()).execute(any(), any());
+    verify(ledgerFinalizer).close();
+    verify(coordinatorCleanup).close();
+    assertThat(capturedLines()).isEmpty();
+  }
+
+  @Test
+  void call_unknownSideGiven_shouldReportUserError() throws Exception {
+    // Act
+    int code =
+        ScalarDlCleanup.createCommandLine()
+            .execute(
+                "daemon",
+                "--properties",
+                propertiesFile(),
+                "--checkpoint-dir",
+                checkpointDir.toString(),
+                "--side",
+                "both");
+
+    // Assert
+    assertThat(code).isEqualTo(AbstractToolCommand.FAILURE_EXIT_CODE);
+    assertThat(capturedLines().get(0).get("status_code").asText())
+        .isEqualTo(Category.USER_ERROR.name());
+  }
+
+  @Test
+  void call_negativeIntervalGiven_shouldReportUserError() throws Exception {
+    // Act
+    int code =
+        ScalarDlCleanup.createCommandLine()
+            .execute(
+                "daemon",
+                "--properties",
+                propertiesFile(),
+                "--checkpoint-dir",
+                checkpointDir.toString(),
+                "--side",
+                "ledger",
+                "--interval-seconds",
+                "-1");
+
+    // Assert
+    assertThat(code).isEqualTo(AbstractToolCommand.FAILURE_EXIT_CODE);
+    JsonNode json = capturedLines().get(0);
+    assertThat(json.get("status_code").asText()).isEqualTo(Category.USER_ERROR.name());
+    assertThat(json.get("error_message").asText()).contains("--interval-seconds");
+  }
+}
@@ -14,6 +14,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -56,7 +57,8 @@ public class LedgerFinalizeRecordsCommandTest {
     LedgerFinalizeRecordsCommand command =
         new LedgerFinalizeRecordsCommand() {
           @Override
-          LedgerFinalizeOrchestrator createOrchestrator(Properties props, Path checkpointDir) {
+          LedgerFinalizeOrchestrator createOrchestrator(
+              Properties props, Path checkpointDir, String sinceToken) {
             return orchestrator;
           }
         };
@@ -81,7 +83,8 @@ public class LedgerFinalizeRecordsCommandTest {
     LedgerFinalizeRecordsCommand command =
         new LedgerFinalizeRecordsCommand() {
           @Override
-          LedgerFinalizeOrchestrator createOrchestrator(Properties props, Path checkpointDir) {
+          LedgerFinalizeOrchestrator createOrchestrator(
+              Properties props, Path checkpointDir, String sinceToken) {
             return orchestrator;
           }
         };
@@ -98,4 +101,36 @@ public class LedgerFinalizeRecordsCommandTest {
     assertThat(json.get("error_message").asText()).isEqualTo("boom");
     verify(orchestrator).close();
   }
+
+  @Test
+  void call_sinceTokenGiven_shouldPassItToOrchestrator() throws Exception {
+    // Arrange
+    LedgerFinalizeOrchestrator orchestrator = mock(LedgerFinalizeOrchestrator.class);
+    when(orchestrator.execute()).thenReturn("ledger-token");
+    AtomicReference<String> passed = new AtomicReference<>();
+    LedgerFinalizeRecordsCommand command =
+        new LedgerFinalizeRecordsCommand() {
+          @Override
+          LedgerFinalizeOrchestrator createOrchestrator(
+              Properties props, Path checkpointDir, String sinceToken) {
+            passed.set(sinceToken);
+            return orchestrator;
+          }
+        };
+
+    // Act
+    int code =
+        new CommandLine(command)
+            .execute(
+                "--properties",
+                propertiesFile(),
+                "--since-token",
+                "previous-token",
+                "--checkpoint-dir",
+                tempDir.toString());
+
+    // Assert
+    assertThat(code).isZero();
+    assertThat(passed.get()).isEqualTo("previous-token");
+  }
 }
@@ -0,0 +1,114 @@
+package com.scalar.dl.tools.common;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import javax.annotation.Nullable;
+
+/**
+ * Where the tools keep their checkpoint state.
+ *
+ * <p>Entries are named by paths under the checkpoint directory, such as {@code
+ * <checkpointDir>/ledger-finalize/state.json}. The {@linkplain FileCheckpointStore file store}, the
+ * default, keeps each entry as a file at its path, which ties a resumed run to the node holding the
+ * files. The other stores use the path only as a key: the {@linkplain ScalarDbCheckpointStore
+ * ScalarDB store} keeps the entries in a table of the database the tool works on, so a run can be
+ * resumed on any node given the same checkpoint directory, and the {@linkplain
+ * InMemoryCheckpointStore in-memory store} keeps them for the lifetime of the process, for
+ * benchmarks that must not measure checkpoint I/O.
+ *
+ * <p>Implementations must be thread-safe.
+ */
+public interface CheckpointStore extends AutoCloseable {
+
+  /** The store to use: {@code file} (the default), {@code memory} or {@code scalardb}. */
+  String TYPE_PROPERTY = "scalar.dl.tools.checkpoint_store";
+
+  /** The value of {@link #TYPE_PROPERTY} selecting the {@link FileCheckpointStore}. */
+  String TYPE_FILE = "file";
+
+  /** The value of {@link #TYPE_PROPERTY} selecting the {@link InMemoryCheckpointStore}. */
+  String TYPE_MEMORY = "memory";
+
+  /** The value of {@link #TYPE_PROPERTY} selecting the {@link ScalarDbCheckpointStore}. */
+  String TYPE_SCALARDB = "scalardb";
+
+  /**
+   * Creates the store selected by {@value #TYPE_PROPERTY}.
+   *
+   * @param props the properties passed to the tool
+   * @return a new store; close it once the tool no longer uses it
+   * @throws IllegalArgumentException if {@value #TYPE_PROPERTY} names an unknown store
+   */
+  static CheckpointStore create(Properties props) {
+    String type = props.getProperty(TYPE_PROPERTY, TYPE_FILE).trim().toLowerCase(Locale.ROOT);
+    switch (type) {
+      case TYPE_FILE:
+        return new FileCheckpointStore();
+      case TYPE_MEMORY:
+        return InMemoryCheckpointStore.shared();
+      case TYPE_SCALARDB:
+        return ScalarDbCheckpointStore.create(props);
+      default:
+        throw new IllegalArgumentException(
+            "The property '"
+                + TYPE_PROPERTY
+                + "' must be one of "
+                + TYPE_FILE
+                + ", "
+                + TYPE_MEMORY
+                + " or "
+                + TYPE_SCALARDB
+                + ": "
+                + type);
+    }
+  }
+
+  /**
+   * Returns the content of the entry at the given path, or null if there is none.
+   *
+   * @throws IOException if the entry cannot be read
+   */
+  @Nullable
+  byte[] read(Path path) throws IOException;
+
+  /**
+   * Atomically replaces the content of the entry at the given path, creating it if needed.
+   *
+   * @throws IOException if the entry cannot be written
+   */
+  void write(Path path, byte[] content) throws IOException;
+
+  /**
+   * Writes the given entries. The store writes them in as few requests as it can, but each entry
+   * is only guaranteed to be written atomically on its own.
+   *
+   * @throws IOException if an entry cannot be written; the others may have been written
+   */
+  default void writeAll(Map<Path, byte[]> contents) throws IOException {
+    for (Map.Entry<Path, byte[]> entry : contents.entrySet()) {
+      write(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Deletes the entry at the given path and every entry under it. Does nothing if there is none.
+   *
+   * @throws IOException if an entry cannot be deleted
+   */
+  void deleteRecursively(Path path) throws IOException;
+
+  /**
+   * Returns whether the entries are files at their paths on the local filesystem, which callers
+   * may then write in ways the store does not offer, such as appending to them.
+   */
+  default boolean isLocal() {
+    return false;
+  }
+
+  /** Releases the resources of this store. */
+  @Override
+  void close();
+}
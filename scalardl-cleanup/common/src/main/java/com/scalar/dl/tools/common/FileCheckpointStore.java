@@ -0,0 +1,46 @@
+package com.scalar.dl.tools.common;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link CheckpointStore} keeping each entry as a file at its path, written atomically with
+ * {@link FileUtils#writeAtomic}.
+ */
+@ThreadSafe
+public final class FileCheckpointStore implements CheckpointStore {
+
+  @Nullable
+  @Override
+  public byte[] read(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return null;
+    }
+    return Files.readAllBytes(path);
+  }
+
+  @Override
+  public void write(Path path, byte[] content) throws IOException {
+    Path parent = path.getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    FileUtils.writeAtomic(path, content);
+  }
+
+  @Override
+  public void deleteRecursively(Path path) throws IOException {
+    FileUtils.deleteRecursively(path);
+  }
+
+  @Override
+  public boolean isLocal() {
+    return true;
+  }
+
+  @Override
+  public void close() {}
+}
@@ -4,6 +4,10 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /** Shared file-system utilities for I/O operations. */
 public final class FileUtils {
@@ -40,4 +44,25 @@ public final class FileUtils {
       throw e;
     }
   }
+
+  /**
+   * Deletes the given file, or the given directory and everything under it. Does nothing if the
+   * path does not exist.
+   *
+   * @param path the file or directory to delete
+   * @throws IOException if a file or directory cannot be deleted
+   */
+  public static void deleteRecursively(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    List<Path> paths;
+    try (Stream<Path> walk = Files.walk(path)) {
+      // Deepest first, so that each directory is empty by the time it is deleted
+      paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+    }
+    for (Path p : paths) {
+      Files.deleteIfExists(p);
+    }
+  }
 }
@@ -0,0 +1,60 @@
+package com.scalar.dl.tools.common;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link CheckpointStore} keeping the entries in memory, so nothing survives the process.
+ *
+ * <p>Meant for benchmarks that must not measure checkpoint I/O. The store created from the tool
+ * properties is {@linkplain #shared() shared} by the whole process, as the local filesystem is, so
+ * that entries written through one component can be read and deleted through another.
+ */
+@ThreadSafe
+public final class InMemoryCheckpointStore implements CheckpointStore {
+
+  private static final InMemoryCheckpointStore SHARED = new InMemoryCheckpointStore();
+
+  private static final char SEPARATOR = '/';
+
+  /** The character following '/', so the keys under a path sort below {@code <path>0}. */
+  private static final char AFTER_SEPARATOR = SEPARATOR + 1;
+
+  private final ConcurrentNavigableMap<String, byte[]> entries = new ConcurrentSkipListMap<>();
+
+  /** Returns the store shared by the whole process. */
+  public static InMemoryCheckpointStore shared() {
+    return SHARED;
+  }
+
+  private static String toKey(Path path) {
+    return path.normalize().toString().replace(File.separatorChar, SEPARATOR);
+  }
+
+  @Nullable
+  @Override
+  public byte[] read(Path path) {
+    byte[] content = entries.get(toKey(path));
+    return content == null ? null : content.clone();
+  }
+
+  @Override
+  public void write(Path path, byte[] content) {
+    entries.put(toKey(path), content.clone());
+  }
+
+  @Override
+  public void deleteRecursively(Path path) {
+    String key = toKey(path);
+    entries.remove(key);
+    entries.subMap(key + SEPARATOR, key + AFTER_SEPARATOR).clear();
+  }
+
+  /** Does nothing; the entries are kept as long as the store is referenced. */
+  @Override
+  public void close() {}
+}
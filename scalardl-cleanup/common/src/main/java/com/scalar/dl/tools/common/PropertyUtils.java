@@ -0,0 +1,58 @@
+package com.scalar.dl.tools.common;
+
+import java.util.Properties;
+
+/** Shared utilities for reading the properties passed to the tools. */
+public final class PropertyUtils {
+
+  private PropertyUtils() {}
+
+  /**
+   * Returns the value of the given property as a positive integer.
+   *
+   * @param props the properties passed to the tool
+   * @param name the name of the property
+   * @param defaultValue the value returned if the property is not set
+   * @return the value of the property, or {@code defaultValue} if it is not set
+   * @throws IllegalArgumentException if the property is not a positive integer
+   */
+  public static int getPositiveIntProperty(Properties props, String name, int defaultValue) {
+    int parsed = getIntProperty(props, name, defaultValue);
+    if (parsed <= 0) {
+      throw new IllegalArgumentException(
+          "The property '" + name + "' must be a positive integer: " + parsed);
+    }
+    return parsed;
+  }
+
+  /**
+   * Returns the value of the given property as a non-negative integer.
+   *
+   * @param props the properties passed to the tool
+   * @param name the name of the property
+   * @param defaultValue the value returned if the property is not set
+   * @return the value of the property, or {@code defaultValue} if it is not set
+   * @throws IllegalArgumentException if the property is not a non-negative integer
+   */
+  public static int getNonNegativeIntProperty(Properties props, String name, int defaultValue) {
+    int parsed = getIntProperty(props, name, defaultValue);
+    if (parsed < 0) {
+      throw new IllegalArgumentException(
+          "The property '" + name + "' must be a non-negative integer: " + parsed);
+    }
+    return parsed;
+  }
+
+  private static int getIntProperty(Properties props, String name, int defaultValue) {
+    String value = props.getProperty(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          "The property '" + name + "' must be a valid integer: " + value, e);
+    }
+  }
+}
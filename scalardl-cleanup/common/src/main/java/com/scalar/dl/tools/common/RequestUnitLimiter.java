@@ -0,0 +1,174 @@
+package com.scalar.dl.tools.common;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A process-wide token bucket that caps the Cosmos DB request units (RUs) consumed per second by a
+ * tool.
+ *
+ * <p>The tools run against containers that also serve live Ledger and Auditor traffic, so a single
+ * instance is shared by all scan workers and record deleters of a process. Each caller charges the
+ * RUs of a request it made (or is about to make) and blocks until the budget covers the charge. The
+ * bucket holds at most one second of budget, so an idle period allows only a short burst.
+ *
+ * <p>Charges are granted in arrival order through a fair lock, so a worker charging large query
+ * pages cannot starve workers charging small deletes. Since the charge of a query page is only
+ * known from its response, page charges are paid after the fact: the bucket goes into debt and the
+ * caller waits until the debt is repaid, which delays its next request.
+ *
+ * <p>ScalarDB's {@code DistributedStorage} does not expose the request charge of a delete, so
+ * deletes are charged a configured estimate instead.
+ */
+@ThreadSafe
+public final class RequestUnitLimiter {
+
+  /** The maximum RUs per second; 0 (the default) disables the limit. */
+  public static final String MAX_REQUEST_UNITS_PER_SECOND_PROPERTY =
+      "scalar.dl.tools.cosmos.max_request_units_per_second";
+
+  /** The estimated RUs charged for each delete. */
+  public static final String DELETE_REQUEST_UNITS_PROPERTY =
+      "scalar.dl.tools.cosmos.delete_request_units";
+
+  /** A point delete of a small document costs about 5 to 10 RUs; assume the upper end. */
+  private static final double DEFAULT_DELETE_REQUEST_UNITS = 10.0;
+
+  private static final long BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final double maxRequestUnitsPerSecond;
+  private final double deleteRequestUnits;
+  private final LongSupplier ticker;
+  private final Sleeper sleeper;
+  private final ReentrantLock lock = new ReentrantLock(true);
+  private final DoubleAdder totalRequestUnits = new DoubleAdder();
+  private final AtomicLong throttledNanos = new AtomicLong();
+  private long nextFreeNanos = Long.MIN_VALUE;
+
+  /** Sleeps the calling thread; replaced in tests. */
+  @VisibleForTesting
+  interface Sleeper {
+    void sleep(long nanos) throws InterruptedException;
+  }
+
+  private RequestUnitLimiter(double maxRequestUnitsPerSecond, double deleteRequestUnits) {
+    this(
+        maxRequestUnitsPerSecond,
+        deleteRequestUnits,
+        System::nanoTime,
+        TimeUnit.NANOSECONDS::sleep);
+  }
+
+  @VisibleForTesting
+  RequestUnitLimiter(
+      double maxRequestUnitsPerSecond,
+      double deleteRequestUnits,
+      LongSupplier ticker,
+      Sleeper sleeper) {
+    this.maxRequestUnitsPerSecond = maxRequestUnitsPerSecond;
+    this.deleteRequestUnits = deleteRequestUnits;
+    this.ticker = ticker;
+    this.sleeper = sleeper;
+  }
+
+  /**
+   * Creates a limiter from the tool properties.
+   *
+   * @param props the properties passed to the tool
+   * @return a new limiter; it never blocks if no limit is configured
+   * @throws IllegalArgumentException if a property is not a non-negative number
+   */
+  public static RequestUnitLimiter create(Properties props) {
+    return new RequestUnitLimiter(
+        getNonNegativeDoubleProperty(props, MAX_REQUEST_UNITS_PER_SECOND_PROPERTY, 0),
+        getNonNegativeDoubleProperty(
+            props, DELETE_REQUEST_UNITS_PROPERTY, DEFAULT_DELETE_REQUEST_UNITS));
+  }
+
+  /** Returns a new limiter that never blocks. */
+  public static RequestUnitLimiter unlimited() {
+    return new RequestUnitLimiter(0, DEFAULT_DELETE_REQUEST_UNITS);
+  }
+
+  private static double getNonNegativeDoubleProperty(
+      Properties props, String key, double defaultValue) {
+    String value = props.getProperty(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    double parsed;
+    try {
+      parsed = Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          "The property '" + key + "' must be a valid number: " + value, e);
+    }
+    if (!(parsed >= 0) || Double.isInfinite(parsed)) {
+      throw new IllegalArgumentException(
+          "The property '" + key + "' must be a non-negative number: " + value);
+    }
+    return parsed;
+  }
+
+  /** Returns whether this limiter ever blocks. */
+  public boolean isLimited() {
+    return maxRequestUnitsPerSecond > 0;
+  }
+
+  /**
+   * Charges the given RUs and blocks until the budget covers them.
+   *
+   * @param requestUnits the RUs consumed by a request
+   * @throws InterruptedException if interrupted while waiting for the budget
+   */
+  public void charge(double requestUnits) throws InterruptedException {
+    if (requestUnits <= 0) {
+      return;
+    }
+    totalRequestUnits.add(requestUnits);
+    if (!isLimited()) {
+      return;
+    }
+
+    long waitNanos;
+    lock.lock();
+    try {
+      long now = ticker.getAsLong();
+      // Unused budget accumulates for at most BURST_NANOS
+      long start = Math.max(nextFreeNanos, now - BURST_NANOS);
+      nextFreeNanos = start + (long) (requestUnits / maxRequestUnitsPerSecond * 1_000_000_000L);
+      waitNanos = nextFreeNanos - now;
+    } finally {
+      lock.unlock();
+    }
+    if (waitNanos > 0) {
+      throttledNanos.addAndGet(waitNanos);
+      sleeper.sleep(waitNanos);
+    }
+  }
+
+  /**
+   * Charges the estimated RUs of a single delete and blocks until the budget covers them.
+   *
+   * @throws InterruptedException if interrupted while waiting for the budget
+   */
+  public void chargeDelete() throws InterruptedException {
+    charge(deleteRequestUnits);
+  }
+
+  /** Returns the total RUs charged so far, including the estimated charges of deletes. */
+  public double getTotalRequestUnits() {
+    return totalRequestUnits.sum();
+  }
+
+  /** Returns the total time callers have been blocked waiting for the budget. */
+  public long getThrottledMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(throttledNanos.get());
+  }
+}
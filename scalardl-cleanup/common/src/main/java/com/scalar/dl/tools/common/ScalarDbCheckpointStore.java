@@ -0,0 +1,293 @@
+package com.scalar.dl.tools.common;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.scalar.db.api.Delete;
+import com.scalar.db.api.DistributedStorage;
+import com.scalar.db.api.DistributedStorageAdmin;
+import com.scalar.db.api.Get;
+import com.scalar.db.api.Mutation;
+import com.scalar.db.api.Put;
+import com.scalar.db.api.Result;
+import com.scalar.db.api.Scan;
+import com.scalar.db.api.Scanner;
+import com.scalar.db.api.TableMetadata;
+import com.scalar.db.exception.storage.ExecutionException;
+import com.scalar.db.io.DataType;
+import com.scalar.db.io.Key;
+import com.scalar.db.service.StorageFactory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link CheckpointStore} keeping the entries in a ScalarDB table of the database the tool works
+ * on, so that a run interrupted on one node can be resumed on any other.
+ *
+ * <p>The table is partitioned by the parent path of an entry and clustered by its file name, so the
+ * continuation tokens of a scanned table, which share a parent, are upserted together in one
+ * request by {@link #writeAll}. Every directory holding an entry is also recorded by a marker
+ * entry, named after the directory with a trailing {@code /}, in the partition of its parent, so
+ * that {@link #deleteRecursively} reaches the partitions under a path by walking down from it
+ * instead of scanning the table. The namespace and the table are created on first use if they do
+ * not exist.
+ */
+@ThreadSafe
+public final class ScalarDbCheckpointStore implements CheckpointStore {
+
+  /** The namespace holding the checkpoint table. */
+  public static final String NAMESPACE_PROPERTY = "scalar.dl.tools.checkpoint_store.namespace";
+
+  static final String DEFAULT_NAMESPACE = "scalardl_tools";
+  static final String TABLE = "checkpoint";
+  static final String DIRECTORY_COLUMN = "dir";
+  static final String NAME_COLUMN = "name";
+  static final String CONTENT_COLUMN = "content";
+  static final String DIRECTORY_MARKER_SUFFIX = "/";
+
+  static final TableMetadata TABLE_METADATA =
+      TableMetadata.newBuilder()
+          .addColumn(DIRECTORY_COLUMN, DataType.TEXT)
+          .addColumn(NAME_COLUMN, DataType.TEXT)
+          .addColumn(CONTENT_COLUMN, DataType.BLOB)
+          .addPartitionKey(DIRECTORY_COLUMN)
+          .addClusteringKey(NAME_COLUMN)
+          .build();
+
+  /** Mutations applied in one request, within the batch limits of the supported databases. */
+  private static final int MAX_MUTATIONS_PER_REQUEST = 100;
+
+  private final DistributedStorage storage;
+  private final String namespace;
+  // The directories whose markers, and those of their ancestors, this store has written
+  private final Set<String> markedDirectories = ConcurrentHashMap.newKeySet();
+
+  @VisibleForTesting
+  ScalarDbCheckpointStore(DistributedStorage storage, String namespace) {
+    this.storage = storage;
+    this.namespace = namespace;
+  }
+
+  /**
+   * Creates a store on the database configured by the given properties, creating the checkpoint
+   * table if it does not exist.
+   *
+   * @param props the properties passed to the tool
+   * @return a new store
+   * @throws IllegalStateException if the checkpoint table cannot be created
+   */
+  public static ScalarDbCheckpointStore create(Properties props) {
+    String namespace = props.getProperty(NAMESPACE_PROPERTY, DEFAULT_NAMESPACE);
+    StorageFactory storageFactory = StorageFactory.create(props);
+    DistributedStorageAdmin admin = storageFactory.getStorageAdmin();
+    try {
+      admin.createNamespace(namespace, true);
+      admin.createTable(namespace, TABLE, TABLE_METADATA, true);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(
+          "Failed to create the checkpoint table " + namespace + "." + TABLE, e);
+    } finally {
+      admin.close();
+    }
+    return new ScalarDbCheckpointStore(storageFactory.getStorage(), namespace);
+  }
+
+  @Nullable
+  @Override
+  public byte[] read(Path path) throws IOException {
+    Get get =
+        Get.newBuilder()
+            .namespace(namespace)
+            .table(TABLE)
+            .partitionKey(Key.ofText(DIRECTORY_COLUMN, directoryOf(path)))
+            .clusteringKey(Key.ofText(NAME_COLUMN, nameOf(path)))
+            .build();
+    Optional<Result> result;
+    try {
+      result = storage.get(get);
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to read the checkpoint entry " + path, e);
+    }
+    return result.map(r -> r.getBlobAsBytes(CONTENT_COLUMN)).orElse(null);
+  }
+
+  @Override
+  public void write(Path path, byte[] content) throws IOException {
+    markDirectories(Collections.singletonList(path));
+    try {
+      storage.put(createPut(path, content));
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to write the checkpoint entry " + path, e);
+    }
+  }
+
+  @Override
+  public void writeAll(Map<Path, byte[]> contents) throws IOException {
+    markDirectories(contents.keySet());
+    // A request can only mutate a single partition
+    Map<String, List<Put>> putsByDirectory = new LinkedHashMap<>();
+    for (Map.Entry<Path, byte[]> entry : contents.entrySet()) {
+      putsByDirectory
+          .computeIfAbsent(directoryOf(entry.getKey()), d -> new ArrayList<>())
+          .add(createPut(entry.getKey(), entry.getValue()));
+    }
+    for (Map.Entry<String, List<Put>> entry : putsByDirectory.entrySet()) {
+      mutate(entry.getKey(), entry.getValue());
+    }
+  }
+
+  @Override
+  public void deleteRecursively(Path path) throws IOException {
+    deleteDirectory(toKey(path));
+    // The entry at the path and the marker of the directory at the path, last so that a delete
+    // interrupted halfway can be retried
+    Path fileName = path.normalize().getFileName();
+    if (fileName != null) {
+      String directory = directoryOf(path);
+      mutate(
+          directory,
+          Arrays.asList(
+              createDelete(directory, fileName.toString()),
+              createDelete(directory, fileName + DIRECTORY_MARKER_SUFFIX)));
+    }
+  }
+
+  private void deleteDirectory(String directory) throws IOException {
+    Scan scan =
+        Scan.newBuilder()
+            .namespace(namespace)
+            .table(TABLE)
+            .partitionKey(Key.ofText(DIRECTORY_COLUMN, directory))
+            .projections(NAME_COLUMN)
+            .build();
+    List<Delete> deletes = new ArrayList<>();
+    List<String> subdirectories = new ArrayList<>();
+    try (Scanner scanner = storage.scan(scan)) {
+      for (Result result : scanner) {
+        String name = result.getText(NAME_COLUMN);
+        if (name.endsWith(DIRECTORY_MARKER_SUFFIX)) {
+          String subdirectory = name.substring(0, name.length() - DIRECTORY_MARKER_SUFFIX.length());
+          subdirectories.add(childOf(directory, subdirectory));
+        }
+        deletes.add(createDelete(directory, name));
+      }
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to list the checkpoint entries under " + directory, e);
+    }
+    // The subdirectories first, so that their markers are only deleted once they are empty
+    for (String subdirectory : subdirectories) {
+      deleteDirectory(subdirectory);
+    }
+    mutate(directory, deletes);
+    markedDirectories.removeIf(d -> d.equals(directory) || d.startsWith(childOf(directory, "")));
+  }
+
+  /** Writes the markers of the directories of the given entries not marked yet, root first. */
+  private void markDirectories(Collection<Path> paths) throws IOException {
+    // The directories to mark by depth, so that a directory is only marked once its parent is
+    SortedMap<Integer, Map<String, Path>> unmarkedByDepth = new TreeMap<>();
+    for (Path path : paths) {
+      for (Path directory = path.normalize().getParent();
+          directory != null && directory.getFileName() != null;
+          directory = directory.getParent()) {
+        String key = toKey(directory);
+        if (markedDirectories.contains(key)) {
+          break;
+        }
+        unmarkedByDepth
+            .computeIfAbsent(directory.getNameCount(), d -> new LinkedHashMap<>())
+            .put(key, directory);
+      }
+    }
+    for (Map<String, Path> directories : unmarkedByDepth.values()) {
+      // A request can only mutate a single partition
+      Map<String, List<Put>> putsByParent = new LinkedHashMap<>();
+      for (Path directory : directories.values()) {
+        String parent = directoryOf(directory);
+        putsByParent
+            .computeIfAbsent(parent, d -> new ArrayList<>())
+            .add(
+                createPut(
+                    parent, directory.getFileName() + DIRECTORY_MARKER_SUFFIX, new byte[0]));
+      }
+      for (Map.Entry<String, List<Put>> entry : putsByParent.entrySet()) {
+        mutate(entry.getKey(), entry.getValue());
+      }
+      markedDirectories.addAll(directories.keySet());
+    }
+  }
+
+  private void mutate(String directory, List<? extends Mutation> mutations) throws IOException {
+    for (List<? extends Mutation> chunk : Lists.partition(mutations, MAX_MUTATIONS_PER_REQUEST)) {
+      try {
+        storage.mutate(chunk);
+      } catch (ExecutionException e) {
+        throw new IOException("Failed to write the checkpoint entries under " + directory, e);
+      }
+    }
+  }
+
+  private Put createPut(Path path, byte[] content) {
+    return createPut(directoryOf(path), nameOf(path), content);
+  }
+
+  private Put createPut(String directory, String name, byte[] content) {
+    return Put.newBuilder()
+        .namespace(namespace)
+        .table(TABLE)
+        .partitionKey(Key.ofText(DIRECTORY_COLUMN, directory))
+        .clusteringKey(Key.ofText(NAME_COLUMN, name))
+        .blobValue(CONTENT_COLUMN, content)
+        .build();
+  }
+
+  private Delete createDelete(String directory, String name) {
+    return Delete.newBuilder()
+        .namespace(namespace)
+        .table(TABLE)
+        .partitionKey(Key.ofText(DIRECTORY_COLUMN, directory))
+        .clusteringKey(Key.ofText(NAME_COLUMN, name))
+        .build();
+  }
+
+  private static String toKey(Path path) {
+    return path.normalize().toString().replace(File.separatorChar, '/');
+  }
+
+  private static String childOf(String directory, String name) {
+    return directory.endsWith("/") ? directory + name : directory + "/" + name;
+  }
+
+  private static String directoryOf(Path path) {
+    Path parent = path.normalize().getParent();
+    return parent == null ? "" : toKey(parent);
+  }
+
+  private static String nameOf(Path path) {
+    Path fileName = path.normalize().getFileName();
+    if (fileName == null) {
+      throw new IllegalArgumentException("The checkpoint entry path must have a file name");
+    }
+    return fileName.toString();
+  }
+
+  @Override
+  public void close() {
+    storage.close();
+  }
+}
@@ -91,6 +91,13 @@ public enum ScalarDlCleanupError implements ScalarDlToolsError {
       "",
       "Verify that the configuration points to the database the Ledger uses and that the ScalarDL"
           + " schema has been loaded."),
+  CONTAINER_TTL_DISABLED(
+      Category.USER_ERROR,
+      "014",
+      "Time to live is not enabled on the container of %s, so expiring records has no effect.",
+      "",
+      "Enable time to live on the container, or allow the tool to enable it with"
+          + " 'scalar.dl.tools.coordinator_cleanup.enable_container_ttl'."),
 
   //
   // Errors for the internal error category
@@ -2,7 +2,6 @@ package com.scalar.dl.tools.common;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import javax.annotation.Nullable;
 
@@ -11,8 +10,8 @@ import javax.annotation.Nullable;
  *
  * <p>Each subcommand ({@code ledger-finalize-records}, {@code auditor-finalize-records}, {@code
  * coordinator-state-cleanup}, {@code request-proof-cleanup}) extends this class to manage its own
- * checkpoint state. The state file is stored as {@code <checkpointDir>/<subdirectory>/state.json}
- * and is written atomically to ensure crash-safety.
+ * checkpoint state. The state is stored in a {@link CheckpointStore} as {@code
+ * <checkpointDir>/<subdirectory>/state.json} and is written atomically to ensure crash-safety.
  *
  * @param <T> the state type, which must be Jackson-serializable
  */
@@ -21,35 +20,51 @@ public abstract class StateManager<T> {
   private static final String STATE_FILE = "state.json";
   private static final ObjectMapper mapper = new ObjectMapper();
 
+  private final CheckpointStore store;
   private final Path stateDir;
   private final Class<T> stateClass;
 
   /**
-   * Creates a state manager for the given checkpoint directory and subdirectory.
+   * Creates a state manager storing its state as a file in the given checkpoint directory and
+   * subdirectory.
    *
    * @param checkpointDir the root checkpoint directory
    * @param subdirectory the subcommand-specific subdirectory
    * @param stateClass the class of the state object for Jackson deserialization
    */
   protected StateManager(Path checkpointDir, String subdirectory, Class<T> stateClass) {
+    this(new FileCheckpointStore(), checkpointDir, subdirectory, stateClass);
+  }
+
+  /**
+   * Creates a state manager for the given checkpoint directory and subdirectory.
+   *
+   * @param store the store holding the state
+   * @param checkpointDir the root checkpoint directory
+   * @param subdirectory the subcommand-specific subdirectory
+   * @param stateClass the class of the state object for Jackson deserialization
+   */
+  protected StateManager(
+      CheckpointStore store, Path checkpointDir, String subdirectory, Class<T> stateClass) {
+    this.store = store;
     this.stateDir = checkpointDir.resolve(subdirectory);
     this.stateClass = stateClass;
   }
 
   /**
-   * Loads the persisted state from the checkpoint directory.
+   * Loads the persisted state from the checkpoint store.
    *
-   * @return the deserialized state, or {@code null} if no state file exists
-   * @throws ScalarDlCleanupException if the state file exists but cannot be read or parsed
+   * @return the deserialized state, or {@code null} if no state is stored
+   * @throws ScalarDlCleanupException if the state exists but cannot be read or parsed
    */
   @Nullable
   public T load() {
     Path statePath = stateDir.resolve(STATE_FILE);
-    if (!Files.exists(statePath)) {
-      return null;
-    }
     try {
-      byte[] bytes = Files.readAllBytes(statePath);
+      byte[] bytes = store.read(statePath);
+      if (bytes == null) {
+        return null;
+      }
       return mapper.readValue(bytes, stateClass);
     } catch (IOException e) {
       throw new ScalarDlCleanupException(ScalarDlCleanupError.STATE_LOAD_FAILED, e, statePath);
@@ -57,17 +72,16 @@ public abstract class StateManager<T> {
   }
 
   /**
-   * Atomically persists the given state via write-temp-and-rename. Creates the state directory if
-   * it does not exist.
+   * Atomically persists the given state to the checkpoint store, which creates the state directory
+   * if it does not exist.
    *
    * @param state the state object to persist
    * @throws ScalarDlCleanupException if the state cannot be serialized or written
    */
   public void persist(T state) {
     try {
-      Files.createDirectories(stateDir);
       byte[] content = mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(state);
-      FileUtils.writeAtomic(stateDir.resolve(STATE_FILE), content);
+      store.write(stateDir.resolve(STATE_FILE), content);
     } catch (IOException e) {
       throw new ScalarDlCleanupException(
           ScalarDlCleanupError.STATE_PERSIST_FAILED, e, stateDir.resolve(STATE_FILE));
@@ -78,4 +92,9 @@ public abstract class StateManager<T> {
   public Path getStateDir() {
     return stateDir;
   }
+
+  /** Returns the store holding the state. */
+  public CheckpointStore getStore() {
+    return store;
+  }
 }
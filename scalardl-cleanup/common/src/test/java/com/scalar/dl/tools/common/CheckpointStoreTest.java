@@ -0,0 +1,47 @@
+package com.scalar.dl.tools.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+
+class CheckpointStoreTest {
+
+  @Test
+  void create_noTypeGiven_shouldReturnFileStore() {
+    // Act
+    try (CheckpointStore store = CheckpointStore.create(new Properties())) {
+      // Assert
+      assertThat(store).isInstanceOf(FileCheckpointStore.class);
+      assertThat(store.isLocal()).isTrue();
+    }
+  }
+
+  @Test
+  void create_memoryTypeGiven_shouldReturnSharedInMemoryStore() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(CheckpointStore.TYPE_PROPERTY, " Memory ");
+
+    // Act
+    try (CheckpointStore store = CheckpointStore.create(props)) {
+      // Assert
+      assertThat(store).isSameAs(InMemoryCheckpointStore.shared());
+      assertThat(store.isLocal()).isFalse();
+    }
+  }
+
+  @Test
+  void create_unknownTypeGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(CheckpointStore.TYPE_PROPERTY, "redis");
+
+    // Act & Assert
+    assertThatThrownBy(() -> CheckpointStore.create(props))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(CheckpointStore.TYPE_PROPERTY)
+        .hasMessageContaining("redis");
+  }
+}
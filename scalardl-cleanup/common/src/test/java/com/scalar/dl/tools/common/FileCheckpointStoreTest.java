@@ -0,0 +1,48 @@
+package com.scalar.dl.tools.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileCheckpointStoreTest {
+
+  @TempDir Path tempDir;
+  private final FileCheckpointStore store = new FileCheckpointStore();
+
+  @Test
+  void read_nonExistentEntryGiven_shouldReturnNull() throws IOException {
+    // Act & Assert
+    assertThat(store.read(tempDir.resolve("missing.json"))).isNull();
+  }
+
+  @Test
+  void write_shouldCreateParentDirectoriesAndFile() throws IOException {
+    // Arrange
+    Path path = tempDir.resolve("a").resolve("b").resolve("state.json");
+
+    // Act
+    store.write(path, "content".getBytes(StandardCharsets.UTF_8));
+
+    // Assert
+    assertThat(path).hasContent("content");
+    assertThat(store.read(path)).isEqualTo("content".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void deleteRecursively_shouldDeleteDirectoryAndEntriesUnderIt() throws IOException {
+    // Arrange
+    Path dir = tempDir.resolve("cycle-1");
+    store.write(dir.resolve("state.json"), new byte[] {1});
+    store.write(dir.resolve("ns.table").resolve("range1.token"), new byte[] {2});
+
+    // Act
+    store.deleteRecursively(dir);
+
+    // Assert
+    assertThat(dir).doesNotExist();
+  }
+}
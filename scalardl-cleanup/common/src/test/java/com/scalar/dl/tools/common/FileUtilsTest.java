@@ -63,4 +63,32 @@ class FileUtilsTest {
     assertThatThrownBy(() -> FileUtils.writeAtomic(target, "data".getBytes(StandardCharsets.UTF_8)))
         .isInstanceOf(IOException.class);
   }
+
+  @Test
+  void deleteRecursively_directoryGiven_shouldDeleteItAndItsContents() throws IOException {
+    // Arrange
+    Path dir = tempDir.resolve("dir");
+    Files.createDirectories(dir.resolve("sub"));
+    Files.write(dir.resolve("a.json"), "a".getBytes(StandardCharsets.UTF_8));
+    Files.write(dir.resolve("sub").resolve("b.json"), "b".getBytes(StandardCharsets.UTF_8));
+
+    // Act
+    FileUtils.deleteRecursively(dir);
+
+    // Assert
+    assertThat(dir).doesNotExist();
+    assertThat(tempDir).exists();
+  }
+
+  @Test
+  void deleteRecursively_nonExistentPathGiven_shouldDoNothing() throws IOException {
+    // Arrange
+    Path missing = tempDir.resolve("missing");
+
+    // Act
+    FileUtils.deleteRecursively(missing);
+
+    // Assert
+    assertThat(missing).doesNotExist();
+  }
 }
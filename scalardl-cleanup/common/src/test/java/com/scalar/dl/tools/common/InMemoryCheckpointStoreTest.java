@@ -0,0 +1,77 @@
+package com.scalar.dl.tools.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class InMemoryCheckpointStoreTest {
+
+  private final InMemoryCheckpointStore store = new InMemoryCheckpointStore();
+
+  @Test
+  void read_nonExistentEntryGiven_shouldReturnNull() {
+    // Act & Assert
+    assertThat(store.read(Paths.get("checkpoint", "state.json"))).isNull();
+  }
+
+  @Test
+  void write_shouldKeepCopyOfContent() {
+    // Arrange
+    Path path = Paths.get("checkpoint", "state.json");
+    byte[] content = {1, 2, 3};
+
+    // Act
+    store.write(path, content);
+    content[0] = 9;
+
+    // Assert
+    assertThat(store.read(path)).containsExactly(1, 2, 3);
+    assertThat(store.read(Paths.get("checkpoint", ".", "state.json"))).containsExactly(1, 2, 3);
+  }
+
+  @Test
+  void writeAll_shouldWriteEveryEntry() {
+    // Arrange
+    Map<Path, byte[]> contents = new LinkedHashMap<>();
+    contents.put(Paths.get("checkpoint", "ns.table", "range1.token"), new byte[] {1});
+    contents.put(Paths.get("checkpoint", "ns.table", "range2.token"), new byte[] {2});
+
+    // Act
+    store.writeAll(contents);
+
+    // Assert
+    assertThat(store.read(Paths.get("checkpoint", "ns.table", "range1.token"))).containsExactly(1);
+    assertThat(store.read(Paths.get("checkpoint", "ns.table", "range2.token"))).containsExactly(2);
+  }
+
+  @Test
+  void deleteRecursively_shouldDeleteOnlyEntriesUnderPath() {
+    // Arrange
+    store.write(Paths.get("checkpoint", "cycle-1"), new byte[] {0});
+    store.write(Paths.get("checkpoint", "cycle-1", "state.json"), new byte[] {1});
+    store.write(Paths.get("checkpoint", "cycle-1", "ns.table", "range1.token"), new byte[] {2});
+    store.write(Paths.get("checkpoint", "cycle-10", "state.json"), new byte[] {3});
+    store.write(Paths.get("checkpoint", "cycle-1.json"), new byte[] {4});
+
+    // Act
+    store.deleteRecursively(Paths.get("checkpoint", "cycle-1"));
+
+    // Assert
+    assertThat(store.read(Paths.get("checkpoint", "cycle-1"))).isNull();
+    assertThat(store.read(Paths.get("checkpoint", "cycle-1", "state.json"))).isNull();
+    assertThat(store.read(Paths.get("checkpoint", "cycle-1", "ns.table", "range1.token")))
+        .isNull();
+    assertThat(store.read(Paths.get("checkpoint", "cycle-10", "state.json"))).containsExactly(3);
+    assertThat(store.read(Paths.get("checkpoint", "cycle-1.json"))).containsExactly(4);
+  }
+
+  @Test
+  void shared_shouldReturnSameInstance() {
+    // Act & Assert
+    assertThat(InMemoryCheckpointStore.shared()).isSameAs(InMemoryCheckpointStore.shared());
+  }
+}
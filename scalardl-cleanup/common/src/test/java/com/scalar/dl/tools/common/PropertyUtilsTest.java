@@ -0,0 +1,75 @@
+package com.scalar.dl.tools.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+
+class PropertyUtilsTest {
+
+  private static final String NAME = "scalar.dl.tools.test.count";
+
+  @Test
+  void getPositiveIntProperty_propertyNotSetGiven_shouldReturnDefaultValue() {
+    // Act & Assert
+    assertThat(PropertyUtils.getPositiveIntProperty(new Properties(), NAME, 4)).isEqualTo(4);
+  }
+
+  @Test
+  void getPositiveIntProperty_positiveIntegerGiven_shouldReturnIt() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(NAME, " 16 ");
+
+    // Act & Assert
+    assertThat(PropertyUtils.getPositiveIntProperty(props, NAME, 4)).isEqualTo(16);
+  }
+
+  @Test
+  void getPositiveIntProperty_nonIntegerGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(NAME, "many");
+
+    // Act & Assert
+    assertThatThrownBy(() -> PropertyUtils.getPositiveIntProperty(props, NAME, 4))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("The property '" + NAME + "' must be a valid integer: many")
+        .hasCauseInstanceOf(NumberFormatException.class);
+  }
+
+  @Test
+  void getPositiveIntProperty_nonPositiveIntegerGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(NAME, "0");
+
+    // Act & Assert
+    assertThatThrownBy(() -> PropertyUtils.getPositiveIntProperty(props, NAME, 4))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("The property '" + NAME + "' must be a positive integer: 0");
+  }
+
+  @Test
+  void getNonNegativeIntProperty_zeroGiven_shouldReturnIt() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(NAME, "0 ");
+
+    // Act & Assert
+    assertThat(PropertyUtils.getNonNegativeIntProperty(props, NAME, 4)).isZero();
+  }
+
+  @Test
+  void getNonNegativeIntProperty_negativeIntegerGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(NAME, "-1");
+
+    // Act & Assert
+    assertThatThrownBy(() -> PropertyUtils.getNonNegativeIntProperty(props, NAME, 4))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("The property '" + NAME + "' must be a non-negative integer: -1");
+  }
+}
@@ -0,0 +1,153 @@
+package com.scalar.dl.tools.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RequestUnitLimiterTest {
+
+  private long nowNanos;
+  private List<Long> sleeps;
+
+  @BeforeEach
+  void setUp() {
+    nowNanos = TimeUnit.SECONDS.toNanos(100);
+    sleeps = new ArrayList<>();
+  }
+
+  private RequestUnitLimiter createLimiter(double maxRequestUnitsPerSecond) {
+    return new RequestUnitLimiter(
+        maxRequestUnitsPerSecond,
+        10.0,
+        () -> nowNanos,
+        nanos -> {
+          sleeps.add(nanos);
+          nowNanos += nanos;
+        });
+  }
+
+  @Test
+  void charge_withinBurst_shouldNotBlock() throws Exception {
+    // Arrange
+    RequestUnitLimiter limiter = createLimiter(100);
+
+    // Act
+    limiter.charge(60);
+    limiter.charge(40);
+
+    // Assert
+    assertThat(sleeps).isEmpty();
+    assertThat(limiter.getTotalRequestUnits()).isEqualTo(100.0);
+  }
+
+  @Test
+  void charge_beyondBurst_shouldBlockUntilBudgetCoversCharge() throws Exception {
+    // Arrange
+    RequestUnitLimiter limiter = createLimiter(100);
+    limiter.charge(100);
+
+    // Act
+    limiter.charge(50);
+
+    // Assert
+    assertThat(sleeps).containsExactly(TimeUnit.MILLISECONDS.toNanos(500));
+    assertThat(limiter.getThrottledMillis()).isEqualTo(500);
+  }
+
+  @Test
+  void charge_sustainedLoad_shouldKeepRateAtLimit() throws Exception {
+    // Arrange
+    RequestUnitLimiter limiter = createLimiter(100);
+    long startNanos = nowNanos;
+
+    // Act
+    for (int i = 0; i < 30; i++) {
+      limiter.charge(10);
+    }
+
+    // Assert
+    // 300 RUs at 100 RU/s, less the one-second burst, take two seconds
+    assertThat(nowNanos - startNanos).isEqualTo(TimeUnit.SECONDS.toNanos(2));
+  }
+
+  @Test
+  void charge_afterIdlePeriod_shouldAllowOnlyOneSecondOfBurst() throws Exception {
+    // Arrange
+    RequestUnitLimiter limiter = createLimiter(100);
+    limiter.charge(100);
+    nowNanos += TimeUnit.SECONDS.toNanos(60);
+
+    // Act
+    limiter.charge(100);
+    limiter.charge(100);
+
+    // Assert
+    assertThat(sleeps).containsExactly(TimeUnit.SECONDS.toNanos(1));
+  }
+
+  @Test
+  void chargeDelete_shouldChargeConfiguredEstimate() throws Exception {
+    // Arrange
+    RequestUnitLimiter limiter = createLimiter(100);
+
+    // Act
+    limiter.chargeDelete();
+
+    // Assert
+    assertThat(limiter.getTotalRequestUnits()).isEqualTo(10.0);
+  }
+
+  @Test
+  void create_noPropertiesGiven_shouldReturnUnlimitedLimiter() throws Exception {
+    // Act
+    RequestUnitLimiter limiter = RequestUnitLimiter.create(new Properties());
+    limiter.charge(1_000_000);
+
+    // Assert
+    assertThat(limiter.isLimited()).isFalse();
+    assertThat(limiter.getThrottledMillis()).isZero();
+  }
+
+  @Test
+  void create_maxRequestUnitsPerSecondGiven_shouldReturnLimitedLimiter() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(RequestUnitLimiter.MAX_REQUEST_UNITS_PER_SECOND_PROPERTY, "400");
+
+    // Act
+    RequestUnitLimiter limiter = RequestUnitLimiter.create(props);
+
+    // Assert
+    assertThat(limiter.isLimited()).isTrue();
+  }
+
+  @Test
+  void create_negativeValueGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(RequestUnitLimiter.MAX_REQUEST_UNITS_PER_SECOND_PROPERTY, "-1");
+
+    // Act & Assert
+    assertThatThrownBy(() -> RequestUnitLimiter.create(props))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(RequestUnitLimiter.MAX_REQUEST_UNITS_PER_SECOND_PROPERTY);
+  }
+
+  @Test
+  void create_invalidNumberGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(RequestUnitLimiter.DELETE_REQUEST_UNITS_PROPERTY, "many");
+
+    // Act & Assert
+    assertThatThrownBy(() -> RequestUnitLimiter.create(props))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(RequestUnitLimiter.DELETE_REQUEST_UNITS_PROPERTY);
+  }
+}
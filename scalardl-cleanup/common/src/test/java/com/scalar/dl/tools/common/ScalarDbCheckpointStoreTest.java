@@ -0,0 +1,277 @@
+package com.scalar.dl.tools.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.scalar.db.api.Delete;
+import com.scalar.db.api.DistributedStorage;
+import com.scalar.db.api.Get;
+import com.scalar.db.api.Mutation;
+import com.scalar.db.api.Put;
+import com.scalar.db.api.Result;
+import com.scalar.db.api.Scan;
+import com.scalar.db.api.Scanner;
+import com.scalar.db.exception.storage.ExecutionException;
+import com.scalar.db.io.Key;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class ScalarDbCheckpointStoreTest {
+
+  private static final String NAMESPACE = "ns";
+
+  private DistributedStorage storage;
+  private ScalarDbCheckpointStore store;
+
+  @BeforeEach
+  void setUp() {
+    storage = mock(DistributedStorage.class);
+    store = new ScalarDbCheckpointStore(storage, NAMESPACE);
+  }
+
+  @Test
+  void read_existingEntryGiven_shouldGetByDirectoryAndName() throws Exception {
+    // Arrange
+    Result result = mock(Result.class);
+    when(result.getBlobAsBytes(ScalarDbCheckpointStore.CONTENT_COLUMN))
+        .thenReturn(new byte[] {1, 2});
+    when(storage.get(any(Get.class))).thenReturn(Optional.of(result));
+
+    // Act
+    byte[] content = store.read(Paths.get("checkpoint", "ledger-finalize", "state.json"));
+
+    // Assert
+    assertThat(content).containsExactly(1, 2);
+    ArgumentCaptor<Get> captor = ArgumentCaptor.forClass(Get.class);
+    verify(storage).get(captor.capture());
+    Get get = captor.getValue();
+    assertThat(get.forNamespace()).hasValue(NAMESPACE);
+    assertThat(get.forTable()).hasValue(ScalarDbCheckpointStore.TABLE);
+    assertThat(get.getPartitionKey())
+        .isEqualTo(
+            Key.ofText(ScalarDbCheckpointStore.DIRECTORY_COLUMN, "checkpoint/ledger-finalize"));
+    assertThat(get.getClusteringKey())
+        .hasValue(Key.ofText(ScalarDbCheckpointStore.NAME_COLUMN, "state.json"));
+  }
+
+  @Test
+  void read_nonExistentEntryGiven_shouldReturnNull() throws Exception {
+    // Arrange
+    when(storage.get(any(Get.class))).thenReturn(Optional.empty());
+
+    // Act & Assert
+    assertThat(store.read(Paths.get("checkpoint", "state.json"))).isNull();
+  }
+
+  @Test
+  void read_ExecutionExceptionThrown_shouldThrowIOException() throws Exception {
+    // Arrange
+    when(storage.get(any(Get.class))).thenThrow(new ExecutionException("failed"));
+
+    // Act & Assert
+    assertThatThrownBy(() -> store.read(Paths.get("checkpoint", "state.json")))
+        .isInstanceOf(IOException.class)
+        .hasCauseInstanceOf(ExecutionException.class);
+  }
+
+  @Test
+  void write_shouldPutContent() throws Exception {
+    // Act
+    store.write(Paths.get("checkpoint", "state.json"), new byte[] {3});
+
+    // Assert
+    ArgumentCaptor<Put> captor = ArgumentCaptor.forClass(Put.class);
+    verify(storage).put(captor.capture());
+    Put put = captor.getValue();
+    assertThat(put.getPartitionKey())
+        .isEqualTo(Key.ofText(ScalarDbCheckpointStore.DIRECTORY_COLUMN, "checkpoint"));
+    assertThat(put.getBlobValueAsBytes(ScalarDbCheckpointStore.CONTENT_COLUMN))
+        .containsExactly(3);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void write_shouldMarkDirectoriesOnlyOnce() throws Exception {
+    // Act
+    store.write(Paths.get("checkpoint", "ns.table", "range1.token"), new byte[] {1});
+    store.write(Paths.get("checkpoint", "ns.table", "range2.token"), new byte[] {2});
+
+    // Assert — the marker of each directory is in the partition of its parent, root first.
+    ArgumentCaptor<List<Mutation>> captor = ArgumentCaptor.forClass(List.class);
+    verify(storage, times(2)).mutate(captor.capture());
+    assertThat(captor.getAllValues().get(0))
+        .extracting(ScalarDbCheckpointStoreTest::keysOf)
+        .containsExactly("/checkpoint/");
+    assertThat(captor.getAllValues().get(1))
+        .extracting(ScalarDbCheckpointStoreTest::keysOf)
+        .containsExactly("checkpoint/ns.table/");
+    verify(storage, times(2)).put(any(Put.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void writeAll_entriesOfTwoDirectoriesGiven_shouldMutateOncePerDirectory() throws Exception {
+    // Arrange
+    Map<Path, byte[]> contents = new LinkedHashMap<>();
+    contents.put(Paths.get("checkpoint", "ns.table1", "range1.token"), new byte[] {1});
+    contents.put(Paths.get("checkpoint", "ns.table2", "range1.token"), new byte[] {2});
+    contents.put(Paths.get("checkpoint", "ns.table1", "range2.token"), new byte[] {3});
+
+    // Act
+    store.writeAll(contents);
+
+    // Assert — the markers of the directories first, then the entries.
+    ArgumentCaptor<List<Mutation>> captor = ArgumentCaptor.forClass(List.class);
+    verify(storage, times(4)).mutate(captor.capture());
+    assertThat(captor.getAllValues().get(0))
+        .extracting(ScalarDbCheckpointStoreTest::keysOf)
+        .containsExactly("/checkpoint/");
+    assertThat(captor.getAllValues().get(1))
+        .extracting(ScalarDbCheckpointStoreTest::keysOf)
+        .containsExactly("checkpoint/ns.table1/", "checkpoint/ns.table2/");
+    assertThat(captor.getAllValues().get(2)).hasSize(2);
+    assertThat(captor.getAllValues().get(3)).hasSize(1);
+    verify(storage, never()).put(any(Put.class));
+  }
+
+  @Test
+  void writeAll_ExecutionExceptionThrown_shouldThrowIOException() throws Exception {
+    // Arrange
+    doThrow(new ExecutionException("failed")).when(storage).mutate(anyList());
+    Map<Path, byte[]> contents = new LinkedHashMap<>();
+    contents.put(Paths.get("checkpoint", "ns.table", "range1.token"), new byte[] {1});
+
+    // Act & Assert
+    assertThatThrownBy(() -> store.writeAll(contents))
+        .isInstanceOf(IOException.class)
+        .hasCauseInstanceOf(ExecutionException.class);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void deleteRecursively_shouldScanOnlyPartitionsUnderPathAndDeleteTheirEntries()
+      throws Exception {
+    // Arrange
+    Map<String, List<Result>> partitions = new LinkedHashMap<>();
+    partitions.put(
+        "checkpoint/cycle-1",
+        Arrays.asList(entry("state.json"), entry("ns.table/"), entry("ns.empty/")));
+    partitions.put("checkpoint/cycle-1/ns.table", Collections.singletonList(entry("range1.token")));
+    when(storage.scan(any(Scan.class)))
+        .thenAnswer(
+            invocation -> {
+              Scan scan = invocation.getArgument(0);
+              String directory = textOf(scan.getPartitionKey());
+              Scanner scanner = mock(Scanner.class);
+              when(scanner.iterator())
+                  .thenReturn(
+                      partitions.getOrDefault(directory, Collections.emptyList()).iterator());
+              return scanner;
+            });
+
+    // Act
+    store.deleteRecursively(Paths.get("checkpoint", "cycle-1"));
+
+    // Assert
+    ArgumentCaptor<Scan> scanCaptor = ArgumentCaptor.forClass(Scan.class);
+    verify(storage, times(3)).scan(scanCaptor.capture());
+    assertThat(scanCaptor.getAllValues())
+        .extracting(Scan::getPartitionKey)
+        .containsExactly(
+            Key.ofText(ScalarDbCheckpointStore.DIRECTORY_COLUMN, "checkpoint/cycle-1"),
+            Key.ofText(ScalarDbCheckpointStore.DIRECTORY_COLUMN, "checkpoint/cycle-1/ns.table"),
+            Key.ofText(ScalarDbCheckpointStore.DIRECTORY_COLUMN, "checkpoint/cycle-1/ns.empty"));
+    ArgumentCaptor<List<Mutation>> captor = ArgumentCaptor.forClass(List.class);
+    verify(storage, times(3)).mutate(captor.capture());
+    List<Mutation> deletes = new ArrayList<>();
+    captor.getAllValues().forEach(deletes::addAll);
+    assertThat(deletes).allSatisfy(delete -> assertThat(delete).isInstanceOf(Delete.class));
+    assertThat(deletes)
+        .extracting(ScalarDbCheckpointStoreTest::keysOf)
+        .containsExactly(
+            "checkpoint/cycle-1/ns.table/range1.token",
+            "checkpoint/cycle-1/state.json",
+            "checkpoint/cycle-1/ns.table/",
+            "checkpoint/cycle-1/ns.empty/",
+            "checkpoint/cycle-1",
+            "checkpoint/cycle-1/");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void deleteRecursively_directoryDeletedGiven_shouldMarkItAgainOnNextWrite() throws Exception {
+    // Arrange
+    Scanner scanner = mock(Scanner.class);
+    when(scanner.iterator()).thenReturn(Collections.emptyIterator());
+    when(storage.scan(any(Scan.class))).thenReturn(scanner);
+    store.write(Paths.get("checkpoint", "cycle-1", "state.json"), new byte[] {1});
+    store.deleteRecursively(Paths.get("checkpoint", "cycle-1"));
+
+    // Act
+    store.write(Paths.get("checkpoint", "cycle-1", "state.json"), new byte[] {2});
+
+    // Assert — the marker of checkpoint is kept, while that of checkpoint/cycle-1 is rewritten.
+    ArgumentCaptor<List<Mutation>> captor = ArgumentCaptor.forClass(List.class);
+    verify(storage, times(4)).mutate(captor.capture());
+    assertThat(captor.getAllValues().get(3))
+        .extracting(ScalarDbCheckpointStoreTest::keysOf)
+        .containsExactly("checkpoint/cycle-1/");
+  }
+
+  @Test
+  void deleteRecursively_ExecutionExceptionThrown_shouldThrowIOException() throws Exception {
+    // Arrange
+    when(storage.scan(any(Scan.class))).thenThrow(new ExecutionException("failed"));
+
+    // Act & Assert
+    assertThatThrownBy(() -> store.deleteRecursively(Paths.get("checkpoint", "cycle-1")))
+        .isInstanceOf(IOException.class)
+        .hasCauseInstanceOf(ExecutionException.class);
+    verify(storage, never()).mutate(anyList());
+  }
+
+  @Test
+  void close_shouldCloseStorage() {
+    // Act
+    store.close();
+
+    // Assert
+    verify(storage).close();
+  }
+
+  private Result entry(String name) {
+    Result result = mock(Result.class);
+    when(result.getText(ScalarDbCheckpointStore.NAME_COLUMN)).thenReturn(name);
+    return result;
+  }
+
+  /** Returns the directory and the name of the entry a mutation is for, joined by a slash. */
+  private static String keysOf(Mutation mutation) {
+    return textOf(mutation.getPartitionKey())
+        + "/"
+        + mutation.getClusteringKey().map(ScalarDbCheckpointStoreTest::textOf).orElse("");
+  }
+
+  private static String textOf(Key key) {
+    return key.getColumns().get(0).getTextValue();
+  }
+}
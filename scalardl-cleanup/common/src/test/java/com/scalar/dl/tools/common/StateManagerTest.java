@@ -92,6 +92,24 @@ class StateManagerTest {
     assertThat(manager.getStateDir()).isEqualTo(tempDir.resolve(SUBDIRECTORY));
   }
 
+  @Test
+  void persist_nonFileStoreGiven_shouldKeepStateInStoreOnly() {
+    // Arrange
+    InMemoryCheckpointStore store = new InMemoryCheckpointStore();
+    TestStateManager storeManager = new TestStateManager(store, tempDir);
+
+    // Act
+    storeManager.persist(new TestState("stored", 7));
+
+    // Assert
+    assertThat(tempDir.resolve(SUBDIRECTORY)).doesNotExist();
+    assertThat(store.read(tempDir.resolve(SUBDIRECTORY).resolve("state.json"))).isNotNull();
+    TestState loaded = new TestStateManager(store, tempDir).load();
+    assertThat(loaded).isNotNull();
+    assertThat(loaded.name).isEqualTo("stored");
+    assertThat(loaded.value).isEqualTo(7);
+  }
+
   /** Minimal state POJO for testing. */
   static class TestState {
     @JsonProperty String name;
@@ -109,5 +127,9 @@ class StateManagerTest {
     TestStateManager(Path checkpointDir) {
       super(checkpointDir, SUBDIRECTORY, TestState.class);
     }
+
+    TestStateManager(CheckpointStore store, Path checkpointDir) {
+      super(store, checkpointDir, SUBDIRECTORY, TestState.class);
+    }
   }
 }
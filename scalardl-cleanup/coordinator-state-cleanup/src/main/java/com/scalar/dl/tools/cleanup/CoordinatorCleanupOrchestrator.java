@@ -6,16 +6,22 @@ import com.scalar.db.config.DatabaseConfig;
 import com.scalar.db.service.StorageFactory;
 import com.scalar.db.transaction.consensuscommit.ConsensusCommitConfig;
 import com.scalar.db.transaction.consensuscommit.CoordinatorStateAccessor;
+import com.scalar.dl.tools.common.CheckpointStore;
 import com.scalar.dl.tools.common.CompletionToken;
+import com.scalar.dl.tools.common.FileCheckpointStore;
 import com.scalar.dl.tools.common.LedgerConfigValidator;
+import com.scalar.dl.tools.common.PropertyUtils;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
 import com.scalar.dl.tools.common.ScalarDlCleanupError;
 import com.scalar.dl.tools.common.ScalarDlCleanupException;
 import com.scalar.dl.tools.common.StorageValidator;
 import com.scalar.dl.tools.scan.ResumableScanner;
 import com.scalar.dl.tools.scan.ResumableScannerFactory;
 import com.scalar.dl.tools.scan.ScanResult;
+import com.scalar.dl.tools.scan.cosmos.CosmosBulkDeleter;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.Locale;
 import java.util.Properties;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
@@ -31,15 +37,47 @@ import org.slf4j.LoggerFactory;
  *
  * <p>The workflow is resumable: progress is checkpointed so that a failure only requires
  * re-invocation with the same checkpoint directory.
+ *
+ * <p>In the {@value #MODE_TTL} mode ({@value #MODE_PROPERTY}), the deletable records are not
+ * deleted but given a per-item time to live of {@value #TTL_SECONDS_PROPERTY} seconds, so that
+ * Cosmos DB removes them in the background with spare throughput instead of foreground request
+ * units. The records are selected by the same deletable-before boundary as in the default {@value
+ * #MODE_DELETE} mode. Time to live must be enabled on the coordinator container, which the tool
+ * does itself only if {@value #ENABLE_CONTAINER_TTL_PROPERTY} is set to true.
  */
 public final class CoordinatorCleanupOrchestrator implements AutoCloseable {
 
+  /**
+   * How deletable records are removed: {@value #MODE_DELETE} (the default) or {@value #MODE_TTL}.
+   */
+  public static final String MODE_PROPERTY = "scalar.dl.tools.coordinator_cleanup.mode";
+
+  /** The value of {@value #MODE_PROPERTY} deleting the records right away. */
+  public static final String MODE_DELETE = "delete";
+
+  /** The value of {@value #MODE_PROPERTY} scheduling the records for expiry by Cosmos DB. */
+  public static final String MODE_TTL = "ttl";
+
+  /** The time to live, in seconds, set on the deletable records in the {@value #MODE_TTL} mode. */
+  public static final String TTL_SECONDS_PROPERTY =
+      "scalar.dl.tools.coordinator_cleanup.ttl_seconds";
+
+  private static final int DEFAULT_TTL_SECONDS = 1;
+
+  /**
+   * Whether the {@value #MODE_TTL} mode may enable time to live on the coordinator container if it
+   * is disabled. Off by default, since it changes the container settings.
+   */
+  public static final String ENABLE_CONTAINER_TTL_PROPERTY =
+      "scalar.dl.tools.coordinator_cleanup.enable_container_ttl";
+
   private static final Logger logger =
       LoggerFactory.getLogger(CoordinatorCleanupOrchestrator.class);
 
   private final DistributedStorage storage;
   private final ResumableScannerFactory scannerFactory;
   private final Path checkpointDir;
+  private final CheckpointStore checkpointStore;
   private final String coordinatorNamespace;
   @Nullable private final String ledgerTokenString;
   @Nullable private final String auditorTokenString;
@@ -72,9 +110,31 @@ public final class CoordinatorCleanupOrchestrator implements AutoCloseable {
       @Nullable String ledgerTokenString,
       @Nullable String auditorTokenString,
       RecordDeleter recordDeleter) {
+    this(
+        storage,
+        scannerFactory,
+        checkpointDir,
+        coordinatorNamespace,
+        ledgerTokenString,
+        auditorTokenString,
+        recordDeleter,
+        new FileCheckpointStore());
+  }
+
+  @VisibleForTesting
+  CoordinatorCleanupOrchestrator(
+      DistributedStorage storage,
+      ResumableScannerFactory scannerFactory,
+      Path checkpointDir,
+      String coordinatorNamespace,
+      @Nullable String ledgerTokenString,
+      @Nullable String auditorTokenString,
+      RecordDeleter recordDeleter,
+      CheckpointStore checkpointStore) {
     this.storage = storage;
     this.scannerFactory = scannerFactory;
     this.checkpointDir = checkpointDir;
+    this.checkpointStore = checkpointStore;
     this.coordinatorNamespace = coordinatorNamespace;
     this.ledgerTokenString = ledgerTokenString;
     this.auditorTokenString = auditorTokenString;
@@ -99,22 +159,67 @@ public final class CoordinatorCleanupOrchestrator implements AutoCloseable {
     DatabaseConfig dbConfig = new DatabaseConfig(props);
     StorageValidator.validate(dbConfig);
     LedgerConfigValidator.validate(dbConfig);
+    boolean ttlMode = isTtlMode(props);
+    int ttlSeconds =
+        PropertyUtils.getPositiveIntProperty(props, TTL_SECONDS_PROPERTY, DEFAULT_TTL_SECONDS);
+    boolean enableContainerTtl =
+        Boolean.parseBoolean(props.getProperty(ENABLE_CONTAINER_TTL_PROPERTY, "false").trim());
     DistributedStorage storage = StorageFactory.create(props).getStorage();
+    CheckpointStore checkpointStore = null;
     try {
-      ResumableScannerFactory scannerFactory = new ResumableScannerFactory(dbConfig);
+      checkpointStore = CheckpointStore.create(props);
+      // One RU budget for the whole process, shared by the scan workers and the deletes
+      RequestUnitLimiter requestUnitLimiter = RequestUnitLimiter.create(props);
+      ResumableScannerFactory scannerFactory =
+          new ResumableScannerFactory(dbConfig, requestUnitLimiter, checkpointStore);
+      String coordinatorNamespace = resolveCoordinatorNamespace(dbConfig);
+      CosmosBulkDeleter bulkDeleter =
+          ttlMode
+              ? scannerFactory.createExpiringDeleter(
+                  coordinatorNamespace,
+                  CoordinatorStateAccessor.TABLE,
+                  ttlSeconds,
+                  enableContainerTtl)
+              : scannerFactory.createBulkDeleter(
+                  coordinatorNamespace, CoordinatorStateAccessor.TABLE);
       return new CoordinatorCleanupOrchestrator(
           storage,
           scannerFactory,
           checkpointDir,
-          resolveCoordinatorNamespace(dbConfig),
+          coordinatorNamespace,
           ledgerTokenString,
-          auditorTokenString);
+          auditorTokenString,
+          new RecordDeleter(storage, coordinatorNamespace, requestUnitLimiter, bulkDeleter),
+          checkpointStore);
     } catch (Exception e) {
+      if (checkpointStore != null) {
+        checkpointStore.close();
+      }
       storage.close();
       throw e;
     }
   }
 
+  private static boolean isTtlMode(Properties props) {
+    String mode = props.getProperty(MODE_PROPERTY, MODE_DELETE).trim().toLowerCase(Locale.ROOT);
+    switch (mode) {
+      case MODE_DELETE:
+        return false;
+      case MODE_TTL:
+        return true;
+      default:
+        throw new IllegalArgumentException(
+            "The property '"
+                + MODE_PROPERTY
+                + "' must be "
+                + MODE_DELETE
+                + " or "
+                + MODE_TTL
+                + ": "
+                + mode);
+    }
+  }
+
   /** Resolves the namespace of the coordinator table. */
   private static String resolveCoordinatorNamespace(DatabaseConfig dbConfig) {
     return new ConsensusCommitConfig(dbConfig)
@@ -130,8 +235,26 @@ public final class CoordinatorCleanupOrchestrator implements AutoCloseable {
    * @throws Exception if token validation, scanning, or state persistence fails
    */
   public void execute() throws Exception {
-    CoordinatorCleanupStateManager stateManager = new CoordinatorCleanupStateManager(checkpointDir);
-    CoordinatorCleanupState state = loadOrInitializeState(stateManager);
+    execute(checkpointDir, ledgerTokenString, auditorTokenString);
+  }
+
+  /**
+   * Executes the full cleanup workflow with the given checkpoint directory and completion tokens
+   * instead of those given on creation. A long-running process runs successive cleanups this way,
+   * each with its own checkpoint directory, on the clients of a single orchestrator.
+   *
+   * @param checkpointDir root directory for the checkpoint state of this run
+   * @param ledgerTokenString the Ledger completion token
+   * @param auditorTokenString the Auditor completion token
+   * @throws Exception if token validation, scanning, or state persistence fails
+   */
+  public void execute(
+      Path checkpointDir, @Nullable String ledgerTokenString, @Nullable String auditorTokenString)
+      throws Exception {
+    CoordinatorCleanupStateManager stateManager =
+        new CoordinatorCleanupStateManager(checkpointStore, checkpointDir);
+    CoordinatorCleanupState state =
+        loadOrInitializeState(stateManager, ledgerTokenString, auditorTokenString);
 
     if (state.isCompleted()) {
       logger.info("The cleanup has already been completed for this checkpoint; nothing to do.");
@@ -151,7 +274,9 @@ public final class CoordinatorCleanupOrchestrator implements AutoCloseable {
    * boundary, and persists the initial state.
    */
   private CoordinatorCleanupState loadOrInitializeState(
-      CoordinatorCleanupStateManager stateManager) {
+      CoordinatorCleanupStateManager stateManager,
+      @Nullable String ledgerTokenString,
+      @Nullable String auditorTokenString) {
     CoordinatorCleanupState state = stateManager.load();
 
     if (state != null) {
@@ -178,7 +303,8 @@ public final class CoordinatorCleanupOrchestrator implements AutoCloseable {
       throw new ScalarDlCleanupException(ScalarDlCleanupError.BOTH_COMPLETION_TOKENS_REQUIRED);
     }
 
-    long deletableBeforeMs = parseAndComputeDeletableBeforeMs();
+    long deletableBeforeMs =
+        parseAndComputeDeletableBeforeMs(ledgerTokenString, auditorTokenString);
     state = new CoordinatorCleanupState(deletableBeforeMs);
     stateManager.persist(state);
     logger.info(
@@ -189,7 +315,8 @@ public final class CoordinatorCleanupOrchestrator implements AutoCloseable {
   }
 
   /** Parses and validates both tokens, then returns the earlier guarantee timestamp. */
-  private long parseAndComputeDeletableBeforeMs() {
+  private static long parseAndComputeDeletableBeforeMs(
+      String ledgerTokenString, String auditorTokenString) {
     CompletionToken ledgerToken = CompletionToken.decode(ledgerTokenString);
     if (ledgerToken.getServerType() != CompletionToken.ServerType.LEDGER) {
       throw new ScalarDlCleanupException(
@@ -214,6 +341,20 @@ public final class CoordinatorCleanupOrchestrator implements AutoCloseable {
     return deletableBeforeMs;
   }
 
+  /**
+   * Returns a cheap estimate of the number of records in the coordinator table. It stays flat while
+   * the cleanups keep up with the transactions, so it measures the cleanup backlog.
+   *
+   * @return the estimated number of records, or {@link ResumableScanner#UNKNOWN_RECORD_COUNT} if
+   *     unavailable
+   * @throws Exception if the scanner cannot be created
+   */
+  public long estimateCoordinatorRecordCount() throws Exception {
+    try (ResumableScanner scanner = scannerFactory.create(checkpointDir)) {
+      return scanner.estimateRecordCount(coordinatorNamespace, CoordinatorStateAccessor.TABLE);
+    }
+  }
+
   /** Scans the coordinator table and deletes deletable records. */
   private void scanAndDelete(CoordinatorCleanupStateManager stateManager, long deletableBeforeMs)
       throws Exception {
@@ -221,19 +362,27 @@ public final class CoordinatorCleanupOrchestrator implements AutoCloseable {
 
     logger.info("Starting to scan the coordinator table");
 
+    RecordDeletionChecker deletionChecker = new RecordDeletionChecker(deletableBeforeMs);
     DeleteCoordinatorStateHandler handler =
-        new DeleteCoordinatorStateHandler(
-            new RecordDeletionChecker(deletableBeforeMs), recordDeleter);
+        new DeleteCoordinatorStateHandler(deletionChecker, recordDeleter);
 
     try (ResumableScanner scanner = scannerFactory.create(scanCheckpointDir)) {
       ScanResult scanResult =
-          scanner.scan(coordinatorNamespace, CoordinatorStateAccessor.TABLE, handler);
+          scanner.scan(
+              coordinatorNamespace,
+              CoordinatorStateAccessor.TABLE,
+              deletionChecker.getScanConditions(),
+              handler);
 
       // The deletion count is per run (command execution) only. Tracking a cumulative total across
       // runs would require persisting it on every deletion, so we report only what this run did.
       logger.info("Finished scanning the coordinator table.");
       logger.info("Scanned records in this run: {}", scanResult.getTotalScanned());
-      logger.info("Deleted records in this run: {}", handler.getDeletedCount());
+      if (recordDeleter.isExpiring()) {
+        logger.info("Records scheduled for expiry in this run: {}", handler.getDeletedCount());
+      } else {
+        logger.info("Deleted records in this run: {}", handler.getDeletedCount());
+      }
     }
   }
 
@@ -243,10 +392,25 @@ public final class CoordinatorCleanupOrchestrator implements AutoCloseable {
    */
   @Override
   public void close() {
+    try {
+      recordDeleter.close();
+    } catch (Exception e) {
+      logger.warn("Failed to close RecordDeleter.", e);
+    }
+    try {
+      scannerFactory.close();
+    } catch (Exception e) {
+      logger.warn("Failed to close ResumableScannerFactory.", e);
+    }
     try {
       storage.close();
     } catch (Exception e) {
       logger.warn("Failed to close DistributedStorage.", e);
     }
+    try {
+      checkpointStore.close();
+    } catch (Exception e) {
+      logger.warn("Failed to close CheckpointStore.", e);
+    }
   }
 }
@@ -1,7 +1,11 @@
 package com.scalar.dl.tools.cleanup;
 
 import com.scalar.db.api.Result;
+import com.scalar.db.transaction.consensuscommit.Attribute;
 import com.scalar.dl.tools.scan.RecordHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.concurrent.ThreadSafe;
 import org.slf4j.Logger;
@@ -11,7 +15,9 @@ import org.slf4j.LoggerFactory;
  * {@link RecordHandler} for {@code coordinator-state-cleanup}.
  *
  * <p>For each scanned coordinator-state record it decides whether the record is deletable ({@link
- * RecordDeletionChecker}) and, if so, deletes it ({@link RecordDeleter}).
+ * RecordDeletionChecker}) and, if so, deletes it ({@link RecordDeleter}). When the deleter deletes
+ * in bulk, the handler receives whole pages instead and deletes the deletable records of each page
+ * together.
  */
 @ThreadSafe
 public final class DeleteCoordinatorStateHandler implements RecordHandler {
@@ -21,6 +27,12 @@ public final class DeleteCoordinatorStateHandler implements RecordHandler {
   /** The number of deletions between successive progress log lines. */
   private static final long PROGRESS_LOG_INTERVAL = 100_000L;
 
+  /**
+   * The columns read by {@link RecordDeletionChecker}. {@link RecordDeleter} needs only the
+   * partition key, which the scanner always includes.
+   */
+  private static final List<String> PROJECTIONS = Collections.singletonList(Attribute.CREATED_AT);
+
   private final RecordDeletionChecker deletionChecker;
   private final RecordDeleter recordDeleter;
   private final AtomicLong deletedCount = new AtomicLong();
@@ -37,13 +49,47 @@ public final class DeleteCoordinatorStateHandler implements RecordHandler {
       return;
     }
     recordDeleter.execute(record);
-    long deleted = deletedCount.incrementAndGet();
-    if (deleted % PROGRESS_LOG_INTERVAL == 0) {
-      logger.info("Deleted {} records in this run so far.", deleted);
+    countDeleted(1);
+  }
+
+  /** Pages are handled at once when the deleter deletes in bulk. */
+  @Override
+  public boolean handlesPages() {
+    return recordDeleter.isBulk();
+  }
+
+  @Override
+  public void handlePage(List<Result> records) throws Exception {
+    List<Result> deletable = new ArrayList<>(records.size());
+    for (Result record : records) {
+      if (deletionChecker.isDeletable(record)) {
+        deletable.add(record);
+      }
     }
+    if (deletable.isEmpty()) {
+      return;
+    }
+    recordDeleter.executeAll(deletable);
+    countDeleted(deletable.size());
+  }
+
+  private void countDeleted(int count) {
+    long deleted = deletedCount.addAndGet(count);
+    if (deleted / PROGRESS_LOG_INTERVAL != (deleted - count) / PROGRESS_LOG_INTERVAL) {
+      if (recordDeleter.isExpiring()) {
+        logger.info("Scheduled {} records for expiry in this run so far.", deleted);
+      } else {
+        logger.info("Deleted {} records in this run so far.", deleted);
+      }
+    }
+  }
+
+  @Override
+  public List<String> getProjections() {
+    return PROJECTIONS;
   }
 
-  /** Returns the number of records deleted. */
+  /** Returns the number of records deleted, or scheduled for expiry by an expiring deleter. */
   public long getDeletedCount() {
     return deletedCount.get();
   }
@@ -4,26 +4,103 @@ import com.scalar.db.api.Delete;
 import com.scalar.db.api.DistributedStorage;
 import com.scalar.db.api.Result;
 import com.scalar.db.io.Key;
+import com.scalar.db.transaction.consensuscommit.Attribute;
 import com.scalar.db.transaction.consensuscommit.CoordinatorStateAccessor;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
+import com.scalar.dl.tools.scan.cosmos.CosmosBulkDeleter;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
-/** Deletes coordinator table records using {@link DistributedStorage}. */
+/**
+ * Deletes coordinator table records using {@link DistributedStorage}, or, given a {@link
+ * CosmosBulkDeleter}, the records of a whole page at once through the Cosmos DB bulk API.
+ */
 @ThreadSafe
-public final class RecordDeleter {
+public final class RecordDeleter implements AutoCloseable {
 
   private final DistributedStorage storage;
   private final String coordinatorNamespace;
+  private final RequestUnitLimiter requestUnitLimiter;
+  @Nullable private final CosmosBulkDeleter bulkDeleter;
 
-  @SuppressFBWarnings("EI_EXPOSE_REP2")
   public RecordDeleter(DistributedStorage storage, String coordinatorNamespace) {
+    this(storage, coordinatorNamespace, RequestUnitLimiter.unlimited());
+  }
+
+  /**
+   * @param requestUnitLimiter the limiter charged with the estimated request charge of every
+   *     delete, shared with the scan of the same process
+   */
+  @SuppressFBWarnings("EI_EXPOSE_REP2")
+  public RecordDeleter(
+      DistributedStorage storage,
+      String coordinatorNamespace,
+      RequestUnitLimiter requestUnitLimiter) {
+    this(storage, coordinatorNamespace, requestUnitLimiter, null);
+  }
+
+  /**
+   * @param requestUnitLimiter the limiter charged with the estimated request charge of every
+   *     delete, shared with the scan of the same process
+   * @param bulkDeleter the deleter used by {@link #executeAll(List)}, or null to delete every
+   *     record with its own request; it is closed with this deleter
+   */
+  @SuppressFBWarnings("EI_EXPOSE_REP2")
+  public RecordDeleter(
+      DistributedStorage storage,
+      String coordinatorNamespace,
+      RequestUnitLimiter requestUnitLimiter,
+      @Nullable CosmosBulkDeleter bulkDeleter) {
     this.storage = storage;
     this.coordinatorNamespace = coordinatorNamespace;
+    this.requestUnitLimiter = requestUnitLimiter;
+    this.bulkDeleter = bulkDeleter;
+  }
+
+  /** Returns whether {@link #executeAll(List)} deletes the given records in bulk. */
+  public boolean isBulk() {
+    return bulkDeleter != null;
+  }
+
+  /**
+   * Returns whether {@link #executeAll(List)} sets a time to live on the records, for Cosmos DB to
+   * delete them in the background, instead of deleting them.
+   */
+  public boolean isExpiring() {
+    return bulkDeleter != null && bulkDeleter.isExpiring();
   }
 
   /** Deletes a coordinator table record. */
   public void execute(Result result) throws Exception {
-    storage.delete(buildDelete(result));
+    Delete delete = buildDelete(result);
+    requestUnitLimiter.chargeDelete();
+    storage.delete(delete);
+  }
+
+  /**
+   * Deletes the given coordinator table records, in bulk if a bulk deleter is given and otherwise
+   * one after another, and returns once every delete is acknowledged. With an expiring bulk
+   * deleter, the records are scheduled for expiry instead.
+   */
+  public void executeAll(List<Result> results) throws Exception {
+    if (bulkDeleter == null) {
+      for (Result result : results) {
+        execute(result);
+      }
+      return;
+    }
+    List<String> transactionIds = new ArrayList<>(results.size());
+    for (Result result : results) {
+      String transactionId = result.getText(Attribute.ID);
+      if (transactionId == null) {
+        throw new IllegalArgumentException("Partition key not found in result");
+      }
+      transactionIds.add(transactionId);
+    }
+    bulkDeleter.deleteAll(transactionIds);
   }
 
   private Delete buildDelete(Result result) {
@@ -39,4 +116,12 @@ public final class RecordDeleter {
         .partitionKey(partitionKey)
         .build();
   }
+
+  /** Closes the bulk deleter, if any. */
+  @Override
+  public void close() {
+    if (bulkDeleter != null) {
+      bulkDeleter.close();
+    }
+  }
 }
@@ -2,6 +2,9 @@ package com.scalar.dl.tools.cleanup;
 
 import com.scalar.db.api.Result;
 import com.scalar.db.transaction.consensuscommit.Attribute;
+import com.scalar.dl.tools.scan.ScanCondition;
+import java.util.Collections;
+import java.util.List;
 
 /** Decides whether a coordinator-state record is safe to delete. */
 public final class RecordDeletionChecker {
@@ -21,4 +24,12 @@ public final class RecordDeletionChecker {
     }
     return result.getBigInt(Attribute.CREATED_AT) < deletableBeforeMs;
   }
+
+  /**
+   * Returns scan conditions matching the records for which {@link #isDeletable(Result)} returns
+   * {@code true}.
+   */
+  public List<ScanCondition> getScanConditions() {
+    return Collections.singletonList(ScanCondition.lt(Attribute.CREATED_AT, deletableBeforeMs));
+  }
 }
@@ -94,7 +94,7 @@ class CoordinatorCleanupOrchestratorTest {
     scanner = mock(ResumableScanner.class);
     scannerFactory = mock(ResumableScannerFactory.class);
     when(scannerFactory.create(any())).thenReturn(scanner);
-    when(scanner.scan(any(), any(), any())).thenReturn(new ScanResult(0));
+    when(scanner.scan(any(), any(), any(), any())).thenReturn(new ScanResult(0));
   }
 
   private CoordinatorCleanupOrchestrator newOrchestrator(
@@ -158,6 +158,65 @@ class CoordinatorCleanupOrchestratorTest {
     }
   }
 
+  @Test
+  void create_invalidModeGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(DatabaseConfig.STORAGE, "cosmos");
+    props.setProperty(CoordinatorCleanupOrchestrator.MODE_PROPERTY, "truncate");
+
+    // Act & Assert
+    assertThatThrownBy(
+            () ->
+                CoordinatorCleanupOrchestrator.create(
+                    props, tempDir, createLedgerToken(1000L), createAuditorToken(2000L)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(CoordinatorCleanupOrchestrator.MODE_PROPERTY);
+  }
+
+  @Test
+  void create_nonPositiveTtlSecondsGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(DatabaseConfig.STORAGE, "cosmos");
+    props.setProperty(
+        CoordinatorCleanupOrchestrator.MODE_PROPERTY, CoordinatorCleanupOrchestrator.MODE_TTL);
+    props.setProperty(CoordinatorCleanupOrchestrator.TTL_SECONDS_PROPERTY, "0");
+
+    // Act & Assert
+    assertThatThrownBy(
+            () ->
+                CoordinatorCleanupOrchestrator.create(
+                    props, tempDir, createLedgerToken(1000L), createAuditorToken(2000L)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(CoordinatorCleanupOrchestrator.TTL_SECONDS_PROPERTY);
+  }
+
+  @Test
+  void create_ttlModeGiven_shouldNotThrow() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(DatabaseConfig.STORAGE, "cosmos");
+    props.setProperty(
+        CoordinatorCleanupOrchestrator.MODE_PROPERTY, CoordinatorCleanupOrchestrator.MODE_TTL);
+
+    StorageFactory storageFactory = mock(StorageFactory.class);
+    when(storageFactory.getStorage()).thenReturn(mock(DistributedStorage.class));
+
+    try (MockedStatic<StorageFactory> storageFactoryStatic = mockStatic(StorageFactory.class)) {
+      storageFactoryStatic
+          .when(() -> StorageFactory.create(any(Properties.class)))
+          .thenReturn(storageFactory);
+
+      // Act & Assert
+      assertThatCode(
+              () ->
+                  CoordinatorCleanupOrchestrator.create(
+                      props, tempDir, createLedgerToken(1000L), createAuditorToken(2000L)))
+          .doesNotThrowAnyException();
+    }
+  }
+
   @Test
   void execute_initialRunGiven_shouldComputeBoundaryScanAndComplete() throws Exception {
     // Arrange
@@ -171,7 +230,11 @@ class CoordinatorCleanupOrchestratorTest {
 
     // Assert
     verify(scanner)
-        .scan(eq(CoordinatorStateAccessor.NAMESPACE), eq(CoordinatorStateAccessor.TABLE), any());
+        .scan(
+            eq(CoordinatorStateAccessor.NAMESPACE),
+            eq(CoordinatorStateAccessor.TABLE),
+            any(),
+            any());
 
     // The boundary (earlier of the two token timestamps) is observable via the persisted state.
     CoordinatorCleanupState state = new CoordinatorCleanupStateManager(tempDir).load();
@@ -196,7 +259,7 @@ class CoordinatorCleanupOrchestratorTest {
 
     // Assert
     verify(scannerFactory, never()).create(any());
-    verify(scanner, never()).scan(any(), any(), any());
+    verify(scanner, never()).scan(any(), any(), any(), any());
   }
 
   @ParameterizedTest
@@ -238,7 +301,10 @@ class CoordinatorCleanupOrchestratorTest {
   void execute_scanFailureGiven_shouldPropagateException() throws Exception {
     // Arrange
     when(scanner.scan(
-            eq(CoordinatorStateAccessor.NAMESPACE), eq(CoordinatorStateAccessor.TABLE), any()))
+            eq(CoordinatorStateAccessor.NAMESPACE),
+            eq(CoordinatorStateAccessor.TABLE),
+            any(),
+            any()))
         .thenThrow(new RuntimeException("Cosmos DB unavailable"));
     CoordinatorCleanupOrchestrator orchestrator =
         newOrchestrator(
@@ -257,7 +323,10 @@ class CoordinatorCleanupOrchestratorTest {
   void execute_scanFailureGiven_shouldNotMarkCompleted() throws Exception {
     // Arrange
     when(scanner.scan(
-            eq(CoordinatorStateAccessor.NAMESPACE), eq(CoordinatorStateAccessor.TABLE), any()))
+            eq(CoordinatorStateAccessor.NAMESPACE),
+            eq(CoordinatorStateAccessor.TABLE),
+            any(),
+            any()))
         .thenThrow(new RuntimeException("Cosmos DB unavailable"));
     CoordinatorCleanupOrchestrator orchestrator =
         newOrchestrator(
@@ -291,7 +360,11 @@ class CoordinatorCleanupOrchestratorTest {
     // Assert
     // The persisted boundary is reused (not recomputed) and the scan runs
     verify(scanner)
-        .scan(eq(CoordinatorStateAccessor.NAMESPACE), eq(CoordinatorStateAccessor.TABLE), any());
+        .scan(
+            eq(CoordinatorStateAccessor.NAMESPACE),
+            eq(CoordinatorStateAccessor.TABLE),
+            any(),
+            any());
     CoordinatorCleanupState state = stateManager.load();
     assertThat(state).isNotNull();
     assertThat(state.getDeletableBeforeMs()).isEqualTo(500L);
@@ -345,7 +418,46 @@ class CoordinatorCleanupOrchestratorTest {
     orchestrator.execute();
 
     // Assert
-    verify(scanner).scan(eq(customNamespace), eq(CoordinatorStateAccessor.TABLE), any());
+    verify(scanner).scan(eq(customNamespace), eq(CoordinatorStateAccessor.TABLE), any(), any());
+  }
+
+  @Test
+  void execute_checkpointDirAndTokensGiven_shouldRunWithThemInsteadOfThoseGivenOnCreation()
+      throws Exception {
+    // Arrange
+    CoordinatorCleanupOrchestrator orchestrator =
+        newOrchestrator(
+            CoordinatorStateAccessor.NAMESPACE,
+            createLedgerToken(1000L),
+            createAuditorToken(1000L));
+    Path cycleDir = tempDir.resolve("cycle-1");
+
+    // Act
+    orchestrator.execute(cycleDir, createLedgerToken(4000L), createAuditorToken(3000L));
+
+    // Assert
+    CoordinatorCleanupState state = new CoordinatorCleanupStateManager(cycleDir).load();
+    assertThat(state).isNotNull();
+    assertThat(state.getDeletableBeforeMs()).isEqualTo(3000L);
+    assertThat(state.isCompleted()).isTrue();
+    assertThat(new CoordinatorCleanupStateManager(tempDir).load()).isNull();
+  }
+
+  @Test
+  void estimateCoordinatorRecordCount_shouldReturnScannerEstimate() throws Exception {
+    // Arrange
+    when(scanner.estimateRecordCount(
+            CoordinatorStateAccessor.NAMESPACE, CoordinatorStateAccessor.TABLE))
+        .thenReturn(42L);
+    CoordinatorCleanupOrchestrator orchestrator =
+        newOrchestrator(CoordinatorStateAccessor.NAMESPACE, null, null);
+
+    // Act
+    long count = orchestrator.estimateCoordinatorRecordCount();
+
+    // Assert
+    assertThat(count).isEqualTo(42L);
+    verify(scanner).close();
   }
 
   @Test
@@ -362,5 +474,6 @@ class CoordinatorCleanupOrchestratorTest {
 
     // Assert
     verify(storage).close();
+    verify(scannerFactory).close();
   }
 }
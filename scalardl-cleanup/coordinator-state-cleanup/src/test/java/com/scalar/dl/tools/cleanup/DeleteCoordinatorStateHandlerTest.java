@@ -3,6 +3,7 @@ package com.scalar.dl.tools.cleanup;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -10,6 +11,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.scalar.db.api.Result;
+import com.scalar.db.transaction.consensuscommit.Attribute;
+import java.util.Arrays;
+import java.util.Collections;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -89,4 +93,52 @@ class DeleteCoordinatorStateHandlerTest {
         .hasMessageContaining("DB unavailable");
     assertThat(handler.getDeletedCount()).isZero();
   }
+
+  @Test
+  void getProjections_shouldReturnColumnsReadByDeletionChecker() {
+    // Act & Assert
+    assertThat(handler.getProjections()).containsExactly(Attribute.CREATED_AT);
+  }
+
+  @Test
+  void handlesPages_bulkDeleterGiven_shouldReturnTrue() {
+    // Arrange
+    when(recordDeleter.isBulk()).thenReturn(true);
+
+    // Act & Assert
+    assertThat(handler.handlesPages()).isTrue();
+  }
+
+  @Test
+  void handlePage_mixedRecordsGiven_shouldDeleteDeletableOnesTogetherAndCount() throws Exception {
+    // Arrange
+    Result deletable1 = mock(Result.class);
+    Result deletable2 = mock(Result.class);
+    Result notDeletable = mock(Result.class);
+    when(deletionChecker.isDeletable(deletable1)).thenReturn(true);
+    when(deletionChecker.isDeletable(deletable2)).thenReturn(true);
+    when(deletionChecker.isDeletable(notDeletable)).thenReturn(false);
+
+    // Act
+    handler.handlePage(Arrays.asList(deletable1, notDeletable, deletable2));
+
+    // Assert
+    verify(recordDeleter).executeAll(Arrays.asList(deletable1, deletable2));
+    verify(recordDeleter, never()).execute(any());
+    assertThat(handler.getDeletedCount()).isEqualTo(2);
+  }
+
+  @Test
+  void handlePage_deleteFailureGiven_shouldPropagateExceptionAndNotCount() throws Exception {
+    // Arrange
+    Result record = mock(Result.class);
+    when(deletionChecker.isDeletable(record)).thenReturn(true);
+    doThrow(new RuntimeException("DB unavailable")).when(recordDeleter).executeAll(anyList());
+
+    // Act & Assert
+    assertThatThrownBy(() -> handler.handlePage(Collections.singletonList(record)))
+        .isInstanceOf(RuntimeException.class)
+        .hasMessageContaining("DB unavailable");
+    assertThat(handler.getDeletedCount()).isZero();
+  }
 }
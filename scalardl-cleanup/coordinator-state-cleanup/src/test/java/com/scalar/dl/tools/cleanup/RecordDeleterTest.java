@@ -5,7 +5,9 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -15,11 +17,16 @@ import com.scalar.db.api.DistributedStorage;
 import com.scalar.db.api.Result;
 import com.scalar.db.exception.storage.ExecutionException;
 import com.scalar.db.io.Key;
+import com.scalar.db.transaction.consensuscommit.Attribute;
 import com.scalar.db.transaction.consensuscommit.CoordinatorStateAccessor;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
+import com.scalar.dl.tools.scan.cosmos.CosmosBulkDeleter;
+import java.util.Arrays;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
 class RecordDeleterTest {
 
@@ -87,4 +94,100 @@ class RecordDeleterTest {
     assertThat(captured.forTable()).hasValue(CoordinatorStateAccessor.TABLE);
     assertThat((Object) captured.getPartitionKey()).isEqualTo(Key.ofText("tx_id", "tx-abc"));
   }
+
+  @Test
+  void execute_requestUnitLimiterGiven_shouldChargeDeleteBeforeDeleting() throws Exception {
+    // Arrange
+    RequestUnitLimiter requestUnitLimiter = mock(RequestUnitLimiter.class);
+    RecordDeleter deleter =
+        new RecordDeleter(storage, CoordinatorStateAccessor.NAMESPACE, requestUnitLimiter);
+
+    // Act
+    deleter.execute(createScanResult("tx1"));
+
+    // Assert
+    InOrder inOrder = inOrder(requestUnitLimiter, storage);
+    inOrder.verify(requestUnitLimiter).chargeDelete();
+    inOrder.verify(storage).delete(any(Delete.class));
+  }
+
+  @Test
+  void executeAll_bulkDeleterGiven_shouldDeleteByTransactionIdsInBulk() throws Exception {
+    // Arrange
+    CosmosBulkDeleter bulkDeleter = mock(CosmosBulkDeleter.class);
+    RecordDeleter deleter =
+        new RecordDeleter(
+            storage,
+            CoordinatorStateAccessor.NAMESPACE,
+            RequestUnitLimiter.unlimited(),
+            bulkDeleter);
+    Result result1 = mock(Result.class);
+    when(result1.getText(Attribute.ID)).thenReturn("tx1");
+    Result result2 = mock(Result.class);
+    when(result2.getText(Attribute.ID)).thenReturn("tx2");
+
+    // Act
+    deleter.executeAll(Arrays.asList(result1, result2));
+
+    // Assert
+    assertThat(deleter.isBulk()).isTrue();
+    verify(bulkDeleter).deleteAll(Arrays.asList("tx1", "tx2"));
+    verify(storage, never()).delete(any(Delete.class));
+  }
+
+  @Test
+  void executeAll_noBulkDeleterGiven_shouldDeleteOneByOne() throws Exception {
+    // Arrange
+    RecordDeleter deleter = new RecordDeleter(storage, CoordinatorStateAccessor.NAMESPACE);
+
+    // Act
+    deleter.executeAll(Arrays.asList(createScanResult("tx1"), createScanResult("tx2")));
+
+    // Assert
+    assertThat(deleter.isBulk()).isFalse();
+    verify(storage, times(2)).delete(any(Delete.class));
+  }
+
+  @Test
+  void isExpiring_expiringBulkDeleterGiven_shouldReturnTrue() {
+    // Arrange
+    CosmosBulkDeleter bulkDeleter = mock(CosmosBulkDeleter.class);
+    when(bulkDeleter.isExpiring()).thenReturn(true);
+    RecordDeleter deleter =
+        new RecordDeleter(
+            storage,
+            CoordinatorStateAccessor.NAMESPACE,
+            RequestUnitLimiter.unlimited(),
+            bulkDeleter);
+
+    // Act & Assert
+    assertThat(deleter.isExpiring()).isTrue();
+  }
+
+  @Test
+  void isExpiring_noBulkDeleterGiven_shouldReturnFalse() {
+    // Arrange
+    RecordDeleter deleter = new RecordDeleter(storage, CoordinatorStateAccessor.NAMESPACE);
+
+    // Act & Assert
+    assertThat(deleter.isExpiring()).isFalse();
+  }
+
+  @Test
+  void close_bulkDeleterGiven_shouldCloseIt() {
+    // Arrange
+    CosmosBulkDeleter bulkDeleter = mock(CosmosBulkDeleter.class);
+    RecordDeleter deleter =
+        new RecordDeleter(
+            storage,
+            CoordinatorStateAccessor.NAMESPACE,
+            RequestUnitLimiter.unlimited(),
+            bulkDeleter);
+
+    // Act
+    deleter.close();
+
+    // Assert
+    verify(bulkDeleter).close();
+  }
 }
@@ -7,6 +7,7 @@ import static org.mockito.Mockito.when;
 
 import com.scalar.db.api.Result;
 import com.scalar.db.transaction.consensuscommit.Attribute;
+import com.scalar.dl.tools.scan.ScanCondition;
 import org.junit.jupiter.api.Test;
 
 class RecordDeletionCheckerTest {
@@ -61,4 +62,11 @@ class RecordDeletionCheckerTest {
     assertThatThrownBy(() -> checker.isDeletable(result))
         .isInstanceOf(IllegalArgumentException.class);
   }
+
+  @Test
+  void getScanConditions_shouldMatchRecordsCreatedBeforeBoundary() {
+    // Act & Assert
+    assertThat(checker.getScanConditions())
+        .containsExactly(ScanCondition.lt(Attribute.CREATED_AT, DELETABLE_BEFORE_MS));
+  }
 }
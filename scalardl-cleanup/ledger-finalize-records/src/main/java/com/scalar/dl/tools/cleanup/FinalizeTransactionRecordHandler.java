@@ -1,9 +1,16 @@
 package com.scalar.dl.tools.cleanup;
 
 import com.scalar.db.api.Result;
+import com.scalar.db.transaction.consensuscommit.Attribute;
 import com.scalar.db.util.ScalarDbUtils;
 import com.scalar.dl.tools.scan.RecordHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,6 +20,10 @@ import org.slf4j.LoggerFactory;
  *
  * <p>For each scanned record it decides whether the record needs finalization ({@link
  * RecordStateChecker}) and, if so, finalizes it via ScalarDB recovery ({@link RecordFinalizer}).
+ *
+ * <p>Given a {@link RecoveryExecutor}, the handler receives whole pages and runs the recoveries of
+ * a page on the executor, returning once all of them have finished, so that a page is checkpointed
+ * only after its records are finalized. Otherwise each record is recovered on the scan thread.
  */
 @ThreadSafe
 public final class FinalizeTransactionRecordHandler implements RecordHandler {
@@ -23,10 +34,20 @@ public final class FinalizeTransactionRecordHandler implements RecordHandler {
   /** The number of finalizations between successive progress log lines. */
   private static final long PROGRESS_LOG_INTERVAL = 100_000L;
 
+  /**
+   * The columns read by {@link RecordStateChecker}, and the transaction ID by which {@link
+   * RecordFinalizer} shares the outcome of a recovery. It otherwise needs only the primary key,
+   * which the scanner always includes.
+   */
+  private static final List<String> PROJECTIONS =
+      Collections.unmodifiableList(
+          Arrays.asList(Attribute.STATE, Attribute.PREPARED_AT, Attribute.ID));
+
   private final RecordStateChecker stateChecker;
   private final RecordFinalizer recordFinalizer;
   private final String namespace;
   private final String tableName;
+  @Nullable private final RecoveryExecutor recoveryExecutor;
   private final AtomicLong finalizedCount = new AtomicLong();
 
   public FinalizeTransactionRecordHandler(
@@ -34,10 +55,24 @@ public final class FinalizeTransactionRecordHandler implements RecordHandler {
       RecordFinalizer recordFinalizer,
       String namespace,
       String tableName) {
+    this(stateChecker, recordFinalizer, namespace, tableName, null);
+  }
+
+  /**
+   * @param recoveryExecutor the executor running the recoveries of each page, or null to recover
+   *     each record on the scan thread
+   */
+  public FinalizeTransactionRecordHandler(
+      RecordStateChecker stateChecker,
+      RecordFinalizer recordFinalizer,
+      String namespace,
+      String tableName,
+      @Nullable RecoveryExecutor recoveryExecutor) {
     this.stateChecker = stateChecker;
     this.recordFinalizer = recordFinalizer;
     this.namespace = namespace;
     this.tableName = tableName;
+    this.recoveryExecutor = recoveryExecutor;
   }
 
   @Override
@@ -49,8 +84,36 @@ public final class FinalizeTransactionRecordHandler implements RecordHandler {
       // The record was not yet recoverable and was skipped, so it was not actually finalized.
       return;
     }
-    long finalized = finalizedCount.incrementAndGet();
-    if (finalized % PROGRESS_LOG_INTERVAL == 0) {
+    countFinalized(1);
+  }
+
+  @Override
+  public boolean handlesPages() {
+    return recoveryExecutor != null;
+  }
+
+  @Override
+  public void handlePage(List<Result> records) throws Exception {
+    if (recoveryExecutor == null) {
+      RecordHandler.super.handlePage(records);
+      return;
+    }
+    List<Callable<Boolean>> recoveries = new ArrayList<>();
+    for (Result record : records) {
+      if (stateChecker.needsFinalization(record)) {
+        recoveries.add(() -> recordFinalizer.execute(namespace, tableName, record));
+      }
+    }
+    if (recoveries.isEmpty()) {
+      return;
+    }
+    // Records not yet recoverable were skipped, so only the recovered ones are counted
+    countFinalized(recoveryExecutor.executeAll(recoveries));
+  }
+
+  private void countFinalized(int count) {
+    long finalized = finalizedCount.addAndGet(count);
+    if (finalized / PROGRESS_LOG_INTERVAL != (finalized - count) / PROGRESS_LOG_INTERVAL) {
       logger.info(
           "Finalized {} records in table {} so far.",
           finalized,
@@ -58,6 +121,11 @@ public final class FinalizeTransactionRecordHandler implements RecordHandler {
     }
   }
 
+  @Override
+  public List<String> getProjections() {
+    return PROJECTIONS;
+  }
+
   /** Returns the number of records finalized so far for this table. */
   public long getFinalizedCount() {
     return finalizedCount.get();
@@ -1,6 +1,7 @@
 package com.scalar.dl.tools.cleanup;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.scalar.db.api.DistributedStorageAdmin;
 import com.scalar.db.api.DistributedTransactionManager;
 import com.scalar.db.api.TableMetadata;
@@ -12,19 +13,34 @@ import com.scalar.db.transaction.consensuscommit.ConsensusCommitConfig;
 import com.scalar.db.transaction.consensuscommit.ConsensusCommitUtils;
 import com.scalar.db.transaction.consensuscommit.CoordinatorStateAccessor;
 import com.scalar.db.util.ScalarDbUtils;
+import com.scalar.dl.tools.common.CheckpointStore;
 import com.scalar.dl.tools.common.CompletionToken;
+import com.scalar.dl.tools.common.FileCheckpointStore;
 import com.scalar.dl.tools.common.LedgerConfigValidator;
+import com.scalar.dl.tools.common.PropertyUtils;
 import com.scalar.dl.tools.common.ScalarDlCleanupError;
 import com.scalar.dl.tools.common.ScalarDlCleanupException;
 import com.scalar.dl.tools.common.StorageValidator;
 import com.scalar.dl.tools.scan.ResumableScanner;
 import com.scalar.dl.tools.scan.ResumableScannerFactory;
+import com.scalar.dl.tools.scan.ScanCondition;
 import com.scalar.dl.tools.scan.ScanResult;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,10 +54,74 @@ import org.slf4j.LoggerFactory;
  *
  * <p>The workflow is resumable: progress is checkpointed per table, so a failure only requires
  * re-invocation with the same checkpoint directory. The start timestamp and the target table set
- * are captured once on the first invocation and reused across resumptions.
+ * are captured once on the first invocation and reused across resumptions. The checkpoints are kept
+ * in the {@link CheckpointStore} selected by {@value CheckpointStore#TYPE_PROPERTY}.
+ *
+ * <p>Several tables are processed at once, up to the number set by {@value
+ * #MAX_CONCURRENT_TABLES_PROPERTY} (4 by default). All of them draw
+ * their scan workers from the single worker budget of the {@link ResumableScannerFactory}, so
+ * processing tables concurrently does not raise the total number of workers; it lets the workers a
+ * small table leaves idle be taken by another table. The tables are started largest first by
+ * estimated record count, so that the largest table does not run alone at the end. Each table is
+ * marked completed and the state persisted under a lock, so a completion is never lost to a
+ * concurrent one.
+ *
+ * <p>A run can be made incremental by passing the completion token of the previous run. The
+ * previous run finalized every record prepared before its guarantee timestamp, and finalizing a
+ * record writes it, so a record that still needs finalization has been written since then. Such a
+ * run therefore only scans the records last written at or after the previous guarantee timestamp
+ * minus a safety margin ({@value #WATERMARK_SAFETY_MARGIN_MS_PROPERTY}, one hour by default), which
+ * absorbs the clock skew between this tool, the Ledger, and the database. The resulting watermark
+ * is persisted with the state, so a resumed run scans the same records.
+ *
+ * <p>The records are recovered on a {@link RecoveryExecutor} shared by all tables, running up to
+ * {@value #RECOVERY_CONCURRENCY_PROPERTY} recoveries at once (32 by default) with up to {@value
+ * #RECOVERY_QUEUE_CAPACITY_PROPERTY} more waiting (1000 by default), rather than one at a time on
+ * each scan worker. Its queue depth and recovery latency are logged as each table completes.
+ *
+ * <p>The recoveries of the records of a transaction, such as an asset record and its
+ * asset_metadata record, share their outcome through a {@link TransactionOutcomeCache} kept for
+ * the run, which remembers up to {@value #TRANSACTION_CACHE_SIZE_PROPERTY} transactions found not
+ * yet recoverable (100,000 by default).
  */
 public final class LedgerFinalizeOrchestrator implements AutoCloseable {
 
+  /** The maximum number of tables processed at once. */
+  public static final String MAX_CONCURRENT_TABLES_PROPERTY =
+      "scalar.dl.tools.ledger_finalize.max_concurrent_tables";
+
+  private static final int DEFAULT_MAX_CONCURRENT_TABLES = 4;
+
+  /**
+   * The margin, in milliseconds, subtracted from the guarantee timestamp of the previous run to
+   * obtain the watermark of an incremental run.
+   */
+  public static final String WATERMARK_SAFETY_MARGIN_MS_PROPERTY =
+      "scalar.dl.tools.ledger_finalize.watermark_safety_margin_ms";
+
+  private static final long DEFAULT_WATERMARK_SAFETY_MARGIN_MS = 60 * 60 * 1000L;
+
+  /** The maximum number of record recoveries running at once across all tables. */
+  public static final String RECOVERY_CONCURRENCY_PROPERTY =
+      "scalar.dl.tools.ledger_finalize.recovery_concurrency";
+
+  private static final int DEFAULT_RECOVERY_CONCURRENCY = 32;
+
+  /**
+   * The maximum number of record recoveries waiting for a thread. A scan worker submitting more
+   * waits until one starts.
+   */
+  public static final String RECOVERY_QUEUE_CAPACITY_PROPERTY =
+      "scalar.dl.tools.ledger_finalize.recovery_queue_capacity";
+
+  private static final int DEFAULT_RECOVERY_QUEUE_CAPACITY = 1000;
+
+  /** The maximum number of transactions found not yet recoverable that a run remembers. */
+  public static final String TRANSACTION_CACHE_SIZE_PROPERTY =
+      "scalar.dl.tools.ledger_finalize.transaction_cache_size";
+
+  private static final int DEFAULT_TRANSACTION_CACHE_SIZE = 100_000;
+
   /** The asset and asset_metadata tables the Ledger schema always has. */
   private static final int MINIMUM_TARGET_TABLE_COUNT = 2;
 
@@ -51,7 +131,14 @@ public final class LedgerFinalizeOrchestrator implements AutoCloseable {
   private final DistributedTransactionManager txManager;
   private final ResumableScannerFactory scannerFactory;
   private final Path checkpointDir;
+  private final CheckpointStore checkpointStore;
   private final String coordinatorNamespace;
+  private final int maxConcurrentTables;
+  @Nullable private final String previousTokenString;
+  private final long watermarkSafetyMarginMs;
+  @Nullable private final RecoveryExecutor recoveryExecutor;
+  private final int transactionCacheSize;
+  private final ReentrantLock stateLock = new ReentrantLock();
 
   @VisibleForTesting
   LedgerFinalizeOrchestrator(
@@ -60,39 +147,158 @@ public final class LedgerFinalizeOrchestrator implements AutoCloseable {
       ResumableScannerFactory scannerFactory,
       Path checkpointDir,
       String coordinatorNamespace) {
+    this(admin, txManager, scannerFactory, checkpointDir, coordinatorNamespace, 1);
+  }
+
+  @VisibleForTesting
+  LedgerFinalizeOrchestrator(
+      DistributedStorageAdmin admin,
+      DistributedTransactionManager txManager,
+      ResumableScannerFactory scannerFactory,
+      Path checkpointDir,
+      String coordinatorNamespace,
+      int maxConcurrentTables) {
+    this(
+        admin,
+        txManager,
+        scannerFactory,
+        checkpointDir,
+        coordinatorNamespace,
+        maxConcurrentTables,
+        null,
+        DEFAULT_WATERMARK_SAFETY_MARGIN_MS,
+        new FileCheckpointStore());
+  }
+
+  @VisibleForTesting
+  LedgerFinalizeOrchestrator(
+      DistributedStorageAdmin admin,
+      DistributedTransactionManager txManager,
+      ResumableScannerFactory scannerFactory,
+      Path checkpointDir,
+      String coordinatorNamespace,
+      int maxConcurrentTables,
+      @Nullable String previousTokenString,
+      long watermarkSafetyMarginMs,
+      CheckpointStore checkpointStore) {
+    this(
+        admin,
+        txManager,
+        scannerFactory,
+        checkpointDir,
+        coordinatorNamespace,
+        maxConcurrentTables,
+        previousTokenString,
+        watermarkSafetyMarginMs,
+        checkpointStore,
+        null,
+        DEFAULT_TRANSACTION_CACHE_SIZE);
+  }
+
+  @VisibleForTesting
+  LedgerFinalizeOrchestrator(
+      DistributedStorageAdmin admin,
+      DistributedTransactionManager txManager,
+      ResumableScannerFactory scannerFactory,
+      Path checkpointDir,
+      String coordinatorNamespace,
+      int maxConcurrentTables,
+      @Nullable String previousTokenString,
+      long watermarkSafetyMarginMs,
+      CheckpointStore checkpointStore,
+      @Nullable RecoveryExecutor recoveryExecutor,
+      int transactionCacheSize) {
     this.admin = admin;
     this.txManager = txManager;
     this.scannerFactory = scannerFactory;
     this.checkpointDir = checkpointDir;
+    this.checkpointStore = checkpointStore;
     this.coordinatorNamespace = coordinatorNamespace;
+    this.maxConcurrentTables = maxConcurrentTables;
+    this.previousTokenString = previousTokenString;
+    this.watermarkSafetyMarginMs = watermarkSafetyMarginMs;
+    this.recoveryExecutor = recoveryExecutor;
+    this.transactionCacheSize = transactionCacheSize;
   }
 
   /**
-   * Creates an orchestrator.
+   * Creates an orchestrator for a full sweep.
    *
    * @param props the properties used by the ScalarDL Ledger
    * @param checkpointDir root directory for checkpoint state
    * @return a new orchestrator instance
    * @throws ScalarDlCleanupException if the configuration is not supported
+   * @throws IllegalArgumentException if {@value #MAX_CONCURRENT_TABLES_PROPERTY}, {@value
+   *     #RECOVERY_CONCURRENCY_PROPERTY}, {@value #RECOVERY_QUEUE_CAPACITY_PROPERTY}, or {@value
+   *     #TRANSACTION_CACHE_SIZE_PROPERTY} is not a positive integer
    */
   public static LedgerFinalizeOrchestrator create(Properties props, Path checkpointDir) {
+    return create(props, checkpointDir, null);
+  }
+
+  /**
+   * Creates an orchestrator.
+   *
+   * @param props the properties used by the ScalarDL Ledger
+   * @param checkpointDir root directory for checkpoint state
+   * @param previousTokenString the completion token of the previous run, to scan only the records
+   *     written since then, or null for a full sweep
+   * @return a new orchestrator instance
+   * @throws ScalarDlCleanupException if the configuration is not supported
+   * @throws IllegalArgumentException if {@value #MAX_CONCURRENT_TABLES_PROPERTY}, {@value
+   *     #RECOVERY_CONCURRENCY_PROPERTY}, {@value #RECOVERY_QUEUE_CAPACITY_PROPERTY}, or {@value
+   *     #TRANSACTION_CACHE_SIZE_PROPERTY} is not a positive integer or {@value
+   *     #WATERMARK_SAFETY_MARGIN_MS_PROPERTY} is not a non-negative integer
+   */
+  public static LedgerFinalizeOrchestrator create(
+      Properties props, Path checkpointDir, @Nullable String previousTokenString) {
     DistributedStorageAdmin admin = null;
     DistributedTransactionManager txManager = null;
+    CheckpointStore checkpointStore = null;
+    RecoveryExecutor recoveryExecutor = null;
     try {
       DatabaseConfig databaseConfig = new DatabaseConfig(props);
       StorageValidator.validate(databaseConfig);
       LedgerConfigValidator.validate(databaseConfig);
+      int maxConcurrentTables =
+          PropertyUtils.getPositiveIntProperty(
+              props, MAX_CONCURRENT_TABLES_PROPERTY, DEFAULT_MAX_CONCURRENT_TABLES);
+      int recoveryConcurrency =
+          PropertyUtils.getPositiveIntProperty(
+              props, RECOVERY_CONCURRENCY_PROPERTY, DEFAULT_RECOVERY_CONCURRENCY);
+      int recoveryQueueCapacity =
+          PropertyUtils.getPositiveIntProperty(
+              props, RECOVERY_QUEUE_CAPACITY_PROPERTY, DEFAULT_RECOVERY_QUEUE_CAPACITY);
+      int transactionCacheSize =
+          PropertyUtils.getPositiveIntProperty(
+              props, TRANSACTION_CACHE_SIZE_PROPERTY, DEFAULT_TRANSACTION_CACHE_SIZE);
+      long watermarkSafetyMarginMs = getWatermarkSafetyMarginMs(props);
       StorageFactory storageFactory = StorageFactory.create(props);
       admin = storageFactory.getStorageAdmin();
       txManager = TransactionFactory.create(props).getTransactionManager();
-      ResumableScannerFactory scannerFactory = new ResumableScannerFactory(databaseConfig);
+      checkpointStore = CheckpointStore.create(props);
+      ResumableScannerFactory scannerFactory =
+          new ResumableScannerFactory(databaseConfig, checkpointStore);
+      recoveryExecutor = new RecoveryExecutor(recoveryConcurrency, recoveryQueueCapacity);
       return new LedgerFinalizeOrchestrator(
           admin,
           txManager,
           scannerFactory,
           checkpointDir,
-          resolveCoordinatorNamespace(databaseConfig));
+          resolveCoordinatorNamespace(databaseConfig),
+          maxConcurrentTables,
+          previousTokenString,
+          watermarkSafetyMarginMs,
+          checkpointStore,
+          recoveryExecutor,
+          transactionCacheSize);
     } catch (Exception e) {
+      if (recoveryExecutor != null) {
+        recoveryExecutor.close();
+      }
+      if (checkpointStore != null) {
+        checkpointStore.close();
+      }
       if (txManager != null) {
         txManager.close();
       }
@@ -111,18 +317,52 @@ public final class LedgerFinalizeOrchestrator implements AutoCloseable {
    * @throws Exception if any table processing or state persistence fails
    */
   public String execute() throws Exception {
-    LedgerFinalizeStateManager stateManager = new LedgerFinalizeStateManager(checkpointDir);
-    LedgerFinalizeState state = loadOrInitializeState(stateManager);
+    return execute(checkpointDir, previousTokenString);
+  }
+
+  /**
+   * Executes the full orchestration workflow with the given checkpoint directory and previous
+   * completion token instead of those given on creation. A long-running process runs successive
+   * runs this way, each with its own checkpoint directory, on the clients of a single orchestrator.
+   *
+   * @param checkpointDir root directory for the checkpoint state of this run
+   * @param previousTokenString the completion token of the previous run, to scan only the records
+   *     written since then, or null for a full sweep
+   * @return the base64url-encoded completion token
+   * @throws Exception if any table processing or state persistence fails
+   */
+  public String execute(Path checkpointDir, @Nullable String previousTokenString)
+      throws Exception {
+    LedgerFinalizeStateManager stateManager =
+        new LedgerFinalizeStateManager(checkpointStore, checkpointDir);
+    LedgerFinalizeState state = loadOrInitializeState(stateManager, previousTokenString);
 
     long startedAtMs = state.getStartedAtMs();
     RecordStateChecker stateChecker = new RecordStateChecker(startedAtMs);
+    // The outcomes are relative to the start of the run, so they are not shared across runs
+    TransactionOutcomeCache outcomeCache = new TransactionOutcomeCache(transactionCacheSize);
+    List<ScanCondition> scanConditions = new ArrayList<>(stateChecker.getScanConditions());
+    if (state.getWatermarkMs() != null) {
+      scanConditions.add(ScanCondition.writtenAtOrAfter(state.getWatermarkMs()));
+    }
 
+    List<String> pendingTables = new ArrayList<>();
     for (String qualifiedTable : state.getTableList()) {
       if (state.getCompletedTables().contains(qualifiedTable)) {
         logger.info("Skipping already completed table: {}", qualifiedTable);
         continue;
       }
-      processTable(stateManager, state, qualifiedTable, stateChecker);
+      pendingTables.add(qualifiedTable);
+    }
+
+    if (maxConcurrentTables > 1 && pendingTables.size() > 1) {
+      processTablesConcurrently(
+          stateManager, state, pendingTables, stateChecker, outcomeCache, scanConditions);
+    } else {
+      for (String qualifiedTable : pendingTables) {
+        processTable(
+            stateManager, state, qualifiedTable, stateChecker, outcomeCache, scanConditions);
+      }
     }
 
     String completionToken =
@@ -135,10 +375,15 @@ public final class LedgerFinalizeOrchestrator implements AutoCloseable {
    * Loads persisted state if available; otherwise captures the start timestamp, discovers all
    * transactional tables via the Admin API, and persists the initial state.
    */
-  private LedgerFinalizeState loadOrInitializeState(LedgerFinalizeStateManager stateManager)
+  private LedgerFinalizeState loadOrInitializeState(
+      LedgerFinalizeStateManager stateManager, @Nullable String previousTokenString)
       throws Exception {
     LedgerFinalizeState state = stateManager.load();
     if (state != null) {
+      // The watermark is fixed on the first invocation, so that a retry scans the same records.
+      if (previousTokenString != null) {
+        logger.warn("A checkpoint already exists; the specified previous token is ignored.");
+      }
       logger.info(
           "Found existing checkpoint data; resuming the previous run started at {}. "
               + "{} of {} target tables have already been processed.",
@@ -155,16 +400,65 @@ public final class LedgerFinalizeOrchestrator implements AutoCloseable {
       throw new ScalarDlCleanupException(
           ScalarDlCleanupError.TOO_FEW_TARGET_TABLES, tableNames.size());
     }
-    state = new LedgerFinalizeState(startedAtMs, tableNames);
+    Long watermarkMs =
+        previousTokenString == null ? null : resolveWatermark(previousTokenString);
+    state = new LedgerFinalizeState(startedAtMs, tableNames, null, watermarkMs);
     stateManager.persist(state);
     logger.info(
         "Starting a new run at {}. {} target tables were found: {}",
         Instant.ofEpochMilli(startedAtMs),
         tableNames.size(),
         tableNames);
+    if (watermarkMs != null) {
+      logger.info(
+          "Only the records written at or after {} are scanned.",
+          Instant.ofEpochMilli(watermarkMs));
+    }
     return state;
   }
 
+  /**
+   * Parses and validates the completion token of the previous run, then returns the watermark
+   * derived from its guarantee timestamp.
+   */
+  private long resolveWatermark(String tokenString) {
+    CompletionToken token = CompletionToken.decode(tokenString);
+    if (token.getServerType() != CompletionToken.ServerType.LEDGER) {
+      throw new ScalarDlCleanupException(
+          ScalarDlCleanupError.LEDGER_TOKEN_WRONG_SERVER_TYPE, token.getServerType());
+    }
+    logger.info(
+        "Previous completion token parsed: the previous run started at {}",
+        Instant.ofEpochMilli(token.getStartedAtMs()));
+    return Math.max(0, token.getStartedAtMs() - watermarkSafetyMarginMs);
+  }
+
+  private static long getWatermarkSafetyMarginMs(Properties props) {
+    String value = props.getProperty(WATERMARK_SAFETY_MARGIN_MS_PROPERTY);
+    if (value == null) {
+      return DEFAULT_WATERMARK_SAFETY_MARGIN_MS;
+    }
+    long parsed;
+    try {
+      parsed = Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          "The property '"
+              + WATERMARK_SAFETY_MARGIN_MS_PROPERTY
+              + "' must be a valid integer: "
+              + value,
+          e);
+    }
+    if (parsed < 0) {
+      throw new IllegalArgumentException(
+          "The property '"
+              + WATERMARK_SAFETY_MARGIN_MS_PROPERTY
+              + "' must be a non-negative integer: "
+              + parsed);
+    }
+    return parsed;
+  }
+
   /** Resolves the namespace of the coordinator table. */
   private static String resolveCoordinatorNamespace(DatabaseConfig dbConfig) {
     return new ConsensusCommitConfig(dbConfig)
@@ -206,6 +500,128 @@ public final class LedgerFinalizeOrchestrator implements AutoCloseable {
     return ConsensusCommitUtils.isTransactionTableMetadata(metadata);
   }
 
+  /**
+   * Processes the given tables with up to {@code maxConcurrentTables} of them at once, largest
+   * first. Once a table fails, no further table is started; the tables already running are left to
+   * finish so that their progress is checkpointed, and the first failure is then thrown with the
+   * others suppressed.
+   */
+  private void processTablesConcurrently(
+      LedgerFinalizeStateManager stateManager,
+      LedgerFinalizeState state,
+      List<String> pendingTables,
+      RecordStateChecker stateChecker,
+      TransactionOutcomeCache outcomeCache,
+      List<ScanCondition> scanConditions)
+      throws Exception {
+    List<String> orderedTables = orderLargestFirst(stateManager, pendingTables);
+    int threadCount = Math.min(maxConcurrentTables, orderedTables.size());
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threadCount,
+            new ThreadFactoryBuilder()
+                .setNameFormat("ledger-finalize-table-%d")
+                .setDaemon(true)
+                .build());
+    CompletionService<String> completionService = new ExecutorCompletionService<>(executor);
+    Iterator<String> remaining = orderedTables.iterator();
+    Exception failure = null;
+    int running = 0;
+    try {
+      while (running < threadCount && remaining.hasNext()) {
+        submitTable(
+            completionService,
+            stateManager,
+            state,
+            remaining.next(),
+            stateChecker,
+            outcomeCache,
+            scanConditions);
+        running++;
+      }
+      while (running > 0) {
+        Future<String> completed = completionService.take();
+        running--;
+        try {
+          completed.get();
+        } catch (java.util.concurrent.ExecutionException e) {
+          Exception cause = toException(e.getCause());
+          if (failure == null) {
+            failure = cause;
+          } else {
+            failure.addSuppressed(cause);
+          }
+        }
+        if (failure == null && remaining.hasNext()) {
+          submitTable(
+              completionService,
+              stateManager,
+              state,
+              remaining.next(),
+              stateChecker,
+              outcomeCache,
+              scanConditions);
+          running++;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void submitTable(
+      CompletionService<String> completionService,
+      LedgerFinalizeStateManager stateManager,
+      LedgerFinalizeState state,
+      String qualifiedTable,
+      RecordStateChecker stateChecker,
+      TransactionOutcomeCache outcomeCache,
+      List<ScanCondition> scanConditions) {
+    completionService.submit(
+        () -> {
+          processTable(
+              stateManager, state, qualifiedTable, stateChecker, outcomeCache, scanConditions);
+          return qualifiedTable;
+        });
+  }
+
+  private static Exception toException(Throwable cause) {
+    if (cause instanceof Exception) {
+      return (Exception) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new RuntimeException(cause);
+  }
+
+  /**
+   * Returns the given tables sorted by their estimated record counts in descending order. Tables
+   * whose count cannot be estimated are placed last in their original order.
+   */
+  private List<String> orderLargestFirst(
+      LedgerFinalizeStateManager stateManager, List<String> tables) throws Exception {
+    Map<String, Long> estimates = new LinkedHashMap<>();
+    try (ResumableScanner scanner = scannerFactory.create(stateManager.getStateDir())) {
+      for (String qualifiedTable : tables) {
+        String[] parts = qualifiedTable.split("\\.", 2);
+        estimates.put(qualifiedTable, scanner.estimateRecordCount(parts[0], parts[1]));
+      }
+    }
+    List<String> ordered = new ArrayList<>(tables);
+    ordered.sort(Comparator.comparingLong((String table) -> estimates.get(table)).reversed());
+    logger.info(
+        "Processing {} tables with up to {} at once, largest first. "
+            + "Estimated record counts (-1 if unknown): {}",
+        ordered.size(),
+        maxConcurrentTables,
+        estimates);
+    return ordered;
+  }
+
   /**
    * Scans a single table using a resumable scanner, finalizes non-terminal records via the {@link
    * RecordFinalizer} for recovery, and marks the table as completed in the checkpoint state.
@@ -214,7 +630,9 @@ public final class LedgerFinalizeOrchestrator implements AutoCloseable {
       LedgerFinalizeStateManager stateManager,
       LedgerFinalizeState state,
       String qualifiedTable,
-      RecordStateChecker stateChecker)
+      RecordStateChecker stateChecker,
+      TransactionOutcomeCache outcomeCache,
+      List<ScanCondition> scanConditions)
       throws Exception {
     Path scanCheckpointDir = stateManager.getStateDir();
     String[] parts = qualifiedTable.split("\\.", 2);
@@ -225,10 +643,15 @@ public final class LedgerFinalizeOrchestrator implements AutoCloseable {
 
     FinalizeTransactionRecordHandler handler =
         new FinalizeTransactionRecordHandler(
-            stateChecker, new RecordFinalizer(txManager), namespace, tableName);
+            stateChecker,
+            new RecordFinalizer(txManager, outcomeCache),
+            namespace,
+            tableName,
+            recoveryExecutor);
 
     try (ResumableScanner scanner = scannerFactory.create(scanCheckpointDir)) {
-      ScanResult scanResult = scanner.scan(namespace, tableName, handler);
+      ScanResult scanResult =
+          scanner.scan(namespace, tableName, scanConditions, handler);
 
       logger.info(
           "Finished processing the table: {}. {} records were scanned, {} records were finalized.",
@@ -236,9 +659,29 @@ public final class LedgerFinalizeOrchestrator implements AutoCloseable {
           scanResult.getTotalScanned(),
           handler.getFinalizedCount());
     }
+    if (recoveryExecutor != null) {
+      logger.info(
+          "Recoveries so far: {} finished, average latency {} ms, max latency {} ms, "
+              + "{} queued now, at most {} queued at once.",
+          recoveryExecutor.getCompletedCount(),
+          String.format("%.1f", recoveryExecutor.getAverageLatencyMillis()),
+          recoveryExecutor.getMaxLatencyMillis(),
+          recoveryExecutor.getQueueDepth(),
+          recoveryExecutor.getMaxQueueDepth());
+    }
+    logger.info(
+        "Records skipped so far because their transaction was not yet recoverable: {}. "
+            + "Recoveries that waited for another record of the same transaction: {}.",
+        outcomeCache.getSkippedCount(),
+        outcomeCache.getCollapsedCount());
 
-    state.markTableCompleted(qualifiedTable);
-    stateManager.persist(state);
+    stateLock.lock();
+    try {
+      state.markTableCompleted(qualifiedTable);
+      stateManager.persist(state);
+    } finally {
+      stateLock.unlock();
+    }
   }
 
   /**
@@ -247,6 +690,18 @@ public final class LedgerFinalizeOrchestrator implements AutoCloseable {
    */
   @Override
   public void close() {
+    if (recoveryExecutor != null) {
+      try {
+        recoveryExecutor.close();
+      } catch (Exception e) {
+        logger.warn("Failed to close RecoveryExecutor.", e);
+      }
+    }
+    try {
+      scannerFactory.close();
+    } catch (Exception e) {
+      logger.warn("Failed to close ResumableScannerFactory.", e);
+    }
     try {
       admin.close();
     } catch (Exception e) {
@@ -257,5 +712,10 @@ public final class LedgerFinalizeOrchestrator implements AutoCloseable {
     } catch (Exception e) {
       logger.warn("Failed to close DistributedTransactionManager.", e);
     }
+    try {
+      checkpointStore.close();
+    } catch (Exception e) {
+      logger.warn("Failed to close CheckpointStore.", e);
+    }
   }
 }
@@ -7,6 +7,7 @@ import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /** Checkpoint state for {@code ledger-finalize-records}. Stored as {@code state.json}. */
 public final class LedgerFinalizeState {
@@ -20,20 +21,38 @@ public final class LedgerFinalizeState {
   @JsonProperty("completed_tables")
   private final Set<String> completedTables;
 
-  /** Creates an initial state with no completed tables. */
+  @Nullable
+  @JsonProperty("watermark_ms")
+  private final Long watermarkMs;
+
+  /** Creates an initial state with no completed tables for a full sweep. */
   public LedgerFinalizeState(long startedAtMs, List<String> tableList) {
-    this(startedAtMs, tableList, null);
+    this(startedAtMs, tableList, null, null);
+  }
+
+  /** Creates a state for a full sweep. */
+  public LedgerFinalizeState(
+      long startedAtMs, List<String> tableList, List<String> completedTables) {
+    this(startedAtMs, tableList, completedTables, null);
   }
 
+  /**
+   * Creates a state.
+   *
+   * @param completedTables the tables already processed, or null if none
+   * @param watermarkMs the time from which records are scanned, or null for a full sweep
+   */
   @JsonCreator
   public LedgerFinalizeState(
       @JsonProperty("started_at_ms") long startedAtMs,
       @JsonProperty("table_list") List<String> tableList,
-      @JsonProperty("completed_tables") List<String> completedTables) {
+      @JsonProperty("completed_tables") List<String> completedTables,
+      @JsonProperty("watermark_ms") @Nullable Long watermarkMs) {
     this.startedAtMs = startedAtMs;
     this.tableList = tableList != null ? new ArrayList<>(tableList) : new ArrayList<>();
     this.completedTables =
         completedTables != null ? new LinkedHashSet<>(completedTables) : new LinkedHashSet<>();
+    this.watermarkMs = watermarkMs;
   }
 
   public long getStartedAtMs() {
@@ -48,6 +67,15 @@ public final class LedgerFinalizeState {
     return Collections.unmodifiableSet(completedTables);
   }
 
+  /**
+   * Returns the time, in milliseconds since the epoch, from which this run scans records by their
+   * last write time, or null if this run is a full sweep.
+   */
+  @Nullable
+  public Long getWatermarkMs() {
+    return watermarkMs;
+  }
+
   public void markTableCompleted(String qualifiedTableName) {
     completedTables.add(qualifiedTableName);
   }
@@ -3,21 +3,38 @@ package com.scalar.dl.tools.cleanup;
 import com.scalar.db.api.DistributedTransactionManager;
 import com.scalar.db.api.Result;
 import com.scalar.db.io.Key;
+import com.scalar.db.transaction.consensuscommit.Attribute;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Finalizes non-terminal records by triggering ScalarDB recovery. */
+/**
+ * Finalizes non-terminal records by triggering ScalarDB recovery.
+ *
+ * <p>Given a {@link TransactionOutcomeCache}, the recoveries of the records of a transaction share
+ * their outcome through it, keyed by the {@code tx_id} of the record.
+ */
 @ThreadSafe
 public final class RecordFinalizer {
 
   private static final Logger logger = LoggerFactory.getLogger(RecordFinalizer.class);
 
   private final DistributedTransactionManager manager;
+  @Nullable private final TransactionOutcomeCache outcomeCache;
 
   public RecordFinalizer(DistributedTransactionManager manager) {
+    this(manager, null);
+  }
+
+  /**
+   * @param outcomeCache the cache sharing the outcomes of the recoveries of a transaction, or null
+   *     to recover every record on its own
+   */
+  public RecordFinalizer(
+      DistributedTransactionManager manager, @Nullable TransactionOutcomeCache outcomeCache) {
     this.manager = manager;
+    this.outcomeCache = outcomeCache;
   }
 
   /**
@@ -41,7 +58,12 @@ public final class RecordFinalizer {
     // expired, so it may still be in flight). The coordinator state for such a record is created
     // only after this tool's start time, so it is not a target of coordinator-state-cleanup, which
     // deletes states created before this tool's start time. We can therefore skip it.
-    boolean recovered = manager.recoverRecord(namespace, tableName, partitionKey, clusteringKey);
+    boolean recovered =
+        outcomeCache == null
+            ? manager.recoverRecord(namespace, tableName, partitionKey, clusteringKey)
+            : outcomeCache.recover(
+                result.getText(Attribute.ID),
+                () -> manager.recoverRecord(namespace, tableName, partitionKey, clusteringKey));
     if (!recovered) {
       logger.debug(
           "Record not yet recoverable (writer may still be in flight); skipping."
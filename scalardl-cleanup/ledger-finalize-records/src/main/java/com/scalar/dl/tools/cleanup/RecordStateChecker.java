@@ -2,7 +2,11 @@ package com.scalar.dl.tools.cleanup;
 
 import com.scalar.db.api.Result;
 import com.scalar.db.api.TransactionState;
+import com.scalar.db.transaction.consensuscommit.Attribute;
 import com.scalar.db.transaction.consensuscommit.TransactionResult;
+import com.scalar.dl.tools.scan.ScanCondition;
+import java.util.Arrays;
+import java.util.List;
 
 /** Checks ConsensusCommit transaction state to determine if a record needs finalization. */
 public final class RecordStateChecker {
@@ -25,4 +29,15 @@ public final class RecordStateChecker {
     }
     return txResult.getPreparedAt() < guaranteeTimestamp;
   }
+
+  /**
+   * Returns scan conditions matching the records for which {@link #needsFinalization(Result)} may
+   * return {@code true}, so that committed and aborted records are filtered out by the database.
+   */
+  public List<ScanCondition> getScanConditions() {
+    return Arrays.asList(
+        ScanCondition.in(
+            Attribute.STATE, TransactionState.PREPARED.get(), TransactionState.DELETED.get()),
+        ScanCondition.lt(Attribute.PREPARED_AT, guaranteeTimestamp));
+  }
 }
@@ -0,0 +1,213 @@
+package com.scalar.dl.tools.cleanup;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Runs record recoveries on a dedicated, bounded pool of threads shared by every table of a run.
+ *
+ * <p>A recovery looks the coordinator state up and may write the record, so running one per scan
+ * worker at a time leaves a table with many PREPARED records bound by the recovery latency. The
+ * scan workers instead hand the recoveries of a page to {@link #executeAll}, which runs up to
+ * {@code concurrency} of them at once and returns once all of them have finished, so that the page
+ * is only checkpointed after its records are finalized. At most {@code queueCapacity} recoveries
+ * wait for a thread; a scan worker submitting more blocks until one starts, which keeps the scan
+ * from running ahead of the recoveries.
+ *
+ * <p>The number of waiting recoveries and the latency of the finished ones are tracked and can be
+ * read at any time, for example to be logged once a table is processed.
+ */
+@ThreadSafe
+public final class RecoveryExecutor implements AutoCloseable {
+
+  private final ExecutorService executor;
+  private final Semaphore queueSlots;
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final AtomicInteger maxQueueDepth = new AtomicInteger();
+  private final AtomicLong completedCount = new AtomicLong();
+  private final AtomicLong totalLatencyNanos = new AtomicLong();
+  private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+  /**
+   * @param concurrency the maximum number of recoveries running at once
+   * @param queueCapacity the maximum number of recoveries waiting for a thread
+   */
+  public RecoveryExecutor(int concurrency, int queueCapacity) {
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("concurrency must be positive: " + concurrency);
+    }
+    if (queueCapacity <= 0) {
+      throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+    }
+    this.executor =
+        Executors.newFixedThreadPool(
+            concurrency,
+            new ThreadFactoryBuilder().setNameFormat("record-recovery-%d").setDaemon(true).build());
+    this.queueSlots = new Semaphore(queueCapacity);
+  }
+
+  /**
+   * Runs the given recoveries and waits for all of them to finish, even once one of them has
+   * failed, so that no recovery of a page is still running when the failure is propagated.
+   *
+   * @param recoveries the recoveries of a page, each returning whether its record was finalized
+   * @return the number of recoveries that returned true
+   * @throws Exception the first exception thrown by a recovery, with the others suppressed
+   * @throws InterruptedException if the calling thread is interrupted; the recoveries not yet
+   *     finished are then cancelled
+   */
+  public int executeAll(List<Callable<Boolean>> recoveries) throws Exception {
+    List<QueuedRecovery> queued = new ArrayList<>(recoveries.size());
+    List<Future<Boolean>> futures = new ArrayList<>(recoveries.size());
+    try {
+      for (Callable<Boolean> recovery : recoveries) {
+        QueuedRecovery queuedRecovery = enqueue(recovery);
+        queued.add(queuedRecovery);
+        futures.add(submit(queuedRecovery));
+      }
+      int succeeded = 0;
+      Exception failure = null;
+      for (Future<Boolean> future : futures) {
+        try {
+          if (future.get()) {
+            succeeded++;
+          }
+        } catch (ExecutionException e) {
+          Exception cause = toException(e.getCause());
+          if (failure == null) {
+            failure = cause;
+          } else {
+            failure.addSuppressed(cause);
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return succeeded;
+    } catch (InterruptedException e) {
+      for (Future<Boolean> future : futures) {
+        future.cancel(true);
+      }
+      // A cancelled recovery that never started would otherwise keep its queue slot
+      for (QueuedRecovery queuedRecovery : queued) {
+        queuedRecovery.leaveQueue();
+      }
+      throw e;
+    }
+  }
+
+  private QueuedRecovery enqueue(Callable<Boolean> recovery) throws InterruptedException {
+    queueSlots.acquire();
+    maxQueueDepth.accumulateAndGet(queueDepth.incrementAndGet(), Math::max);
+    return new QueuedRecovery(recovery);
+  }
+
+  private Future<Boolean> submit(QueuedRecovery queuedRecovery) {
+    try {
+      return executor.submit(queuedRecovery);
+    } catch (RejectedExecutionException e) {
+      queuedRecovery.leaveQueue();
+      throw new IllegalStateException("The recovery executor is already closed", e);
+    }
+  }
+
+  private void recordLatency(long latencyNanos) {
+    completedCount.incrementAndGet();
+    totalLatencyNanos.addAndGet(latencyNanos);
+    maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+  }
+
+  private static Exception toException(Throwable cause) {
+    if (cause instanceof Exception) {
+      return (Exception) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new RuntimeException(cause);
+  }
+
+  /** A recovery holding a queue slot until it starts running or is abandoned. */
+  private final class QueuedRecovery implements Callable<Boolean> {
+    private final Callable<Boolean> recovery;
+    private final AtomicBoolean queued = new AtomicBoolean(true);
+
+    private QueuedRecovery(Callable<Boolean> recovery) {
+      this.recovery = recovery;
+    }
+
+    /** Releases the queue slot of this recovery, unless it was already released. */
+    void leaveQueue() {
+      if (queued.compareAndSet(true, false)) {
+        queueDepth.decrementAndGet();
+        queueSlots.release();
+      }
+    }
+
+    @Override
+    public Boolean call() throws Exception {
+      leaveQueue();
+      long startNanos = System.nanoTime();
+      try {
+        return recovery.call();
+      } finally {
+        recordLatency(System.nanoTime() - startNanos);
+      }
+    }
+  }
+
+  /** Returns the number of recoveries currently waiting for a thread. */
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  /** Returns the largest number of recoveries that have waited for a thread at once. */
+  public int getMaxQueueDepth() {
+    return maxQueueDepth.get();
+  }
+
+  /** Returns the number of recoveries finished so far, successfully or not. */
+  public long getCompletedCount() {
+    return completedCount.get();
+  }
+
+  /** Returns the average latency of the finished recoveries in milliseconds, or 0 if none. */
+  public double getAverageLatencyMillis() {
+    long completed = completedCount.get();
+    if (completed == 0) {
+      return 0;
+    }
+    return (double) totalLatencyNanos.get() / completed / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  /** Returns the latency of the slowest finished recovery in milliseconds, or 0 if none. */
+  public long getMaxLatencyMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+  }
+
+  @VisibleForTesting
+  boolean isShutdown() {
+    return executor.isShutdown();
+  }
+
+  /** Stops the threads. Recoveries still running are interrupted. */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
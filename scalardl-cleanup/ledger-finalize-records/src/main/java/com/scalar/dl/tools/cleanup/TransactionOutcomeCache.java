@@ -0,0 +1,280 @@
+package com.scalar.dl.tools.cleanup;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Shares the outcome of recovering a record with the other records of the same transaction, keyed
+ * by {@code tx_id}.
+ *
+ * <p>A transaction usually leaves several PREPARED records, such as an asset record and its
+ * asset_metadata record. Recovering them at the same time makes each look the coordinator state up
+ * and race to write it, so the recoveries of a transaction are collapsed: while one is running, the
+ * others wait for its outcome. If the transaction turned out not to be recoverable yet, the waiting
+ * records are skipped, and so are the records of that transaction scanned later in the run, for the
+ * same reason {@link RecordFinalizer} skips the first one. Otherwise each record still has to be
+ * recovered itself, since recovery rolls the record forward or back, but the coordinator state is
+ * then already resolved.
+ *
+ * <p>The transactions found not yet recoverable are remembered up to a capacity, evicting the least
+ * recently used. To keep the memory compact, a transaction is remembered by the 128-bit hash of its
+ * ID in primitive arrays rather than by its ID, so an entry takes 32 bytes.
+ */
+@ThreadSafe
+public final class TransactionOutcomeCache {
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private static final int NONE = -1;
+
+  private final int capacity;
+  private final ReentrantLock lock = new ReentrantLock();
+
+  // The entries are the slots of these arrays, linked from the most to the least recently used
+  private final long[] hashHighs;
+  private final long[] hashLows;
+  private final int[] previousSlots;
+  private final int[] nextSlots;
+
+  // A linear probing index from the hash of a transaction to its slot plus one, or 0 if empty
+  private final int[] buckets;
+  private final int bucketMask;
+
+  private int size;
+  private int mostRecentSlot = NONE;
+  private int leastRecentSlot = NONE;
+
+  private final ConcurrentMap<String, CompletableFuture<Boolean>> inFlightRecoveries =
+      new ConcurrentHashMap<>();
+  private final AtomicLong skippedCount = new AtomicLong();
+  private final AtomicLong collapsedCount = new AtomicLong();
+
+  /**
+   * @param capacity the maximum number of transactions found not yet recoverable to remember
+   */
+  public TransactionOutcomeCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    this.hashHighs = new long[capacity];
+    this.hashLows = new long[capacity];
+    this.previousSlots = new int[capacity];
+    this.nextSlots = new int[capacity];
+    // At most half of the buckets are used, so that probe sequences stay short
+    int bucketCount = Integer.highestOneBit(capacity * 2 - 1) << 1;
+    this.buckets = new int[bucketCount];
+    this.bucketMask = bucketCount - 1;
+  }
+
+  /**
+   * Runs the recovery of a record of the given transaction, unless the transaction is known not to
+   * be recoverable yet. If a record of the same transaction is being recovered, waits for its
+   * outcome first.
+   *
+   * @param transactionId the {@code tx_id} of the record, or null to run the recovery as is
+   * @param recovery the recovery of the record, returning whether the record was finalized
+   * @return the result of the recovery, or false if it was skipped
+   * @throws Exception if the recovery fails
+   */
+  public boolean recover(@Nullable String transactionId, Callable<Boolean> recovery)
+      throws Exception {
+    if (transactionId == null) {
+      return recovery.call();
+    }
+    long[] hash = hash(transactionId);
+    if (containsNotRecoverable(hash[0], hash[1])) {
+      skippedCount.incrementAndGet();
+      return false;
+    }
+    CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+    CompletableFuture<Boolean> running = inFlightRecoveries.putIfAbsent(transactionId, outcome);
+    if (running != null) {
+      collapsedCount.incrementAndGet();
+      try {
+        if (!running.get()) {
+          skippedCount.incrementAndGet();
+          return false;
+        }
+      } catch (ExecutionException e) {
+        // The other recovery failed, so this record is recovered on its own
+      }
+      return recovery.call();
+    }
+    try {
+      boolean recovered = recovery.call();
+      if (!recovered) {
+        addNotRecoverable(hash[0], hash[1]);
+      }
+      outcome.complete(recovered);
+      return recovered;
+    } catch (Exception | Error e) {
+      outcome.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlightRecoveries.remove(transactionId, outcome);
+    }
+  }
+
+  /** Returns the number of records skipped because their transaction was not yet recoverable. */
+  public long getSkippedCount() {
+    return skippedCount.get();
+  }
+
+  /** Returns the number of recoveries that waited for another record of the same transaction. */
+  public long getCollapsedCount() {
+    return collapsedCount.get();
+  }
+
+  /** Returns the number of transactions currently remembered as not yet recoverable. */
+  public int size() {
+    lock.lock();
+    try {
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static long[] hash(String transactionId) {
+    ByteBuffer bytes =
+        ByteBuffer.wrap(HASH_FUNCTION.hashString(transactionId, StandardCharsets.UTF_8).asBytes());
+    return new long[] {bytes.getLong(0), bytes.getLong(Long.BYTES)};
+  }
+
+  @VisibleForTesting
+  boolean containsNotRecoverable(String transactionId) {
+    long[] hash = hash(transactionId);
+    return containsNotRecoverable(hash[0], hash[1]);
+  }
+
+  private boolean containsNotRecoverable(long high, long low) {
+    lock.lock();
+    try {
+      int bucket = findBucket(high, low);
+      if (buckets[bucket] == 0) {
+        return false;
+      }
+      moveToMostRecent(buckets[bucket] - 1);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void addNotRecoverable(long high, long low) {
+    lock.lock();
+    try {
+      int bucket = findBucket(high, low);
+      if (buckets[bucket] != 0) {
+        moveToMostRecent(buckets[bucket] - 1);
+        return;
+      }
+      int slot;
+      if (size < capacity) {
+        slot = size++;
+      } else {
+        slot = leastRecentSlot;
+        unlink(slot);
+        removeBucket(findBucket(hashHighs[slot], hashLows[slot]));
+        // Removing a bucket may shift the bucket found for the new entry
+        bucket = findBucket(high, low);
+      }
+      hashHighs[slot] = high;
+      hashLows[slot] = low;
+      buckets[bucket] = slot + 1;
+      linkAsMostRecent(slot);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns the bucket holding the given hash, or the empty bucket where it would be inserted. */
+  private int findBucket(long high, long low) {
+    int bucket = homeBucket(low);
+    while (buckets[bucket] != 0) {
+      int slot = buckets[bucket] - 1;
+      if (hashHighs[slot] == high && hashLows[slot] == low) {
+        return bucket;
+      }
+      bucket = (bucket + 1) & bucketMask;
+    }
+    return bucket;
+  }
+
+  private int homeBucket(long low) {
+    return (int) low & bucketMask;
+  }
+
+  /**
+   * Empties the given bucket and shifts the following entries of the probe sequence back, so that
+   * every entry stays reachable from its home bucket.
+   */
+  private void removeBucket(int bucket) {
+    int hole = bucket;
+    buckets[hole] = 0;
+    int current = hole;
+    while (true) {
+      current = (current + 1) & bucketMask;
+      if (buckets[current] == 0) {
+        return;
+      }
+      int home = homeBucket(hashLows[buckets[current] - 1]);
+      // The entry stays unless its home bucket lies cyclically outside of (hole, current]
+      boolean reachable =
+          hole <= current ? hole < home && home <= current : hole < home || home <= current;
+      if (!reachable) {
+        buckets[hole] = buckets[current];
+        buckets[current] = 0;
+        hole = current;
+      }
+    }
+  }
+
+  private void moveToMostRecent(int slot) {
+    if (slot == mostRecentSlot) {
+      return;
+    }
+    unlink(slot);
+    linkAsMostRecent(slot);
+  }
+
+  private void unlink(int slot) {
+    int previous = previousSlots[slot];
+    int next = nextSlots[slot];
+    if (previous == NONE) {
+      mostRecentSlot = next;
+    } else {
+      nextSlots[previous] = next;
+    }
+    if (next == NONE) {
+      leastRecentSlot = previous;
+    } else {
+      previousSlots[next] = previous;
+    }
+  }
+
+  private void linkAsMostRecent(int slot) {
+    previousSlots[slot] = NONE;
+    nextSlots[slot] = mostRecentSlot;
+    if (mostRecentSlot != NONE) {
+      previousSlots[mostRecentSlot] = slot;
+    }
+    mostRecentSlot = slot;
+    if (leastRecentSlot == NONE) {
+      leastRecentSlot = slot;
+    }
+  }
+}
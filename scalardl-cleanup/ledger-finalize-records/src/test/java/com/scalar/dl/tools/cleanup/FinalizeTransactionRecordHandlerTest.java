@@ -11,6 +11,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.scalar.db.api.Result;
+import com.scalar.db.transaction.consensuscommit.Attribute;
+import java.util.Arrays;
+import java.util.Collections;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -114,4 +117,70 @@ class FinalizeTransactionRecordHandlerTest {
         .hasMessageContaining("recovery failed");
     assertThat(handler.getFinalizedCount()).isZero();
   }
+
+  @Test
+  void handlesPages_noRecoveryExecutorGiven_shouldReturnFalse() {
+    // Act & Assert
+    assertThat(handler.handlesPages()).isFalse();
+  }
+
+  @Test
+  void handlePage_recoveryExecutorGiven_shouldRecoverNonTerminalRecordsOnExecutor()
+      throws Exception {
+    // Arrange
+    Result recoverable = mock(Result.class);
+    Result notYetRecoverable = mock(Result.class);
+    Result terminal = mock(Result.class);
+    when(stateChecker.needsFinalization(recoverable)).thenReturn(true);
+    when(stateChecker.needsFinalization(notYetRecoverable)).thenReturn(true);
+    when(stateChecker.needsFinalization(terminal)).thenReturn(false);
+    when(recordFinalizer.execute(NAMESPACE, TABLE, recoverable)).thenReturn(true);
+    when(recordFinalizer.execute(NAMESPACE, TABLE, notYetRecoverable)).thenReturn(false);
+
+    try (RecoveryExecutor recoveryExecutor = new RecoveryExecutor(2, 10)) {
+      FinalizeTransactionRecordHandler pageHandler =
+          new FinalizeTransactionRecordHandler(
+              stateChecker, recordFinalizer, NAMESPACE, TABLE, recoveryExecutor);
+
+      // Act
+      pageHandler.handlePage(Arrays.asList(recoverable, terminal, notYetRecoverable));
+
+      // Assert
+      assertThat(pageHandler.handlesPages()).isTrue();
+      verify(recordFinalizer).execute(NAMESPACE, TABLE, recoverable);
+      verify(recordFinalizer).execute(NAMESPACE, TABLE, notYetRecoverable);
+      verify(recordFinalizer, never()).execute(NAMESPACE, TABLE, terminal);
+      assertThat(pageHandler.getFinalizedCount()).isEqualTo(1);
+      assertThat(recoveryExecutor.getCompletedCount()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  void handlePage_recoveryFailureGiven_shouldPropagateExceptionAndNotCount() throws Exception {
+    // Arrange
+    Result record = mock(Result.class);
+    when(stateChecker.needsFinalization(record)).thenReturn(true);
+    doThrow(new RuntimeException("recovery failed"))
+        .when(recordFinalizer)
+        .execute(NAMESPACE, TABLE, record);
+
+    try (RecoveryExecutor recoveryExecutor = new RecoveryExecutor(1, 10)) {
+      FinalizeTransactionRecordHandler pageHandler =
+          new FinalizeTransactionRecordHandler(
+              stateChecker, recordFinalizer, NAMESPACE, TABLE, recoveryExecutor);
+
+      // Act & Assert
+      assertThatThrownBy(() -> pageHandler.handlePage(Collections.singletonList(record)))
+          .isInstanceOf(RuntimeException.class)
+          .hasMessageContaining("recovery failed");
+      assertThat(pageHandler.getFinalizedCount()).isZero();
+    }
+  }
+
+  @Test
+  void getProjections_shouldReturnColumnsReadByStateCheckerAndTransactionId() {
+    // Act & Assert
+    assertThat(handler.getProjections())
+        .containsExactly(Attribute.STATE, Attribute.PREPARED_AT, Attribute.ID);
+  }
 }
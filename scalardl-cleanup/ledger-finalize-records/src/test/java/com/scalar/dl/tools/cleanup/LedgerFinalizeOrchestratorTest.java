@@ -23,19 +23,26 @@ import com.scalar.db.service.TransactionFactory;
 import com.scalar.db.transaction.consensuscommit.ConsensusCommitUtils;
 import com.scalar.db.transaction.consensuscommit.CoordinatorStateAccessor;
 import com.scalar.dl.tools.common.CompletionToken;
+import com.scalar.dl.tools.common.FileCheckpointStore;
 import com.scalar.dl.tools.common.ScalarDlCleanupException;
 import com.scalar.dl.tools.scan.ResumableScanner;
 import com.scalar.dl.tools.scan.ResumableScannerFactory;
+import com.scalar.dl.tools.scan.ScanCondition;
 import com.scalar.dl.tools.scan.ScanResult;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.MockedStatic;
 
 @SuppressWarnings("resource")
@@ -50,6 +57,8 @@ class LedgerFinalizeOrchestratorTest {
   private static final TableMetadata TRANSACTION_TABLE_METADATA =
       ConsensusCommitUtils.buildTransactionTableMetadata(USER_TABLE_METADATA);
 
+  private static final long WATERMARK_SAFETY_MARGIN_MS = 60_000L;
+
   @TempDir Path tempDir;
 
   private DistributedStorageAdmin admin;
@@ -76,6 +85,36 @@ class LedgerFinalizeOrchestratorTest {
         admin, txManager, scannerFactory, tempDir, coordinatorNamespace);
   }
 
+  private LedgerFinalizeOrchestrator newConcurrentOrchestrator(int maxConcurrentTables) {
+    return new LedgerFinalizeOrchestrator(
+        admin,
+        txManager,
+        scannerFactory,
+        tempDir,
+        CoordinatorStateAccessor.NAMESPACE,
+        maxConcurrentTables);
+  }
+
+  private LedgerFinalizeOrchestrator newIncrementalOrchestrator(String previousToken) {
+    return new LedgerFinalizeOrchestrator(
+        admin,
+        txManager,
+        scannerFactory,
+        tempDir,
+        CoordinatorStateAccessor.NAMESPACE,
+        1,
+        previousToken,
+        WATERMARK_SAFETY_MARGIN_MS,
+        new FileCheckpointStore());
+  }
+
+  private void givenTwoTables() throws Exception {
+    when(admin.getNamespaceNames()).thenReturn(new HashSet<>(Collections.singletonList("ns1")));
+    when(admin.getNamespaceTableNames("ns1"))
+        .thenReturn(new LinkedHashSet<>(Arrays.asList("tbl1", "tbl2")));
+    when(scanner.scan(anyString(), anyString(), any(), any())).thenReturn(new ScanResult(1));
+  }
+
   @Test
   void create_nonCosmosStorageGiven_shouldThrowScalarDlCleanupException() {
     // Arrange
@@ -130,6 +169,58 @@ class LedgerFinalizeOrchestratorTest {
     }
   }
 
+  @Test
+  void create_invalidMaxConcurrentTablesGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(DatabaseConfig.STORAGE, "cosmos");
+    props.setProperty(LedgerFinalizeOrchestrator.MAX_CONCURRENT_TABLES_PROPERTY, "0");
+
+    // Act & Assert
+    assertThatThrownBy(() -> LedgerFinalizeOrchestrator.create(props, tempDir))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(LedgerFinalizeOrchestrator.MAX_CONCURRENT_TABLES_PROPERTY);
+  }
+
+  @Test
+  void create_invalidRecoveryConcurrencyGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(DatabaseConfig.STORAGE, "cosmos");
+    props.setProperty(LedgerFinalizeOrchestrator.RECOVERY_CONCURRENCY_PROPERTY, "0");
+
+    // Act & Assert
+    assertThatThrownBy(() -> LedgerFinalizeOrchestrator.create(props, tempDir))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(LedgerFinalizeOrchestrator.RECOVERY_CONCURRENCY_PROPERTY);
+  }
+
+  @Test
+  void create_invalidRecoveryQueueCapacityGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(DatabaseConfig.STORAGE, "cosmos");
+    props.setProperty(LedgerFinalizeOrchestrator.RECOVERY_QUEUE_CAPACITY_PROPERTY, "abc");
+
+    // Act & Assert
+    assertThatThrownBy(() -> LedgerFinalizeOrchestrator.create(props, tempDir))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(LedgerFinalizeOrchestrator.RECOVERY_QUEUE_CAPACITY_PROPERTY);
+  }
+
+  @Test
+  void create_negativeWatermarkSafetyMarginGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(DatabaseConfig.STORAGE, "cosmos");
+    props.setProperty(LedgerFinalizeOrchestrator.WATERMARK_SAFETY_MARGIN_MS_PROPERTY, "-1");
+
+    // Act & Assert
+    assertThatThrownBy(() -> LedgerFinalizeOrchestrator.create(props, tempDir, null))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(LedgerFinalizeOrchestrator.WATERMARK_SAFETY_MARGIN_MS_PROPERTY);
+  }
+
   @Test
   void execute_initialRunGiven_shouldDiscoverTablesScanAndReturnToken() throws Exception {
     // Arrange
@@ -138,7 +229,7 @@ class LedgerFinalizeOrchestratorTest {
         .thenReturn(new HashSet<>(Collections.singletonList("tbl1")));
     when(admin.getNamespaceTableNames("ns2"))
         .thenReturn(new HashSet<>(Collections.singletonList("tbl2")));
-    when(scanner.scan(anyString(), anyString(), any())).thenReturn(new ScanResult(10));
+    when(scanner.scan(anyString(), anyString(), any(), any())).thenReturn(new ScanResult(10));
 
     LedgerFinalizeOrchestrator orchestrator = newOrchestrator();
 
@@ -153,8 +244,8 @@ class LedgerFinalizeOrchestratorTest {
     assertThat(token.getStartedAtMs()).isBetween(before, after);
 
     // Each discovered table is scanned and the scanner is closed per table.
-    verify(scanner).scan(eq("ns1"), eq("tbl1"), any());
-    verify(scanner).scan(eq("ns2"), eq("tbl2"), any());
+    verify(scanner).scan(eq("ns1"), eq("tbl1"), any(), any());
+    verify(scanner).scan(eq("ns2"), eq("tbl2"), any(), any());
     verify(scanner, times(2)).close();
 
     LedgerFinalizeState state = new LedgerFinalizeStateManager(tempDir).load();
@@ -173,7 +264,7 @@ class LedgerFinalizeOrchestratorTest {
         .thenReturn(new HashSet<>(Collections.singletonList(CoordinatorStateAccessor.TABLE)));
     when(admin.getNamespaceTableNames("ns1"))
         .thenReturn(new HashSet<>(Arrays.asList("tbl1", "tbl2")));
-    when(scanner.scan(anyString(), anyString(), any())).thenReturn(new ScanResult(10));
+    when(scanner.scan(anyString(), anyString(), any(), any())).thenReturn(new ScanResult(10));
 
     LedgerFinalizeOrchestrator orchestrator = newOrchestrator();
 
@@ -181,9 +272,13 @@ class LedgerFinalizeOrchestratorTest {
     orchestrator.execute();
 
     // Assert
-    verify(scanner).scan(eq("ns1"), eq("tbl1"), any());
+    verify(scanner).scan(eq("ns1"), eq("tbl1"), any(), any());
     verify(scanner, never())
-        .scan(eq(CoordinatorStateAccessor.NAMESPACE), eq(CoordinatorStateAccessor.TABLE), any());
+        .scan(
+            eq(CoordinatorStateAccessor.NAMESPACE),
+            eq(CoordinatorStateAccessor.TABLE),
+            any(),
+            any());
   }
 
   @Test
@@ -197,7 +292,7 @@ class LedgerFinalizeOrchestratorTest {
         .thenReturn(new HashSet<>(Collections.singletonList(CoordinatorStateAccessor.TABLE)));
     when(admin.getNamespaceTableNames("ns1"))
         .thenReturn(new HashSet<>(Arrays.asList("tbl1", "tbl2")));
-    when(scanner.scan(anyString(), anyString(), any())).thenReturn(new ScanResult(10));
+    when(scanner.scan(anyString(), anyString(), any(), any())).thenReturn(new ScanResult(10));
 
     LedgerFinalizeOrchestrator orchestrator = newOrchestrator(customNamespace);
 
@@ -205,8 +300,9 @@ class LedgerFinalizeOrchestratorTest {
     orchestrator.execute();
 
     // Assert
-    verify(scanner).scan(eq("ns1"), eq("tbl1"), any());
-    verify(scanner, never()).scan(eq(customNamespace), eq(CoordinatorStateAccessor.TABLE), any());
+    verify(scanner).scan(eq("ns1"), eq("tbl1"), any(), any());
+    verify(scanner, never())
+        .scan(eq(customNamespace), eq(CoordinatorStateAccessor.TABLE), any(), any());
   }
 
   @Test
@@ -216,7 +312,7 @@ class LedgerFinalizeOrchestratorTest {
     when(admin.getNamespaceTableNames("ns1"))
         .thenReturn(new LinkedHashSet<>(Arrays.asList("tbl1", "tbl2", "contract")));
     when(admin.getTableMetadata("ns1", "contract")).thenReturn(USER_TABLE_METADATA);
-    when(scanner.scan(anyString(), anyString(), any())).thenReturn(new ScanResult(10));
+    when(scanner.scan(anyString(), anyString(), any(), any())).thenReturn(new ScanResult(10));
 
     LedgerFinalizeOrchestrator orchestrator = newOrchestrator();
 
@@ -224,8 +320,8 @@ class LedgerFinalizeOrchestratorTest {
     orchestrator.execute();
 
     // Assert
-    verify(scanner).scan(eq("ns1"), eq("tbl1"), any());
-    verify(scanner, never()).scan(eq("ns1"), eq("contract"), any());
+    verify(scanner).scan(eq("ns1"), eq("tbl1"), any(), any());
+    verify(scanner, never()).scan(eq("ns1"), eq("contract"), any(), any());
 
     LedgerFinalizeState state = new LedgerFinalizeStateManager(tempDir).load();
     assertThat(state).isNotNull();
@@ -247,7 +343,7 @@ class LedgerFinalizeOrchestratorTest {
         .isInstanceOf(IllegalStateException.class)
         .hasMessageContaining("ns1.tbl1");
 
-    verify(scanner, never()).scan(anyString(), anyString(), any());
+    verify(scanner, never()).scan(anyString(), anyString(), any(), any());
     assertThat(new LedgerFinalizeStateManager(tempDir).load()).isNull();
   }
 
@@ -263,7 +359,7 @@ class LedgerFinalizeOrchestratorTest {
         .isInstanceOf(ScalarDlCleanupException.class)
         .hasMessageContaining("asset_metadata");
 
-    verify(scanner, never()).scan(anyString(), anyString(), any());
+    verify(scanner, never()).scan(anyString(), anyString(), any(), any());
     assertThat(new LedgerFinalizeStateManager(tempDir).load()).isNull();
   }
 
@@ -279,7 +375,7 @@ class LedgerFinalizeOrchestratorTest {
     // Act & Assert
     assertThatThrownBy(orchestrator::execute).isInstanceOf(ScalarDlCleanupException.class);
 
-    verify(scanner, never()).scan(anyString(), anyString(), any());
+    verify(scanner, never()).scan(anyString(), anyString(), any(), any());
     assertThat(new LedgerFinalizeStateManager(tempDir).load()).isNull();
   }
 
@@ -290,8 +386,8 @@ class LedgerFinalizeOrchestratorTest {
     // The failing table is processed first, so the exception surfaces before the other one.
     when(admin.getNamespaceTableNames("ns1"))
         .thenReturn(new LinkedHashSet<>(Arrays.asList("tbl1", "tbl2")));
-    when(scanner.scan(anyString(), anyString(), any())).thenReturn(new ScanResult(10));
-    when(scanner.scan(eq("ns1"), eq("tbl1"), any()))
+    when(scanner.scan(anyString(), anyString(), any(), any())).thenReturn(new ScanResult(10));
+    when(scanner.scan(eq("ns1"), eq("tbl1"), any(), any()))
         .thenThrow(new RuntimeException("Cosmos DB unavailable"));
 
     LedgerFinalizeOrchestrator orchestrator = newOrchestrator();
@@ -313,8 +409,8 @@ class LedgerFinalizeOrchestratorTest {
         .thenReturn(new HashSet<>(Collections.singletonList("tbl1")));
     when(admin.getNamespaceTableNames("ns2"))
         .thenReturn(new HashSet<>(Collections.singletonList("tbl2")));
-    when(scanner.scan(eq("ns1"), eq("tbl1"), any())).thenReturn(new ScanResult(10));
-    when(scanner.scan(eq("ns2"), eq("tbl2"), any()))
+    when(scanner.scan(eq("ns1"), eq("tbl1"), any(), any())).thenReturn(new ScanResult(10));
+    when(scanner.scan(eq("ns2"), eq("tbl2"), any(), any()))
         .thenThrow(new RuntimeException("Cosmos DB unavailable"));
 
     LedgerFinalizeOrchestrator orchestrator = newOrchestrator();
@@ -340,7 +436,7 @@ class LedgerFinalizeOrchestratorTest {
             startedAtMs,
             Arrays.asList("ns1.tbl1", "ns2.tbl2"),
             Collections.singletonList("ns1.tbl1")));
-    when(scanner.scan(anyString(), anyString(), any())).thenReturn(new ScanResult(5));
+    when(scanner.scan(anyString(), anyString(), any(), any())).thenReturn(new ScanResult(5));
 
     LedgerFinalizeOrchestrator orchestrator = newOrchestrator();
 
@@ -349,12 +445,110 @@ class LedgerFinalizeOrchestratorTest {
 
     // Assert
     // The completed table is skipped; only the remaining table is scanned.
-    verify(scanner, never()).scan(eq("ns1"), eq("tbl1"), any());
-    verify(scanner).scan(eq("ns2"), eq("tbl2"), any());
+    verify(scanner, never()).scan(eq("ns1"), eq("tbl1"), any(), any());
+    verify(scanner).scan(eq("ns2"), eq("tbl2"), any(), any());
     // The original start timestamp is carried over across the resume.
     assertThat(CompletionToken.decode(token).getStartedAtMs()).isEqualTo(startedAtMs);
   }
 
+  @Test
+  void execute_concurrentTablesGiven_shouldStartTablesLargestFirst() throws Exception {
+    // Arrange
+    when(admin.getNamespaceNames()).thenReturn(new HashSet<>(Collections.singletonList("ns1")));
+    when(admin.getNamespaceTableNames("ns1"))
+        .thenReturn(new LinkedHashSet<>(Arrays.asList("small", "unknown", "large")));
+    when(scanner.estimateRecordCount("ns1", "small")).thenReturn(10L);
+    when(scanner.estimateRecordCount("ns1", "unknown"))
+        .thenReturn(ResumableScanner.UNKNOWN_RECORD_COUNT);
+    when(scanner.estimateRecordCount("ns1", "large")).thenReturn(1000L);
+    List<String> started = Collections.synchronizedList(new ArrayList<>());
+    when(scanner.scan(anyString(), anyString(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              started.add(invocation.getArgument(1));
+              return new ScanResult(10);
+            });
+
+    LedgerFinalizeOrchestrator orchestrator = newConcurrentOrchestrator(2);
+
+    // Act
+    orchestrator.execute();
+
+    // Assert
+    // The two largest tables start first; the table without an estimate waits for a free slot.
+    assertThat(started).hasSize(3);
+    assertThat(started.subList(0, 2)).containsExactlyInAnyOrder("large", "small");
+    assertThat(started.get(2)).isEqualTo("unknown");
+  }
+
+  @Test
+  void execute_concurrentTablesGiven_shouldMarkAllTablesCompleted() throws Exception {
+    // Arrange
+    when(admin.getNamespaceNames()).thenReturn(new HashSet<>(Collections.singletonList("ns1")));
+    when(admin.getNamespaceTableNames("ns1"))
+        .thenReturn(new LinkedHashSet<>(Arrays.asList("tbl1", "tbl2", "tbl3", "tbl4")));
+    CountDownLatch allStarted = new CountDownLatch(4);
+    when(scanner.scan(anyString(), anyString(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              allStarted.countDown();
+              // Every table runs at once, so their completions are recorded concurrently.
+              assertThat(allStarted.await(10, TimeUnit.SECONDS)).isTrue();
+              return new ScanResult(10);
+            });
+
+    LedgerFinalizeOrchestrator orchestrator = newConcurrentOrchestrator(4);
+
+    // Act
+    orchestrator.execute();
+
+    // Assert
+    LedgerFinalizeState state = new LedgerFinalizeStateManager(tempDir).load();
+    assertThat(state).isNotNull();
+    assertThat(state.getCompletedTables())
+        .containsExactlyInAnyOrder("ns1.tbl1", "ns1.tbl2", "ns1.tbl3", "ns1.tbl4");
+  }
+
+  @Test
+  void execute_concurrentScanFailureGiven_shouldNotStartFurtherTables() throws Exception {
+    // Arrange
+    when(admin.getNamespaceNames()).thenReturn(new HashSet<>(Collections.singletonList("ns1")));
+    when(admin.getNamespaceTableNames("ns1"))
+        .thenReturn(new LinkedHashSet<>(Arrays.asList("tbl1", "tbl2", "tbl3")));
+    when(scanner.estimateRecordCount("ns1", "tbl1")).thenReturn(30L);
+    when(scanner.estimateRecordCount("ns1", "tbl2")).thenReturn(20L);
+    when(scanner.estimateRecordCount("ns1", "tbl3")).thenReturn(10L);
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    CountDownLatch failing = new CountDownLatch(1);
+    when(scanner.scan(anyString(), anyString(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              bothStarted.countDown();
+              assertThat(bothStarted.await(10, TimeUnit.SECONDS)).isTrue();
+              if (invocation.getArgument(1).equals("tbl1")) {
+                failing.countDown();
+                throw new RuntimeException("Cosmos DB unavailable");
+              }
+              // Finish after the failure so that it is seen before a slot frees up.
+              assertThat(failing.await(10, TimeUnit.SECONDS)).isTrue();
+              Thread.sleep(100);
+              return new ScanResult(10);
+            });
+
+    LedgerFinalizeOrchestrator orchestrator = newConcurrentOrchestrator(2);
+
+    // Act & Assert
+    assertThatThrownBy(orchestrator::execute)
+        .isInstanceOf(RuntimeException.class)
+        .hasMessageContaining("Cosmos DB unavailable");
+
+    // The table running alongside the failed one finishes and is recorded; the last is not started.
+    verify(scanner, never()).scan(eq("ns1"), eq("tbl3"), any(), any());
+    LedgerFinalizeState state = new LedgerFinalizeStateManager(tempDir).load();
+    assertThat(state).isNotNull();
+    assertThat(state.getCompletedTables()).containsExactly("ns1.tbl2");
+  }
+
   @Test
   void close_shouldCloseAdminAndTxManager() {
     // Arrange
@@ -366,5 +560,115 @@ class LedgerFinalizeOrchestratorTest {
     // Assert
     verify(admin).close();
     verify(txManager).close();
+    verify(scannerFactory).close();
+  }
+
+  @Test
+  void execute_fullSweepGiven_shouldNotLimitScanByWriteTime() throws Exception {
+    // Arrange
+    givenTwoTables();
+
+    // Act
+    newOrchestrator().execute();
+
+    // Assert
+    ArgumentCaptor<List<ScanCondition>> conditions = conditionsCaptor();
+    verify(scanner, times(2)).scan(eq("ns1"), anyString(), conditions.capture(), any());
+    assertThat(conditions.getAllValues())
+        .allSatisfy(
+            value ->
+                assertThat(value)
+                    .extracting(ScanCondition::getColumn)
+                    .doesNotContain(ScanCondition.LAST_WRITTEN_AT));
+    assertThat(new LedgerFinalizeStateManager(tempDir).load().getWatermarkMs()).isNull();
+  }
+
+  @Test
+  void execute_previousTokenGiven_shouldScanOnlyRecordsWrittenSinceWatermark() throws Exception {
+    // Arrange
+    givenTwoTables();
+    long previousStartedAtMs = 1_700_000_000_000L;
+    String previousToken =
+        CompletionToken.create(CompletionToken.ServerType.LEDGER, previousStartedAtMs).encode();
+    long watermarkMs = previousStartedAtMs - WATERMARK_SAFETY_MARGIN_MS;
+
+    // Act
+    newIncrementalOrchestrator(previousToken).execute();
+
+    // Assert
+    ArgumentCaptor<List<ScanCondition>> conditions = conditionsCaptor();
+    verify(scanner, times(2)).scan(eq("ns1"), anyString(), conditions.capture(), any());
+    assertThat(conditions.getAllValues())
+        .allSatisfy(
+            value -> assertThat(value).contains(ScanCondition.writtenAtOrAfter(watermarkMs)));
+    assertThat(new LedgerFinalizeStateManager(tempDir).load().getWatermarkMs())
+        .isEqualTo(watermarkMs);
+  }
+
+  @Test
+  void execute_auditorTokenGivenAsPreviousToken_shouldThrowScalarDlCleanupException()
+      throws Exception {
+    // Arrange
+    givenTwoTables();
+    String auditorToken =
+        CompletionToken.create(CompletionToken.ServerType.AUDITOR, 1_000L).encode();
+    LedgerFinalizeOrchestrator orchestrator = newIncrementalOrchestrator(auditorToken);
+
+    // Act & Assert
+    assertThatThrownBy(orchestrator::execute)
+        .isInstanceOf(ScalarDlCleanupException.class)
+        .hasMessageContaining("wrong server type");
+    verify(scanner, never()).scan(anyString(), anyString(), any(), any());
+  }
+
+  @Test
+  void execute_resumedStateWithWatermarkGiven_shouldKeepPersistedWatermark() throws Exception {
+    // Arrange
+    long watermarkMs = 500L;
+    new LedgerFinalizeStateManager(tempDir)
+        .persist(
+            new LedgerFinalizeState(
+                1000L, Arrays.asList("ns1.tbl1", "ns1.tbl2"), null, watermarkMs));
+    when(scanner.scan(anyString(), anyString(), any(), any())).thenReturn(new ScanResult(1));
+    String otherToken =
+        CompletionToken.create(CompletionToken.ServerType.LEDGER, 900_000L).encode();
+
+    // Act
+    newIncrementalOrchestrator(otherToken).execute();
+
+    // Assert
+    ArgumentCaptor<List<ScanCondition>> conditions = conditionsCaptor();
+    verify(scanner, times(2)).scan(eq("ns1"), anyString(), conditions.capture(), any());
+    assertThat(conditions.getAllValues())
+        .allSatisfy(
+            value -> assertThat(value).contains(ScanCondition.writtenAtOrAfter(watermarkMs)));
+  }
+
+  @Test
+  void execute_successiveRunsGiven_shouldRunEachInItsCheckpointDirSinceThePreviousToken()
+      throws Exception {
+    // Arrange
+    givenTwoTables();
+    LedgerFinalizeOrchestrator orchestrator = newIncrementalOrchestrator(null);
+    Path firstDir = tempDir.resolve("cycle-0");
+    Path secondDir = tempDir.resolve("cycle-1");
+
+    // Act
+    String firstToken = orchestrator.execute(firstDir, null);
+    orchestrator.execute(secondDir, firstToken);
+
+    // Assert
+    long watermarkMs =
+        CompletionToken.decode(firstToken).getStartedAtMs() - WATERMARK_SAFETY_MARGIN_MS;
+    assertThat(new LedgerFinalizeStateManager(firstDir).load().getWatermarkMs()).isNull();
+    assertThat(new LedgerFinalizeStateManager(secondDir).load().getWatermarkMs())
+        .isEqualTo(watermarkMs);
+    assertThat(new LedgerFinalizeStateManager(tempDir).load()).isNull();
+    verify(scanner, times(4)).scan(eq("ns1"), anyString(), any(), any());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ArgumentCaptor<List<ScanCondition>> conditionsCaptor() {
+    return ArgumentCaptor.forClass((Class<List<ScanCondition>>) (Class<?>) List.class);
   }
 }
@@ -76,4 +76,30 @@ class LedgerFinalizeStateTest {
     assertThat(deserialized.getTableList()).isEqualTo(original.getTableList());
     assertThat(deserialized.getCompletedTables()).isEqualTo(original.getCompletedTables());
   }
+
+  @Test
+  void jsonRoundTrip_watermarkGiven_shouldPreserveWatermark() throws Exception {
+    // Arrange
+    LedgerFinalizeState original =
+        new LedgerFinalizeState(1745000000000L, Collections.singletonList("ns.t1"), null, 500L);
+
+    // Act
+    String json = mapper.writeValueAsString(original);
+    LedgerFinalizeState deserialized = mapper.readValue(json, LedgerFinalizeState.class);
+
+    // Assert
+    assertThat(deserialized.getWatermarkMs()).isEqualTo(500L);
+  }
+
+  @Test
+  void jsonDeserialization_stateWithoutWatermarkGiven_shouldBeFullSweep() throws Exception {
+    // Arrange
+    String json = "{\"started_at_ms\":1000,\"table_list\":[\"ns.t1\"],\"completed_tables\":[]}";
+
+    // Act
+    LedgerFinalizeState state = mapper.readValue(json, LedgerFinalizeState.class);
+
+    // Assert
+    assertThat(state.getWatermarkMs()).isNull();
+  }
 }
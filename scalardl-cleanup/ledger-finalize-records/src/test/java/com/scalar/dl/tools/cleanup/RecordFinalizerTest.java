@@ -13,6 +13,7 @@ import static org.mockito.Mockito.when;
 import com.scalar.db.api.DistributedTransactionManager;
 import com.scalar.db.api.Result;
 import com.scalar.db.io.Key;
+import com.scalar.db.transaction.consensuscommit.Attribute;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -135,4 +136,50 @@ class RecordFinalizerTest {
     assertThat((Object) pkCaptor.getValue()).isEqualTo(Key.ofText("id", "pk1"));
     assertThat((Object) ckCaptor.getValue()).isEqualTo(Key.ofInt("age", 20));
   }
+
+  @Test
+  void execute_outcomeCacheGiven_shouldSkipRecordsOfTransactionNotYetRecoverable()
+      throws Exception {
+    // Arrange
+    when(manager.recoverRecord(eq("ns"), eq("tbl"), any(Key.class), nullable(Key.class)))
+        .thenReturn(false);
+    RecordFinalizer finalizer = new RecordFinalizer(manager, new TransactionOutcomeCache(10));
+    Result asset = createScanResult("pk1");
+    when(asset.getText(Attribute.ID)).thenReturn("tx1");
+    Result assetMetadata = createScanResult("pk2");
+    when(assetMetadata.getText(Attribute.ID)).thenReturn("tx1");
+
+    // Act
+    boolean first = finalizer.execute("ns", "tbl", asset);
+    boolean second = finalizer.execute("ns", "tbl", assetMetadata);
+
+    // Assert
+    assertThat(first).isFalse();
+    assertThat(second).isFalse();
+    verify(manager, times(1))
+        .recoverRecord(eq("ns"), eq("tbl"), any(Key.class), nullable(Key.class));
+  }
+
+  @Test
+  void execute_outcomeCacheGiven_shouldRecoverEveryRecordOfRecoveredTransaction()
+      throws Exception {
+    // Arrange
+    when(manager.recoverRecord(eq("ns"), eq("tbl"), any(Key.class), nullable(Key.class)))
+        .thenReturn(true);
+    RecordFinalizer finalizer = new RecordFinalizer(manager, new TransactionOutcomeCache(10));
+    Result asset = createScanResult("pk1");
+    when(asset.getText(Attribute.ID)).thenReturn("tx1");
+    Result assetMetadata = createScanResult("pk2");
+    when(assetMetadata.getText(Attribute.ID)).thenReturn("tx1");
+
+    // Act
+    boolean first = finalizer.execute("ns", "tbl", asset);
+    boolean second = finalizer.execute("ns", "tbl", assetMetadata);
+
+    // Assert
+    assertThat(first).isTrue();
+    assertThat(second).isTrue();
+    verify(manager, times(2))
+        .recoverRecord(eq("ns"), eq("tbl"), any(Key.class), nullable(Key.class));
+  }
 }
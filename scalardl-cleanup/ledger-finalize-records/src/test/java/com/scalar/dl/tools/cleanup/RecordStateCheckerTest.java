@@ -10,6 +10,7 @@ import com.scalar.db.api.TransactionState;
 import com.scalar.db.io.BigIntColumn;
 import com.scalar.db.io.IntColumn;
 import com.scalar.db.transaction.consensuscommit.Attribute;
+import com.scalar.dl.tools.scan.ScanCondition;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -94,4 +95,14 @@ class RecordStateCheckerTest {
     assertThatThrownBy(() -> checker.needsFinalization(result))
         .isInstanceOf(IllegalArgumentException.class);
   }
+
+  @Test
+  void getScanConditions_shouldMatchNonTerminalRecordsPreparedBeforeGuarantee() {
+    // Act & Assert
+    assertThat(checker.getScanConditions())
+        .containsExactly(
+            ScanCondition.in(
+                Attribute.STATE, TransactionState.PREPARED.get(), TransactionState.DELETED.get()),
+            ScanCondition.lt(Attribute.PREPARED_AT, GUARANTEE_TS));
+  }
 }
@@ -0,0 +1,171 @@
+package com.scalar.dl.tools.cleanup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class RecoveryExecutorTest {
+
+  @Test
+  void constructor_nonPositiveConcurrencyGiven_shouldThrowIllegalArgumentException() {
+    // Act & Assert
+    assertThatThrownBy(() -> new RecoveryExecutor(0, 10))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void constructor_nonPositiveQueueCapacityGiven_shouldThrowIllegalArgumentException() {
+    // Act & Assert
+    assertThatThrownBy(() -> new RecoveryExecutor(1, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void executeAll_shouldRunAllRecoveriesAndCountSuccessfulOnes() throws Exception {
+    // Arrange
+    List<Callable<Boolean>> recoveries = Arrays.asList(() -> true, () -> false, () -> true);
+
+    try (RecoveryExecutor executor = new RecoveryExecutor(2, 10)) {
+      // Act
+      int succeeded = executor.executeAll(recoveries);
+
+      // Assert
+      assertThat(succeeded).isEqualTo(2);
+      assertThat(executor.getCompletedCount()).isEqualTo(3);
+      assertThat(executor.getQueueDepth()).isZero();
+    }
+  }
+
+  @Test
+  void executeAll_emptyRecoveriesGiven_shouldReturnZero() throws Exception {
+    try (RecoveryExecutor executor = new RecoveryExecutor(1, 1)) {
+      // Act & Assert
+      assertThat(executor.executeAll(Collections.emptyList())).isZero();
+      assertThat(executor.getAverageLatencyMillis()).isZero();
+    }
+  }
+
+  @Test
+  void executeAll_shouldNotRunMoreThanConcurrencyAtOnce() throws Exception {
+    // Arrange
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    List<Callable<Boolean>> recoveries = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      recoveries.add(
+          () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            running.decrementAndGet();
+            return true;
+          });
+    }
+
+    try (RecoveryExecutor executor = new RecoveryExecutor(3, 2)) {
+      // Act
+      int succeeded = executor.executeAll(recoveries);
+
+      // Assert
+      assertThat(succeeded).isEqualTo(20);
+      assertThat(maxRunning.get()).isLessThanOrEqualTo(3);
+      assertThat(executor.getMaxQueueDepth()).isBetween(1, 2);
+      assertThat(executor.getMaxLatencyMillis()).isGreaterThanOrEqualTo(5);
+    }
+  }
+
+  @Test
+  void executeAll_failuresGiven_shouldWaitForAllAndThrowFirstWithOthersSuppressed() {
+    // Arrange
+    IllegalStateException first = new IllegalStateException("first");
+    IllegalStateException second = new IllegalStateException("second");
+    CountDownLatch slowFinished = new CountDownLatch(1);
+    List<Callable<Boolean>> recoveries =
+        Arrays.asList(
+            () -> {
+              throw first;
+            },
+            () -> {
+              Thread.sleep(20);
+              slowFinished.countDown();
+              return true;
+            },
+            () -> {
+              throw second;
+            });
+
+    try (RecoveryExecutor executor = new RecoveryExecutor(3, 10)) {
+      // Act & Assert
+      assertThatThrownBy(() -> executor.executeAll(recoveries))
+          .isSameAs(first)
+          .hasSuppressedException(second);
+      assertThat(slowFinished.getCount()).isZero();
+      assertThat(executor.getCompletedCount()).isEqualTo(3);
+    }
+  }
+
+  @Test
+  void executeAll_interruptedGiven_shouldCancelAndReleaseQueueSlots() throws Exception {
+    // Arrange
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicInteger queuedRuns = new AtomicInteger();
+    List<Callable<Boolean>> recoveries =
+        Arrays.asList(
+            () -> {
+              started.countDown();
+              Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+              return true;
+            },
+            () -> {
+              queuedRuns.incrementAndGet();
+              return true;
+            });
+    AtomicReference<Throwable> thrown = new AtomicReference<>();
+
+    try (RecoveryExecutor executor = new RecoveryExecutor(1, 1)) {
+      Thread caller =
+          new Thread(
+              () -> {
+                try {
+                  executor.executeAll(recoveries);
+                } catch (Throwable e) {
+                  thrown.set(e);
+                }
+              });
+      caller.start();
+      assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+      // Act
+      caller.interrupt();
+      caller.join(TimeUnit.SECONDS.toMillis(10));
+
+      // Assert
+      assertThat(thrown.get()).isInstanceOf(InterruptedException.class);
+      assertThat(executor.getQueueDepth()).isZero();
+      assertThat(executor.executeAll(Collections.singletonList(() -> true))).isEqualTo(1);
+      assertThat(queuedRuns.get()).isZero();
+    }
+  }
+
+  @Test
+  void executeAll_closedExecutorGiven_shouldThrowIllegalStateException() {
+    // Arrange
+    RecoveryExecutor executor = new RecoveryExecutor(1, 1);
+    executor.close();
+
+    // Act & Assert
+    assertThat(executor.isShutdown()).isTrue();
+    assertThatThrownBy(() -> executor.executeAll(Collections.singletonList(() -> true)))
+        .isInstanceOf(IllegalStateException.class);
+    assertThat(executor.getQueueDepth()).isZero();
+  }
+}
@@ -0,0 +1,168 @@
+package com.scalar.dl.tools.cleanup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class TransactionOutcomeCacheTest {
+
+  @Test
+  void constructor_nonPositiveCapacityGiven_shouldThrowIllegalArgumentException() {
+    // Act & Assert
+    assertThatThrownBy(() -> new TransactionOutcomeCache(0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void recover_notRecoverableTransactionGiven_shouldSkipLaterRecordsOfIt() throws Exception {
+    // Arrange
+    TransactionOutcomeCache cache = new TransactionOutcomeCache(10);
+    AtomicInteger calls = new AtomicInteger();
+
+    // Act
+    boolean first = cache.recover("tx1", () -> calls.incrementAndGet() < 0);
+    boolean second = cache.recover("tx1", () -> calls.incrementAndGet() > 0);
+
+    // Assert
+    assertThat(first).isFalse();
+    assertThat(second).isFalse();
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(cache.getSkippedCount()).isEqualTo(1);
+    assertThat(cache.containsNotRecoverable("tx1")).isTrue();
+  }
+
+  @Test
+  void recover_recoveredTransactionGiven_shouldRecoverEveryRecordOfIt() throws Exception {
+    // Arrange
+    TransactionOutcomeCache cache = new TransactionOutcomeCache(10);
+    AtomicInteger calls = new AtomicInteger();
+
+    // Act
+    boolean first = cache.recover("tx1", () -> calls.incrementAndGet() > 0);
+    boolean second = cache.recover("tx1", () -> calls.incrementAndGet() > 0);
+
+    // Assert
+    assertThat(first).isTrue();
+    assertThat(second).isTrue();
+    assertThat(calls.get()).isEqualTo(2);
+    assertThat(cache.getSkippedCount()).isZero();
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void recover_nullTransactionIdGiven_shouldRunRecoveryAsIs() throws Exception {
+    // Arrange
+    TransactionOutcomeCache cache = new TransactionOutcomeCache(10);
+    AtomicInteger calls = new AtomicInteger();
+
+    // Act
+    cache.recover(null, () -> calls.incrementAndGet() < 0);
+    cache.recover(null, () -> calls.incrementAndGet() < 0);
+
+    // Assert
+    assertThat(calls.get()).isEqualTo(2);
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void recover_failedRecoveryGiven_shouldPropagateAndNotRemember() throws Exception {
+    // Arrange
+    TransactionOutcomeCache cache = new TransactionOutcomeCache(10);
+
+    // Act & Assert
+    assertThatThrownBy(
+            () ->
+                cache.recover(
+                    "tx1",
+                    () -> {
+                      throw new IllegalStateException("recovery failed");
+                    }))
+        .isInstanceOf(IllegalStateException.class);
+    assertThat(cache.recover("tx1", () -> true)).isTrue();
+  }
+
+  @Test
+  void recover_concurrentRecoveriesOfSameTransactionGiven_shouldWaitForFirstOutcome()
+      throws Exception {
+    // Arrange
+    TransactionOutcomeCache cache = new TransactionOutcomeCache(10);
+    CountDownLatch firstStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirst = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Boolean> first =
+          executor.submit(
+              () ->
+                  cache.recover(
+                      "tx1",
+                      () -> {
+                        calls.incrementAndGet();
+                        firstStarted.countDown();
+                        releaseFirst.await();
+                        return false;
+                      }));
+      assertThat(firstStarted.await(10, TimeUnit.SECONDS)).isTrue();
+      Future<Boolean> second =
+          executor.submit(() -> cache.recover("tx1", () -> calls.incrementAndGet() > 0));
+      while (cache.getCollapsedCount() == 0) {
+        Thread.sleep(1);
+      }
+
+      // Act
+      releaseFirst.countDown();
+
+      // Assert
+      assertThat(first.get(10, TimeUnit.SECONDS)).isFalse();
+      assertThat(second.get(10, TimeUnit.SECONDS)).isFalse();
+      assertThat(calls.get()).isEqualTo(1);
+      assertThat(cache.getSkippedCount()).isEqualTo(1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void recover_capacityExceeded_shouldEvictLeastRecentlyUsedTransaction() throws Exception {
+    // Arrange
+    TransactionOutcomeCache cache = new TransactionOutcomeCache(2);
+    cache.recover("tx1", () -> false);
+    cache.recover("tx2", () -> false);
+    // Using tx1 makes tx2 the least recently used
+    cache.recover("tx1", () -> true);
+
+    // Act
+    cache.recover("tx3", () -> false);
+
+    // Assert
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.containsNotRecoverable("tx1")).isTrue();
+    assertThat(cache.containsNotRecoverable("tx2")).isFalse();
+    assertThat(cache.containsNotRecoverable("tx3")).isTrue();
+  }
+
+  @Test
+  void recover_manyTransactionsGiven_shouldKeepMostRecentOnesReachable() throws Exception {
+    // Arrange
+    int capacity = 100;
+    TransactionOutcomeCache cache = new TransactionOutcomeCache(capacity);
+
+    // Act
+    for (int i = 0; i < 1000; i++) {
+      cache.recover("tx" + i, () -> false);
+    }
+
+    // Assert
+    assertThat(cache.size()).isEqualTo(capacity);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(cache.containsNotRecoverable("tx" + i)).isEqualTo(i >= 1000 - capacity);
+    }
+  }
+}
@@ -1,7 +1,11 @@
 package com.scalar.dl.tools.cleanup;
 
 import com.scalar.db.api.Result;
+import com.scalar.dl.tools.common.AuditorInternalValues;
 import com.scalar.dl.tools.scan.RecordHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.concurrent.ThreadSafe;
 import org.slf4j.Logger;
@@ -11,7 +15,9 @@ import org.slf4j.LoggerFactory;
  * {@link RecordHandler} for {@code request-proof-cleanup}.
  *
  * <p>For each scanned {@code request_proof} record it decides whether the record is deletable
- * ({@link RequestProofDeletionChecker}) and, if so, deletes it ({@link RequestProofDeleter}).
+ * ({@link RequestProofDeletionChecker}) and, if so, deletes it ({@link RequestProofDeleter}). When
+ * the deleter deletes in bulk, the handler receives whole pages instead and deletes the deletable
+ * records of each page together.
  */
 @ThreadSafe
 public final class DeleteRequestProofHandler implements RecordHandler {
@@ -21,6 +27,14 @@ public final class DeleteRequestProofHandler implements RecordHandler {
   /** The number of deletions between successive progress log lines. */
   private static final long PROGRESS_LOG_INTERVAL = 100_000L;
 
+  /**
+   * The columns read by {@link RequestProofDeletionChecker}. {@link RequestProofDeleter} needs only
+   * the nonce, which is the partition key and is always included by the scanner.
+   */
+  private static final List<String> PROJECTIONS =
+      Collections.singletonList(
+          AuditorInternalValues.REQUEST_PROOF_TABLE_REGISTERED_AT_COLUMN_NAME);
+
   private final RequestProofDeletionChecker deletionChecker;
   private final RequestProofDeleter recordDeleter;
   private final AtomicLong deletedCount = new AtomicLong();
@@ -37,12 +51,42 @@ public final class DeleteRequestProofHandler implements RecordHandler {
       return;
     }
     recordDeleter.execute(record);
-    long deleted = deletedCount.incrementAndGet();
-    if (deleted % PROGRESS_LOG_INTERVAL == 0) {
+    countDeleted(1);
+  }
+
+  /** Pages are handled at once when the deleter deletes in bulk. */
+  @Override
+  public boolean handlesPages() {
+    return recordDeleter.isBulk();
+  }
+
+  @Override
+  public void handlePage(List<Result> records) throws Exception {
+    List<Result> deletable = new ArrayList<>(records.size());
+    for (Result record : records) {
+      if (deletionChecker.isDeletable(record)) {
+        deletable.add(record);
+      }
+    }
+    if (deletable.isEmpty()) {
+      return;
+    }
+    recordDeleter.executeAll(deletable);
+    countDeleted(deletable.size());
+  }
+
+  private void countDeleted(int count) {
+    long deleted = deletedCount.addAndGet(count);
+    if (deleted / PROGRESS_LOG_INTERVAL != (deleted - count) / PROGRESS_LOG_INTERVAL) {
       logger.info("Deleted {} records in this run so far.", deleted);
     }
   }
 
+  @Override
+  public List<String> getProjections() {
+    return PROJECTIONS;
+  }
+
   /** Returns the number of records deleted. */
   public long getDeletedCount() {
     return deletedCount.get();
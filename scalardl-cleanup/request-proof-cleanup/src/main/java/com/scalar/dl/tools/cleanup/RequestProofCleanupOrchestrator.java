@@ -5,7 +5,10 @@ import com.scalar.db.api.DistributedStorage;
 import com.scalar.db.config.DatabaseConfig;
 import com.scalar.db.service.StorageFactory;
 import com.scalar.dl.tools.common.AuditorInternalValues;
+import com.scalar.dl.tools.common.CheckpointStore;
 import com.scalar.dl.tools.common.CompletionToken;
+import com.scalar.dl.tools.common.FileCheckpointStore;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
 import com.scalar.dl.tools.common.ScalarDlCleanupError;
 import com.scalar.dl.tools.common.ScalarDlCleanupException;
 import com.scalar.dl.tools.common.StorageValidator;
@@ -49,6 +52,7 @@ public final class RequestProofCleanupOrchestrator implements AutoCloseable {
   private final DistributedStorage storage;
   private final ResumableScannerFactory scannerFactory;
   private final Path checkpointDir;
+  private final CheckpointStore checkpointStore;
   private final String baseNamespace;
   @Nullable private final String auditorTokenString;
   private final RequestProofDeleter recordDeleter;
@@ -77,9 +81,29 @@ public final class RequestProofCleanupOrchestrator implements AutoCloseable {
       String baseNamespace,
       @Nullable String auditorTokenString,
       RequestProofDeleter recordDeleter) {
+    this(
+        storage,
+        scannerFactory,
+        checkpointDir,
+        baseNamespace,
+        auditorTokenString,
+        recordDeleter,
+        new FileCheckpointStore());
+  }
+
+  @VisibleForTesting
+  RequestProofCleanupOrchestrator(
+      DistributedStorage storage,
+      ResumableScannerFactory scannerFactory,
+      Path checkpointDir,
+      String baseNamespace,
+      @Nullable String auditorTokenString,
+      RequestProofDeleter recordDeleter,
+      CheckpointStore checkpointStore) {
     this.storage = storage;
     this.scannerFactory = scannerFactory;
     this.checkpointDir = checkpointDir;
+    this.checkpointStore = checkpointStore;
     this.baseNamespace = baseNamespace;
     this.auditorTokenString = auditorTokenString;
     this.recordDeleter = recordDeleter;
@@ -99,11 +123,31 @@ public final class RequestProofCleanupOrchestrator implements AutoCloseable {
     DatabaseConfig dbConfig = new DatabaseConfig(props);
     StorageValidator.validate(dbConfig);
     DistributedStorage storage = StorageFactory.create(props).getStorage();
+    CheckpointStore checkpointStore = null;
     try {
-      ResumableScannerFactory scannerFactory = new ResumableScannerFactory(dbConfig);
+      checkpointStore = CheckpointStore.create(props);
+      // One RU budget for the whole process, shared by the scan workers and the deletes
+      RequestUnitLimiter requestUnitLimiter = RequestUnitLimiter.create(props);
+      ResumableScannerFactory scannerFactory =
+          new ResumableScannerFactory(dbConfig, requestUnitLimiter, checkpointStore);
+      String baseNamespace = resolveBaseNamespace(props);
       return new RequestProofCleanupOrchestrator(
-          storage, scannerFactory, checkpointDir, resolveBaseNamespace(props), auditorTokenString);
+          storage,
+          scannerFactory,
+          checkpointDir,
+          baseNamespace,
+          auditorTokenString,
+          new RequestProofDeleter(
+              storage,
+              baseNamespace,
+              requestUnitLimiter,
+              scannerFactory.createBulkDeleter(
+                  baseNamespace, AuditorInternalValues.REQUEST_PROOF_TABLE_NAME)),
+          checkpointStore);
     } catch (Exception e) {
+      if (checkpointStore != null) {
+        checkpointStore.close();
+      }
       storage.close();
       throw e;
     }
@@ -129,9 +173,22 @@ public final class RequestProofCleanupOrchestrator implements AutoCloseable {
    * @throws Exception if token validation, scanning, or state persistence fails
    */
   public void execute() throws Exception {
+    execute(checkpointDir, auditorTokenString);
+  }
+
+  /**
+   * Executes the full cleanup workflow with the given checkpoint directory and completion token
+   * instead of those given on creation. A long-running process runs successive cleanups this way,
+   * each with its own checkpoint directory, on the clients of a single orchestrator.
+   *
+   * @param checkpointDir root directory for the checkpoint state of this run
+   * @param auditorTokenString the Auditor completion token
+   * @throws Exception if token validation, scanning, or state persistence fails
+   */
+  public void execute(Path checkpointDir, @Nullable String auditorTokenString) throws Exception {
     RequestProofCleanupStateManager stateManager =
-        new RequestProofCleanupStateManager(checkpointDir);
-    RequestProofCleanupState state = loadOrInitializeState(stateManager);
+        new RequestProofCleanupStateManager(checkpointStore, checkpointDir);
+    RequestProofCleanupState state = loadOrInitializeState(stateManager, auditorTokenString);
 
     if (state.isCompleted()) {
       logger.info("The cleanup has already been completed for this checkpoint; nothing to do.");
@@ -151,7 +208,7 @@ public final class RequestProofCleanupOrchestrator implements AutoCloseable {
    * boundary, and persists the initial state.
    */
   private RequestProofCleanupState loadOrInitializeState(
-      RequestProofCleanupStateManager stateManager) {
+      RequestProofCleanupStateManager stateManager, @Nullable String auditorTokenString) {
     RequestProofCleanupState state = stateManager.load();
 
     if (state != null) {
@@ -178,7 +235,7 @@ public final class RequestProofCleanupOrchestrator implements AutoCloseable {
       throw new ScalarDlCleanupException(ScalarDlCleanupError.AUDITOR_COMPLETION_TOKEN_REQUIRED);
     }
 
-    long deletableBeforeMs = parseDeletableBeforeMs();
+    long deletableBeforeMs = parseDeletableBeforeMs(auditorTokenString);
     state = new RequestProofCleanupState(deletableBeforeMs);
     stateManager.persist(state);
     logger.info(
@@ -189,7 +246,7 @@ public final class RequestProofCleanupOrchestrator implements AutoCloseable {
   }
 
   /** Parses and validates the Auditor token, then returns its guarantee timestamp. */
-  private long parseDeletableBeforeMs() {
+  private static long parseDeletableBeforeMs(String auditorTokenString) {
     CompletionToken auditorToken = CompletionToken.decode(auditorTokenString);
     if (auditorToken.getServerType() != CompletionToken.ServerType.AUDITOR) {
       throw new ScalarDlCleanupException(
@@ -211,13 +268,18 @@ public final class RequestProofCleanupOrchestrator implements AutoCloseable {
 
     logger.info("Starting to scan the request_proof table");
 
+    RequestProofDeletionChecker deletionChecker =
+        new RequestProofDeletionChecker(deletableBeforeMs);
     DeleteRequestProofHandler handler =
-        new DeleteRequestProofHandler(
-            new RequestProofDeletionChecker(deletableBeforeMs), recordDeleter);
+        new DeleteRequestProofHandler(deletionChecker, recordDeleter);
 
     try (ResumableScanner scanner = scannerFactory.create(scanCheckpointDir)) {
       ScanResult scanResult =
-          scanner.scan(baseNamespace, AuditorInternalValues.REQUEST_PROOF_TABLE_NAME, handler);
+          scanner.scan(
+              baseNamespace,
+              AuditorInternalValues.REQUEST_PROOF_TABLE_NAME,
+              deletionChecker.getScanConditions(),
+              handler);
 
       // The deletion count is per run (command execution) only. Tracking a cumulative total across
       // runs would require persisting it on every deletion, so we report only what this run did.
@@ -233,10 +295,25 @@ public final class RequestProofCleanupOrchestrator implements AutoCloseable {
    */
   @Override
   public void close() {
+    try {
+      recordDeleter.close();
+    } catch (Exception e) {
+      logger.warn("Failed to close RequestProofDeleter.", e);
+    }
+    try {
+      scannerFactory.close();
+    } catch (Exception e) {
+      logger.warn("Failed to close ResumableScannerFactory.", e);
+    }
     try {
       storage.close();
     } catch (Exception e) {
       logger.warn("Failed to close DistributedStorage.", e);
     }
+    try {
+      checkpointStore.close();
+    } catch (Exception e) {
+      logger.warn("Failed to close CheckpointStore.", e);
+    }
   }
 }
@@ -1,5 +1,6 @@
 package com.scalar.dl.tools.cleanup;
 
+import com.scalar.dl.tools.common.CheckpointStore;
 import com.scalar.dl.tools.common.StateManager;
 import java.nio.file.Path;
 
@@ -11,4 +12,8 @@ public final class RequestProofCleanupStateManager extends StateManager<RequestP
   public RequestProofCleanupStateManager(Path checkpointDir) {
     super(checkpointDir, SUBDIRECTORY, RequestProofCleanupState.class);
   }
+
+  public RequestProofCleanupStateManager(CheckpointStore store, Path checkpointDir) {
+    super(store, checkpointDir, SUBDIRECTORY, RequestProofCleanupState.class);
+  }
 }
@@ -5,28 +5,99 @@ import com.scalar.db.api.DistributedStorage;
 import com.scalar.db.api.Result;
 import com.scalar.db.io.Key;
 import com.scalar.dl.tools.common.AuditorInternalValues;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
+import com.scalar.dl.tools.scan.cosmos.CosmosBulkDeleter;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
-/** Deletes {@code request_proof} records using {@link DistributedStorage}. */
+/**
+ * Deletes {@code request_proof} records using {@link DistributedStorage}, or, given a {@link
+ * CosmosBulkDeleter}, the records of a whole page at once through the Cosmos DB bulk API.
+ */
 @ThreadSafe
-public final class RequestProofDeleter {
+public final class RequestProofDeleter implements AutoCloseable {
 
   private final DistributedStorage storage;
   private final String namespace;
+  private final RequestUnitLimiter requestUnitLimiter;
+  @Nullable private final CosmosBulkDeleter bulkDeleter;
 
-  @SuppressFBWarnings("EI_EXPOSE_REP2")
   public RequestProofDeleter(DistributedStorage storage, String namespace) {
+    this(storage, namespace, RequestUnitLimiter.unlimited());
+  }
+
+  /**
+   * @param requestUnitLimiter the limiter charged with the estimated request charge of every
+   *     delete, shared with the scan of the same process
+   */
+  @SuppressFBWarnings("EI_EXPOSE_REP2")
+  public RequestProofDeleter(
+      DistributedStorage storage, String namespace, RequestUnitLimiter requestUnitLimiter) {
+    this(storage, namespace, requestUnitLimiter, null);
+  }
+
+  /**
+   * @param requestUnitLimiter the limiter charged with the estimated request charge of every
+   *     delete, shared with the scan of the same process
+   * @param bulkDeleter the deleter used by {@link #executeAll(List)}, or null to delete every
+   *     record with its own request; it is closed with this deleter
+   */
+  @SuppressFBWarnings("EI_EXPOSE_REP2")
+  public RequestProofDeleter(
+      DistributedStorage storage,
+      String namespace,
+      RequestUnitLimiter requestUnitLimiter,
+      @Nullable CosmosBulkDeleter bulkDeleter) {
     this.storage = storage;
     this.namespace = namespace;
+    this.requestUnitLimiter = requestUnitLimiter;
+    this.bulkDeleter = bulkDeleter;
+  }
+
+  /** Returns whether {@link #executeAll(List)} deletes the given records in bulk. */
+  public boolean isBulk() {
+    return bulkDeleter != null;
   }
 
   /** Deletes a {@code request_proof} record. */
   public void execute(Result result) throws Exception {
-    storage.delete(buildDelete(result));
+    Delete delete = buildDelete(result);
+    requestUnitLimiter.chargeDelete();
+    storage.delete(delete);
+  }
+
+  /**
+   * Deletes the given {@code request_proof} records, in bulk if a bulk deleter is given and
+   * otherwise one after another, and returns once every delete is acknowledged.
+   */
+  public void executeAll(List<Result> results) throws Exception {
+    if (bulkDeleter == null) {
+      for (Result result : results) {
+        execute(result);
+      }
+      return;
+    }
+    List<String> nonces = new ArrayList<>(results.size());
+    for (Result result : results) {
+      nonces.add(getNonce(result));
+    }
+    bulkDeleter.deleteAll(nonces);
   }
 
   private Delete buildDelete(Result result) {
+    return Delete.newBuilder()
+        .namespace(namespace)
+        .table(AuditorInternalValues.REQUEST_PROOF_TABLE_NAME)
+        .partitionKey(
+            Key.ofText(
+                AuditorInternalValues.REQUEST_PROOF_TABLE_NONCE_COLUMN_NAME, getNonce(result)))
+        .build();
+  }
+
+  private static String getNonce(Result result) {
     String nonce = result.getText(AuditorInternalValues.REQUEST_PROOF_TABLE_NONCE_COLUMN_NAME);
     if (nonce == null) {
       // The nonce column is the partition key of the request_proof table, so it should never be
@@ -36,11 +107,14 @@ public final class RequestProofDeleter {
               + AuditorInternalValues.REQUEST_PROOF_TABLE_NONCE_COLUMN_NAME
               + "' not found in the result");
     }
-    return Delete.newBuilder()
-        .namespace(namespace)
-        .table(AuditorInternalValues.REQUEST_PROOF_TABLE_NAME)
-        .partitionKey(
-            Key.ofText(AuditorInternalValues.REQUEST_PROOF_TABLE_NONCE_COLUMN_NAME, nonce))
-        .build();
+    return nonce;
+  }
+
+  /** Closes the bulk deleter, if any. */
+  @Override
+  public void close() {
+    if (bulkDeleter != null) {
+      bulkDeleter.close();
+    }
   }
 }
@@ -2,6 +2,9 @@ package com.scalar.dl.tools.cleanup;
 
 import com.scalar.db.api.Result;
 import com.scalar.dl.tools.common.AuditorInternalValues;
+import com.scalar.dl.tools.scan.ScanCondition;
+import java.util.Collections;
+import java.util.List;
 
 /** Decides whether a {@code request_proof} record is safe to delete. */
 public final class RequestProofDeletionChecker {
@@ -25,4 +28,15 @@ public final class RequestProofDeletionChecker {
     return result.getBigInt(AuditorInternalValues.REQUEST_PROOF_TABLE_REGISTERED_AT_COLUMN_NAME)
         < deletableBeforeMs;
   }
+
+  /**
+   * Returns scan conditions matching the records for which {@link #isDeletable(Result)} returns
+   * {@code true}.
+   */
+  public List<ScanCondition> getScanConditions() {
+    return Collections.singletonList(
+        ScanCondition.lt(
+            AuditorInternalValues.REQUEST_PROOF_TABLE_REGISTERED_AT_COLUMN_NAME,
+            deletableBeforeMs));
+  }
 }
@@ -54,7 +54,7 @@ class RequestProofCleanupOrchestratorTest {
     scanner = mock(ResumableScanner.class);
     scannerFactory = mock(ResumableScannerFactory.class);
     when(scannerFactory.create(any())).thenReturn(scanner);
-    when(scanner.scan(any(), any(), any())).thenReturn(new ScanResult(0));
+    when(scanner.scan(any(), any(), any(), any())).thenReturn(new ScanResult(0));
   }
 
   private RequestProofCleanupOrchestrator newOrchestrator(String namespace, String auditorToken) {
@@ -107,7 +107,7 @@ class RequestProofCleanupOrchestratorTest {
     orchestrator.execute();
 
     // Assert
-    verify(scanner).scan(eq(NAMESPACE), eq(TABLE), any());
+    verify(scanner).scan(eq(NAMESPACE), eq(TABLE), any(), any());
 
     // The boundary (the Auditor token timestamp) is observable via the persisted state.
     RequestProofCleanupState state = new RequestProofCleanupStateManager(tempDir).load();
@@ -131,7 +131,7 @@ class RequestProofCleanupOrchestratorTest {
 
     // Assert
     verify(scannerFactory, never()).create(any());
-    verify(scanner, never()).scan(any(), any(), any());
+    verify(scanner, never()).scan(any(), any(), any(), any());
   }
 
   @Test
@@ -164,7 +164,7 @@ class RequestProofCleanupOrchestratorTest {
   @Test
   void execute_scanFailureGiven_shouldPropagateException() throws Exception {
     // Arrange
-    when(scanner.scan(eq(NAMESPACE), eq(TABLE), any()))
+    when(scanner.scan(eq(NAMESPACE), eq(TABLE), any(), any()))
         .thenThrow(new RuntimeException("Cosmos DB unavailable"));
     RequestProofCleanupOrchestrator orchestrator =
         newOrchestrator(NAMESPACE, createAuditorToken(3000L));
@@ -179,7 +179,7 @@ class RequestProofCleanupOrchestratorTest {
   @Test
   void execute_scanFailureGiven_shouldNotMarkCompleted() throws Exception {
     // Arrange
-    when(scanner.scan(eq(NAMESPACE), eq(TABLE), any()))
+    when(scanner.scan(eq(NAMESPACE), eq(TABLE), any(), any()))
         .thenThrow(new RuntimeException("Cosmos DB unavailable"));
     RequestProofCleanupOrchestrator orchestrator =
         newOrchestrator(NAMESPACE, createAuditorToken(3000L));
@@ -208,7 +208,7 @@ class RequestProofCleanupOrchestratorTest {
 
     // Assert
     // The persisted boundary is reused (not recomputed) and the scan runs
-    verify(scanner).scan(eq(NAMESPACE), eq(TABLE), any());
+    verify(scanner).scan(eq(NAMESPACE), eq(TABLE), any(), any());
     RequestProofCleanupState state = stateManager.load();
     assertThat(state).isNotNull();
     assertThat(state.getDeletableBeforeMs()).isEqualTo(500L);
@@ -256,7 +256,26 @@ class RequestProofCleanupOrchestratorTest {
     orchestrator.execute();
 
     // Assert
-    verify(scanner).scan(eq(customNamespace), eq(TABLE), any());
+    verify(scanner).scan(eq(customNamespace), eq(TABLE), any(), any());
+  }
+
+  @Test
+  void execute_checkpointDirAndTokenGiven_shouldRunWithThemInsteadOfThoseGivenOnCreation()
+      throws Exception {
+    // Arrange
+    RequestProofCleanupOrchestrator orchestrator =
+        newOrchestrator(NAMESPACE, createAuditorToken(1000L));
+    Path cycleDir = tempDir.resolve("cycle-1");
+
+    // Act
+    orchestrator.execute(cycleDir, createAuditorToken(3000L));
+
+    // Assert
+    RequestProofCleanupState state = new RequestProofCleanupStateManager(cycleDir).load();
+    assertThat(state).isNotNull();
+    assertThat(state.getDeletableBeforeMs()).isEqualTo(3000L);
+    assertThat(state.isCompleted()).isTrue();
+    assertThat(new RequestProofCleanupStateManager(tempDir).load()).isNull();
   }
 
   @Test
@@ -270,5 +289,6 @@ class RequestProofCleanupOrchestratorTest {
 
     // Assert
     verify(storage).close();
+    verify(scannerFactory).close();
   }
 }
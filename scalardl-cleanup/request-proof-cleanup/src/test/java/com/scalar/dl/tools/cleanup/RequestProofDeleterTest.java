@@ -3,9 +3,12 @@ package com.scalar.dl.tools.cleanup;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -16,9 +19,13 @@ import com.scalar.db.api.Result;
 import com.scalar.db.exception.storage.ExecutionException;
 import com.scalar.db.io.Key;
 import com.scalar.dl.tools.common.AuditorInternalValues;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
+import com.scalar.dl.tools.scan.cosmos.CosmosBulkDeleter;
+import java.util.Arrays;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
 class RequestProofDeleterTest {
 
@@ -100,4 +107,49 @@ class RequestProofDeleterTest {
     assertThat(captured.forTable()).hasValue(AuditorInternalValues.REQUEST_PROOF_TABLE_NAME);
     assertThat((Object) captured.getPartitionKey()).isEqualTo(Key.ofText(NONCE, "nonce-abc"));
   }
+
+  @Test
+  void execute_requestUnitLimiterGiven_shouldChargeDeleteBeforeDeleting() throws Exception {
+    // Arrange
+    RequestUnitLimiter requestUnitLimiter = mock(RequestUnitLimiter.class);
+    RequestProofDeleter deleter = new RequestProofDeleter(storage, NAMESPACE, requestUnitLimiter);
+
+    // Act
+    deleter.execute(createScanResult("nonce1"));
+
+    // Assert
+    InOrder inOrder = inOrder(requestUnitLimiter, storage);
+    inOrder.verify(requestUnitLimiter).chargeDelete();
+    inOrder.verify(storage).delete(any(Delete.class));
+  }
+
+  @Test
+  void executeAll_bulkDeleterGiven_shouldDeleteByNoncesInBulk() throws Exception {
+    // Arrange
+    CosmosBulkDeleter bulkDeleter = mock(CosmosBulkDeleter.class);
+    RequestProofDeleter deleter =
+        new RequestProofDeleter(storage, NAMESPACE, RequestUnitLimiter.unlimited(), bulkDeleter);
+
+    // Act
+    deleter.executeAll(Arrays.asList(createScanResult("n1"), createScanResult("n2")));
+
+    // Assert
+    assertThat(deleter.isBulk()).isTrue();
+    verify(bulkDeleter).deleteAll(Arrays.asList("n1", "n2"));
+    verify(storage, never()).delete(any(Delete.class));
+  }
+
+  @Test
+  void executeAll_bulkDeleterAndMissingNonceGiven_shouldThrowIllegalStateException()
+      throws Exception {
+    // Arrange
+    CosmosBulkDeleter bulkDeleter = mock(CosmosBulkDeleter.class);
+    RequestProofDeleter deleter =
+        new RequestProofDeleter(storage, NAMESPACE, RequestUnitLimiter.unlimited(), bulkDeleter);
+
+    // Act & Assert
+    assertThatThrownBy(() -> deleter.executeAll(Arrays.asList(createScanResult(null))))
+        .isInstanceOf(IllegalStateException.class);
+    verify(bulkDeleter, never()).deleteAll(anyList());
+  }
 }
@@ -7,6 +7,7 @@ import static org.mockito.Mockito.when;
 
 import com.scalar.db.api.Result;
 import com.scalar.dl.tools.common.AuditorInternalValues;
+import com.scalar.dl.tools.scan.ScanCondition;
 import org.junit.jupiter.api.Test;
 
 class RequestProofDeletionCheckerTest {
@@ -64,4 +65,11 @@ class RequestProofDeletionCheckerTest {
     assertThatThrownBy(() -> checker.isDeletable(result))
         .isInstanceOf(IllegalArgumentException.class);
   }
+
+  @Test
+  void getScanConditions_shouldMatchRecordsRegisteredBeforeBoundary() {
+    // Act & Assert
+    assertThat(checker.getScanConditions())
+        .containsExactly(ScanCondition.lt(REGISTERED_AT, DELETABLE_BEFORE_MS));
+  }
 }
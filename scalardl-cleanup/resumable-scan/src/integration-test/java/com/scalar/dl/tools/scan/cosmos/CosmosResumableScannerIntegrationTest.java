@@ -24,11 +24,13 @@ import com.scalar.db.storage.cosmos.CosmosUtils;
 import com.scalar.dl.tools.scan.RecordHandler;
 import com.scalar.dl.tools.scan.ScanResult;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -57,11 +59,12 @@ class CosmosResumableScannerIntegrationTest {
   private static final String CLUSTERING_KEY = "ck";
   private static final String VALUE_COLUMN = "val";
   private static final String FEED_RANGES_FILE = "feed_ranges.json";
+  private static final String JOURNAL_FILE = "tokens.journal";
 
   /**
    * Number of records for the shared test table. Each logical partition must have more than the
    * default Cosmos DB page size (100 items) to guarantee that every physical partition produces
-   * multiple pages and writes at least one continuation token (.token file). With {@link
+   * multiple pages and writes at least one continuation token to the journal. With {@link
    * #TEST_LOGICAL_PARTITION_COUNT} = 5, this gives 120 records per logical partition.
    */
   private static final int TEST_RECORD_COUNT = 600;
@@ -211,6 +214,19 @@ class CosmosResumableScannerIntegrationTest {
     };
   }
 
+  /** Returns the lines of the checkpoint journal of a table, grouped by range ID in order. */
+  private static Map<String, List<String>> readJournalLines(Path tableCheckpointDir)
+      throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    Map<String, List<String>> linesByRange = new LinkedHashMap<>();
+    for (String line :
+        Files.readAllLines(tableCheckpointDir.resolve(JOURNAL_FILE), StandardCharsets.UTF_8)) {
+      String rangeId = mapper.readTree(line).get("range").asText();
+      linesByRange.computeIfAbsent(rangeId, k -> new ArrayList<>()).add(line);
+    }
+    return linesByRange;
+  }
+
   @Test
   void scan_withoutInterruption_shouldScanAllRecords(@TempDir Path checkpointDir) throws Exception {
     // Arrange
@@ -295,10 +311,8 @@ class CosmosResumableScannerIntegrationTest {
     Path tableCheckpointDir = checkpointDir.resolve(NAMESPACE + "." + TABLE);
     assertThat(tableCheckpointDir).isDirectory();
     assertThat(tableCheckpointDir.resolve(FEED_RANGES_FILE)).exists();
-    // At least one .token file must exist for the resume to actually use checkpoints
-    try (DirectoryStream<Path> stream = Files.newDirectoryStream(tableCheckpointDir, "*.token")) {
-      assertThat(stream.iterator().hasNext()).isTrue();
-    }
+    // At least one token must be journaled for the resume to actually use checkpoints
+    assertThat(tableCheckpointDir.resolve(JOURNAL_FILE)).isNotEmptyFile();
 
     // Arrange 2
     // Second scan to resume from checkpoint
@@ -343,29 +357,25 @@ class CosmosResumableScannerIntegrationTest {
       }
     }
 
-    // At least 2 .token files must exist: one is to delete (simulating loss) and at least one more
-    // to ensure the resume logic still has checkpoint data to work with
+    // Tokens of at least 2 ranges must be journaled: one is to drop (simulating loss) and at least
+    // one more to ensure the resume logic still has checkpoint data to work with
     String qualifiedTable = NAMESPACE + "." + TABLE;
     Path tableCheckpointDir = checkpointDir.resolve(qualifiedTable);
-    int tokenFileCount = 0;
-    try (DirectoryStream<Path> stream = Files.newDirectoryStream(tableCheckpointDir, "*.token")) {
-      for (Path ignored : stream) {
-        tokenFileCount++;
+    Map<String, List<String>> linesByRange = readJournalLines(tableCheckpointDir);
+    assertThat(linesByRange).hasSizeGreaterThanOrEqualTo(2);
+
+    // Drop the tokens of the first range to simulate a scenario where some checkpointed pages are
+    // lost
+    linesByRange.remove(linesByRange.keySet().iterator().next());
+    StringBuilder remaining = new StringBuilder();
+    for (List<String> lines : linesByRange.values()) {
+      for (String line : lines) {
+        remaining.append(line).append('\n');
       }
     }
-    assertThat(tokenFileCount).isGreaterThanOrEqualTo(2);
-
-    // Delete the first .token file to simulate a scenario where some checkpointed pages are lost
-    boolean deleted = false;
-    try (DirectoryStream<Path> stream = Files.newDirectoryStream(tableCheckpointDir, "*.token")) {
-      for (Path tokenFile : stream) {
-        if (!deleted) {
-          Files.delete(tokenFile);
-          deleted = true;
-        }
-      }
-    }
-    assertThat(deleted).isTrue();
+    Files.write(
+        tableCheckpointDir.resolve(JOURNAL_FILE),
+        remaining.toString().getBytes(StandardCharsets.UTF_8));
 
     // Act
     // Resume scan
@@ -384,7 +394,7 @@ class CosmosResumableScannerIntegrationTest {
   }
 
   @Test
-  void scan_withCorruptedTokenFile_shouldFailWithException(@TempDir Path checkpointDir)
+  void scan_withCorruptedToken_shouldFailWithException(@TempDir Path checkpointDir)
       throws Exception {
     // Arrange
     // Interrupt a scan to leave checkpoint files
@@ -400,14 +410,12 @@ class CosmosResumableScannerIntegrationTest {
       }
     }
 
-    // At least one .token file must exist for the test to be meaningful
+    // At least one token must be journaled for the test to be meaningful
     String qualifiedTable = NAMESPACE + "." + TABLE;
     Path tableCheckpointDir = checkpointDir.resolve(qualifiedTable);
-    try (DirectoryStream<Path> stream = Files.newDirectoryStream(tableCheckpointDir, "*.token")) {
-      assertThat(stream.iterator().hasNext()).isTrue();
-    }
+    assertThat(tableCheckpointDir.resolve(JOURNAL_FILE)).isNotEmptyFile();
 
-    // Create a corrupted .token file for the first FeedRange
+    // Journal a corrupted token for the first FeedRange
     Path feedRangesPath = tableCheckpointDir.resolve(FEED_RANGES_FILE);
     ObjectMapper mapper = new ObjectMapper();
     List<String> rangeJsonList =
@@ -415,8 +423,10 @@ class CosmosResumableScannerIntegrationTest {
     assertThat(rangeJsonList).isNotEmpty();
 
     String rangeId = FeedRangeSerializer.toId(FeedRangeSerializer.fromJson(rangeJsonList.get(0)));
-    Path tokenFile = tableCheckpointDir.resolve(rangeId + ".token");
-    Files.write(tokenFile, "GARBAGE_NOT_A_VALID_TOKEN".getBytes(StandardCharsets.UTF_8));
+    try (CheckpointManager checkpointManager = new CheckpointManager(checkpointDir)) {
+      checkpointManager.persistContinuationToken(
+          qualifiedTable, rangeId, "GARBAGE_NOT_A_VALID_TOKEN");
+    }
 
     // Act & Assert
     assertThatThrownBy(
@@ -0,0 +1,169 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.scalar.db.api.DistributedStorage;
+import com.scalar.db.api.DistributedStorageAdmin;
+import com.scalar.db.api.Put;
+import com.scalar.db.api.TableMetadata;
+import com.scalar.db.config.DatabaseConfig;
+import com.scalar.db.io.DataType;
+import com.scalar.db.io.Key;
+import com.scalar.db.service.StorageFactory;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
+import com.scalar.dl.tools.scan.ScanResult;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the request units and the throughput of the query and the change feed scan engines of
+ * {@link CosmosResumableScanner} on the same table.
+ *
+ * <p>Each engine scans the whole table once, and the RUs charged to an unlimited {@link
+ * RequestUnitLimiter}, the elapsed time, and the resulting RUs per document and documents per
+ * second are logged. The numbers depend on the throughput provisioned for the account, so the
+ * benchmark only asserts that both engines return every record.
+ *
+ * <p>Run: {@code ./gradlew :resumable-scan:cosmosScanBenchmark -Dscalardb.cosmos.uri=...
+ * -Dscalardb.cosmos.password=... [-Dscalardb.benchmark.record_count=10000]}
+ */
+@Tag("benchmark")
+class CosmosScanEngineBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(CosmosScanEngineBenchmark.class);
+
+  private static final String PROP_RECORD_COUNT = "scalardb.benchmark.record_count";
+  private static final int DEFAULT_RECORD_COUNT = 10_000;
+  private static final int LOGICAL_PARTITION_COUNT = 100;
+  private static final int LOADER_THREADS = 16;
+
+  private static final String NAMESPACE = "bench_cosmos_scan";
+  private static final String TABLE = "bench_table";
+  private static final String PARTITION_KEY = "pk";
+  private static final String CLUSTERING_KEY = "ck";
+  private static final String VALUE_COLUMN = "val";
+
+  private static int recordCount;
+  private static Properties properties;
+  private static DistributedStorageAdmin admin;
+  private static DistributedStorage storage;
+
+  @BeforeAll
+  static void setUpAll() throws Exception {
+    recordCount = Integer.getInteger(PROP_RECORD_COUNT, DEFAULT_RECORD_COUNT);
+    properties = CosmosEnv.getProperties();
+    StorageFactory storageFactory = StorageFactory.create(properties);
+    admin = storageFactory.getStorageAdmin();
+    storage = storageFactory.getStorage();
+
+    admin.createNamespace(NAMESPACE);
+    admin.createTable(
+        NAMESPACE,
+        TABLE,
+        TableMetadata.newBuilder()
+            .addColumn(PARTITION_KEY, DataType.TEXT)
+            .addColumn(CLUSTERING_KEY, DataType.INT)
+            .addColumn(VALUE_COLUMN, DataType.TEXT)
+            .addPartitionKey(PARTITION_KEY)
+            .addClusteringKey(CLUSTERING_KEY)
+            .build());
+    populate();
+  }
+
+  @AfterAll
+  static void tearDownAll() throws Exception {
+    try {
+      admin.dropTable(NAMESPACE, TABLE);
+      admin.dropNamespace(NAMESPACE);
+    } finally {
+      admin.close();
+      storage.close();
+    }
+  }
+
+  private static void populate() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(LOADER_THREADS);
+    try {
+      List<Future<?>> futures = new ArrayList<>(recordCount);
+      for (int i = 0; i < recordCount; i++) {
+        Put put =
+            Put.newBuilder()
+                .namespace(NAMESPACE)
+                .table(TABLE)
+                .partitionKey(
+                    Key.ofText(PARTITION_KEY, "partition-" + (i % LOGICAL_PARTITION_COUNT)))
+                .clusteringKey(Key.ofInt(CLUSTERING_KEY, i))
+                .textValue(VALUE_COLUMN, "value-" + i)
+                .build();
+        futures.add(
+            executor.submit(
+                () -> {
+                  storage.put(put);
+                  return null;
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+    logger.info("Populated {} records", recordCount);
+  }
+
+  private static long runScan(String engine, Path checkpointDir) throws Exception {
+    Properties props = new Properties();
+    props.putAll(properties);
+    props.setProperty(CosmosResumableScannerConfig.PROP_ENGINE, engine);
+    DatabaseConfig databaseConfig = new DatabaseConfig(props);
+    RequestUnitLimiter limiter = RequestUnitLimiter.unlimited();
+    AtomicLong count = new AtomicLong();
+
+    long start = System.nanoTime();
+    ScanResult result;
+    try (CosmosResumableScanner scanner =
+        new CosmosResumableScanner(databaseConfig, checkpointDir, limiter)) {
+      result = scanner.scan(NAMESPACE, TABLE, r -> count.incrementAndGet());
+    }
+    double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+    double requestUnits = limiter.getTotalRequestUnits();
+    logger.info(
+        "Engine {}: {} documents in {} s, {} RUs ({} RU/document, {} documents/s)",
+        engine,
+        result.getTotalScanned(),
+        String.format("%.2f", seconds),
+        String.format("%.1f", requestUnits),
+        String.format("%.3f", requestUnits / Math.max(1, result.getTotalScanned())),
+        String.format("%.0f", result.getTotalScanned() / seconds));
+    assertThat(count.get()).isEqualTo(result.getTotalScanned());
+    return result.getTotalScanned();
+  }
+
+  @Test
+  void scan_queryAndChangeFeedEngines_shouldScanAllRecords(@TempDir Path checkpointDir)
+      throws Exception {
+    // Act
+    long queried = runScan("threaded", checkpointDir.resolve("query"));
+    long changeFeed = runScan("change_feed", checkpointDir.resolve("change_feed"));
+
+    // Assert
+    assertThat(queried).isEqualTo(recordCount);
+    assertThat(changeFeed).isEqualTo(recordCount);
+  }
+}
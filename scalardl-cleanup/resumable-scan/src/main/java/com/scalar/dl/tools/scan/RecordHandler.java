@@ -1,12 +1,19 @@
 package com.scalar.dl.tools.scan;
 
 import com.scalar.db.api.Result;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Callback invoked by {@link ResumableScanner} for each scanned record.
  *
  * <p>Implementations must be thread-safe: the scanner invokes the handler concurrently from
- * multiple scan worker threads (one per physical partition).
+ * multiple scan worker threads (one per physical partition) and, when handler concurrency is
+ * enabled, for several records of the same partition at once.
+ *
+ * <p>Implementations must also tolerate receiving a record more than once: a resumed scan delivers
+ * the records of a page whose handling was interrupted again, and with adaptive concurrency enabled
+ * a record whose handling failed because Cosmos DB throttled a request is handled again.
  */
 @FunctionalInterface
 public interface RecordHandler {
@@ -15,7 +22,44 @@ public interface RecordHandler {
    * Handles a single scanned record.
    *
    * @param record the scanned record
-   * @throws Exception if handling fails; the scan is aborted and the exception is propagated
+   * @throws Exception if handling fails; the scan is aborted and the exception is propagated,
+   *     unless the failure is throttling that the scanner retries
    */
   void handle(Result record) throws Exception;
+
+  /**
+   * Returns whether the scanner delivers the records of each page to {@link #handlePage(List)} at
+   * once, on the thread scanning the page, instead of to {@link #handle(Result)} one by one. A
+   * handler that batches its writes uses this to send the writes of a page together.
+   *
+   * @return true to receive whole pages; false (the default) to receive single records
+   */
+  default boolean handlesPages() {
+    return false;
+  }
+
+  /**
+   * Handles the records of a single page, if {@link #handlesPages()} returns true. The scanner
+   * checkpoints the page once this method returns, so it must not return before the records are
+   * completely handled.
+   *
+   * @param records the scanned records of a page
+   * @throws Exception if handling fails; the scan is aborted and the exception is propagated
+   */
+  default void handlePage(List<Result> records) throws Exception {
+    for (Result record : records) {
+      handle(record);
+    }
+  }
+
+  /**
+   * Returns the names of the columns this handler reads from a record. The scanner may then fetch
+   * and decode only these columns plus the primary key columns, which are always included.
+   * Accessing any other column of a delivered record is not supported.
+   *
+   * @return the projected column names, or an empty list to receive all columns (the default)
+   */
+  default List<String> getProjections() {
+    return Collections.emptyList();
+  }
 }
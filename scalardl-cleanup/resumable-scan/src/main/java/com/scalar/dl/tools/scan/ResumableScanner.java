@@ -1,13 +1,34 @@
 package com.scalar.dl.tools.scan;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * A resumable, parallel scanner over a ScalarDB table.
  *
  * <p>Callers specify a ScalarDB namespace and table name; the scanner delivers each record to the
  * provided {@link RecordHandler}. Progress is checkpointed to enable resume-after-failure.
+ *
+ * <p>Implementations should fetch only the columns returned by {@link
+ * RecordHandler#getProjections()} plus the primary key columns, when the handler declares them.
  */
 public interface ResumableScanner extends AutoCloseable {
 
+  /** The value of {@link #estimateRecordCount(String, String)} when no estimate is available. */
+  long UNKNOWN_RECORD_COUNT = -1;
+
+  /**
+   * Returns a cheap estimate of the number of records in the given table, used to schedule large
+   * tables first. The estimate may be stale and must not be relied on for correctness.
+   *
+   * @param namespace ScalarDB namespace of the table
+   * @param tableName ScalarDB table name
+   * @return the estimated number of records, or {@link #UNKNOWN_RECORD_COUNT} if unavailable
+   */
+  default long estimateRecordCount(String namespace, String tableName) {
+    return UNKNOWN_RECORD_COUNT;
+  }
+
   /**
    * Start or resume a parallel scan over the given ScalarDB table.
    *
@@ -18,5 +39,31 @@ public interface ResumableScanner extends AutoCloseable {
    * @throws Exception if the scan fails; an exception thrown by {@code recordHandler} propagates
    *     as-is
    */
-  ScanResult scan(String namespace, String tableName, RecordHandler recordHandler) throws Exception;
+  default ScanResult scan(String namespace, String tableName, RecordHandler recordHandler)
+      throws Exception {
+    return scan(namespace, tableName, Collections.emptyList(), recordHandler);
+  }
+
+  /**
+   * Start or resume a parallel scan over the records of the given ScalarDB table that match all the
+   * given conditions.
+   *
+   * <p>The conditions are evaluated by the underlying database, so records that do not match are
+   * not transferred. A checkpoint is only valid for the conditions it was created with: resuming a
+   * scan with different conditions is not supported.
+   *
+   * @param namespace ScalarDB namespace of the table to scan
+   * @param tableName ScalarDB table name to scan
+   * @param conditions conditions combined with AND; empty to scan all records
+   * @param recordHandler callback invoked for each matching record; must be thread-safe
+   * @return the scan result, counting only the matching records
+   * @throws Exception if the scan fails; an exception thrown by {@code recordHandler} propagates
+   *     as-is
+   */
+  ScanResult scan(
+      String namespace,
+      String tableName,
+      List<ScanCondition> conditions,
+      RecordHandler recordHandler)
+      throws Exception;
 }
@@ -2,31 +2,164 @@ package com.scalar.dl.tools.scan;
 
 import com.scalar.db.config.DatabaseConfig;
 import com.scalar.db.storage.cosmos.CosmosConfig;
+import com.scalar.dl.tools.common.CheckpointStore;
+import com.scalar.dl.tools.common.FileCheckpointStore;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
+import com.scalar.dl.tools.scan.cosmos.CosmosBulkDeleter;
+import com.scalar.dl.tools.scan.cosmos.CosmosReactiveResumableScanner;
 import com.scalar.dl.tools.scan.cosmos.CosmosResumableScanner;
+import com.scalar.dl.tools.scan.cosmos.CosmosResumableScannerConfig;
+import com.scalar.dl.tools.scan.cosmos.CosmosScanSession;
 import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+import javax.annotation.Nullable;
 
-/** Factory for creating {@link ResumableScanner} instances based on the configured storage. */
-public final class ResumableScannerFactory {
+/**
+ * Factory for creating {@link ResumableScanner} instances based on the configured storage.
+ *
+ * <p>The scanners created by a factory share a worker budget of {@code
+ * scalar.dl.tools.scan.cosmos.max_threads} permits, so scanning several tables at once does not run
+ * more scan workers in total than scanning a single table. The budget applies to the threaded scan
+ * engine; the reactive engine does not dedicate threads to workers.
+ *
+ * <p>The scanners also share a {@link CosmosScanSession}, so the Cosmos DB client and the storage
+ * admin are built once for the factory rather than once per scanned table. The factory holds a
+ * reference to the session until it is closed, and each scanner holds one until it is closed, so
+ * close the factory once the run no longer creates scanners.
+ *
+ * <p>The scanners keep their checkpoints in the {@link CheckpointStore} of the factory, the local
+ * filesystem unless another store is given.
+ */
+public final class ResumableScannerFactory implements AutoCloseable {
 
   private final DatabaseConfig databaseConfig;
+  private final RequestUnitLimiter requestUnitLimiter;
+  private final Semaphore workerBudget;
+  private final CosmosScanSession session;
+  private final CheckpointStore checkpointStore;
 
   public ResumableScannerFactory(DatabaseConfig databaseConfig) {
+    this(databaseConfig, new FileCheckpointStore());
+  }
+
+  /**
+   * @param checkpointStore the store holding the checkpoints of the scanners; it is not closed by
+   *     this factory
+   */
+  public ResumableScannerFactory(DatabaseConfig databaseConfig, CheckpointStore checkpointStore) {
+    this(
+        databaseConfig,
+        RequestUnitLimiter.create(databaseConfig.getProperties()),
+        checkpointStore);
+  }
+
+  /**
+   * @param requestUnitLimiter the limiter shared by all scanners created by this factory and any
+   *     other Cosmos DB clients of the process
+   */
+  public ResumableScannerFactory(
+      DatabaseConfig databaseConfig, RequestUnitLimiter requestUnitLimiter) {
+    this(databaseConfig, requestUnitLimiter, new FileCheckpointStore());
+  }
+
+  /**
+   * @param requestUnitLimiter the limiter shared by all scanners created by this factory and any
+   *     other Cosmos DB clients of the process
+   * @param checkpointStore the store holding the checkpoints of the scanners; it is not closed by
+   *     this factory
+   */
+  public ResumableScannerFactory(
+      DatabaseConfig databaseConfig,
+      RequestUnitLimiter requestUnitLimiter,
+      CheckpointStore checkpointStore) {
     this.databaseConfig = databaseConfig;
+    this.requestUnitLimiter = requestUnitLimiter;
+    this.checkpointStore = checkpointStore;
+    // Fair, so that a scan started later is not starved by one that keeps reacquiring permits
+    this.workerBudget =
+        new Semaphore(new CosmosResumableScannerConfig(databaseConfig).getMaxWorkerThreads(), true);
+    // Nothing is connected until the first scanner is created
+    this.session = CosmosScanSession.create(databaseConfig);
+    this.session.retain();
   }
 
   /**
-   * Creates a new {@link ResumableScanner} for the given checkpoint directory.
+   * Creates a new {@link ResumableScanner} for the given checkpoint directory, using the scan
+   * engine selected by {@code scalar.dl.tools.scan.cosmos.engine}.
    *
-   * @param checkpointDir directory for scan checkpoint state
+   * @param checkpointDir directory for scan checkpoint state in the checkpoint store
    * @return a new scanner
    * @throws IllegalArgumentException if the configured storage is not supported
+   * @throws IllegalStateException if this factory is already closed
    */
   public ResumableScanner create(Path checkpointDir) {
     String storage = databaseConfig.getStorage();
     if (CosmosConfig.STORAGE_NAME.equals(storage)) {
-      return new CosmosResumableScanner(databaseConfig, checkpointDir);
+      CosmosResumableScannerConfig config = new CosmosResumableScannerConfig(databaseConfig);
+      if (config.getEngine() == CosmosResumableScannerConfig.Engine.REACTIVE) {
+        return new CosmosReactiveResumableScanner(
+            databaseConfig, session, checkpointDir, checkpointStore, requestUnitLimiter);
+      }
+      return new CosmosResumableScanner(
+          databaseConfig,
+          session,
+          checkpointDir,
+          checkpointStore,
+          requestUnitLimiter,
+          workerBudget);
     }
     throw new IllegalArgumentException(
         "This tool only supports Cosmos DB. Configured storage: " + storage);
   }
+
+  /**
+   * Creates a {@link CosmosBulkDeleter} for the given table if {@code
+   * scalar.dl.tools.scan.cosmos.bulk_delete} is enabled. The deleter shares the session and the
+   * request unit limiter of the scanners, and must be closed once the run no longer deletes.
+   *
+   * @return a new deleter, or null if bulk deletes are disabled
+   * @throws IllegalStateException if this factory is already closed
+   */
+  @Nullable
+  public CosmosBulkDeleter createBulkDeleter(String namespace, String tableName) {
+    CosmosResumableScannerConfig config = new CosmosResumableScannerConfig(databaseConfig);
+    if (!config.isBulkDelete()) {
+      return null;
+    }
+    return CosmosBulkDeleter.create(session, namespace, tableName, config, requestUnitLimiter);
+  }
+
+  /**
+   * Creates a {@link CosmosBulkDeleter} that sets a time to live on the documents of the given
+   * table instead of deleting them, regardless of {@code scalar.dl.tools.scan.cosmos.bulk_delete}.
+   * The deleter shares the session and the request unit limiter of the scanners, and must be closed
+   * once the run no longer deletes.
+   *
+   * @param ttlSeconds the time to live, in seconds after the patch, set on the documents
+   * @param enableContainerTtl whether to enable time to live on the container if it is disabled,
+   *     rather than failing on the first delete
+   * @return a new deleter
+   * @throws IllegalArgumentException if {@code ttlSeconds} is not positive
+   * @throws IllegalStateException if this factory is already closed
+   */
+  public CosmosBulkDeleter createExpiringDeleter(
+      String namespace, String tableName, int ttlSeconds, boolean enableContainerTtl) {
+    return CosmosBulkDeleter.createExpiring(
+        session,
+        namespace,
+        tableName,
+        new CosmosResumableScannerConfig(databaseConfig),
+        requestUnitLimiter,
+        ttlSeconds,
+        enableContainerTtl);
+  }
+
+  /**
+   * Releases the reference of this factory to the shared session. The Cosmos DB client and the
+   * storage admin are closed once every scanner created by this factory is closed as well.
+   */
+  @Override
+  public void close() {
+    session.release();
+  }
 }
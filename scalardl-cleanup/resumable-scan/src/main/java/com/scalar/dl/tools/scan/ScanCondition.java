@@ -0,0 +1,143 @@
+package com.scalar.dl.tools.scan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A predicate on a single column that a {@link ResumableScanner} evaluates on the server side.
+ *
+ * <p>Conditions passed to a scan together are combined with AND. A record whose column is null or
+ * missing never matches a condition. Values must be of the Java type corresponding to the column's
+ * ScalarDB data type: {@code Boolean}, {@code Integer}, {@code Long}, {@code Float}, {@code
+ * Double}, or {@code String}.
+ */
+@Immutable
+public final class ScanCondition {
+
+  /** The comparison operator of a condition. */
+  public enum Operator {
+    EQ,
+    NE,
+    LT,
+    LTE,
+    GT,
+    GTE,
+    IN
+  }
+
+  /**
+   * The pseudo column holding the time a record was last written, in milliseconds since the epoch.
+   * It is maintained by the underlying database rather than by ScalarDB, and is usually indexed
+   * even when the regular columns are not. Only conditions created by {@link
+   * #writtenAtOrAfter(long)} may refer to it.
+   */
+  public static final String LAST_WRITTEN_AT = "$last_written_at";
+
+  private final String column;
+  private final Operator operator;
+  private final List<Object> values;
+
+  private ScanCondition(String column, Operator operator, List<Object> values) {
+    this.column = Objects.requireNonNull(column, "column must not be null");
+    this.operator = operator;
+    if (values.isEmpty()) {
+      throw new IllegalArgumentException("At least one value is required for " + column);
+    }
+    for (Object value : values) {
+      if (!(value instanceof Boolean
+          || value instanceof Integer
+          || value instanceof Long
+          || value instanceof Float
+          || value instanceof Double
+          || value instanceof String)) {
+        throw new IllegalArgumentException("Unsupported value for " + column + ": " + value);
+      }
+    }
+    this.values = Collections.unmodifiableList(new ArrayList<>(values));
+  }
+
+  /** Matches records whose column equals the value. */
+  public static ScanCondition eq(String column, Object value) {
+    return new ScanCondition(column, Operator.EQ, Collections.singletonList(value));
+  }
+
+  /** Matches records whose column does not equal the value. */
+  public static ScanCondition ne(String column, Object value) {
+    return new ScanCondition(column, Operator.NE, Collections.singletonList(value));
+  }
+
+  /** Matches records whose column is less than the value. */
+  public static ScanCondition lt(String column, Object value) {
+    return new ScanCondition(column, Operator.LT, Collections.singletonList(value));
+  }
+
+  /** Matches records whose column is less than or equal to the value. */
+  public static ScanCondition lte(String column, Object value) {
+    return new ScanCondition(column, Operator.LTE, Collections.singletonList(value));
+  }
+
+  /** Matches records whose column is greater than the value. */
+  public static ScanCondition gt(String column, Object value) {
+    return new ScanCondition(column, Operator.GT, Collections.singletonList(value));
+  }
+
+  /** Matches records whose column is greater than or equal to the value. */
+  public static ScanCondition gte(String column, Object value) {
+    return new ScanCondition(column, Operator.GTE, Collections.singletonList(value));
+  }
+
+  /** Matches records whose column equals one of the values. */
+  public static ScanCondition in(String column, Object... values) {
+    return new ScanCondition(column, Operator.IN, Arrays.asList(values));
+  }
+
+  /**
+   * Matches records last written at or after the given time, according to the clock of the
+   * underlying database. The database may track write times at a coarser precision, in which case
+   * records written slightly earlier match as well.
+   *
+   * @param epochMillis the time in milliseconds since the epoch
+   */
+  public static ScanCondition writtenAtOrAfter(long epochMillis) {
+    return gte(LAST_WRITTEN_AT, epochMillis);
+  }
+
+  public String getColumn() {
+    return column;
+  }
+
+  public Operator getOperator() {
+    return operator;
+  }
+
+  /** Returns the operand values; a single value unless the operator is {@link Operator#IN}. */
+  public List<Object> getValues() {
+    return values;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ScanCondition)) {
+      return false;
+    }
+    ScanCondition that = (ScanCondition) o;
+    return column.equals(that.column) && operator == that.operator && values.equals(that.values);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(column, operator, values);
+  }
+
+  @Override
+  public String toString() {
+    return column + " " + operator + " " + values;
+  }
+}
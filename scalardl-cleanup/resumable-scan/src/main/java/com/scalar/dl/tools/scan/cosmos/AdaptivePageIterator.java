@@ -0,0 +1,117 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.azure.cosmos.CosmosDiagnostics;
+import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.util.CosmosPagedIterable;
+import com.google.common.annotations.VisibleForTesting;
+import com.scalar.db.storage.cosmos.Record;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Iterates the pages of a FeedRange query with a page size chosen by an {@link AdaptivePageSizer}.
+ *
+ * <p>The page size of a Cosmos DB query cannot be changed while iterating, so when the sizer
+ * chooses a new size, the query is reopened from the continuation token of the last fetched page
+ * with the new size. Pages are returned in the same order as with a fixed page size, so
+ * checkpointing is not affected.
+ *
+ * <p>The SDK fetches the next page of a query ahead while the current one is handled. Before a
+ * query is reopened, the stream of the previous one is closed, which cancels its subscription so
+ * that it stops fetching ahead; at most the one page it was fetching ahead is discarded, and it is
+ * never returned, so its request charge is not counted with the page read again in its place.
+ *
+ * <p>The fetch latency of a page is the duration of its request as reported by its diagnostics,
+ * which does not include the time a page fetched ahead waited to be returned. Without diagnostics,
+ * it is measured from the first {@code hasNext()} call after the previous page was returned until
+ * the page itself is returned.
+ */
+@NotThreadSafe
+class AdaptivePageIterator implements Iterator<FeedResponse<Record>> {
+
+  @VisibleForTesting static final String CONTENT_LENGTH_HEADER = "Content-Length";
+
+  private final CosmosPagedIterable<Record> iterable;
+  private final AdaptivePageSizer pageSizer;
+  @Nullable private String continuationToken;
+  @Nullable private Stream<FeedResponse<Record>> currentStream;
+  @Nullable private Iterator<FeedResponse<Record>> current;
+  private int currentPageSize;
+  private long fetchStartNanos = -1;
+
+  /** @param continuationToken the token to resume from, or null to start from the beginning */
+  AdaptivePageIterator(
+      CosmosPagedIterable<Record> iterable,
+      @Nullable String continuationToken,
+      AdaptivePageSizer pageSizer) {
+    this.iterable = iterable;
+    this.continuationToken = continuationToken;
+    this.pageSizer = pageSizer;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (fetchStartNanos < 0) {
+      fetchStartNanos = System.nanoTime();
+    }
+    int pageSize = pageSizer.getPageSize();
+    if (current == null || (pageSize != currentPageSize && continuationToken != null)) {
+      if (currentStream != null) {
+        // Stop the previous query from fetching pages ahead that would be read again
+        currentStream.close();
+      }
+      currentStream =
+          continuationToken != null
+              ? iterable.streamByPage(continuationToken, pageSize)
+              : iterable.streamByPage(pageSize);
+      current = currentStream.iterator();
+      currentPageSize = pageSize;
+    }
+    return current.hasNext();
+  }
+
+  @Override
+  public FeedResponse<Record> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    assert current != null;
+    FeedResponse<Record> page = current.next();
+    long latencyMillis = requestLatencyMillis(page);
+    fetchStartNanos = -1;
+
+    // A null token means the FeedRange is exhausted; the current iterator then ends as well
+    continuationToken = page.getContinuationToken();
+    pageSizer.onPage(
+        page.getResults().size(), latencyMillis, page.getRequestCharge(), contentLength(page));
+    return page;
+  }
+
+  private long requestLatencyMillis(FeedResponse<Record> page) {
+    CosmosDiagnostics diagnostics = page.getCosmosDiagnostics();
+    Duration duration = diagnostics == null ? null : diagnostics.getDuration();
+    if (duration != null) {
+      return duration.toMillis();
+    }
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - fetchStartNanos);
+  }
+
+  private static long contentLength(FeedResponse<Record> page) {
+    Map<String, String> headers = page.getResponseHeaders();
+    String value = headers == null ? null : headers.get(CONTENT_LENGTH_HEADER);
+    if (value == null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
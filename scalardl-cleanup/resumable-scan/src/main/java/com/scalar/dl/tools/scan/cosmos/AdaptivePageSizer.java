@@ -0,0 +1,147 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tunes the page size ({@code maxItemCount}) of a single FeedRange scan toward a target page
+ * latency.
+ *
+ * <p>After each page, the latency is smoothed with an exponentially weighted moving average and
+ * the page size is scaled by the ratio of the target latency to the smoothed latency, by at most a
+ * factor of two per page and within the configured bounds. Changes smaller than {@link
+ * #MIN_CHANGE_RATIO} are ignored so that the page size does not oscillate. The page size is also
+ * capped so that a page stays below the maximum response size of Cosmos DB, based on the observed
+ * bytes per document.
+ *
+ * <p>Every change is logged together with the latency, request charge, and size of the page that
+ * caused it, and {@link #summary()} reports the totals for the FeedRange.
+ */
+@NotThreadSafe
+class AdaptivePageSizer {
+
+  private static final Logger logger = LoggerFactory.getLogger(AdaptivePageSizer.class);
+
+  /** The weight of the latest page in the smoothed latency. */
+  private static final double SMOOTHING_FACTOR = 0.5;
+
+  /** The maximum factor by which the page size grows or shrinks after a single page. */
+  private static final double MAX_SCALE = 2.0;
+
+  /** The minimum relative change that is applied. */
+  private static final double MIN_CHANGE_RATIO = 0.1;
+
+  /** Cosmos DB returns at most 4 MB per page; stay comfortably below it. */
+  private static final long MAX_PAGE_BYTES = 3L * 1024 * 1024;
+
+  private final String feedRangeId;
+  private final String tableName;
+  private final int minPageSize;
+  private final int maxPageSize;
+  private final long targetLatencyMillis;
+
+  private int pageSize;
+  private double smoothedLatencyMillis = -1;
+  private long pages;
+  private long items;
+  private long totalLatencyMillis;
+  private double totalRequestCharge;
+  private int changes;
+
+  AdaptivePageSizer(
+      String feedRangeId,
+      String tableName,
+      int initialPageSize,
+      int minPageSize,
+      int maxPageSize,
+      long targetLatencyMillis) {
+    if (minPageSize <= 0 || minPageSize > maxPageSize) {
+      throw new IllegalArgumentException(
+          "Invalid page size bounds: min=" + minPageSize + ", max=" + maxPageSize);
+    }
+    if (targetLatencyMillis <= 0) {
+      throw new IllegalArgumentException(
+          "targetLatencyMillis must be positive: " + targetLatencyMillis);
+    }
+    this.feedRangeId = feedRangeId;
+    this.tableName = tableName;
+    this.minPageSize = minPageSize;
+    this.maxPageSize = maxPageSize;
+    this.targetLatencyMillis = targetLatencyMillis;
+    this.pageSize = clamp(initialPageSize);
+  }
+
+  /** Returns the page size to request for the next page. */
+  int getPageSize() {
+    return pageSize;
+  }
+
+  /**
+   * Records a fetched page and adjusts the page size for the next one.
+   *
+   * @param itemCount the number of documents in the page
+   * @param latencyMillis the time taken to fetch the page
+   * @param requestCharge the request charge of the page in RUs
+   * @param bytes the size of the page in bytes, or a negative value if unknown
+   */
+  void onPage(int itemCount, long latencyMillis, double requestCharge, long bytes) {
+    pages++;
+    items += itemCount;
+    totalLatencyMillis += latencyMillis;
+    totalRequestCharge += requestCharge;
+    if (itemCount == 0) {
+      // An empty page (e.g. all documents filtered out) tells nothing about the cost per document
+      return;
+    }
+
+    smoothedLatencyMillis =
+        smoothedLatencyMillis < 0
+            ? latencyMillis
+            : SMOOTHING_FACTOR * latencyMillis + (1 - SMOOTHING_FACTOR) * smoothedLatencyMillis;
+    double scale = targetLatencyMillis / Math.max(smoothedLatencyMillis, 1.0);
+    scale = Math.max(1 / MAX_SCALE, Math.min(MAX_SCALE, scale));
+    int proposed = clamp((int) Math.round(pageSize * scale));
+    if (bytes > 0) {
+      long bytesPerItem = Math.max(1, bytes / itemCount);
+      long maxItemsBySize = MAX_PAGE_BYTES / bytesPerItem;
+      proposed = Math.min(proposed, clamp((int) Math.min(Integer.MAX_VALUE, maxItemsBySize)));
+    }
+
+    if (Math.abs(proposed - pageSize) < Math.max(1, pageSize * MIN_CHANGE_RATIO)) {
+      return;
+    }
+    logger.info(
+        "FeedRange {} for table {}: page size {} -> {} (latency {} ms, smoothed {} ms,"
+            + " target {} ms, {} items, {} RU, {} bytes)",
+        feedRangeId,
+        tableName,
+        pageSize,
+        proposed,
+        latencyMillis,
+        Math.round(smoothedLatencyMillis),
+        targetLatencyMillis,
+        itemCount,
+        requestCharge,
+        bytes);
+    pageSize = proposed;
+    changes++;
+  }
+
+  /** Returns a one-line summary of the pages recorded so far. */
+  String summary() {
+    return String.format(
+        "%d pages, %d items, final page size %d, %d page size changes, average latency %d ms,"
+            + " total request charge %.1f RU",
+        pages,
+        items,
+        pageSize,
+        changes,
+        pages == 0 ? 0 : totalLatencyMillis / pages,
+        totalRequestCharge);
+  }
+
+  private int clamp(int size) {
+    return Math.max(minPageSize, Math.min(maxPageSize, size));
+  }
+}
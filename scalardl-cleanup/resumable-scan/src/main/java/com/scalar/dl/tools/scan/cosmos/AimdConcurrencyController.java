@@ -0,0 +1,226 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of concurrently active tasks of a scan stage with additive-increase /
+ * multiplicative-decrease (AIMD) feedback from Cosmos DB throttling.
+ *
+ * <p>Tasks call {@link #acquire()} before issuing requests and {@link #release()} afterward, and
+ * report the outcome with {@link #onSuccess()} or {@link #onThrottle(long)}. A throttled outcome
+ * halves the limit and holds back new tasks until the retry-after hint has elapsed, so that the
+ * tasks do not all retry at the same moment. Several throttled outcomes within {@link
+ * #DECREASE_INTERVAL_NANOS} count as one, since tasks that were already in flight report the same
+ * overload. Each run of clean outcomes as long as the current limit raises the limit by one.
+ *
+ * <p>The limit starts at the maximum, so a scan that is never throttled runs exactly as it would
+ * without the controller. Every change of the limit is logged, and {@link #summary()} reports the
+ * time-weighted minimum, average, and maximum limit.
+ */
+@ThreadSafe
+class AimdConcurrencyController {
+
+  private static final Logger logger = LoggerFactory.getLogger(AimdConcurrencyController.class);
+
+  /** The minimum interval between two decreases of the limit. */
+  @VisibleForTesting static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final String name;
+  private final int maxLimit;
+  private final LongSupplier ticker;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+  private final long startNanos;
+
+  @GuardedBy("lock")
+  private int limit;
+
+  @GuardedBy("lock")
+  private int active;
+
+  @GuardedBy("lock")
+  private int cleanOutcomes;
+
+  @GuardedBy("lock")
+  private long pausedUntilNanos;
+
+  @GuardedBy("lock")
+  private long lastDecreaseNanos;
+
+  @GuardedBy("lock")
+  private long throttledOutcomes;
+
+  @GuardedBy("lock")
+  private int minObservedLimit;
+
+  @GuardedBy("lock")
+  private long lastChangeNanos;
+
+  @GuardedBy("lock")
+  private double limitNanos;
+
+  /**
+   * @param name the name of the stage, used in log messages
+   * @param maxLimit the maximum and initial number of concurrently active tasks
+   */
+  AimdConcurrencyController(String name, int maxLimit) {
+    this(name, maxLimit, System::nanoTime);
+  }
+
+  @VisibleForTesting
+  AimdConcurrencyController(String name, int maxLimit, LongSupplier ticker) {
+    if (maxLimit <= 0) {
+      throw new IllegalArgumentException("maxLimit must be positive: " + maxLimit);
+    }
+    this.name = name;
+    this.maxLimit = maxLimit;
+    this.ticker = ticker;
+    this.limit = maxLimit;
+    this.minObservedLimit = maxLimit;
+    this.startNanos = ticker.getAsLong();
+    this.lastChangeNanos = startNanos;
+    this.pausedUntilNanos = startNanos;
+    this.lastDecreaseNanos = startNanos - DECREASE_INTERVAL_NANOS;
+  }
+
+  /**
+   * Waits until fewer tasks than the current limit are active and no retry-after pause is in
+   * effect, then registers the calling task as active.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  void acquire() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (true) {
+        long pauseNanos = pausedUntilNanos - ticker.getAsLong();
+        if (pauseNanos > 0) {
+          available.awaitNanos(pauseNanos);
+        } else if (active >= limit) {
+          available.await();
+        } else {
+          break;
+        }
+      }
+      active++;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits until no retry-after pause is in effect, without registering the calling task. Used to
+   * delay a retry of a task that is already active.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  void awaitPause() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      long pauseNanos;
+      while ((pauseNanos = pausedUntilNanos - ticker.getAsLong()) > 0) {
+        available.awaitNanos(pauseNanos);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Unregisters a task registered by {@link #acquire()}. */
+  void release() {
+    lock.lock();
+    try {
+      active--;
+      available.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Reports a request that completed without being throttled. */
+  void onSuccess() {
+    lock.lock();
+    try {
+      if (limit >= maxLimit || ++cleanOutcomes < limit) {
+        return;
+      }
+      cleanOutcomes = 0;
+      setLimit(limit + 1, "no throttling");
+      available.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Reports a request that Cosmos DB throttled.
+   *
+   * @param retryAfterMillis the retry-after hint of the throttled response, or 0 if unknown
+   */
+  void onThrottle(long retryAfterMillis) {
+    lock.lock();
+    try {
+      throttledOutcomes++;
+      cleanOutcomes = 0;
+      long now = ticker.getAsLong();
+      pausedUntilNanos =
+          Math.max(pausedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+      if (now - lastDecreaseNanos < DECREASE_INTERVAL_NANOS) {
+        return;
+      }
+      lastDecreaseNanos = now;
+      setLimit(Math.max(1, limit / 2), "throttled, retry after " + retryAfterMillis + " ms");
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns the current limit. */
+  int getLimit() {
+    lock.lock();
+    try {
+      return limit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns a one-line summary of the limit over the lifetime of this controller. */
+  String summary() {
+    lock.lock();
+    try {
+      long now = ticker.getAsLong();
+      double totalLimitNanos = limitNanos + (double) limit * (now - lastChangeNanos);
+      long elapsed = now - startNanos;
+      double average = elapsed > 0 ? totalLimitNanos / elapsed : limit;
+      return String.format(
+          Locale.ROOT,
+          "%s concurrency min %d, avg %.1f, max %d, final %d, %d throttled requests",
+          name, minObservedLimit, average, maxLimit, limit, throttledOutcomes);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @GuardedBy("lock")
+  private void setLimit(int newLimit, String reason) {
+    if (newLimit == limit) {
+      return;
+    }
+    long now = ticker.getAsLong();
+    limitNanos += (double) limit * (now - lastChangeNanos);
+    lastChangeNanos = now;
+    logger.info("{} concurrency {} -> {} ({})", name, limit, newLimit, reason);
+    limit = newLimit;
+    minObservedLimit = Math.min(minObservedLimit, newLimit);
+  }
+}
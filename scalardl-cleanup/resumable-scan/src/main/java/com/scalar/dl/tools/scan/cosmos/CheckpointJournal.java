@@ -0,0 +1,448 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import com.scalar.dl.tools.common.CheckpointStore;
+import com.scalar.dl.tools.common.FileUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal of the continuation tokens of the FeedRanges of one table, written with
+ * group commit.
+ *
+ * <p>{@link #append} hands an update to a single writer thread and returns once the writer has
+ * written it to the journal file, so an update that has been appended survives a crash of the
+ * process just as a token file written by {@link FileUtils#writeAtomic} does. The writer gathers
+ * the updates appended by concurrent scan workers for up to the flush interval, or until the batch
+ * size is reached, and writes them with a single append. Workers thus share one file operation per
+ * batch instead of each writing and renaming a file per page, which matters on network volumes.
+ *
+ * <p>Each line of the journal is a JSON object holding a range ID and a token, and the last line of
+ * a range wins. A crash can leave a torn last line, whose append never returned; it is dropped when
+ * the journal is opened. Once the journal holds many more lines than ranges, the writer compacts it
+ * by atomically replacing it with one line per range.
+ *
+ * <p>A journal can also be {@linkplain #open(CheckpointStore, Path, int, long) opened on} a {@link
+ * CheckpointStore} that is not local, which cannot be appended to. The writer then upserts each
+ * batch as one {@code <rangeId>.token} entry per range with {@link CheckpointStore#writeAll}, which
+ * the store can do in one request, and {@link #get} only returns the tokens appended since the
+ * journal was opened; earlier ones are read from the store.
+ */
+@ThreadSafe
+final class CheckpointJournal implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(CheckpointJournal.class);
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private static final String RANGE_FIELD = "range";
+  private static final String TOKEN_FIELD = "token";
+
+  /** The journal is compacted once it holds this many times more lines than ranges. */
+  private static final int COMPACTION_FACTOR = 4;
+
+  private static final int DEFAULT_MIN_COMPACTION_LINES = 1024;
+
+  /** The suffix of the entry holding the token of a range in a store that is not local. */
+  static final String TOKEN_ENTRY_SUFFIX = ".token";
+
+  private final String name;
+  private final int batchSize;
+  private final long flushIntervalNanos;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition updateAppended = lock.newCondition();
+  private final Condition batchWritten = lock.newCondition();
+
+  /** The latest written token of each range. Updated by the writer only. */
+  private final Map<String, String> tokens;
+
+  /** The updates not taken by the writer yet, with only the latest one of each range. */
+  private Map<String, String> pending = new LinkedHashMap<>();
+
+  private long appendedSequence;
+  private long writtenSequence;
+  @Nullable private IOException failure;
+  private boolean closed;
+
+  private final Sink sink;
+  private final Thread writer;
+
+  private CheckpointJournal(
+      Path tableDir,
+      int batchSize,
+      long flushIntervalMillis,
+      Map<String, String> tokens,
+      Sink sink) {
+    this.name = tableDir.toString();
+    this.batchSize = batchSize;
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    this.tokens = tokens;
+    this.sink = sink;
+    this.writer = new Thread(this::runWriter, "checkpoint-journal-" + tableDir.getFileName());
+    this.writer.setDaemon(true);
+  }
+
+  /**
+   * Opens the journal at the given path, creating it and its directory if needed, and starts its
+   * writer.
+   *
+   * @param batchSize the number of updates that makes the writer stop gathering and write a batch
+   * @param flushIntervalMillis the longest time the writer gathers updates before writing them; 0
+   *     writes the updates appended while the previous batch was being written
+   * @throws IOException if the journal cannot be read or opened for appending
+   */
+  static CheckpointJournal open(Path path, int batchSize, long flushIntervalMillis)
+      throws IOException {
+    return open(path, batchSize, flushIntervalMillis, DEFAULT_MIN_COMPACTION_LINES);
+  }
+
+  @VisibleForTesting
+  static CheckpointJournal open(
+      Path path, int batchSize, long flushIntervalMillis, int minCompactionLines)
+      throws IOException {
+    Files.createDirectories(path.getParent());
+    Map<String, String> tokens = new HashMap<>();
+    long lineCount = 0;
+    long validLength = 0;
+    if (Files.exists(path)) {
+      byte[] content = Files.readAllBytes(path);
+      int lineStart = 0;
+      for (int i = 0; i < content.length; i++) {
+        if (content[i] != '\n') {
+          continue;
+        }
+        JsonNode entry = mapper.readTree(content, lineStart, i - lineStart);
+        if (entry == null || !entry.hasNonNull(RANGE_FIELD) || !entry.hasNonNull(TOKEN_FIELD)) {
+          throw new IOException("Malformed line " + (lineCount + 1) + " in " + path);
+        }
+        tokens.put(entry.get(RANGE_FIELD).asText(), entry.get(TOKEN_FIELD).asText());
+        lineCount++;
+        lineStart = i + 1;
+      }
+      validLength = lineStart;
+      if (validLength < content.length) {
+        logger.warn("Dropping the torn last line of the checkpoint journal {}", path);
+      }
+    }
+
+    FileChannel channel =
+        FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    try {
+      // Appended lines must not be joined to a torn line
+      channel.truncate(validLength);
+      channel.position(validLength);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    CheckpointJournal journal =
+        new CheckpointJournal(
+            path.getParent(),
+            batchSize,
+            flushIntervalMillis,
+            tokens,
+            new FileSink(path, channel, lineCount, minCompactionLines));
+    journal.writer.start();
+    return journal;
+  }
+
+  /**
+   * Opens a journal upserting the tokens of the ranges of a table into the given store, and starts
+   * its writer.
+   *
+   * @param tableDir the directory of the table in the store, which the token entries are put in
+   * @param batchSize the number of updates that makes the writer stop gathering and write a batch
+   * @param flushIntervalMillis the longest time the writer gathers updates before writing them; 0
+   *     writes the updates appended while the previous batch was being written
+   */
+  static CheckpointJournal open(
+      CheckpointStore store, Path tableDir, int batchSize, long flushIntervalMillis) {
+    CheckpointJournal journal =
+        new CheckpointJournal(
+            tableDir,
+            batchSize,
+            flushIntervalMillis,
+            new HashMap<>(),
+            new StoreSink(store, tableDir));
+    journal.writer.start();
+    return journal;
+  }
+
+  /** Returns the latest token written for the given range, or null if there is none. */
+  @Nullable
+  String get(String rangeId) {
+    lock.lock();
+    try {
+      return tokens.get(rangeId);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Appends an update of the token of the given range and waits until it has been written.
+   *
+   * @throws UncheckedIOException if the journal cannot be written
+   * @throws IllegalStateException if the journal is closed
+   */
+  void append(String rangeId, String token) {
+    lock.lock();
+    try {
+      if (closed) {
+        throw new IllegalStateException("The checkpoint journal is closed: " + name);
+      }
+      throwIfFailed();
+      pending.put(rangeId, token);
+      long sequence = ++appendedSequence;
+      updateAppended.signal();
+      while (writtenSequence < sequence) {
+        throwIfFailed();
+        // The writer always completes or fails the batch, so an interrupt is kept for the caller
+        batchWritten.awaitUninterruptibly();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void throwIfFailed() {
+    if (failure != null) {
+      throw new UncheckedIOException("Failed to write the checkpoint journal " + name, failure);
+    }
+  }
+
+  /** Writes the updates appended so far, stops the writer and closes the journal. */
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      updateAppended.signal();
+    } finally {
+      lock.unlock();
+    }
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      sink.close();
+    } catch (IOException e) {
+      logger.warn("Failed to close the checkpoint journal {}", name, e);
+    }
+  }
+
+  private void runWriter() {
+    while (true) {
+      Map<String, String> batch;
+      long batchSequence;
+      lock.lock();
+      try {
+        while (pending.isEmpty() && !closed) {
+          updateAppended.awaitUninterruptibly();
+        }
+        if (pending.isEmpty()) {
+          return;
+        }
+        // Let concurrent workers join the batch
+        long remaining = flushIntervalNanos;
+        while (pending.size() < batchSize && !closed && remaining > 0) {
+          try {
+            remaining = updateAppended.awaitNanos(remaining);
+          } catch (InterruptedException e) {
+            break;
+          }
+        }
+        batch = pending;
+        pending = new LinkedHashMap<>();
+        batchSequence = appendedSequence;
+      } finally {
+        lock.unlock();
+      }
+
+      IOException error = null;
+      try {
+        // The writer is the only thread changing the tokens, so they are read without the lock
+        sink.write(batch, tokens);
+      } catch (IOException | RuntimeException e) {
+        // Fail the waiting workers rather than leave them waiting for a writer that has stopped
+        error = e instanceof IOException ? (IOException) e : new IOException(e);
+      }
+
+      lock.lock();
+      try {
+        if (error != null) {
+          failure = error;
+          batchWritten.signalAll();
+          return;
+        }
+        tokens.putAll(batch);
+        writtenSequence = batchSequence;
+        batchWritten.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /** Where the writer writes the batches. Accessed by the writer only, once the journal is open. */
+  private interface Sink extends Closeable {
+    /**
+     * Writes a batch of updates.
+     *
+     * @param batch the updates to write, with only the latest one of each range
+     * @param written the latest token of each range written before the batch
+     */
+    void write(Map<String, String> batch, Map<String, String> written) throws IOException;
+  }
+
+  /** Appends the batches to the journal file. */
+  private static final class FileSink implements Sink {
+    private final Path path;
+    private final int minCompactionLines;
+    private FileChannel channel;
+
+    /** The number of lines in the journal file. */
+    private long lineCount;
+
+    private FileSink(Path path, FileChannel channel, long lineCount, int minCompactionLines) {
+      this.path = path;
+      this.channel = channel;
+      this.lineCount = lineCount;
+      this.minCompactionLines = minCompactionLines;
+    }
+
+    @Override
+    public void write(Map<String, String> batch, Map<String, String> written) throws IOException {
+      ByteBuffer buffer = ByteBuffer.wrap(encode(batch));
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      lineCount += batch.size();
+
+      // The ranges first written by the batch are left out of the count, which only delays the
+      // compaction by a batch
+      if (lineCount >= Math.max(minCompactionLines, (long) COMPACTION_FACTOR * written.size())) {
+        Map<String, String> tokens = new HashMap<>(written);
+        tokens.putAll(batch);
+        try {
+          compact(tokens);
+        } catch (IOException e) {
+          // The journal is still complete; it is compacted again after the next batch
+          logger.warn("Failed to compact the checkpoint journal {}", path, e);
+        }
+      }
+    }
+
+    /**
+     * Replaces the journal with one line per range. The channel appending to the compacted journal
+     * is opened on its temporary file before the file replaces the journal, so that a failure
+     * leaves the journal and its channel as they were.
+     */
+    private void compact(Map<String, String> tokens) throws IOException {
+      Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+      Files.deleteIfExists(tmp);
+      FileChannel compacted =
+          FileChannel.open(
+              tmp,
+              StandardOpenOption.CREATE_NEW,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.APPEND);
+      try {
+        ByteBuffer buffer = ByteBuffer.wrap(encode(tokens));
+        while (buffer.hasRemaining()) {
+          compacted.write(buffer);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException e) {
+        try {
+          compacted.close();
+          Files.deleteIfExists(tmp);
+        } catch (IOException suppressed) {
+          e.addSuppressed(suppressed);
+        }
+        throw e;
+      }
+      FileChannel previous = channel;
+      channel = compacted;
+      lineCount = tokens.size();
+      try {
+        previous.close();
+      } catch (IOException e) {
+        logger.warn("Failed to close the replaced checkpoint journal {}", path, e);
+      }
+      logger.debug("Compacted the checkpoint journal {} to {} lines", path, lineCount);
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  /** Upserts the batches into a store as one entry per range. */
+  private static final class StoreSink implements Sink {
+    private final CheckpointStore store;
+    private final Path tableDir;
+
+    private StoreSink(CheckpointStore store, Path tableDir) {
+      this.store = store;
+      this.tableDir = tableDir;
+    }
+
+    @Override
+    public void write(Map<String, String> batch, Map<String, String> written) throws IOException {
+      Map<Path, byte[]> entries = new LinkedHashMap<>();
+      for (Map.Entry<String, String> entry : batch.entrySet()) {
+        entries.put(
+            tableDir.resolve(entry.getKey() + TOKEN_ENTRY_SUFFIX),
+            entry.getValue().getBytes(StandardCharsets.UTF_8));
+      }
+      store.writeAll(entries);
+    }
+
+    @Override
+    public void close() {
+      // The store belongs to the caller
+    }
+  }
+
+  private static byte[] encode(Map<String, String> entries) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (Map.Entry<String, String> entry : entries.entrySet()) {
+      out.write(
+          mapper.writeValueAsBytes(
+              mapper
+                  .createObjectNode()
+                  .put(RANGE_FIELD, entry.getKey())
+                  .put(TOKEN_FIELD, entry.getValue())));
+      out.write('\n');
+    }
+    return out.toByteArray();
+  }
+}
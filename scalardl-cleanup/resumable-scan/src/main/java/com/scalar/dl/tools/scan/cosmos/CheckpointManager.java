@@ -1,59 +1,126 @@
 package com.scalar.dl.tools.scan.cosmos;
 
-import com.scalar.dl.tools.common.FileUtils;
-import edu.umd.cs.findbugs.annotations.NonNull;
+import com.scalar.dl.tools.common.CheckpointStore;
+import com.scalar.dl.tools.common.FileCheckpointStore;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.annotation.Nullable;
 
 /**
  * Manages scan-internal checkpoint state: per-partition continuation tokens and FeedRange files.
  *
  * <p>The checkpoint directory is provided by the caller (typically the orchestrator) and should
- * point to a scan-specific subdirectory (e.g., {@code <checkpoint-root>/scan}). Files are stored
- * under {@code <checkpointDir>/<tableName>/} with per-partition token files and a feed_ranges.json.
+ * point to a scan-specific subdirectory (e.g., {@code <checkpoint-root>/scan}). Entries are stored
+ * in a {@link CheckpointStore} under {@code <checkpointDir>/<tableName>/}: the continuation tokens,
+ * written through a {@link CheckpointJournal}, and a feed_ranges.json.
  *
- * <p><b>Thread safety:</b> Multiple scan workers concurrently write their own .token files. Each
- * .token file is written by exactly one scan worker, so no file locks are needed.
+ * <p>On a local store the tokens are appended to a journal file. On any other store they are kept
+ * as one .token entry per partition, as checkpoints written on a local store before the journal was
+ * introduced also are. Such entries are read when the journal has no token for a partition, so
+ * those scans can be resumed.
+ *
+ * <p><b>Thread safety:</b> Multiple scan workers concurrently persist their tokens, which the
+ * journal of the table serializes.
  */
-class CheckpointManager {
+class CheckpointManager implements AutoCloseable {
 
   private static final String FEED_RANGES_FILE = "feed_ranges.json";
+  private static final String JOURNAL_FILE = "tokens.journal";
+
+  private static final int DEFAULT_JOURNAL_BATCH_SIZE = 64;
+  private static final int DEFAULT_JOURNAL_FLUSH_INTERVAL_MILLIS = 5;
 
+  private final CheckpointStore store;
   private final Path checkpointDir;
+  private final int journalBatchSize;
+  private final int journalFlushIntervalMillis;
+  private final ConcurrentMap<String, CheckpointJournal> journals = new ConcurrentHashMap<>();
 
   public CheckpointManager(Path checkpointDir) {
+    this(
+        new FileCheckpointStore(),
+        checkpointDir,
+        DEFAULT_JOURNAL_BATCH_SIZE,
+        DEFAULT_JOURNAL_FLUSH_INTERVAL_MILLIS);
+  }
+
+  /**
+   * @param store the store holding the checkpoint state; it is not closed by this manager
+   * @param journalBatchSize the number of token updates written together at most
+   * @param journalFlushIntervalMillis the longest time a token update waits for others to be
+   *     written together
+   */
+  public CheckpointManager(
+      CheckpointStore store,
+      Path checkpointDir,
+      int journalBatchSize,
+      int journalFlushIntervalMillis) {
+    this.store = store;
     this.checkpointDir = checkpointDir;
+    this.journalBatchSize = journalBatchSize;
+    this.journalFlushIntervalMillis = journalFlushIntervalMillis;
+  }
+
+  /** Returns the journal of the given table, opening it on first use. */
+  private CheckpointJournal journal(String tableName) {
+    return journals.computeIfAbsent(
+        tableName,
+        t -> {
+          Path tableDir = checkpointDir.resolve(t);
+          if (!store.isLocal()) {
+            return CheckpointJournal.open(
+                store, tableDir, journalBatchSize, journalFlushIntervalMillis);
+          }
+          try {
+            return CheckpointJournal.open(
+                tableDir.resolve(JOURNAL_FILE), journalBatchSize, journalFlushIntervalMillis);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
   }
 
   /** Load continuation token for a given table and range, or null. */
   @Nullable
   public String loadContinuationToken(String tableName, String rangeId) {
-    Path tokenPath = checkpointDir.resolve(tableName).resolve(rangeId + ".token");
-    if (!Files.exists(tokenPath)) {
-      return null;
+    String token;
+    try {
+      token = journal(tableName).get(rangeId);
+    } catch (UncheckedIOException e) {
+      throw new RuntimeException(
+          "Failed to load continuation token for " + tableName + "/" + rangeId, e.getCause());
     }
+    if (token != null) {
+      return token;
+    }
+    Path tokenPath =
+        checkpointDir.resolve(tableName).resolve(rangeId + CheckpointJournal.TOKEN_ENTRY_SUFFIX);
     try {
-      return new String(Files.readAllBytes(tokenPath), StandardCharsets.UTF_8);
+      byte[] content = store.read(tokenPath);
+      return content == null ? null : new String(content, StandardCharsets.UTF_8);
     } catch (IOException e) {
       throw new RuntimeException(
           "Failed to load continuation token for " + tableName + "/" + rangeId, e);
     }
   }
 
-  /** Atomically persist continuation token for a given table and range. */
+  /**
+   * Persist continuation token for a given table and range. Returns once the token is written to
+   * the journal, together with the tokens persisted concurrently by other workers.
+   */
   public void persistContinuationToken(String tableName, String rangeId, String token) {
-    Path tokenPath = checkpointDir.resolve(tableName).resolve(rangeId + ".token");
     try {
-      FileUtils.writeAtomic(tokenPath, token.getBytes(StandardCharsets.UTF_8));
-    } catch (IOException e) {
+      journal(tableName).append(rangeId, token);
+    } catch (UncheckedIOException e) {
       throw new RuntimeException(
-          "Failed to persist continuation token for " + tableName + "/" + rangeId, e);
+          "Failed to persist continuation token for " + tableName + "/" + rangeId, e.getCause());
     }
   }
 
@@ -61,11 +128,9 @@ class CheckpointManager {
   @Nullable
   public String loadFeedRanges(String tableName) {
     Path feedRangesPath = checkpointDir.resolve(tableName).resolve(FEED_RANGES_FILE);
-    if (!Files.exists(feedRangesPath)) {
-      return null;
-    }
     try {
-      return new String(Files.readAllBytes(feedRangesPath), StandardCharsets.UTF_8);
+      byte[] content = store.read(feedRangesPath);
+      return content == null ? null : new String(content, StandardCharsets.UTF_8);
     } catch (IOException e) {
       throw new RuntimeException("Failed to load feed ranges for " + tableName, e);
     }
@@ -75,14 +140,20 @@ class CheckpointManager {
   public void persistFeedRanges(String tableName, String feedRangesJson) {
     Path feedRangesPath = checkpointDir.resolve(tableName).resolve(FEED_RANGES_FILE);
     try {
-      FileUtils.writeAtomic(feedRangesPath, feedRangesJson.getBytes(StandardCharsets.UTF_8));
+      store.write(feedRangesPath, feedRangesJson.getBytes(StandardCharsets.UTF_8));
     } catch (IOException e) {
       throw new RuntimeException("Failed to persist feed ranges for " + tableName, e);
     }
   }
 
-  /** Create the checkpoint directory for the given table. Called before scanning. */
+  /**
+   * Create the checkpoint directory for the given table on a local store. Called before scanning.
+   */
   public void initCheckpointFor(String tableName) {
+    if (!store.isLocal()) {
+      // The other stores have no directories to create
+      return;
+    }
     Path tableDir = checkpointDir.resolve(tableName);
     try {
       Files.createDirectories(tableDir);
@@ -94,33 +165,25 @@ class CheckpointManager {
 
   /** Delete checkpoint files for the given table, keeping the checkpoint directory itself. */
   public void clearCheckpointFor(String tableName) {
-    Path tableDir = checkpointDir.resolve(tableName);
-    if (!Files.exists(tableDir)) {
-      return;
+    CheckpointJournal journal = journals.remove(tableName);
+    if (journal != null) {
+      journal.close();
     }
     try {
-      Files.walkFileTree(
-          tableDir,
-          new SimpleFileVisitor<Path>() {
-            @Override
-            @NonNull
-            public FileVisitResult visitFile(@NonNull Path file, @NonNull BasicFileAttributes attrs)
-                throws IOException {
-              Files.delete(file);
-              return FileVisitResult.CONTINUE;
-            }
-
-            @Override
-            @NonNull
-            public FileVisitResult postVisitDirectory(@NonNull Path dir, IOException exc)
-                throws IOException {
-              Files.delete(dir);
-              return FileVisitResult.CONTINUE;
-            }
-          });
+      store.deleteRecursively(checkpointDir.resolve(tableName));
     } catch (IOException e) {
       throw new RuntimeException(
           "Failed to clear checkpoint for table " + tableName + " in " + checkpointDir, e);
     }
   }
+
+  /** Closes the journals of the tables, once the tokens persisted so far are written. */
+  @Override
+  public void close() {
+    List<CheckpointJournal> opened = new ArrayList<>(journals.values());
+    journals.clear();
+    for (CheckpointJournal journal : opened) {
+      journal.close();
+    }
+  }
 }
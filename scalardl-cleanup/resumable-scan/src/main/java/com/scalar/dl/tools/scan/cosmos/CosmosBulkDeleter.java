@@ -0,0 +1,391 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.models.CosmosBulkItemResponse;
+import com.azure.cosmos.models.CosmosBulkOperationResponse;
+import com.azure.cosmos.models.CosmosBulkOperations;
+import com.azure.cosmos.models.CosmosContainerProperties;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosPatchOperations;
+import com.azure.cosmos.models.PartitionKey;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.scalar.db.api.TableMetadata;
+import com.scalar.db.util.ScalarDbUtils;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
+import com.scalar.dl.tools.common.ScalarDlCleanupError;
+import com.scalar.dl.tools.common.ScalarDlCleanupException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deletes the documents of a Cosmos DB container through the bulk API of the SDK, instead of with
+ * one request per record.
+ *
+ * <p>A call to {@link #deleteAll(List)} splits the given records into batches of {@code batchSize}
+ * operations and sends them with {@link CosmosContainer#executeBulkOperations}, which groups the
+ * operations of a batch by physical partition and sends each group in a single request. At most
+ * {@code maxInFlightBatches} batches are in flight at a time across all callers, so the deletes of
+ * the pages of many scan workers share one bounded pipeline. The call returns only once every
+ * delete of the given records is acknowledged, so a scan worker can checkpoint its page afterward.
+ *
+ * <p>An expiring deleter sets a per-item time to live ({@code ttl}) on the documents with patch
+ * operations instead of deleting them, so that Cosmos DB removes them in the background with the
+ * spare throughput of the container rather than with foreground request units. Cosmos DB honors
+ * the per-item time to live only if time to live is enabled on the container, which the deleter
+ * checks, and optionally enables, on first use.
+ *
+ * <p>Only tables whose primary key is a single partition key column, such as the coordinator and
+ * {@code request_proof} tables, are supported: ScalarDB stores their records with the key value as
+ * both the document id and the partition key, so a record is deleted by its key value alone. A
+ * document that is already gone counts as deleted, so a page delivered again by a resumed scan is
+ * deleted again without failing.
+ */
+@ThreadSafe
+public final class CosmosBulkDeleter implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(CosmosBulkDeleter.class);
+
+  static final int NOT_FOUND = 404;
+
+  /** The value of {@code ttlSeconds} for a deleter that deletes the documents right away. */
+  static final int NO_TTL = 0;
+
+  /** The container default time to live that enables per-item time to live without a default. */
+  private static final int TTL_ENABLED_WITHOUT_DEFAULT = -1;
+
+  private static final String TTL_PATH = "/ttl";
+
+  private final String tableName;
+  private final Supplier<CosmosContainer> containerSupplier;
+  private final RequestUnitLimiter requestUnitLimiter;
+  private final int batchSize;
+  private final Semaphore inFlightBatches;
+  private final ExecutorService executor;
+  private final Runnable onClose;
+  private final int ttlSeconds;
+  private final ReentrantLock lock = new ReentrantLock();
+  @Nullable private CosmosContainer container;
+
+  /**
+   * @param containerSupplier supplies the container on the first delete
+   * @param requestUnitLimiter the limiter charged with the estimated request charge of every delete
+   * @param onClose run once when this deleter is closed
+   */
+  @VisibleForTesting
+  CosmosBulkDeleter(
+      String tableName,
+      Supplier<CosmosContainer> containerSupplier,
+      RequestUnitLimiter requestUnitLimiter,
+      int batchSize,
+      int maxInFlightBatches,
+      Runnable onClose) {
+    this(
+        tableName,
+        containerSupplier,
+        requestUnitLimiter,
+        batchSize,
+        maxInFlightBatches,
+        onClose,
+        NO_TTL);
+  }
+
+  /**
+   * @param ttlSeconds the time to live set on the documents instead of deleting them, or {@link
+   *     #NO_TTL} to delete them
+   */
+  @VisibleForTesting
+  CosmosBulkDeleter(
+      String tableName,
+      Supplier<CosmosContainer> containerSupplier,
+      RequestUnitLimiter requestUnitLimiter,
+      int batchSize,
+      int maxInFlightBatches,
+      Runnable onClose,
+      int ttlSeconds) {
+    this.tableName = tableName;
+    this.containerSupplier = containerSupplier;
+    this.requestUnitLimiter = requestUnitLimiter;
+    this.batchSize = batchSize;
+    this.inFlightBatches = new Semaphore(maxInFlightBatches);
+    this.executor =
+        Executors.newFixedThreadPool(
+            maxInFlightBatches,
+            new ThreadFactoryBuilder().setNameFormat("bulk-delete-%d").setDaemon(true).build());
+    this.onClose = onClose;
+    this.ttlSeconds = ttlSeconds;
+  }
+
+  /**
+   * Creates a deleter for the given table on the container of a scan session. The session is
+   * retained until the deleter is closed, and nothing is connected until the first delete.
+   *
+   * @param config the configuration holding the batch size and the in-flight batch limit
+   * @param requestUnitLimiter the limiter charged with the estimated request charge of every delete
+   * @return a new deleter
+   */
+  public static CosmosBulkDeleter create(
+      CosmosScanSession session,
+      String namespace,
+      String tableName,
+      CosmosResumableScannerConfig config,
+      RequestUnitLimiter requestUnitLimiter) {
+    session.retain();
+    return new CosmosBulkDeleter(
+        ScalarDbUtils.getFullTableName(namespace, tableName),
+        () -> {
+          checkSupported(session, namespace, tableName);
+          return session.getContainer(namespace, tableName);
+        },
+        requestUnitLimiter,
+        config.getBulkDeleteBatchSize(),
+        config.getBulkDeleteMaxInFlightBatches(),
+        session::release);
+  }
+
+  /**
+   * Creates an expiring deleter for the given table on the container of a scan session. The
+   * session is retained until the deleter is closed, and nothing is connected until the first
+   * delete.
+   *
+   * @param config the configuration holding the batch size and the in-flight batch limit
+   * @param requestUnitLimiter the limiter charged with the estimated request charge of every patch
+   * @param ttlSeconds the time to live, in seconds after the patch, set on the documents
+   * @param enableContainerTtl whether to enable time to live on the container if it is disabled,
+   *     rather than failing
+   * @return a new deleter
+   * @throws IllegalArgumentException if {@code ttlSeconds} is not positive
+   */
+  public static CosmosBulkDeleter createExpiring(
+      CosmosScanSession session,
+      String namespace,
+      String tableName,
+      CosmosResumableScannerConfig config,
+      RequestUnitLimiter requestUnitLimiter,
+      int ttlSeconds,
+      boolean enableContainerTtl) {
+    if (ttlSeconds <= 0) {
+      throw new IllegalArgumentException("The time to live must be positive: " + ttlSeconds);
+    }
+    String qualifiedTableName = ScalarDbUtils.getFullTableName(namespace, tableName);
+    session.retain();
+    return new CosmosBulkDeleter(
+        qualifiedTableName,
+        () -> {
+          checkSupported(session, namespace, tableName);
+          CosmosContainer container = session.getContainer(namespace, tableName);
+          ensureTimeToLive(container, qualifiedTableName, enableContainerTtl);
+          return container;
+        },
+        requestUnitLimiter,
+        config.getBulkDeleteBatchSize(),
+        config.getBulkDeleteMaxInFlightBatches(),
+        session::release,
+        ttlSeconds);
+  }
+
+  /**
+   * Makes sure Cosmos DB honors the per-item time to live of the container's documents, enabling
+   * it without a default time to live if allowed, so that documents without one never expire.
+   */
+  @VisibleForTesting
+  static void ensureTimeToLive(
+      CosmosContainer container, String qualifiedTableName, boolean enableContainerTtl) {
+    CosmosContainerProperties properties = container.read().getProperties();
+    if (properties.getDefaultTimeToLiveInSeconds() != null) {
+      return;
+    }
+    if (!enableContainerTtl) {
+      throw new ScalarDlCleanupException(
+          ScalarDlCleanupError.CONTAINER_TTL_DISABLED, qualifiedTableName);
+    }
+    properties.setDefaultTimeToLiveInSeconds(TTL_ENABLED_WITHOUT_DEFAULT);
+    container.replace(properties);
+    logger.info("Enabled time to live on the container of {}", qualifiedTableName);
+  }
+
+  /** Returns whether this deleter sets a time to live on the documents instead of deleting them. */
+  public boolean isExpiring() {
+    return ttlSeconds != NO_TTL;
+  }
+
+  private static void checkSupported(
+      CosmosScanSession session, String namespace, String tableName) {
+    TableMetadata metadata;
+    try {
+      metadata = session.getStorageAdmin().getTableMetadata(namespace, tableName);
+    } catch (com.scalar.db.exception.storage.ExecutionException e) {
+      throw new RuntimeException(
+          "Failed to get the table metadata for " + namespace + "." + tableName, e);
+    }
+    if (metadata == null) {
+      throw new IllegalArgumentException("Table not found: " + namespace + "." + tableName);
+    }
+    if (metadata.getPartitionKeyNames().size() != 1
+        || !metadata.getClusteringKeyNames().isEmpty()) {
+      throw new IllegalArgumentException(
+          "Bulk deletes only support tables with a single partition key column and no clustering"
+              + " key: "
+              + namespace
+              + "."
+              + tableName);
+    }
+  }
+
+  /**
+   * Deletes the records with the given partition key values and waits for every delete to be
+   * acknowledged.
+   *
+   * <p>If a batch fails, no further batches are sent, the batches already in flight are awaited,
+   * and the first failure is thrown with any later ones suppressed.
+   *
+   * @param keys the partition key values of the records to delete
+   * @throws Exception if a delete fails
+   */
+  public void deleteAll(List<String> keys) throws Exception {
+    if (keys.isEmpty()) {
+      return;
+    }
+    CosmosContainer container = container();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (List<String> batch : Lists.partition(keys, batchSize)) {
+        if (failure.get() != null) {
+          break;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+          requestUnitLimiter.chargeDelete();
+        }
+        inFlightBatches.acquire();
+        try {
+          futures.add(executor.submit(() -> deleteBatch(container, batch, failure)));
+        } catch (RejectedExecutionException e) {
+          inFlightBatches.release();
+          throw e;
+        }
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          // Already recorded in deleteBatch()
+        }
+      }
+    } catch (InterruptedException | RuntimeException e) {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+      throw e;
+    }
+
+    Throwable first = failure.get();
+    if (first instanceof Error) {
+      throw (Error) first;
+    } else if (first != null) {
+      throw (Exception) first;
+    }
+  }
+
+  private Void deleteBatch(
+      CosmosContainer container, List<String> keys, AtomicReference<Throwable> failure) {
+    try {
+      List<CosmosItemOperation> operations = new ArrayList<>(keys.size());
+      for (String key : keys) {
+        operations.add(createOperation(key));
+      }
+      Iterable<CosmosBulkOperationResponse<Object>> responses =
+          container.executeBulkOperations(operations);
+      for (CosmosBulkOperationResponse<Object> response : responses) {
+        checkDeleted(response);
+      }
+      return null;
+    } catch (Throwable t) {
+      if (!failure.compareAndSet(null, t)) {
+        failure.get().addSuppressed(t);
+      }
+      throw t;
+    } finally {
+      inFlightBatches.release();
+    }
+  }
+
+  private CosmosItemOperation createOperation(String key) {
+    if (ttlSeconds == NO_TTL) {
+      return CosmosBulkOperations.getDeleteItemOperation(key, new PartitionKey(key));
+    }
+    return CosmosBulkOperations.getPatchItemOperation(
+        key, new PartitionKey(key), CosmosPatchOperations.create().set(TTL_PATH, ttlSeconds));
+  }
+
+  private void checkDeleted(CosmosBulkOperationResponse<?> response) {
+    String action = isExpiring() ? "expire" : "delete";
+    if (response.getException() != null) {
+      throw new RuntimeException(
+          "Failed to "
+              + action
+              + " the document "
+              + response.getOperation().getId()
+              + " from "
+              + tableName,
+          response.getException());
+    }
+    CosmosBulkItemResponse itemResponse = response.getResponse();
+    if (itemResponse == null) {
+      // Neither a response nor an exception, so the operation cannot be known to have been applied
+      throw new RuntimeException(
+          "Failed to "
+              + action
+              + " the document "
+              + response.getOperation().getId()
+              + " from "
+              + tableName
+              + " with no response");
+    }
+    if (itemResponse.isSuccessStatusCode() || itemResponse.getStatusCode() == NOT_FOUND) {
+      return;
+    }
+    throw new RuntimeException(
+        "Failed to "
+            + action
+            + " the document "
+            + response.getOperation().getId()
+            + " from "
+            + tableName
+            + " with status code "
+            + itemResponse.getStatusCode());
+  }
+
+  private CosmosContainer container() {
+    lock.lock();
+    try {
+      if (container == null) {
+        container = containerSupplier.get();
+      }
+      return container;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Stops the bulk pipeline and releases the scan session. */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    onClose.run();
+  }
+}
@@ -0,0 +1,54 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.azure.cosmos.models.CosmosContainerRequestOptions;
+import com.scalar.dl.tools.scan.ResumableScanner;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Reads the document count of a container from the quota information Cosmos DB returns when a
+ * container is read with quota information enabled.
+ *
+ * <p>The count is reported in the {@code x-ms-resource-usage} header as {@code documentsCount=N},
+ * among other usage entries separated by semicolons. It is maintained asynchronously by Cosmos DB,
+ * so it is only an estimate, but reading it costs a single metadata request instead of a query over
+ * every document.
+ */
+final class CosmosContainerStats {
+
+  static final String RESOURCE_USAGE_HEADER = "x-ms-resource-usage";
+  private static final String DOCUMENTS_COUNT = "documentsCount";
+
+  private CosmosContainerStats() {}
+
+  /** Returns options for reading a container together with its quota information. */
+  static CosmosContainerRequestOptions quotaInfoOptions() {
+    CosmosContainerRequestOptions options = new CosmosContainerRequestOptions();
+    options.setQuotaInfoEnabled(true);
+    return options;
+  }
+
+  /**
+   * Returns the document count reported in the given response headers of a container read.
+   *
+   * @return the document count, or {@link ResumableScanner#UNKNOWN_RECORD_COUNT} if the headers do
+   *     not report it
+   */
+  static long documentCount(@Nullable Map<String, String> headers) {
+    String usage = headers == null ? null : headers.get(RESOURCE_USAGE_HEADER);
+    if (usage == null) {
+      return ResumableScanner.UNKNOWN_RECORD_COUNT;
+    }
+    for (String entry : usage.split(";")) {
+      int separator = entry.indexOf('=');
+      if (separator > 0 && entry.substring(0, separator).trim().equals(DOCUMENTS_COUNT)) {
+        try {
+          return Long.parseLong(entry.substring(separator + 1).trim());
+        } catch (NumberFormatException e) {
+          return ResumableScanner.UNKNOWN_RECORD_COUNT;
+        }
+      }
+    }
+    return ResumableScanner.UNKNOWN_RECORD_COUNT;
+  }
+}
@@ -0,0 +1,441 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.azure.cosmos.CosmosAsyncClient;
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.models.CosmosContainerResponse;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.FeedRange;
+import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.azure.cosmos.util.CosmosPagedFlux;
+import com.google.common.annotations.VisibleForTesting;
+import com.scalar.db.api.DistributedStorageAdmin;
+import com.scalar.db.api.Result;
+import com.scalar.db.api.TableMetadata;
+import com.scalar.db.config.DatabaseConfig;
+import com.scalar.db.storage.cosmos.Record;
+import com.scalar.db.storage.cosmos.ResultInterpreter;
+import com.scalar.db.util.ScalarDbUtils;
+import com.scalar.dl.tools.common.CheckpointStore;
+import com.scalar.dl.tools.common.FileCheckpointStore;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
+import com.scalar.dl.tools.scan.RecordHandler;
+import com.scalar.dl.tools.scan.ResumableScanner;
+import com.scalar.dl.tools.scan.ScanCondition;
+import com.scalar.dl.tools.scan.ScanResult;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Cosmos DB implementation of {@link ResumableScanner} on the asynchronous Cosmos SDK.
+ *
+ * <p>Unlike {@link CosmosResumableScanner}, which dedicates a thread to each FeedRange being
+ * scanned, this scanner drives up to {@code max_concurrent_ranges} FeedRanges at once as Reactor
+ * pipelines over {@link CosmosAsyncContainer#queryItems(SqlQuerySpec, CosmosQueryRequestOptions,
+ * Class)}. Waiting for Cosmos DB does not hold a thread, so thousands of FeedRanges (or
+ * sub-ranges, see {@link FeedRangePlanner}) can be scanned by a process with a handful of threads.
+ *
+ * <p>The pages of a FeedRange are handled one after another, and at most one page is requested
+ * ahead of the page being handled, so backpressure bounds the documents held in memory to about two
+ * pages per concurrently scanned FeedRange. The records of a page are handled through a bounded
+ * {@code flatMap}, with at most {@code handler_concurrency} of them in flight, and the continuation
+ * token of the page is checkpointed only after all of them have succeeded, as in the threaded
+ * scanner.
+ *
+ * <p>The record handler, checkpoint writes, and the {@link RequestUnitLimiter} block, so they run
+ * on a bounded elastic scheduler with at most {@code max_threads} threads rather than on the SDK's
+ * event loop threads.
+ *
+ * <p>The asynchronous Cosmos DB client and the storage admin come from a {@link CosmosScanSession},
+ * which can be shared with other scanners so that a run builds them once.
+ *
+ * <p>Page prefetching beyond one page, adaptive page sizing, and adaptive concurrency are features
+ * of the threaded scanner and are ignored by this one.
+ */
+@NotThreadSafe
+public final class CosmosReactiveResumableScanner implements ResumableScanner {
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(CosmosReactiveResumableScanner.class);
+  private static final int HANDLER_THREAD_TTL_SECONDS = 60;
+
+  private final CosmosAsyncClient cosmosClient;
+  private final CheckpointManager checkpointManager;
+  private final DistributedStorageAdmin storageAdmin;
+  private final int maxThreads;
+  private final int maxItemCount;
+  private final int handlerConcurrency;
+  private final int subRangesPerPartition;
+  private final int maxConcurrentRanges;
+  private final RequestUnitLimiter requestUnitLimiter;
+  @Nullable private final CosmosScanSession session;
+  @Nullable private Scheduler handlerScheduler;
+
+  /**
+   * @param requestUnitLimiter the limiter charged with the request charge of every fetched page;
+   *     share it with the other Cosmos DB clients of the process to cap their total RU consumption
+   */
+  public CosmosReactiveResumableScanner(
+      DatabaseConfig databaseConfig, Path checkpointDir, RequestUnitLimiter requestUnitLimiter) {
+    this(
+        databaseConfig,
+        CosmosScanSession.create(databaseConfig),
+        checkpointDir,
+        new FileCheckpointStore(),
+        requestUnitLimiter);
+  }
+
+  /**
+   * @param session the session providing the Cosmos DB client and the storage admin; a reference
+   *     to it is held until this scanner is closed
+   * @param checkpointStore the store holding the scan checkpoints; it is not closed by this scanner
+   * @param requestUnitLimiter the limiter charged with the request charge of every fetched page;
+   *     share it with the other Cosmos DB clients of the process to cap their total RU consumption
+   */
+  public CosmosReactiveResumableScanner(
+      DatabaseConfig databaseConfig,
+      CosmosScanSession session,
+      Path checkpointDir,
+      CheckpointStore checkpointStore,
+      RequestUnitLimiter requestUnitLimiter) {
+    CosmosResumableScannerConfig config = new CosmosResumableScannerConfig(databaseConfig);
+    if (config.isAdaptivePageSize() || config.isAdaptiveConcurrency()) {
+      logger.warn(
+          "Adaptive page sizing and adaptive concurrency are not supported by the reactive scan"
+              + " engine and are ignored");
+    }
+    session.retain();
+    try {
+      this.cosmosClient = session.getAsyncClient();
+      this.storageAdmin = session.getStorageAdmin();
+    } catch (RuntimeException e) {
+      session.release();
+      throw e;
+    }
+    this.session = session;
+    this.checkpointManager =
+        new CheckpointManager(
+            checkpointStore,
+            checkpointDir,
+            config.getCheckpointBatchSize(),
+            config.getCheckpointFlushIntervalMillis());
+    this.maxThreads = config.getMaxWorkerThreads();
+    this.maxItemCount = config.getMaxItemCount();
+    this.handlerConcurrency = config.getHandlerConcurrency();
+    this.subRangesPerPartition = config.getSubRangesPerPartition();
+    this.maxConcurrentRanges = config.getMaxConcurrentRanges();
+    this.requestUnitLimiter = requestUnitLimiter;
+  }
+
+  @VisibleForTesting
+  CosmosReactiveResumableScanner(
+      CosmosAsyncClient cosmosClient,
+      CheckpointManager checkpointManager,
+      DistributedStorageAdmin storageAdmin,
+      int maxThreads,
+      int maxItemCount,
+      int handlerConcurrency,
+      int subRangesPerPartition,
+      int maxConcurrentRanges,
+      RequestUnitLimiter requestUnitLimiter) {
+    this.cosmosClient = cosmosClient;
+    this.session = null;
+    this.checkpointManager = checkpointManager;
+    this.storageAdmin = storageAdmin;
+    this.maxThreads = maxThreads;
+    this.maxItemCount = maxItemCount;
+    this.handlerConcurrency = handlerConcurrency;
+    this.subRangesPerPartition = subRangesPerPartition;
+    this.maxConcurrentRanges = maxConcurrentRanges;
+    this.requestUnitLimiter = requestUnitLimiter;
+  }
+
+  @Override
+  public long estimateRecordCount(String namespace, String tableName) {
+    try {
+      CosmosContainerResponse response =
+          cosmosClient
+              .getDatabase(namespace)
+              .getContainer(tableName)
+              .read(CosmosContainerStats.quotaInfoOptions())
+              .block();
+      return response == null
+          ? UNKNOWN_RECORD_COUNT
+          : CosmosContainerStats.documentCount(response.getResponseHeaders());
+    } catch (RuntimeException e) {
+      logger.debug(
+          "Failed to estimate the record count of {}",
+          ScalarDbUtils.getFullTableName(namespace, tableName),
+          e);
+      return UNKNOWN_RECORD_COUNT;
+    }
+  }
+
+  @Override
+  public ScanResult scan(
+      String namespace,
+      String tableName,
+      List<ScanCondition> conditions,
+      RecordHandler recordHandler)
+      throws Exception {
+    Objects.requireNonNull(namespace, "namespace must not be null");
+    Objects.requireNonNull(tableName, "tableName must not be null");
+    Objects.requireNonNull(conditions, "conditions must not be null");
+    Objects.requireNonNull(recordHandler, "recordHandler must not be null");
+
+    String qualifiedTableName = ScalarDbUtils.getFullTableName(namespace, tableName);
+    checkpointManager.initCheckpointFor(qualifiedTableName);
+    ScanResult result = doScan(namespace, tableName, conditions, recordHandler);
+    checkpointManager.clearCheckpointFor(qualifiedTableName);
+    return result;
+  }
+
+  private ScanResult doScan(
+      String namespace,
+      String tableName,
+      List<ScanCondition> conditions,
+      RecordHandler recordHandler)
+      throws Exception {
+    CosmosAsyncContainer container =
+        session != null
+            ? session.getAsyncContainer(namespace, tableName)
+            : cosmosClient.getDatabase(namespace).getContainer(tableName);
+
+    TableMetadata tableMetadata = storageAdmin.getTableMetadata(namespace, tableName);
+    if (tableMetadata == null) {
+      throw new IllegalStateException(
+          "Table metadata not found for " + ScalarDbUtils.getFullTableName(namespace, tableName));
+    }
+    List<String> projections =
+        CosmosScanQuery.resolveProjections(tableMetadata, recordHandler.getProjections());
+    ResultInterpreter resultInterpreter = new ResultInterpreter(projections, tableMetadata);
+    SqlQuerySpec querySpec = CosmosScanQuery.build(tableMetadata, projections, conditions);
+
+    String qualifiedTableName = ScalarDbUtils.getFullTableName(namespace, tableName);
+    List<FeedRange> feedRanges =
+        new FeedRangePlanner(checkpointManager, subRangesPerPartition, maxConcurrentRanges)
+            .loadOrDiscover(qualifiedTableName, () -> container.getFeedRanges().block());
+
+    logger.info("Cosmos DB scan ranges: {}", feedRanges.size());
+
+    if (feedRanges.isEmpty()) {
+      logger.info("No FeedRanges found for {}; nothing to scan", qualifiedTableName);
+      return new ScanResult(0);
+    }
+
+    handlerScheduler =
+        Schedulers.newBoundedElastic(
+            maxThreads,
+            Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE,
+            "cosmos-handler-" + qualifiedTableName,
+            HANDLER_THREAD_TTL_SECONDS,
+            true);
+    RangeScan rangeScan =
+        new RangeScan(
+            container,
+            querySpec,
+            qualifiedTableName,
+            recordHandler,
+            resultInterpreter,
+            handlerScheduler);
+    // Errors are delayed so that the other FeedRanges are scanned (and checkpointed) to the end,
+    // as the threaded scanner waits for all of its workers.
+    CompletableFuture<Long> future =
+        Flux.fromIterable(feedRanges)
+            .flatMapDelayError(rangeScan::scan, maxConcurrentRanges, 1)
+            .reduce(0L, Long::sum)
+            .toFuture();
+    try {
+      long totalScanned = future.get();
+
+      logger.info("Scan complete for {}: {} records", qualifiedTableName, totalScanned);
+      if (requestUnitLimiter.isLimited()) {
+        logger.info(
+            "Request units charged so far: {}; time spent waiting for the RU budget: {} ms",
+            Math.round(requestUnitLimiter.getTotalRequestUnits()),
+            requestUnitLimiter.getThrottledMillis());
+      }
+      return new ScanResult(totalScanned);
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw e;
+    } catch (ExecutionException e) {
+      throw unwrapFailures(e.getCause() != null ? e.getCause() : e);
+    } finally {
+      handlerScheduler.dispose();
+      handlerScheduler = null;
+    }
+  }
+
+  @Override
+  public void close() {
+    if (handlerScheduler != null) {
+      handlerScheduler.dispose();
+    }
+    checkpointManager.close();
+    if (session != null) {
+      // The client and the admin belong to the session, which closes them once no scanner uses it
+      session.release();
+      return;
+    }
+    try {
+      if (storageAdmin != null) {
+        storageAdmin.close();
+      }
+    } finally {
+      if (cosmosClient != null) {
+        cosmosClient.close();
+      }
+    }
+  }
+
+  /**
+   * Returns the first failure of the scan with the others added as suppressed, so that an
+   * exception thrown by the record handler propagates as-is.
+   */
+  private static Exception unwrapFailures(Throwable failure) {
+    Throwable firstFailure = null;
+    for (Throwable t : Exceptions.unwrapMultiple(failure)) {
+      Throwable cause = Exceptions.unwrap(t);
+      if (firstFailure == null) {
+        firstFailure = cause;
+      } else {
+        firstFailure.addSuppressed(cause);
+      }
+    }
+    assert firstFailure != null;
+    if (firstFailure instanceof Error) {
+      throw (Error) firstFailure;
+    }
+    return (Exception) firstFailure;
+  }
+
+  /** The reactive pipeline scanning a single FeedRange of a table. */
+  private class RangeScan {
+    private final CosmosAsyncContainer container;
+    private final SqlQuerySpec querySpec;
+    private final String tableName;
+    private final RecordHandler recordHandler;
+    private final ResultInterpreter resultInterpreter;
+    private final Scheduler scheduler;
+
+    RangeScan(
+        CosmosAsyncContainer container,
+        SqlQuerySpec querySpec,
+        String tableName,
+        RecordHandler recordHandler,
+        ResultInterpreter resultInterpreter,
+        Scheduler scheduler) {
+      this.container = container;
+      this.querySpec = querySpec;
+      this.tableName = tableName;
+      this.recordHandler = recordHandler;
+      this.resultInterpreter = resultInterpreter;
+      this.scheduler = scheduler;
+    }
+
+    /** Scans the FeedRange from its checkpoint and emits the number of scanned records. */
+    Mono<Long> scan(FeedRange feedRange) {
+      String feedRangeId = FeedRangeSerializer.toId(feedRange);
+      // The token is read from the checkpoint, which may block on I/O, so it is loaded on the
+      // handler scheduler rather than on the SDK thread that completed the previous range
+      return Mono.fromCallable(
+              () ->
+                  Optional.ofNullable(
+                      checkpointManager.loadContinuationToken(tableName, feedRangeId)))
+          .subscribeOn(scheduler)
+          .flatMapMany(
+              continuationToken -> {
+                CosmosQueryRequestOptions options = new CosmosQueryRequestOptions();
+                options.setFeedRange(feedRange);
+                // ScalarDB excludes non-key columns from the container's indexing policy, so a
+                // query filtering on them must be allowed to scan the documents of the FeedRange.
+                options.setScanInQueryEnabled(true);
+                CosmosPagedFlux<Record> pagedFlux =
+                    container.queryItems(querySpec, options, Record.class);
+                return continuationToken.isPresent()
+                    ? pagedFlux.byPage(continuationToken.get(), maxItemCount)
+                    : pagedFlux.byPage(maxItemCount);
+              })
+          // Request the next page while handling the current one, but no further
+          .concatMap(page -> handlePage(feedRangeId, page), 1)
+          .reduce(0L, Long::sum)
+          .doOnNext(
+              scanned ->
+                  logger.debug(
+                      "FeedRange {} for table {}: scanned {} records",
+                      feedRangeId,
+                      tableName,
+                      scanned));
+    }
+
+    /**
+     * Charges the page's request charge, handles every record of the page, then checkpoints the
+     * page's continuation token.
+     */
+    private Mono<Long> handlePage(String feedRangeId, FeedResponse<Record> page) {
+      Mono<List<Result>> results =
+          Mono.fromCallable(
+                  () -> {
+                    requestUnitLimiter.charge(page.getRequestCharge());
+                    List<Result> interpreted = new ArrayList<>(page.getResults().size());
+                    for (Record record : page.getResults()) {
+                      interpreted.add(resultInterpreter.interpret(record));
+                    }
+                    if (recordHandler.handlesPages()) {
+                      recordHandler.handlePage(interpreted);
+                    } else if (handlerConcurrency == 1) {
+                      for (Result result : interpreted) {
+                        recordHandler.handle(result);
+                      }
+                    }
+                    return interpreted;
+                  })
+              .subscribeOn(scheduler);
+      if (handlerConcurrency > 1 && !recordHandler.handlesPages()) {
+        results =
+            results.flatMap(
+                interpreted ->
+                    Flux.fromIterable(interpreted)
+                        .flatMap(this::handleRecord, handlerConcurrency)
+                        .then(Mono.just(interpreted)));
+      }
+      return results.flatMap(
+          interpreted ->
+              Mono.fromCallable(
+                      () -> {
+                        String nextToken = page.getContinuationToken();
+                        if (nextToken != null) {
+                          checkpointManager.persistContinuationToken(
+                              tableName, feedRangeId, nextToken);
+                        }
+                        return (long) interpreted.size();
+                      })
+                  .subscribeOn(scheduler));
+    }
+
+    private Mono<Void> handleRecord(Result result) {
+      return Mono.<Void>fromCallable(
+              () -> {
+                recordHandler.handle(result);
+                return null;
+              })
+          .subscribeOn(scheduler);
+    }
+  }
+}
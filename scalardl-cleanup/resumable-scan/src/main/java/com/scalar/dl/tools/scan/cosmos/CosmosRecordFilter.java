@@ -0,0 +1,149 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.scalar.db.api.TableMetadata;
+import com.scalar.db.storage.cosmos.Record;
+import com.scalar.dl.tools.scan.ScanCondition;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Evaluates scan conditions on documents read without a query, such as from the change feed.
+ *
+ * <p>The evaluation follows the semantics of the {@code WHERE} clause built by {@link
+ * CosmosScanQuery}, so that a scan returns the same records whether the conditions are evaluated by
+ * Cosmos DB or by this filter: a record whose column is null or missing never matches, values of
+ * different types never match, numbers are compared as the IEEE 754 doubles Cosmos DB stores them
+ * as, and strings are compared by their characters.
+ *
+ * <p>Conditions on {@link ScanCondition#LAST_WRITTEN_AT} are left out, since a document read from
+ * the change feed does not carry its write time. The change feed source applies them instead by
+ * starting the change feed from that time.
+ */
+@Immutable
+final class CosmosRecordFilter {
+
+  private static final CosmosRecordFilter ALL = new CosmosRecordFilter(Collections.emptyList());
+
+  private final List<BoundCondition> conditions;
+
+  private CosmosRecordFilter(List<BoundCondition> conditions) {
+    this.conditions = conditions;
+  }
+
+  /**
+   * Returns a filter matching the records that match all the given conditions, except those on
+   * {@link ScanCondition#LAST_WRITTEN_AT}.
+   *
+   * @throws IllegalArgumentException if a condition refers to a column that does not exist in the
+   *     table
+   */
+  static CosmosRecordFilter of(TableMetadata metadata, List<ScanCondition> conditions) {
+    List<BoundCondition> bound = new ArrayList<>(conditions.size());
+    for (ScanCondition condition : conditions) {
+      if (condition.getColumn().equals(ScanCondition.LAST_WRITTEN_AT)) {
+        continue;
+      }
+      bound.add(new BoundCondition(condition, field(metadata, condition.getColumn())));
+    }
+    return bound.isEmpty() ? ALL : new CosmosRecordFilter(bound);
+  }
+
+  /** Returns whether this filter matches every record. */
+  boolean matchesAll() {
+    return conditions.isEmpty();
+  }
+
+  /** Returns whether the given record matches all the conditions of this filter. */
+  boolean matches(Record record) {
+    for (BoundCondition condition : conditions) {
+      if (!condition.matches(record)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the accessor of the document field where ScalarDB stores the given column. */
+  private static Function<Record, Map<String, Object>> field(
+      TableMetadata metadata, String column) {
+    if (metadata.getPartitionKeyNames().contains(column)) {
+      return Record::getPartitionKey;
+    } else if (metadata.getClusteringKeyNames().contains(column)) {
+      return Record::getClusteringKey;
+    } else if (metadata.getColumnNames().contains(column)) {
+      return Record::getValues;
+    }
+    throw new IllegalArgumentException("Unknown column in the scan condition: " + column);
+  }
+
+  @Immutable
+  private static final class BoundCondition {
+    private final ScanCondition condition;
+    private final Function<Record, Map<String, Object>> field;
+
+    private BoundCondition(ScanCondition condition, Function<Record, Map<String, Object>> field) {
+      this.condition = condition;
+      this.field = field;
+    }
+
+    private boolean matches(Record record) {
+      Map<String, Object> columns = field.apply(record);
+      Object actual = columns == null ? null : columns.get(condition.getColumn());
+      if (actual == null) {
+        return false;
+      }
+      if (condition.getOperator() == ScanCondition.Operator.IN) {
+        for (Object value : condition.getValues()) {
+          Integer comparison = compare(actual, value);
+          if (comparison != null && comparison == 0) {
+            return true;
+          }
+        }
+        return false;
+      }
+      Integer comparison = compare(actual, condition.getValues().get(0));
+      if (comparison == null) {
+        return false;
+      }
+      switch (condition.getOperator()) {
+        case EQ:
+          return comparison == 0;
+        case NE:
+          return comparison != 0;
+        case LT:
+          return comparison < 0;
+        case LTE:
+          return comparison <= 0;
+        case GT:
+          return comparison > 0;
+        case GTE:
+          return comparison >= 0;
+        default:
+          throw new AssertionError("Unexpected operator: " + condition.getOperator());
+      }
+    }
+
+    /** Compares the two values, or returns null if they are of types that do not compare. */
+    @Nullable
+    private static Integer compare(Object actual, Object expected) {
+      if (actual instanceof Number && expected instanceof Number) {
+        double a = ((Number) actual).doubleValue();
+        double b = ((Number) expected).doubleValue();
+        // Unlike Double.compare, treats -0.0 and 0.0 as equal as Cosmos DB does
+        return a < b ? -1 : (a > b ? 1 : 0);
+      }
+      if (actual instanceof String && expected instanceof String) {
+        return ((String) actual).compareTo((String) expected);
+      }
+      if (actual instanceof Boolean && expected instanceof Boolean) {
+        return ((Boolean) actual).compareTo((Boolean) expected);
+      }
+      return null;
+    }
+  }
+}
@@ -2,33 +2,34 @@ package com.scalar.dl.tools.scan.cosmos;
 
 import com.azure.cosmos.CosmosClient;
 import com.azure.cosmos.CosmosContainer;
-import com.azure.cosmos.CosmosDatabase;
+import com.azure.cosmos.models.CosmosContainerResponse;
 import com.azure.cosmos.models.FeedRange;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.scalar.db.api.DistributedStorageAdmin;
 import com.scalar.db.api.TableMetadata;
 import com.scalar.db.config.DatabaseConfig;
-import com.scalar.db.service.StorageFactory;
-import com.scalar.db.storage.cosmos.CosmosConfig;
-import com.scalar.db.storage.cosmos.CosmosUtils;
 import com.scalar.db.storage.cosmos.ResultInterpreter;
 import com.scalar.db.util.ScalarDbUtils;
+import com.scalar.dl.tools.common.CheckpointStore;
+import com.scalar.dl.tools.common.FileCheckpointStore;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
 import com.scalar.dl.tools.scan.RecordHandler;
 import com.scalar.dl.tools.scan.ResumableScanner;
+import com.scalar.dl.tools.scan.ScanCondition;
 import com.scalar.dl.tools.scan.ScanResult;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,12 +40,39 @@ import org.slf4j.LoggerFactory;
  * <p>Encapsulates all Cosmos-specific details: CosmosClient creation, namespace-to-database /
  * table-to-container mapping, FeedRange discovery, per-partition parallel scanning, and
  * raw-document-to-Result conversion.
+ *
+ * <p>Each FeedRange is read by running the query built by {@link CosmosScanQuery} or, with the
+ * change feed engine, by reading its change feed from the beginning (see {@link CosmosScanSource}).
+ *
+ * <p>The FeedRanges to scan are determined by {@link FeedRangePlanner}, which can split each
+ * physical partition into several sub-ranges so that more workers than physical partitions can scan
+ * a table.
+ *
+ * <p>With adaptive concurrency enabled, an {@link AimdConcurrencyController} shared by the workers
+ * limits how many of them handle a page at once, and another one limits the records in flight on
+ * the handler executor. Both shrink when Cosmos DB throttles and grow back when it stops; their
+ * effective concurrency is logged when it changes and summarized when the scan completes.
+ *
+ * <p>With virtual threads enabled, scan workers, prefetch stages, and record handlers each run on
+ * their own virtual thread, so handlers blocking on RPCs or sleeps do not hold platform threads.
+ * The number of workers running at once is then capped by a semaphore instead of the size of the
+ * scan pool, and the records in flight per worker are still capped by {@link RecordDispatcher}.
+ *
+ * <p>Every worker also holds a permit of a worker budget while it runs. The budget is shared by the
+ * scanners of a {@link com.scalar.dl.tools.scan.ResumableScannerFactory}, so concurrent scans of
+ * several tables together run at most {@code max_threads} workers.
+ *
+ * <p>The Cosmos DB client and the storage admin come from a {@link CosmosScanSession}, which can be
+ * shared with other scanners so that a run builds them once.
+ *
+ * <p>With adaptive page sizing enabled, each worker owns an {@link AdaptivePageSizer} that tunes
+ * the page size of its FeedRange independently, since partitions can differ in document size and
+ * load.
  */
 @NotThreadSafe
 public final class CosmosResumableScanner implements ResumableScanner {
 
   private static final Logger logger = LoggerFactory.getLogger(CosmosResumableScanner.class);
-  private static final ObjectMapper mapper = new ObjectMapper();
   private static final int SHUTDOWN_TIMEOUT_SECONDS = 30;
 
   private final CosmosClient cosmosClient;
@@ -52,21 +80,113 @@ public final class CosmosResumableScanner implements ResumableScanner {
   private final DistributedStorageAdmin storageAdmin;
   private final int maxWorkerThreads;
   private final int maxItemCount;
+  private final int prefetchPages;
+  private final int handlerConcurrency;
+  private final int subRangesPerPartition;
+  private final boolean adaptivePageSize;
+  private final int minPageSize;
+  private final int maxPageSize;
+  private final int targetPageLatencyMillis;
+  private final RequestUnitLimiter requestUnitLimiter;
+  private final boolean adaptiveConcurrency;
+  private final boolean virtualThreads;
+  private final Semaphore workerBudget;
+  private final boolean changeFeed;
+  @Nullable private final CosmosScanSession session;
   private ExecutorService scanExecutor;
+  private ExecutorService prefetchExecutor;
+  private ExecutorService handlerExecutor;
 
   public CosmosResumableScanner(DatabaseConfig databaseConfig, Path checkpointDir) {
+    this(
+        databaseConfig,
+        checkpointDir,
+        RequestUnitLimiter.create(databaseConfig.getProperties()));
+  }
+
+  /**
+   * @param requestUnitLimiter the limiter charged with the request charge of every fetched page;
+   *     share it with the other Cosmos DB clients of the process to cap their total RU consumption
+   */
+  public CosmosResumableScanner(
+      DatabaseConfig databaseConfig, Path checkpointDir, RequestUnitLimiter requestUnitLimiter) {
+    this(
+        databaseConfig,
+        checkpointDir,
+        requestUnitLimiter,
+        new Semaphore(
+            new CosmosResumableScannerConfig(databaseConfig).getMaxWorkerThreads(), true));
+  }
+
+  /**
+   * @param requestUnitLimiter the limiter charged with the request charge of every fetched page;
+   *     share it with the other Cosmos DB clients of the process to cap their total RU consumption
+   * @param workerBudget permits for running scan workers; share it with the other scanners of the
+   *     process to cap the workers running across concurrent scans
+   */
+  public CosmosResumableScanner(
+      DatabaseConfig databaseConfig,
+      Path checkpointDir,
+      RequestUnitLimiter requestUnitLimiter,
+      Semaphore workerBudget) {
+    this(
+        databaseConfig,
+        CosmosScanSession.create(databaseConfig),
+        checkpointDir,
+        new FileCheckpointStore(),
+        requestUnitLimiter,
+        workerBudget);
+  }
+
+  /**
+   * @param session the session providing the Cosmos DB client and the storage admin; a reference
+   *     to it is held until this scanner is closed
+   * @param checkpointStore the store holding the scan checkpoints; it is not closed by this scanner
+   * @param requestUnitLimiter the limiter charged with the request charge of every fetched page;
+   *     share it with the other Cosmos DB clients of the process to cap their total RU consumption
+   * @param workerBudget permits for running scan workers; share it with the other scanners of the
+   *     process to cap the workers running across concurrent scans
+   */
+  public CosmosResumableScanner(
+      DatabaseConfig databaseConfig,
+      CosmosScanSession session,
+      Path checkpointDir,
+      CheckpointStore checkpointStore,
+      RequestUnitLimiter requestUnitLimiter,
+      Semaphore workerBudget) {
     CosmosResumableScannerConfig config = new CosmosResumableScannerConfig(databaseConfig);
-    cosmosClient = CosmosUtils.buildCosmosClient(new CosmosConfig(databaseConfig));
-    this.checkpointManager = new CheckpointManager(checkpointDir);
+    session.retain();
+    try {
+      this.cosmosClient = session.getClient();
+      this.storageAdmin = session.getStorageAdmin();
+    } catch (RuntimeException e) {
+      session.release();
+      throw e;
+    }
+    this.session = session;
+    this.checkpointManager =
+        new CheckpointManager(
+            checkpointStore,
+            checkpointDir,
+            config.getCheckpointBatchSize(),
+            config.getCheckpointFlushIntervalMillis());
     this.maxWorkerThreads = config.getMaxWorkerThreads();
     this.maxItemCount = config.getMaxItemCount();
-
-    try {
-      this.storageAdmin = StorageFactory.create(databaseConfig.getProperties()).getStorageAdmin();
-    } catch (Exception e) {
-      cosmosClient.close();
-      throw new RuntimeException("Failed to create DistributedStorageAdmin", e);
+    this.prefetchPages = config.getPrefetchPages();
+    this.handlerConcurrency = config.getHandlerConcurrency();
+    this.subRangesPerPartition = config.getSubRangesPerPartition();
+    this.changeFeed = config.getEngine() == CosmosResumableScannerConfig.Engine.CHANGE_FEED;
+    if (changeFeed && config.isAdaptivePageSize()) {
+      logger.warn("Adaptive page sizing is not supported on the change feed and is ignored");
     }
+    this.adaptivePageSize = config.isAdaptivePageSize() && !changeFeed;
+    this.minPageSize = config.getMinPageSize();
+    this.maxPageSize = config.getMaxPageSize();
+    this.targetPageLatencyMillis = config.getTargetPageLatencyMillis();
+    this.requestUnitLimiter = requestUnitLimiter;
+    this.adaptiveConcurrency = config.isAdaptiveConcurrency();
+    this.virtualThreads = config.isVirtualThreads();
+    this.workerBudget = workerBudget;
   }
 
   @VisibleForTesting
@@ -75,12 +195,67 @@ public final class CosmosResumableScanner implements ResumableScanner {
       CheckpointManager checkpointManager,
       DistributedStorageAdmin storageAdmin,
       int maxWorkerThreads,
-      int maxItemCount) {
+      int maxItemCount,
+      int prefetchPages,
+      int handlerConcurrency,
+      int subRangesPerPartition) {
+    this(
+        cosmosClient,
+        checkpointManager,
+        storageAdmin,
+        maxWorkerThreads,
+        maxItemCount,
+        prefetchPages,
+        handlerConcurrency,
+        subRangesPerPartition,
+        false,
+        maxItemCount,
+        maxItemCount,
+        Integer.MAX_VALUE,
+        RequestUnitLimiter.unlimited(),
+        false,
+        false,
+        new Semaphore(maxWorkerThreads, true),
+        false);
+  }
+
+  @VisibleForTesting
+  CosmosResumableScanner(
+      CosmosClient cosmosClient,
+      CheckpointManager checkpointManager,
+      DistributedStorageAdmin storageAdmin,
+      int maxWorkerThreads,
+      int maxItemCount,
+      int prefetchPages,
+      int handlerConcurrency,
+      int subRangesPerPartition,
+      boolean adaptivePageSize,
+      int minPageSize,
+      int maxPageSize,
+      int targetPageLatencyMillis,
+      RequestUnitLimiter requestUnitLimiter,
+      boolean adaptiveConcurrency,
+      boolean virtualThreads,
+      Semaphore workerBudget,
+      boolean changeFeed) {
     this.cosmosClient = cosmosClient;
+    this.session = null;
     this.checkpointManager = checkpointManager;
     this.storageAdmin = storageAdmin;
     this.maxWorkerThreads = maxWorkerThreads;
     this.maxItemCount = maxItemCount;
+    this.prefetchPages = prefetchPages;
+    this.handlerConcurrency = handlerConcurrency;
+    this.subRangesPerPartition = subRangesPerPartition;
+    this.adaptivePageSize = adaptivePageSize;
+    this.minPageSize = minPageSize;
+    this.maxPageSize = maxPageSize;
+    this.targetPageLatencyMillis = targetPageLatencyMillis;
+    this.requestUnitLimiter = requestUnitLimiter;
+    this.adaptiveConcurrency = adaptiveConcurrency;
+    this.virtualThreads = virtualThreads;
+    this.workerBudget = workerBudget;
+    this.changeFeed = changeFeed;
   }
 
   private static void shutdownExecutorIfExists(ExecutorService executor) {
@@ -99,26 +274,80 @@ public final class CosmosResumableScanner implements ResumableScanner {
     }
   }
 
+  /**
+   * Creates an executor running at most {@code threadCount} tasks at once on platform threads, or
+   * an executor starting a virtual thread per task if virtual threads are enabled.
+   */
+  private ExecutorService newExecutor(String namePrefix, int threadCount) {
+    if (virtualThreads) {
+      return Executors.newThreadPerTaskExecutor(
+          Thread.ofVirtual().name(namePrefix + "-", 0).factory());
+    }
+    return Executors.newFixedThreadPool(
+        threadCount,
+        new ThreadFactoryBuilder().setNameFormat(namePrefix + "-%d").setDaemon(true).build());
+  }
+
+  private static <T> Callable<T> withPermit(Semaphore permits, Callable<T> task) {
+    return () -> {
+      permits.acquire();
+      try {
+        return task.call();
+      } finally {
+        permits.release();
+      }
+    };
+  }
+
+  @Override
+  public long estimateRecordCount(String namespace, String tableName) {
+    try {
+      CosmosContainerResponse response =
+          cosmosClient
+              .getDatabase(namespace)
+              .getContainer(tableName)
+              .read(CosmosContainerStats.quotaInfoOptions());
+      return CosmosContainerStats.documentCount(response.getResponseHeaders());
+    } catch (RuntimeException e) {
+      logger.debug(
+          "Failed to estimate the record count of {}",
+          ScalarDbUtils.getFullTableName(namespace, tableName),
+          e);
+      return UNKNOWN_RECORD_COUNT;
+    }
+  }
+
   @Override
-  public ScanResult scan(String namespace, String tableName, RecordHandler recordHandler)
+  public ScanResult scan(
+      String namespace,
+      String tableName,
+      List<ScanCondition> conditions,
+      RecordHandler recordHandler)
       throws Exception {
     Objects.requireNonNull(namespace, "namespace must not be null");
     Objects.requireNonNull(tableName, "tableName must not be null");
+    Objects.requireNonNull(conditions, "conditions must not be null");
     Objects.requireNonNull(recordHandler, "recordHandler must not be null");
 
     String qualifiedTableName = ScalarDbUtils.getFullTableName(namespace, tableName);
     checkpointManager.initCheckpointFor(qualifiedTableName);
-    ScanResult result = doScan(namespace, tableName, recordHandler);
+    ScanResult result = doScan(namespace, tableName, conditions, recordHandler);
     checkpointManager.clearCheckpointFor(qualifiedTableName);
     return result;
   }
 
-  private ScanResult doScan(String namespace, String tableName, RecordHandler recordHandler)
+  private ScanResult doScan(
+      String namespace,
+      String tableName,
+      List<ScanCondition> conditions,
+      RecordHandler recordHandler)
       throws Exception {
 
     // Resolve Cosmos database and container from namespace and table name
-    CosmosDatabase database = cosmosClient.getDatabase(namespace);
-    CosmosContainer container = database.getContainer(tableName);
+    CosmosContainer container =
+        session != null
+            ? session.getContainer(namespace, tableName)
+            : cosmosClient.getDatabase(namespace).getContainer(tableName);
 
     // Get table metadata for type conversion
     TableMetadata tableMetadata = storageAdmin.getTableMetadata(namespace, tableName);
@@ -126,14 +355,21 @@ public final class CosmosResumableScanner implements ResumableScanner {
       throw new IllegalStateException(
           "Table metadata not found for " + ScalarDbUtils.getFullTableName(namespace, tableName));
     }
-    ResultInterpreter resultInterpreter =
-        new ResultInterpreter(Collections.emptyList(), tableMetadata);
+    List<String> projections =
+        CosmosScanQuery.resolveProjections(tableMetadata, recordHandler.getProjections());
+    ResultInterpreter resultInterpreter = new ResultInterpreter(projections, tableMetadata);
+    CosmosScanSource source =
+        changeFeed
+            ? CosmosScanSource.changeFeed(tableMetadata, conditions)
+            : CosmosScanSource.query(CosmosScanQuery.build(tableMetadata, projections, conditions));
 
     // Discover or load FeedRanges
     String qualifiedTableName = ScalarDbUtils.getFullTableName(namespace, tableName);
-    List<FeedRange> feedRanges = loadOrDiscoverFeedRanges(container, qualifiedTableName);
+    List<FeedRange> feedRanges =
+        new FeedRangePlanner(checkpointManager, subRangesPerPartition, maxWorkerThreads)
+            .loadOrDiscover(qualifiedTableName, container::getFeedRanges);
 
-    logger.info("Cosmos DB physical partitions: {}", feedRanges.size());
+    logger.info("Cosmos DB scan ranges: {}", feedRanges.size());
 
     if (feedRanges.isEmpty()) {
       logger.info("No FeedRanges found for {}; nothing to scan", qualifiedTableName);
@@ -141,33 +377,75 @@ public final class CosmosResumableScanner implements ResumableScanner {
     }
 
     int threadCount = Math.min(feedRanges.size(), maxWorkerThreads);
-    scanExecutor =
-        Executors.newFixedThreadPool(
-            threadCount,
-            new ThreadFactoryBuilder()
-                .setNameFormat("cosmos-scan-" + qualifiedTableName + "-%d")
-                .setDaemon(true)
-                .build());
+    scanExecutor = newExecutor("cosmos-scan-" + qualifiedTableName, threadCount);
+    if (prefetchPages > 0) {
+      // One fetch stage per concurrently running worker, so a worker never waits for a fetch
+      // thread to become available.
+      prefetchExecutor = newExecutor("cosmos-prefetch-" + qualifiedTableName, threadCount);
+    }
+    if (handlerConcurrency > 1) {
+      // Each worker keeps at most handlerConcurrency records in flight, so this pool never makes a
+      // worker wait for a thread held by another worker.
+      handlerExecutor =
+          newExecutor("cosmos-handler-" + qualifiedTableName, threadCount * handlerConcurrency);
+    }
+    // Virtual thread executors are unbounded, so a semaphore caps the workers running at once
+    Semaphore workerPermits = virtualThreads ? new Semaphore(threadCount) : null;
+    AimdConcurrencyController scanController = null;
+    AimdConcurrencyController handlerController = null;
+    if (adaptiveConcurrency) {
+      scanController = new AimdConcurrencyController("Scan of " + qualifiedTableName, threadCount);
+      if (handlerExecutor != null) {
+        handlerController =
+            new AimdConcurrencyController(
+                "Record handling of " + qualifiedTableName, threadCount * handlerConcurrency);
+      }
+    }
     try {
       List<Future<Long>> futures = new ArrayList<>();
       for (FeedRange feedRange : feedRanges) {
         String feedRangeId = FeedRangeSerializer.toId(feedRange);
         String continuationToken =
             checkpointManager.loadContinuationToken(qualifiedTableName, feedRangeId);
+        RecordDispatcher recordDispatcher =
+            handlerExecutor != null
+                ? RecordDispatcher.concurrent(
+                    recordHandler, handlerExecutor, handlerConcurrency, handlerController)
+                : RecordDispatcher.sequential(recordHandler, scanController);
+        AdaptivePageSizer pageSizer =
+            adaptivePageSize
+                ? new AdaptivePageSizer(
+                    feedRangeId,
+                    qualifiedTableName,
+                    maxItemCount,
+                    minPageSize,
+                    maxPageSize,
+                    targetPageLatencyMillis)
+                : null;
 
         CosmosScanWorker worker =
             new CosmosScanWorker(
                 container,
+                source,
                 feedRange,
                 feedRangeId,
                 qualifiedTableName,
                 continuationToken,
-                recordHandler,
+                recordDispatcher,
                 resultInterpreter,
                 checkpointManager,
-                maxItemCount);
+                requestUnitLimiter,
+                maxItemCount,
+                prefetchPages,
+                prefetchExecutor,
+                pageSizer,
+                scanController);
 
-        futures.add(scanExecutor.submit(worker));
+        // Take a permit of this scan before one of the shared budget, so that the queued workers
+        // of one scan do not hold budget permits that other scans could use
+        Callable<Long> task = withPermit(workerBudget, worker);
+        futures.add(
+            scanExecutor.submit(workerPermits != null ? withPermit(workerPermits, task) : task));
       }
 
       // Wait for all workers, collecting all errors
@@ -199,54 +477,40 @@ public final class CosmosResumableScanner implements ResumableScanner {
       }
 
       logger.info("Scan complete for {}: {} records", qualifiedTableName, totalScanned);
+      if (scanController != null) {
+        logger.info("{}", scanController.summary());
+      }
+      if (handlerController != null) {
+        logger.info("{}", handlerController.summary());
+      }
+      if (requestUnitLimiter.isLimited()) {
+        logger.info(
+            "Request units charged so far: {}; time spent waiting for the RU budget: {} ms",
+            Math.round(requestUnitLimiter.getTotalRequestUnits()),
+            requestUnitLimiter.getThrottledMillis());
+      }
       return new ScanResult(totalScanned);
     } finally {
       shutdownExecutorIfExists(scanExecutor);
       scanExecutor = null;
+      shutdownExecutorIfExists(prefetchExecutor);
+      prefetchExecutor = null;
+      shutdownExecutorIfExists(handlerExecutor);
+      handlerExecutor = null;
     }
   }
 
-  private List<FeedRange> loadOrDiscoverFeedRanges(
-      CosmosContainer container, String qualifiedTableName) {
-    String persistedRanges = checkpointManager.loadFeedRanges(qualifiedTableName);
-
-    if (persistedRanges != null) {
-      try {
-        List<String> rangeJsonList =
-            mapper.readValue(persistedRanges, new TypeReference<List<String>>() {});
-        List<FeedRange> feedRanges = new ArrayList<>();
-        for (String json : rangeJsonList) {
-          feedRanges.add(FeedRangeSerializer.fromJson(json));
-        }
-        logger.info("Loaded {} persisted FeedRanges for {}", feedRanges.size(), qualifiedTableName);
-        return feedRanges;
-      } catch (Exception e) {
-        throw new RuntimeException("Failed to load persisted FeedRanges", e);
-      }
-    }
-
-    // Discover FeedRanges
-    List<FeedRange> feedRanges = container.getFeedRanges();
-    logger.info("Discovered {} FeedRanges for {}", feedRanges.size(), qualifiedTableName);
-
-    // Persist before scanning
-    try {
-      List<String> rangeJsonList = new ArrayList<>();
-      for (FeedRange fr : feedRanges) {
-        rangeJsonList.add(FeedRangeSerializer.toJson(fr));
-      }
-      String json = mapper.writeValueAsString(rangeJsonList);
-      checkpointManager.persistFeedRanges(qualifiedTableName, json);
-    } catch (Exception e) {
-      throw new RuntimeException("Failed to persist FeedRanges", e);
-    }
-
-    return feedRanges;
-  }
-
   @Override
   public void close() {
     shutdownExecutorIfExists(scanExecutor);
+    shutdownExecutorIfExists(prefetchExecutor);
+    shutdownExecutorIfExists(handlerExecutor);
+    checkpointManager.close();
+    if (session != null) {
+      // The client and the admin belong to the session, which closes them once no scanner uses it
+      session.release();
+      return;
+    }
     try {
       if (storageAdmin != null) {
         storageAdmin.close();
@@ -1,42 +1,163 @@
 package com.scalar.dl.tools.scan.cosmos;
 
 import com.scalar.db.config.DatabaseConfig;
+import com.scalar.dl.tools.common.PropertyUtils;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
 
 /** Configuration for {@link CosmosResumableScanner}, extending ScalarDB properties. */
 public final class CosmosResumableScannerConfig {
 
   static final String PROP_MAX_SCAN_THREADS = "scalar.dl.tools.scan.cosmos.max_threads";
   static final String PROP_SCAN_PAGE_SIZE = "scalar.dl.tools.scan.cosmos.page_size";
+  static final String PROP_PREFETCH_PAGES = "scalar.dl.tools.scan.cosmos.prefetch_pages";
+  static final String PROP_HANDLER_CONCURRENCY = "scalar.dl.tools.scan.cosmos.handler_concurrency";
+  static final String PROP_SUB_RANGES_PER_PARTITION =
+      "scalar.dl.tools.scan.cosmos.sub_ranges_per_partition";
+  static final String PROP_ADAPTIVE_PAGE_SIZE = "scalar.dl.tools.scan.cosmos.adaptive_page_size";
+  static final String PROP_MIN_PAGE_SIZE = "scalar.dl.tools.scan.cosmos.min_page_size";
+  static final String PROP_MAX_PAGE_SIZE = "scalar.dl.tools.scan.cosmos.max_page_size";
+  static final String PROP_TARGET_PAGE_LATENCY_MILLIS =
+      "scalar.dl.tools.scan.cosmos.target_page_latency_millis";
+  static final String PROP_ADAPTIVE_CONCURRENCY =
+      "scalar.dl.tools.scan.cosmos.adaptive_concurrency";
+  static final String PROP_VIRTUAL_THREADS = "scalar.dl.tools.scan.cosmos.virtual_threads";
+  static final String PROP_ENGINE = "scalar.dl.tools.scan.cosmos.engine";
+  static final String PROP_MAX_CONCURRENT_RANGES =
+      "scalar.dl.tools.scan.cosmos.max_concurrent_ranges";
+  static final String PROP_CHECKPOINT_BATCH_SIZE =
+      "scalar.dl.tools.scan.cosmos.checkpoint_batch_size";
+  static final String PROP_CHECKPOINT_FLUSH_INTERVAL_MILLIS =
+      "scalar.dl.tools.scan.cosmos.checkpoint_flush_interval_millis";
+  static final String PROP_BULK_DELETE = "scalar.dl.tools.scan.cosmos.bulk_delete";
+  static final String PROP_BULK_DELETE_BATCH_SIZE =
+      "scalar.dl.tools.scan.cosmos.bulk_delete_batch_size";
+  static final String PROP_BULK_DELETE_MAX_IN_FLIGHT_BATCHES =
+      "scalar.dl.tools.scan.cosmos.bulk_delete_max_in_flight_batches";
+  static final String AUTO = "auto";
+
+  /** The value of {@link #getSubRangesPerPartition()} when it is derived from the thread count. */
+  public static final int AUTO_SUB_RANGES_PER_PARTITION = 0;
+
   private static final int DEFAULT_MAX_WORKER_THREADS = 32;
   private static final int DEFAULT_MAX_ITEM_COUNT = 100;
+  private static final int DEFAULT_PREFETCH_PAGES = 1;
+  private static final int DEFAULT_HANDLER_CONCURRENCY = 1;
+  private static final int DEFAULT_SUB_RANGES_PER_PARTITION = 1;
+  private static final int DEFAULT_MIN_PAGE_SIZE = 10;
+  private static final int DEFAULT_MAX_PAGE_SIZE = 1000;
+  private static final int DEFAULT_TARGET_PAGE_LATENCY_MILLIS = 500;
+  private static final int DEFAULT_MAX_CONCURRENT_RANGES = 256;
+  private static final int DEFAULT_CHECKPOINT_BATCH_SIZE = 64;
+  private static final int DEFAULT_CHECKPOINT_FLUSH_INTERVAL_MILLIS = 5;
+  private static final int DEFAULT_BULK_DELETE_BATCH_SIZE = 100;
+  private static final int DEFAULT_BULK_DELETE_MAX_IN_FLIGHT_BATCHES = 8;
+
+  /** The implementation used to scan a table. */
+  public enum Engine {
+    /** {@link CosmosResumableScanner}: one worker thread per FeedRange being scanned. */
+    THREADED,
+    /** {@link CosmosReactiveResumableScanner}: non-blocking queries on the asynchronous SDK. */
+    REACTIVE,
+    /**
+     * {@link CosmosResumableScanner} reading the change feed of each FeedRange from the beginning
+     * instead of querying it; scan conditions are evaluated on the client.
+     */
+    CHANGE_FEED
+  }
 
   private final int maxWorkerThreads;
   private final int maxItemCount;
+  private final int prefetchPages;
+  private final int handlerConcurrency;
+  private final int subRangesPerPartition;
+  private final boolean adaptivePageSize;
+  private final int minPageSize;
+  private final int maxPageSize;
+  private final int targetPageLatencyMillis;
+  private final boolean adaptiveConcurrency;
+  private final boolean virtualThreads;
+  private final Engine engine;
+  private final int maxConcurrentRanges;
+  private final int checkpointBatchSize;
+  private final int checkpointFlushIntervalMillis;
+  private final boolean bulkDelete;
+  private final int bulkDeleteBatchSize;
+  private final int bulkDeleteMaxInFlightBatches;
 
   public CosmosResumableScannerConfig(DatabaseConfig databaseConfig) {
+    Properties props = databaseConfig.getProperties();
     this.maxWorkerThreads =
-        getPositiveIntProperty(databaseConfig, PROP_MAX_SCAN_THREADS, DEFAULT_MAX_WORKER_THREADS);
+        PropertyUtils.getPositiveIntProperty(
+            props, PROP_MAX_SCAN_THREADS, DEFAULT_MAX_WORKER_THREADS);
     this.maxItemCount =
-        getPositiveIntProperty(databaseConfig, PROP_SCAN_PAGE_SIZE, DEFAULT_MAX_ITEM_COUNT);
-  }
-
-  private static int getPositiveIntProperty(DatabaseConfig config, String key, int defaultValue) {
-    String value = config.getProperties().getProperty(key);
-    if (value == null) {
-      return defaultValue;
-    }
-    int parsed;
-    try {
-      parsed = Integer.parseInt(value);
-    } catch (NumberFormatException e) {
+        PropertyUtils.getPositiveIntProperty(props, PROP_SCAN_PAGE_SIZE, DEFAULT_MAX_ITEM_COUNT);
+    this.prefetchPages =
+        PropertyUtils.getNonNegativeIntProperty(props, PROP_PREFETCH_PAGES, DEFAULT_PREFETCH_PAGES);
+    this.handlerConcurrency =
+        PropertyUtils.getPositiveIntProperty(
+            props, PROP_HANDLER_CONCURRENCY, DEFAULT_HANDLER_CONCURRENCY);
+    String subRanges = props.getProperty(PROP_SUB_RANGES_PER_PARTITION);
+    this.subRangesPerPartition =
+        subRanges != null && AUTO.equalsIgnoreCase(subRanges.trim())
+            ? AUTO_SUB_RANGES_PER_PARTITION
+            : PropertyUtils.getPositiveIntProperty(
+                props, PROP_SUB_RANGES_PER_PARTITION, DEFAULT_SUB_RANGES_PER_PARTITION);
+    this.adaptivePageSize =
+        Boolean.parseBoolean(props.getProperty(PROP_ADAPTIVE_PAGE_SIZE, "false"));
+    this.minPageSize =
+        PropertyUtils.getPositiveIntProperty(props, PROP_MIN_PAGE_SIZE, DEFAULT_MIN_PAGE_SIZE);
+    this.maxPageSize =
+        PropertyUtils.getPositiveIntProperty(props, PROP_MAX_PAGE_SIZE, DEFAULT_MAX_PAGE_SIZE);
+    if (minPageSize > maxPageSize) {
       throw new IllegalArgumentException(
-          "The property '" + key + "' must be a valid integer: " + value, e);
+          "The property '"
+              + PROP_MIN_PAGE_SIZE
+              + "' must not be greater than '"
+              + PROP_MAX_PAGE_SIZE
+              + "': "
+              + minPageSize
+              + " > "
+              + maxPageSize);
     }
-    if (parsed <= 0) {
+    this.targetPageLatencyMillis =
+        PropertyUtils.getPositiveIntProperty(
+            props, PROP_TARGET_PAGE_LATENCY_MILLIS, DEFAULT_TARGET_PAGE_LATENCY_MILLIS);
+    this.adaptiveConcurrency =
+        Boolean.parseBoolean(props.getProperty(PROP_ADAPTIVE_CONCURRENCY, "false"));
+    this.virtualThreads = Boolean.parseBoolean(props.getProperty(PROP_VIRTUAL_THREADS, "false"));
+    String engineName = props.getProperty(PROP_ENGINE, Engine.THREADED.name());
+    try {
+      this.engine = Engine.valueOf(engineName.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
       throw new IllegalArgumentException(
-          "The property '" + key + "' must be a positive integer: " + value);
+          "The property '"
+              + PROP_ENGINE
+              + "' must be one of "
+              + Arrays.toString(Engine.values()).toLowerCase(Locale.ROOT)
+              + ": "
+              + engineName,
+          e);
     }
-    return parsed;
+    this.maxConcurrentRanges =
+        PropertyUtils.getPositiveIntProperty(
+            props, PROP_MAX_CONCURRENT_RANGES, DEFAULT_MAX_CONCURRENT_RANGES);
+    this.checkpointBatchSize =
+        PropertyUtils.getPositiveIntProperty(
+            props, PROP_CHECKPOINT_BATCH_SIZE, DEFAULT_CHECKPOINT_BATCH_SIZE);
+    this.checkpointFlushIntervalMillis =
+        PropertyUtils.getNonNegativeIntProperty(
+            props, PROP_CHECKPOINT_FLUSH_INTERVAL_MILLIS, DEFAULT_CHECKPOINT_FLUSH_INTERVAL_MILLIS);
+    this.bulkDelete = Boolean.parseBoolean(props.getProperty(PROP_BULK_DELETE, "false"));
+    this.bulkDeleteBatchSize =
+        PropertyUtils.getPositiveIntProperty(
+            props, PROP_BULK_DELETE_BATCH_SIZE, DEFAULT_BULK_DELETE_BATCH_SIZE);
+    this.bulkDeleteMaxInFlightBatches =
+        PropertyUtils.getPositiveIntProperty(
+            props,
+            PROP_BULK_DELETE_MAX_IN_FLIGHT_BATCHES,
+            DEFAULT_BULK_DELETE_MAX_IN_FLIGHT_BATCHES);
   }
 
   public int getMaxWorkerThreads() {
@@ -46,4 +167,119 @@ public final class CosmosResumableScannerConfig {
   public int getMaxItemCount() {
     return maxItemCount;
   }
+
+  /**
+   * Returns the maximum number of pages a scan worker fetches ahead of the page it is handling. 0
+   * disables prefetching.
+   */
+  public int getPrefetchPages() {
+    return prefetchPages;
+  }
+
+  /**
+   * Returns the maximum number of records of a page that a scan worker hands to the record handler
+   * at the same time. 1 handles records one after another on the worker thread.
+   */
+  public int getHandlerConcurrency() {
+    return handlerConcurrency;
+  }
+
+  /**
+   * Returns the number of sub-ranges each physical partition is split into for scanning, or {@link
+   * #AUTO_SUB_RANGES_PER_PARTITION} if it is derived from the maximum number of worker threads.
+   */
+  public int getSubRangesPerPartition() {
+    return subRangesPerPartition;
+  }
+
+  /**
+   * Returns whether scan workers tune the page size toward {@link #getTargetPageLatencyMillis()}
+   * instead of always requesting {@link #getMaxItemCount()} documents per page. When enabled,
+   * {@link #getMaxItemCount()} is the initial page size.
+   */
+  public boolean isAdaptivePageSize() {
+    return adaptivePageSize;
+  }
+
+  /** Returns the smallest page size used by adaptive page sizing. */
+  public int getMinPageSize() {
+    return minPageSize;
+  }
+
+  /** Returns the largest page size used by adaptive page sizing. */
+  public int getMaxPageSize() {
+    return maxPageSize;
+  }
+
+  /** Returns the page fetch latency that adaptive page sizing aims for. */
+  public int getTargetPageLatencyMillis() {
+    return targetPageLatencyMillis;
+  }
+
+  /**
+   * Returns whether the number of workers handling pages, and of records handled at once, is
+   * reduced while Cosmos DB throttles requests and raised again once it stops. {@link
+   * #getMaxWorkerThreads()} and {@link #getHandlerConcurrency()} are then the upper bounds.
+   */
+  public boolean isAdaptiveConcurrency() {
+    return adaptiveConcurrency;
+  }
+
+  /**
+   * Returns whether the threaded engine runs scan workers and record handlers on virtual threads.
+   * {@link #getMaxWorkerThreads()} then caps the number of FeedRanges scanned at once instead of
+   * the size of a thread pool, and {@link #getHandlerConcurrency()} still caps the records in
+   * flight per worker.
+   */
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  /** Returns the implementation used to scan a table. */
+  public Engine getEngine() {
+    return engine;
+  }
+
+  /**
+   * Returns the maximum number of FeedRanges the reactive engine scans at once. The threaded engine
+   * scans at most {@link #getMaxWorkerThreads()} FeedRanges at once instead.
+   */
+  public int getMaxConcurrentRanges() {
+    return maxConcurrentRanges;
+  }
+
+  /**
+   * Returns the maximum number of continuation token updates the checkpoint journal of a table
+   * writes together.
+   */
+  public int getCheckpointBatchSize() {
+    return checkpointBatchSize;
+  }
+
+  /**
+   * Returns the longest time the checkpoint journal of a table waits for more continuation token
+   * updates before writing the ones it has. 0 writes only the updates that arrived while the
+   * previous ones were being written.
+   */
+  public int getCheckpointFlushIntervalMillis() {
+    return checkpointFlushIntervalMillis;
+  }
+
+  /**
+   * Returns whether the cleanups delete the records of each scanned page through the bulk API of
+   * the Cosmos DB SDK ({@link CosmosBulkDeleter}) instead of with one ScalarDB delete per record.
+   */
+  public boolean isBulkDelete() {
+    return bulkDelete;
+  }
+
+  /** Returns the maximum number of deletes {@link CosmosBulkDeleter} sends in one batch. */
+  public int getBulkDeleteBatchSize() {
+    return bulkDeleteBatchSize;
+  }
+
+  /** Returns the maximum number of batches {@link CosmosBulkDeleter} has in flight at a time. */
+  public int getBulkDeleteMaxInFlightBatches() {
+    return bulkDeleteMaxInFlightBatches;
+  }
 }
@@ -0,0 +1,198 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.scalar.db.api.TableMetadata;
+import com.scalar.dl.tools.scan.ScanCondition;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the Cosmos DB SQL query run by each {@link CosmosScanWorker}.
+ *
+ * <p>ScalarDB stores a record as a document with {@code id}, {@code concatenatedPartitionKey},
+ * {@code partitionKey}, {@code clusteringKey}, and {@code values} fields. Without a projection the
+ * whole document is selected. With a projection, the key fields are selected as they are and the
+ * {@code values} object is rebuilt from the projected columns only, so that wide non-key columns
+ * are neither read, transferred, nor decoded.
+ *
+ * <p>Scan conditions are translated into a {@code WHERE} clause on the {@code partitionKey}, {@code
+ * clusteringKey}, or {@code values} path of each column, with the operand values bound as query
+ * parameters. A condition on {@link ScanCondition#LAST_WRITTEN_AT} is translated into one on the
+ * {@code _ts} system property, which Cosmos DB sets to the last write time in seconds and always
+ * indexes, so that Cosmos DB serves it from the index even though ScalarDB excludes the other
+ * columns from indexing.
+ *
+ * <p>Since the query text depends only on the projection and the conditions, a scan resumed with
+ * the same handler and conditions runs the same query, so its continuation tokens remain valid.
+ */
+final class CosmosScanQuery {
+
+  static final String SELECT_ALL = "SELECT * FROM c";
+  private static final String TIMESTAMP_PATH = "c[\"_ts\"]";
+
+  private CosmosScanQuery() {}
+
+  /**
+   * Returns the columns to decode for the given handler projection: the projected columns plus all
+   * primary key columns, which are always needed to identify the record.
+   *
+   * @param projections the column names declared by the handler; empty for all columns
+   * @return the column names to pass to ResultInterpreter, or an empty list for all columns
+   * @throws IllegalArgumentException if a projected column does not exist in the table
+   */
+  static List<String> resolveProjections(TableMetadata metadata, List<String> projections) {
+    if (projections.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Set<String> resolved = new LinkedHashSet<>();
+    resolved.addAll(metadata.getPartitionKeyNames());
+    resolved.addAll(metadata.getClusteringKeyNames());
+    for (String column : projections) {
+      if (!metadata.getColumnNames().contains(column)) {
+        throw new IllegalArgumentException("Unknown column in the projection: " + column);
+      }
+      resolved.add(column);
+    }
+    return new ArrayList<>(resolved);
+  }
+
+  /**
+   * Builds the query selecting the given columns of the records matching all the given conditions.
+   *
+   * @param projections the result of {@link #resolveProjections(TableMetadata, List)}
+   * @param conditions the conditions combined with AND; empty for all records
+   * @throws IllegalArgumentException if a condition refers to a column that does not exist in the
+   *     table
+   */
+  static SqlQuerySpec build(
+      TableMetadata metadata, List<String> projections, List<ScanCondition> conditions) {
+    String select =
+        projections.isEmpty() ? SELECT_ALL : buildProjectedSelect(metadata, projections);
+    if (conditions.isEmpty()) {
+      return new SqlQuerySpec(select);
+    }
+
+    StringBuilder where = new StringBuilder();
+    List<SqlParameter> parameters = new ArrayList<>();
+    for (ScanCondition condition : conditions) {
+      if (where.length() > 0) {
+        where.append(" AND ");
+      }
+      if (condition.getColumn().equals(ScanCondition.LAST_WRITTEN_AT)) {
+        where
+            .append(TIMESTAMP_PATH)
+            .append(" >= ")
+            .append(bind(parameters, lastWrittenAtSeconds(condition)));
+        continue;
+      }
+      where.append(path(metadata, condition.getColumn())).append(' ');
+      if (condition.getOperator() == ScanCondition.Operator.IN) {
+        where.append("IN (");
+        for (int i = 0; i < condition.getValues().size(); i++) {
+          if (i > 0) {
+            where.append(',');
+          }
+          where.append(bind(parameters, condition.getValues().get(i)));
+        }
+        where.append(')');
+      } else {
+        where
+            .append(toSqlOperator(condition.getOperator()))
+            .append(' ')
+            .append(bind(parameters, condition.getValues().get(0)));
+      }
+    }
+    return new SqlQuerySpec(select + " WHERE " + where, parameters);
+  }
+
+  /**
+   * Returns the {@code _ts} value, in seconds since the epoch, from which a {@link
+   * ScanCondition#LAST_WRITTEN_AT} condition matches. The time is rounded down, so a document
+   * written within the same second as the given time still matches.
+   *
+   * @throws IllegalArgumentException if the condition is not one created by {@link
+   *     ScanCondition#writtenAtOrAfter(long)}
+   */
+  static long lastWrittenAtSeconds(ScanCondition condition) {
+    Object value = condition.getValues().get(0);
+    if (condition.getOperator() != ScanCondition.Operator.GTE || !(value instanceof Long)) {
+      throw new IllegalArgumentException(
+          "Only ScanCondition.writtenAtOrAfter() may refer to "
+              + ScanCondition.LAST_WRITTEN_AT
+              + ": "
+              + condition);
+    }
+    return Math.floorDiv((Long) value, 1000L);
+  }
+
+  private static String buildProjectedSelect(TableMetadata metadata, List<String> projections) {
+    StringBuilder values = new StringBuilder();
+    for (String column : projections) {
+      if (isKeyColumn(metadata, column)) {
+        // Key columns are read from the partitionKey and clusteringKey fields
+        continue;
+      }
+      if (values.length() > 0) {
+        values.append(',');
+      }
+      values.append(quote(column)).append(':').append(path(metadata, column));
+    }
+    return "SELECT VALUE {\"id\":c.id,\"concatenatedPartitionKey\":c.concatenatedPartitionKey,"
+        + "\"partitionKey\":c.partitionKey,\"clusteringKey\":c.clusteringKey,\"values\":{"
+        + values
+        + "}} FROM c";
+  }
+
+  private static boolean isKeyColumn(TableMetadata metadata, String column) {
+    return metadata.getPartitionKeyNames().contains(column)
+        || metadata.getClusteringKeyNames().contains(column);
+  }
+
+  /** Returns the document path where ScalarDB stores the given column. */
+  private static String path(TableMetadata metadata, String column) {
+    String field;
+    if (metadata.getPartitionKeyNames().contains(column)) {
+      field = "partitionKey";
+    } else if (metadata.getClusteringKeyNames().contains(column)) {
+      field = "clusteringKey";
+    } else if (metadata.getColumnNames().contains(column)) {
+      field = "values";
+    } else {
+      throw new IllegalArgumentException("Unknown column in the scan condition: " + column);
+    }
+    return "c[\"" + field + "\"][" + quote(column) + "]";
+  }
+
+  private static String bind(List<SqlParameter> parameters, Object value) {
+    String name = "@p" + parameters.size();
+    parameters.add(new SqlParameter(name, value));
+    return name;
+  }
+
+  private static String toSqlOperator(ScanCondition.Operator operator) {
+    switch (operator) {
+      case EQ:
+        return "=";
+      case NE:
+        return "!=";
+      case LT:
+        return "<";
+      case LTE:
+        return "<=";
+      case GT:
+        return ">";
+      case GTE:
+        return ">=";
+      default:
+        throw new AssertionError("Unexpected operator: " + operator);
+    }
+  }
+
+  private static String quote(String name) {
+    return '"' + name.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+  }
+}
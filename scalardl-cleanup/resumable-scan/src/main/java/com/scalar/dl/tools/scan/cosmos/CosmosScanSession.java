@@ -0,0 +1,247 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.azure.cosmos.CosmosAsyncClient;
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.CosmosClient;
+import com.azure.cosmos.CosmosClientBuilder;
+import com.azure.cosmos.ConsistencyLevel;
+import com.azure.cosmos.CosmosContainer;
+import com.google.common.annotations.VisibleForTesting;
+import com.scalar.db.api.DistributedStorageAdmin;
+import com.scalar.db.config.DatabaseConfig;
+import com.scalar.db.service.StorageFactory;
+import com.scalar.db.storage.cosmos.CosmosConfig;
+import com.scalar.db.util.ScalarDbUtils;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Cosmos DB clients and the {@link DistributedStorageAdmin} shared by the scanners of a run.
+ *
+ * <p>Building a Cosmos DB client bootstraps its connections and fetches the account and container
+ * metadata, which costs seconds, so scanning hundreds of tables with a client per table spends most
+ * of its time on bootstraps. A session instead builds each client once, on first use, and hands it
+ * to every scanner. The SDK caches the partition key ranges and addresses of each container in the
+ * client, so they are fetched once per run as well. The first time a container is requested from a
+ * session, its connections are opened and these caches filled up front, so that the first pages of
+ * the scan do not pay for them.
+ *
+ * <p>Both clients are built from the same {@link CosmosConfig} settings, in the way ScalarDB builds
+ * its own client, so that the reactive and change-feed scans read with the configured consistency
+ * level and connection mode like the query scans do.
+ *
+ * <p>A session is reference counted. Every holder calls {@link #retain()} before using it and
+ * {@link #release()} once done with it, and the clients and the admin are closed when the last
+ * reference is released. The session cannot be used afterwards.
+ */
+@ThreadSafe
+public final class CosmosScanSession {
+
+  private static final Logger logger = LoggerFactory.getLogger(CosmosScanSession.class);
+
+  private final Supplier<CosmosClient> clientSupplier;
+  private final Supplier<CosmosAsyncClient> asyncClientSupplier;
+  private final Supplier<DistributedStorageAdmin> storageAdminSupplier;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Set<String> warmedContainers = ConcurrentHashMap.newKeySet();
+  private int references;
+  private boolean closed;
+  @Nullable private CosmosClient cosmosClient;
+  @Nullable private CosmosAsyncClient cosmosAsyncClient;
+  @Nullable private DistributedStorageAdmin storageAdmin;
+
+  @VisibleForTesting
+  CosmosScanSession(
+      Supplier<CosmosClient> clientSupplier,
+      Supplier<CosmosAsyncClient> asyncClientSupplier,
+      Supplier<DistributedStorageAdmin> storageAdminSupplier) {
+    this.clientSupplier = clientSupplier;
+    this.asyncClientSupplier = asyncClientSupplier;
+    this.storageAdminSupplier = storageAdminSupplier;
+  }
+
+  /**
+   * Creates a session without any reference. Nothing is connected until a client or the admin is
+   * first requested.
+   *
+   * @param databaseConfig the configuration of the Cosmos DB storage
+   * @return a new session
+   */
+  public static CosmosScanSession create(DatabaseConfig databaseConfig) {
+    return new CosmosScanSession(
+        () -> newClientBuilder(new CosmosConfig(databaseConfig)).buildClient(),
+        () -> newClientBuilder(new CosmosConfig(databaseConfig)).buildAsyncClient(),
+        () -> {
+          try {
+            return StorageFactory.create(databaseConfig.getProperties()).getStorageAdmin();
+          } catch (Exception e) {
+            throw new RuntimeException("Failed to create DistributedStorageAdmin", e);
+          }
+        });
+  }
+
+  /**
+   * Returns a client builder with the settings ScalarDB builds its client with: the endpoint and
+   * key, the direct connection mode, and the configured consistency level, {@code STRONG} unless
+   * set otherwise.
+   */
+  @VisibleForTesting
+  static CosmosClientBuilder newClientBuilder(CosmosConfig cosmosConfig) {
+    ConsistencyLevel consistencyLevel =
+        cosmosConfig
+            .getConsistencyLevel()
+            .map(level -> ConsistencyLevel.valueOf(level.toUpperCase(Locale.ROOT)))
+            .orElse(ConsistencyLevel.STRONG);
+    return new CosmosClientBuilder()
+        .endpoint(cosmosConfig.getEndpoint())
+        .key(cosmosConfig.getKey())
+        .directMode()
+        .consistencyLevel(consistencyLevel);
+  }
+
+  /**
+   * Adds a reference to this session.
+   *
+   * @throws IllegalStateException if the last reference has already been released
+   */
+  public void retain() {
+    lock.lock();
+    try {
+      checkOpen();
+      references++;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Releases a reference to this session, and closes the clients and the admin if it was the last
+   * one.
+   */
+  public void release() {
+    lock.lock();
+    try {
+      if (closed || references == 0) {
+        return;
+      }
+      if (--references > 0) {
+        return;
+      }
+      closed = true;
+    } finally {
+      lock.unlock();
+    }
+    closeResources();
+  }
+
+  /** Returns the synchronous client, building it on the first call. */
+  CosmosClient getClient() {
+    lock.lock();
+    try {
+      checkOpen();
+      if (cosmosClient == null) {
+        cosmosClient = clientSupplier.get();
+      }
+      return cosmosClient;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns the asynchronous client, building it on the first call. */
+  CosmosAsyncClient getAsyncClient() {
+    lock.lock();
+    try {
+      checkOpen();
+      if (cosmosAsyncClient == null) {
+        cosmosAsyncClient = asyncClientSupplier.get();
+      }
+      return cosmosAsyncClient;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns the storage admin, creating it on the first call. */
+  DistributedStorageAdmin getStorageAdmin() {
+    lock.lock();
+    try {
+      checkOpen();
+      if (storageAdmin == null) {
+        storageAdmin = storageAdminSupplier.get();
+      }
+      return storageAdmin;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the container of the given table on the synchronous client, opening its connections
+   * and filling its caches the first time the table is requested from this session.
+   */
+  @SuppressWarnings("deprecation")
+  CosmosContainer getContainer(String namespace, String tableName) {
+    CosmosContainer container = getClient().getDatabase(namespace).getContainer(tableName);
+    String qualifiedTableName = ScalarDbUtils.getFullTableName(namespace, tableName);
+    if (warmedContainers.add(qualifiedTableName)) {
+      warmUp(qualifiedTableName, container::openConnectionsAndInitCaches);
+    }
+    return container;
+  }
+
+  /**
+   * Returns the container of the given table on the asynchronous client, opening its connections
+   * and filling its caches the first time the table is requested from this session.
+   */
+  @SuppressWarnings("deprecation")
+  CosmosAsyncContainer getAsyncContainer(String namespace, String tableName) {
+    CosmosAsyncContainer container =
+        getAsyncClient().getDatabase(namespace).getContainer(tableName);
+    String qualifiedTableName = ScalarDbUtils.getFullTableName(namespace, tableName);
+    if (warmedContainers.add(qualifiedTableName)) {
+      warmUp(qualifiedTableName, () -> container.openConnectionsAndInitCaches().block());
+    }
+    return container;
+  }
+
+  /** Warming up only saves latency, so a failure is logged and the scan goes on without it. */
+  private static void warmUp(String qualifiedTableName, Runnable warmUp) {
+    try {
+      warmUp.run();
+    } catch (RuntimeException e) {
+      logger.warn("Failed to warm up the connections to {}", qualifiedTableName, e);
+    }
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("The Cosmos DB scan session is already closed");
+    }
+  }
+
+  private void closeResources() {
+    try {
+      if (storageAdmin != null) {
+        storageAdmin.close();
+      }
+    } finally {
+      try {
+        if (cosmosClient != null) {
+          cosmosClient.close();
+        }
+      } finally {
+        if (cosmosAsyncClient != null) {
+          cosmosAsyncClient.close();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.models.CosmosChangeFeedRequestOptions;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.FeedRange;
+import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.azure.cosmos.util.CosmosPagedIterable;
+import com.scalar.db.api.TableMetadata;
+import com.scalar.db.storage.cosmos.Record;
+import com.scalar.dl.tools.scan.ScanCondition;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Where a {@link CosmosScanWorker} reads the documents of its FeedRange from.
+ *
+ * <p>A query source runs the query built by {@link CosmosScanQuery}, which lets Cosmos DB evaluate
+ * the scan conditions and the projection. A change feed source reads the change feed of the
+ * FeedRange in latest version mode, which returns the current version of every document and costs
+ * fewer RUs per document than a query, but returns whole documents and leaves the scan conditions
+ * to a {@link CosmosRecordFilter}. The change feed is read from the beginning, or from the time set
+ * by a {@link ScanCondition#LAST_WRITTEN_AT} condition.
+ *
+ * <p>The continuation tokens of the two sources have different formats, so a scan interrupted with
+ * one source cannot be resumed with the other.
+ */
+@Immutable
+abstract class CosmosScanSource {
+
+  private CosmosScanSource() {}
+
+  /** Returns a source running the given query. */
+  static CosmosScanSource query(SqlQuerySpec querySpec) {
+    return new QuerySource(querySpec);
+  }
+
+  /**
+   * Returns a source reading the change feed and keeping the documents matching the given
+   * conditions. A condition on {@link ScanCondition#LAST_WRITTEN_AT} sets the time the change feed
+   * is read from; the others are evaluated by a {@link CosmosRecordFilter}.
+   *
+   * @throws IllegalArgumentException if a condition refers to a column that does not exist in the
+   *     table
+   */
+  static CosmosScanSource changeFeed(TableMetadata metadata, List<ScanCondition> conditions) {
+    Long startSeconds = null;
+    for (ScanCondition condition : conditions) {
+      if (condition.getColumn().equals(ScanCondition.LAST_WRITTEN_AT)) {
+        long seconds = CosmosScanQuery.lastWrittenAtSeconds(condition);
+        startSeconds = startSeconds == null ? seconds : Math.max(startSeconds, seconds);
+      }
+    }
+    return changeFeed(
+        CosmosRecordFilter.of(metadata, conditions),
+        startSeconds == null ? null : Instant.ofEpochSecond(startSeconds));
+  }
+
+  /**
+   * Returns a source reading the change feed and keeping the documents the filter matches.
+   *
+   * @param startTime the time to read the change feed from, or null to read it from the beginning
+   */
+  static CosmosScanSource changeFeed(CosmosRecordFilter filter, @Nullable Instant startTime) {
+    return new ChangeFeedSource(filter, startTime);
+  }
+
+  /**
+   * Opens the pages of the given FeedRange.
+   *
+   * @param continuationToken the token to resume from, or null to start from the beginning
+   * @param pageSizer the sizer choosing the page size of each request, or null to request every
+   *     page with {@code maxItemCount}; only a query source supports it
+   */
+  abstract Iterator<FeedResponse<Record>> open(
+      CosmosContainer container,
+      FeedRange feedRange,
+      @Nullable String continuationToken,
+      int maxItemCount,
+      @Nullable AdaptivePageSizer pageSizer);
+
+  /** Returns whether the given document read from this source belongs to the scan. */
+  abstract boolean matches(Record record);
+
+  private static final class QuerySource extends CosmosScanSource {
+    private final SqlQuerySpec querySpec;
+
+    private QuerySource(SqlQuerySpec querySpec) {
+      this.querySpec = querySpec;
+    }
+
+    @Override
+    Iterator<FeedResponse<Record>> open(
+        CosmosContainer container,
+        FeedRange feedRange,
+        @Nullable String continuationToken,
+        int maxItemCount,
+        @Nullable AdaptivePageSizer pageSizer) {
+      if (continuationToken != null && isChangeFeedContinuationToken(continuationToken)) {
+        throw new IllegalStateException(
+            "The checkpointed continuation token is a change feed continuation token, not a query"
+                + " continuation token. The scan was probably started with another scan engine;"
+                + " resume it with that engine or remove the checkpoint to start over");
+      }
+      CosmosQueryRequestOptions options = new CosmosQueryRequestOptions();
+      options.setFeedRange(feedRange);
+      // ScalarDB excludes non-key columns from the container's indexing policy, so a query
+      // filtering on them must be allowed to scan the documents of the FeedRange.
+      options.setScanInQueryEnabled(true);
+
+      CosmosPagedIterable<Record> iterable =
+          container.queryItems(querySpec, options, Record.class);
+
+      // Use iterableByPage to get access to continuation tokens for checkpointing
+      if (pageSizer != null) {
+        return new AdaptivePageIterator(iterable, continuationToken, pageSizer);
+      } else if (continuationToken != null) {
+        // Resume from the last checkpointed continuation token
+        return iterable.iterableByPage(continuationToken, maxItemCount).iterator();
+      } else {
+        return iterable.iterableByPage(maxItemCount).iterator();
+      }
+    }
+
+    private static boolean isChangeFeedContinuationToken(String continuationToken) {
+      try {
+        CosmosChangeFeedRequestOptions.createForProcessingFromContinuation(continuationToken);
+        return true;
+      } catch (RuntimeException e) {
+        // A query continuation token is not parsed as a change feed one
+        return false;
+      }
+    }
+
+    @Override
+    boolean matches(Record record) {
+      // Cosmos DB has evaluated the conditions already
+      return true;
+    }
+  }
+
+  private static final class ChangeFeedSource extends CosmosScanSource {
+    private final CosmosRecordFilter filter;
+    @Nullable private final Instant startTime;
+
+    private ChangeFeedSource(CosmosRecordFilter filter, @Nullable Instant startTime) {
+      this.filter = filter;
+      this.startTime = startTime;
+    }
+
+    @Override
+    Iterator<FeedResponse<Record>> open(
+        CosmosContainer container,
+        FeedRange feedRange,
+        @Nullable String continuationToken,
+        int maxItemCount,
+        @Nullable AdaptivePageSizer pageSizer) {
+      if (pageSizer != null) {
+        throw new IllegalArgumentException(
+            "Adaptive page sizing is not supported on the change feed");
+      }
+      CosmosChangeFeedRequestOptions options;
+      if (continuationToken == null && startTime == null) {
+        options = CosmosChangeFeedRequestOptions.createForProcessingFromBeginning(feedRange);
+      } else if (continuationToken == null) {
+        options =
+            CosmosChangeFeedRequestOptions.createForProcessingFromPointInTime(startTime, feedRange);
+      } else {
+        try {
+          // The token also identifies the FeedRange, so a range split since then is followed
+          options =
+              CosmosChangeFeedRequestOptions.createForProcessingFromContinuation(continuationToken);
+        } catch (RuntimeException e) {
+          throw new IllegalStateException(
+              "The checkpointed continuation token is not a change feed continuation token. The"
+                  + " scan was probably started with another scan engine; resume it with that"
+                  + " engine or remove the checkpoint to start over",
+              e);
+        }
+      }
+      options.setMaxItemCount(maxItemCount);
+
+      // The iteration ends once the change feed of the FeedRange has been read up to the present
+      return container.queryChangeFeed(options, Record.class).iterableByPage().iterator();
+    }
+
+    @Override
+    boolean matches(Record record) {
+      return filter.matches(record);
+    }
+  }
+}
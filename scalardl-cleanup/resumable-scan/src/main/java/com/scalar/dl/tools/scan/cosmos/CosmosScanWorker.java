@@ -1,15 +1,18 @@
 package com.scalar.dl.tools.scan.cosmos;
 
 import com.azure.cosmos.CosmosContainer;
-import com.azure.cosmos.models.CosmosQueryRequestOptions;
 import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
-import com.azure.cosmos.util.CosmosPagedIterable;
 import com.scalar.db.api.Result;
 import com.scalar.db.storage.cosmos.Record;
 import com.scalar.db.storage.cosmos.ResultInterpreter;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
 import com.scalar.dl.tools.scan.RecordHandler;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,9 +20,30 @@ import org.slf4j.LoggerFactory;
 /**
  * Scans a single FeedRange of a Cosmos container.
  *
- * <p>Iterates pages via CosmosPagedIterable, converts each Cosmos document to a ScalarDB Result via
- * {@link ResultInterpreter}, delivers it to the {@link RecordHandler}, and checkpoints the
- * continuation token after each page.
+ * <p>Reads the pages of the FeedRange from a {@link CosmosScanSource}, either a query ({@link
+ * CosmosScanQuery}) or the change feed, converts each Cosmos document the source matches to a
+ * ScalarDB Result via {@link ResultInterpreter}, delivers it to the {@link RecordHandler} through
+ * a {@link RecordDispatcher}, and checkpoints the continuation token after each page. When the
+ * dispatcher handles the records of a page concurrently, the token is checkpointed only after all
+ * of them have succeeded.
+ *
+ * <p>When prefetching is enabled, pages are fetched by a {@link PagePrefetcher} on a separate
+ * thread, up to a configured number of pages ahead, so that the network round trip for the next
+ * page overlaps with handling the current one. The continuation token of a page is still
+ * checkpointed only after every record of that page has been handled.
+ *
+ * <p>When adaptive page sizing is enabled, pages are fetched through an {@link
+ * AdaptivePageIterator}, which tunes the page size toward a target latency instead of always
+ * requesting {@code maxItemCount} documents.
+ *
+ * <p>The request charge of every page is charged to a {@link RequestUnitLimiter} shared with the
+ * other workers and the mutating handlers of the process, which blocks the worker while the RU
+ * budget is exhausted.
+ *
+ * <p>When adaptive concurrency is enabled, handling a page requires admission by an {@link
+ * AimdConcurrencyController} shared by the workers of the scan. Since a worker fetches its next
+ * page only after handling the current one (or at most {@code prefetchPages} ahead of it), this
+ * also bounds the rate of page fetches while Cosmos DB is throttling.
  *
  * <p>Does NOT use setMaxDegreeOfParallelism: in that mode the continuation token covers the entire
  * logical scan rather than a single partition, so it cannot be resumed per FeedRange.
@@ -29,73 +53,147 @@ class CosmosScanWorker implements Callable<Long> {
   private static final Logger logger = LoggerFactory.getLogger(CosmosScanWorker.class);
 
   private final CosmosContainer container;
+  private final CosmosScanSource source;
   private final FeedRange feedRange;
   private final String feedRangeId;
   private final String tableName;
   @Nullable private final String continuationToken;
-  private final RecordHandler recordHandler;
+  private final RecordDispatcher recordDispatcher;
   private final ResultInterpreter resultInterpreter;
   private final CheckpointManager checkpointManager;
+  private final RequestUnitLimiter requestUnitLimiter;
   private final int maxItemCount;
+  private final int prefetchPages;
+  @Nullable private final ExecutorService prefetchExecutor;
+  @Nullable private final AdaptivePageSizer pageSizer;
+  @Nullable private final AimdConcurrencyController concurrencyController;
 
+  /**
+   * @param requestUnitLimiter the limiter charged with the request charge of every fetched page
+   * @param prefetchPages the maximum number of pages fetched ahead of the page being handled, or 0
+   *     to fetch each page only after the previous one has been handled
+   * @param prefetchExecutor the executor running the fetch stage; required if {@code
+   *     prefetchPages} is positive
+   * @param pageSizer the sizer choosing the page size of each request, or null to request every
+   *     page with {@code maxItemCount}
+   * @param concurrencyController the controller admitting the handling of each page, shared by the
+   *     workers of a scan, or null to handle pages without admission control
+   */
   CosmosScanWorker(
       CosmosContainer container,
+      CosmosScanSource source,
       FeedRange feedRange,
       String feedRangeId,
       String tableName,
       @Nullable String continuationToken,
-      RecordHandler recordHandler,
+      RecordDispatcher recordDispatcher,
       ResultInterpreter resultInterpreter,
       CheckpointManager checkpointManager,
-      int maxItemCount) {
+      RequestUnitLimiter requestUnitLimiter,
+      int maxItemCount,
+      int prefetchPages,
+      @Nullable ExecutorService prefetchExecutor,
+      @Nullable AdaptivePageSizer pageSizer,
+      @Nullable AimdConcurrencyController concurrencyController) {
+    if (prefetchPages > 0 && prefetchExecutor == null) {
+      throw new IllegalArgumentException("prefetchExecutor is required when prefetching pages");
+    }
     this.container = container;
+    this.source = source;
     this.feedRange = feedRange;
     this.feedRangeId = feedRangeId;
     this.tableName = tableName;
     this.continuationToken = continuationToken;
-    this.recordHandler = recordHandler;
+    this.recordDispatcher = recordDispatcher;
     this.resultInterpreter = resultInterpreter;
     this.checkpointManager = checkpointManager;
+    this.requestUnitLimiter = requestUnitLimiter;
     this.maxItemCount = maxItemCount;
+    this.prefetchPages = prefetchPages;
+    this.prefetchExecutor = prefetchExecutor;
+    this.pageSizer = pageSizer;
+    this.concurrencyController = concurrencyController;
   }
 
   @Override
   public Long call() throws Exception {
     long scanned = 0;
 
-    CosmosQueryRequestOptions options = new CosmosQueryRequestOptions();
-    options.setFeedRange(feedRange);
-
-    CosmosPagedIterable<Record> iterable =
-        container.queryItems("SELECT * FROM c", options, Record.class);
+    Iterator<FeedResponse<Record>> pages =
+        source.open(container, feedRange, continuationToken, maxItemCount, pageSizer);
 
-    // Use iterableByPage to get access to continuation tokens for checkpointing
-    Iterable<FeedResponse<Record>> pages;
-    if (continuationToken != null) {
-      // Resume from the last checkpointed continuation token
-      pages = iterable.iterableByPage(continuationToken, maxItemCount);
+    if (prefetchPages > 0) {
+      assert prefetchExecutor != null;
+      try (PagePrefetcher<FeedResponse<Record>> prefetcher =
+          new PagePrefetcher<>(pages, prefetchPages)) {
+        prefetcher.start(prefetchExecutor);
+        FeedResponse<Record> page;
+        while ((page = prefetcher.take()) != null) {
+          scanned += processPage(page);
+        }
+      }
     } else {
-      pages = iterable.iterableByPage(maxItemCount);
+      while (pages.hasNext()) {
+        scanned += processPage(pages.next());
+      }
     }
 
-    for (FeedResponse<Record> page : pages) {
-      if (Thread.interrupted()) {
-        throw new InterruptedException("Scan worker interrupted for " + tableName);
-      }
-      for (Record record : page.getResults()) {
-        Result result = resultInterpreter.interpret(record);
-        recordHandler.handle(result);
-        scanned++;
-      }
+    logger.debug("FeedRange {} for table {}: scanned {} records", feedRangeId, tableName, scanned);
+    if (pageSizer != null) {
+      logger.info(
+          "FeedRange {} for table {}: adaptive page sizing: {}",
+          feedRangeId,
+          tableName,
+          pageSizer.summary());
+    }
+    return scanned;
+  }
+
+  /**
+   * Charges the page's request charge, then handles the page once the concurrency controller, if
+   * any, admits it.
+   */
+  private long processPage(FeedResponse<Record> page) throws Exception {
+    if (Thread.interrupted()) {
+      throw new InterruptedException("Scan worker interrupted for " + tableName);
+    }
+    // Waiting here also holds back the fetch of the next page, since the prefetcher stays at most
+    // prefetchPages ahead of the pages taken by this worker.
+    requestUnitLimiter.charge(page.getRequestCharge());
+
+    if (concurrencyController == null) {
+      return handlePage(page);
+    }
+    // Report the page before waiting for admission, so that a throttled page holds back the
+    // workers that are about to handle their pages as well
+    if (CosmosThrottling.wasRetried(page)) {
+      concurrencyController.onThrottle(0);
+    } else {
+      concurrencyController.onSuccess();
+    }
+    concurrencyController.acquire();
+    try {
+      return handlePage(page);
+    } finally {
+      concurrencyController.release();
+    }
+  }
 
-      // Checkpoint after each page
-      String nextToken = page.getContinuationToken();
-      if (nextToken != null) {
-        checkpointManager.persistContinuationToken(tableName, feedRangeId, nextToken);
+  /** Handles every record of the page, then checkpoints the page's continuation token. */
+  private long handlePage(FeedResponse<Record> page) throws Exception {
+    List<Result> results = new ArrayList<>(page.getResults().size());
+    for (Record record : page.getResults()) {
+      if (source.matches(record)) {
+        results.add(resultInterpreter.interpret(record));
       }
     }
+    recordDispatcher.dispatch(results);
 
-    logger.debug("FeedRange {} for table {}: scanned {} records", feedRangeId, tableName, scanned);
-    return scanned;
+    // Checkpoint after each page
+    String nextToken = page.getContinuationToken();
+    if (nextToken != null) {
+      checkpointManager.persistContinuationToken(tableName, feedRangeId, nextToken);
+    }
+    return results.size();
   }
 }
@@ -0,0 +1,55 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.azure.cosmos.CosmosDiagnostics;
+import com.azure.cosmos.CosmosDiagnosticsContext;
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.FeedResponse;
+import java.time.Duration;
+import javax.annotation.Nullable;
+
+/**
+ * Extracts Cosmos DB throttling signals for {@link AimdConcurrencyController}.
+ *
+ * <p>The Cosmos SDK retries throttled ({@code 429 Too Many Requests}) requests internally, so a
+ * successful page does not carry the status of the throttled attempts. Its diagnostics still record
+ * how many times the request was retried, which on a healthy account is almost always because of
+ * throttling. A request that is still throttled after the SDK gives up fails with a {@link
+ * CosmosException} carrying the status and the retry-after hint.
+ */
+final class CosmosThrottling {
+
+  static final int TOO_MANY_REQUESTS = 429;
+
+  /** The value of {@link #retryAfterMillis(Throwable)} for a failure that is not throttling. */
+  static final long NOT_THROTTLED = -1;
+
+  private CosmosThrottling() {}
+
+  /** Returns whether the SDK had to retry the request for the given page. */
+  static boolean wasRetried(FeedResponse<?> page) {
+    CosmosDiagnostics diagnostics = page.getCosmosDiagnostics();
+    if (diagnostics == null) {
+      return false;
+    }
+    CosmosDiagnosticsContext context = diagnostics.getDiagnosticsContext();
+    return context != null && context.getRetryCount() > 0;
+  }
+
+  /**
+   * Returns the retry-after hint of a throttling failure, looking through the causes of the given
+   * exception (ScalarDB wraps Cosmos DB exceptions).
+   *
+   * @return the retry-after hint in milliseconds, 0 if the throttled response had none, or {@link
+   *     #NOT_THROTTLED} if the failure is not caused by throttling
+   */
+  static long retryAfterMillis(@Nullable Throwable failure) {
+    for (Throwable t = failure; t != null; t = t.getCause()) {
+      if (t instanceof CosmosException
+          && ((CosmosException) t).getStatusCode() == TOO_MANY_REQUESTS) {
+        Duration retryAfter = ((CosmosException) t).getRetryAfterDuration();
+        return retryAfter == null ? 0 : retryAfter.toMillis();
+      }
+    }
+    return NOT_THROTTLED;
+  }
+}
@@ -0,0 +1,177 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.azure.cosmos.models.FeedRange;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Determines the FeedRanges a scan of a table covers.
+ *
+ * <p>Each physical partition can optionally be split into several effective partition key
+ * sub-ranges by {@link FeedRangeSplitter}, so that more ranges than physical partitions can be
+ * scanned at once. The discovered (and possibly split) FeedRanges are persisted before scanning,
+ * and a resumed scan reuses them regardless of the current configuration. On resume, the persisted
+ * FeedRanges are checked against the current physical partitions, and FeedRanges spanning several
+ * partitions after a split are replaced by one FeedRange per partition (see {@link
+ * FeedRangeReconciler}).
+ */
+class FeedRangePlanner {
+
+  private static final Logger logger = LoggerFactory.getLogger(FeedRangePlanner.class);
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private final CheckpointManager checkpointManager;
+  private final int subRangesPerPartition;
+  private final int parallelism;
+
+  /**
+   * @param subRangesPerPartition the number of sub-ranges per physical partition, or {@link
+   *     CosmosResumableScannerConfig#AUTO_SUB_RANGES_PER_PARTITION} to derive it from {@code
+   *     parallelism}
+   * @param parallelism the maximum number of ranges scanned at once
+   */
+  FeedRangePlanner(
+      CheckpointManager checkpointManager, int subRangesPerPartition, int parallelism) {
+    this.checkpointManager = checkpointManager;
+    this.subRangesPerPartition = subRangesPerPartition;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Returns the FeedRanges persisted for the table, or discovers, splits, and persists them if none
+   * are persisted yet.
+   *
+   * @param qualifiedTableName the table to scan
+   * @param physicalRangeSupplier returns the FeedRanges of the physical partitions of the table
+   */
+  List<FeedRange> loadOrDiscover(
+      String qualifiedTableName, Supplier<List<FeedRange>> physicalRangeSupplier) {
+    String persistedRanges = checkpointManager.loadFeedRanges(qualifiedTableName);
+
+    if (persistedRanges != null) {
+      List<FeedRange> feedRanges = new ArrayList<>();
+      try {
+        List<String> rangeJsonList =
+            mapper.readValue(persistedRanges, new TypeReference<List<String>>() {});
+        for (String json : rangeJsonList) {
+          feedRanges.add(FeedRangeSerializer.fromJson(json));
+        }
+      } catch (Exception e) {
+        throw new RuntimeException("Failed to load persisted FeedRanges", e);
+      }
+      logger.info("Loaded {} persisted FeedRanges for {}", feedRanges.size(), qualifiedTableName);
+      return reconcile(qualifiedTableName, feedRanges, physicalRangeSupplier);
+    }
+
+    // Discover FeedRanges
+    List<FeedRange> physicalRanges = physicalRangeSupplier.get();
+    logger.info(
+        "Cosmos DB physical partitions: {} for {}", physicalRanges.size(), qualifiedTableName);
+    List<FeedRange> feedRanges = splitFeedRanges(physicalRanges);
+    logger.info("Discovered {} FeedRanges for {}", feedRanges.size(), qualifiedTableName);
+
+    // Persist before scanning so that a resumed scan uses the same split
+    persist(qualifiedTableName, feedRanges);
+    return feedRanges;
+  }
+
+  /**
+   * Maps the persisted FeedRanges onto the current physical partitions with {@link
+   * FeedRangeReconciler}, so that partitions split since the FeedRanges were persisted are scanned
+   * from the persisted position by one worker per child partition.
+   *
+   * <p>The continuation tokens of the new FeedRanges are persisted before the new FeedRanges
+   * themselves, so an interruption in between only makes the next invocation repeat the mapping.
+   */
+  private List<FeedRange> reconcile(
+      String qualifiedTableName,
+      List<FeedRange> persistedRanges,
+      Supplier<List<FeedRange>> physicalRangeSupplier) {
+    List<FeedRange> physicalRanges;
+    try {
+      physicalRanges = physicalRangeSupplier.get();
+    } catch (RuntimeException e) {
+      logger.warn(
+          "Failed to get the physical partitions of {}; resuming without checking for splits",
+          qualifiedTableName,
+          e);
+      return persistedRanges;
+    }
+
+    List<FeedRange> feedRanges = new ArrayList<>();
+    boolean changed = false;
+    for (FeedRange persistedRange : persistedRanges) {
+      String token =
+          checkpointManager.loadContinuationToken(
+              qualifiedTableName, FeedRangeSerializer.toId(persistedRange));
+      List<FeedRangeReconciler.Assignment> assignments =
+          FeedRangeReconciler.reconcile(persistedRange, token, physicalRanges);
+      if (assignments.size() == 1 && assignments.get(0).feedRange == persistedRange) {
+        feedRanges.add(persistedRange);
+        continue;
+      }
+      changed = true;
+      logger.info(
+          "FeedRange {} of {} spans several physical partitions after a split; resuming it as {}"
+              + " FeedRanges",
+          FeedRangeSerializer.toJson(persistedRange),
+          qualifiedTableName,
+          assignments.size());
+      for (FeedRangeReconciler.Assignment assignment : assignments) {
+        if (assignment.continuationToken != null) {
+          checkpointManager.persistContinuationToken(
+              qualifiedTableName,
+              FeedRangeSerializer.toId(assignment.feedRange),
+              assignment.continuationToken);
+        }
+        feedRanges.add(assignment.feedRange);
+      }
+    }
+    if (changed) {
+      persist(qualifiedTableName, feedRanges);
+      logger.info(
+          "Reconciled {} persisted FeedRanges into {} for {}",
+          persistedRanges.size(),
+          feedRanges.size(),
+          qualifiedTableName);
+    }
+    return feedRanges;
+  }
+
+  private void persist(String qualifiedTableName, List<FeedRange> feedRanges) {
+    try {
+      List<String> rangeJsonList = new ArrayList<>();
+      for (FeedRange fr : feedRanges) {
+        rangeJsonList.add(FeedRangeSerializer.toJson(fr));
+      }
+      String json = mapper.writeValueAsString(rangeJsonList);
+      checkpointManager.persistFeedRanges(qualifiedTableName, json);
+    } catch (Exception e) {
+      throw new RuntimeException("Failed to persist FeedRanges", e);
+    }
+  }
+
+  private List<FeedRange> splitFeedRanges(List<FeedRange> physicalRanges) {
+    if (physicalRanges.isEmpty()) {
+      return physicalRanges;
+    }
+    int count = subRangesPerPartition;
+    if (count == CosmosResumableScannerConfig.AUTO_SUB_RANGES_PER_PARTITION) {
+      // Enough sub-ranges to keep every concurrent scan of a range busy
+      count = (parallelism + physicalRanges.size() - 1) / physicalRanges.size();
+    }
+    if (count <= 1) {
+      return physicalRanges;
+    }
+    List<FeedRange> feedRanges = new ArrayList<>();
+    for (FeedRange physicalRange : physicalRanges) {
+      feedRanges.addAll(FeedRangeSplitter.split(physicalRange, count));
+    }
+    return feedRanges;
+  }
+}
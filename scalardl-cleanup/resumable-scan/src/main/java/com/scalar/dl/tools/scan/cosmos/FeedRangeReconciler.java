@@ -0,0 +1,169 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.azure.cosmos.models.FeedRange;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Maps a persisted FeedRange and its continuation token onto the current physical partitions of a
+ * container, so that a resumed scan follows partition splits without starting the range over.
+ *
+ * <p>When Cosmos DB splits a partition, a persisted FeedRange that covered it now overlaps several
+ * physical partitions. The FeedRange is then replaced by its intersections with those partitions,
+ * so that they can be scanned by separate workers. The continuation token of a query over a single
+ * partition is a composite token of the form {@code {"token":"...","range":{"min":"...","max":
+ * "..."}}}: the backend token is valid on the child partitions of a split, and the range tells
+ * where the query stands. Each child is therefore assigned:
+ *
+ * <ul>
+ *   <li>no FeedRange at all if it lies entirely before the token's range, since it has been
+ *       scanned already,
+ *   <li>the backend token with the range narrowed to the child if it overlaps the token's range,
+ *   <li>no token if it lies entirely after the token's range, since it has not been scanned yet.
+ * </ul>
+ *
+ * <p>A token of any other form is not rewritten: the FeedRange is then kept as it is with its
+ * token, and the SDK follows the split itself, scanning the children one after another. A merge
+ * needs no mapping either, since a query over an EPK sub-range of the merged partition resumes
+ * from the persisted token as before.
+ */
+final class FeedRangeReconciler {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+  private static final String TOKEN_FIELD = "token";
+  private static final String RANGE_FIELD = "range";
+
+  private FeedRangeReconciler() {}
+
+  /** A FeedRange to scan and the continuation token to resume it from. */
+  @Immutable
+  static final class Assignment {
+    final FeedRange feedRange;
+    @Nullable final String continuationToken;
+
+    Assignment(FeedRange feedRange, @Nullable String continuationToken) {
+      this.feedRange = feedRange;
+      this.continuationToken = continuationToken;
+    }
+  }
+
+  /**
+   * Maps the given persisted FeedRange onto the given physical partitions.
+   *
+   * @param persisted a FeedRange persisted by an earlier invocation of the scan
+   * @param continuationToken the continuation token persisted for it, or null if it has none
+   * @param physicalRanges the FeedRanges of the current physical partitions
+   * @return the persisted FeedRange with its token if it does not span several partitions or
+   *     cannot be mapped, or otherwise the parts of it that remain to be scanned, in EPK order
+   */
+  static List<Assignment> reconcile(
+      FeedRange persisted, @Nullable String continuationToken, List<FeedRange> physicalRanges) {
+    List<Assignment> unchanged =
+        Collections.singletonList(new Assignment(persisted, continuationToken));
+    JsonNode range = FeedRangeSplitter.parseRange(FeedRangeSerializer.toRangeJson(persisted));
+    if (range == null) {
+      return unchanged;
+    }
+    String min = epk(range, "min");
+    String max = epk(range, "max");
+
+    List<String[]> children = new ArrayList<>();
+    for (FeedRange physicalRange : physicalRanges) {
+      JsonNode physical =
+          FeedRangeSplitter.parseRange(FeedRangeSerializer.toRangeJson(physicalRange));
+      if (physical == null) {
+        return unchanged;
+      }
+      String childMin = greater(min, epk(physical, "min"));
+      String childMax = lesser(max, epk(physical, "max"));
+      if (childMin.compareTo(childMax) < 0) {
+        children.add(new String[] {childMin, childMax});
+      }
+    }
+    if (children.size() <= 1) {
+      return unchanged;
+    }
+    children.sort(Comparator.comparing(child -> child[0]));
+
+    ObjectNode tokenNode = null;
+    if (continuationToken != null) {
+      tokenNode = parseCompositeToken(continuationToken);
+      if (tokenNode == null) {
+        return unchanged;
+      }
+    }
+
+    List<Assignment> assignments = new ArrayList<>();
+    for (String[] child : children) {
+      FeedRange feedRange = FeedRangeSplitter.toFeedRange((ObjectNode) range, child[0], child[1]);
+      if (tokenNode == null) {
+        assignments.add(new Assignment(feedRange, null));
+        continue;
+      }
+      JsonNode tokenRange = tokenNode.get(RANGE_FIELD);
+      String tokenMin = epk(tokenRange, "min");
+      String tokenMax = epk(tokenRange, "max");
+      if (child[1].compareTo(tokenMin) <= 0) {
+        // Scanned before the query reached the range of the token
+        continue;
+      }
+      if (child[0].compareTo(tokenMax) >= 0) {
+        assignments.add(new Assignment(feedRange, null));
+        continue;
+      }
+      ObjectNode childToken = tokenNode.deepCopy();
+      ObjectNode childTokenRange = (ObjectNode) childToken.get(RANGE_FIELD);
+      childTokenRange.put("min", greater(tokenMin, child[0]));
+      childTokenRange.put("max", lesser(tokenMax, child[1]));
+      assignments.add(new Assignment(feedRange, childToken.toString()));
+    }
+    return assignments;
+  }
+
+  /** Returns the composite token node, or null if the token is not a single composite token. */
+  @Nullable
+  private static ObjectNode parseCompositeToken(String continuationToken) {
+    JsonNode root;
+    try {
+      root = mapper.readTree(continuationToken);
+    } catch (Exception e) {
+      return null;
+    }
+    if (root == null
+        || !root.isObject()
+        || root.get(TOKEN_FIELD) == null
+        || !root.get(TOKEN_FIELD).isTextual()) {
+      return null;
+    }
+    JsonNode range = root.get(RANGE_FIELD);
+    if (range == null || !range.isObject()) {
+      return null;
+    }
+    JsonNode min = range.get("min");
+    JsonNode max = range.get("max");
+    if (min == null || !min.isTextual() || max == null || !max.isTextual()) {
+      return null;
+    }
+    return (ObjectNode) root;
+  }
+
+  private static String epk(JsonNode range, String field) {
+    return range.get(field).asText().toUpperCase(Locale.ROOT);
+  }
+
+  private static String greater(String a, String b) {
+    return a.compareTo(b) >= 0 ? a : b;
+  }
+
+  private static String lesser(String a, String b) {
+    return a.compareTo(b) <= 0 ? a : b;
+  }
+}
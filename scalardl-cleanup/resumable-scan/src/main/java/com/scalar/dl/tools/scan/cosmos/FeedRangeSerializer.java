@@ -3,6 +3,7 @@ package com.scalar.dl.tools.scan.cosmos;
 import com.azure.cosmos.models.FeedRange;
 import com.google.common.hash.Hashing;
 import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 
 /**
  * Serializes FeedRange to a stable string ID for use in file names and checkpoint keys.
@@ -12,6 +13,9 @@ import java.nio.charset.StandardCharsets;
  */
 class FeedRangeSerializer {
 
+  private static final boolean SDK_USES_PLAIN_JSON =
+      isPlainJson(FeedRange.forFullRange().toString());
+
   private FeedRangeSerializer() {}
 
   /** Convert a FeedRange to a stable, filesystem-safe identifier. */
@@ -29,4 +33,41 @@ class FeedRangeSerializer {
   public static FeedRange fromJson(String json) {
     return FeedRange.fromString(json);
   }
+
+  /**
+   * Returns the plain JSON representation of a FeedRange, such as {@code
+   * {"Range":{"min":"","max":"FF"}}}. Some SDK versions return it base64-encoded from {@code
+   * toString()}, in which case it is decoded.
+   */
+  static String toRangeJson(FeedRange feedRange) {
+    String value = feedRange.toString();
+    if (isPlainJson(value)) {
+      return value;
+    }
+    try {
+      return new String(Base64.getDecoder().decode(value), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      try {
+        return new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+      } catch (IllegalArgumentException e2) {
+        return value;
+      }
+    }
+  }
+
+  /**
+   * Creates a FeedRange from its plain JSON representation, encoding it the way this SDK version
+   * encodes the result of {@code toString()}.
+   */
+  static FeedRange fromRangeJson(String json) {
+    if (SDK_USES_PLAIN_JSON) {
+      return FeedRange.fromString(json);
+    }
+    return FeedRange.fromString(
+        Base64.getEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static boolean isPlainJson(String value) {
+    return value.trim().startsWith("{");
+  }
 }
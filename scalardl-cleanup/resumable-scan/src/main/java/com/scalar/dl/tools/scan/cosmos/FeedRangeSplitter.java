@@ -0,0 +1,145 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.azure.cosmos.models.FeedRange;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.annotation.Nullable;
+
+/**
+ * Splits an effective partition key (EPK) FeedRange into contiguous sub-ranges.
+ *
+ * <p>A FeedRange returned by {@code CosmosContainer.getFeedRanges()} covers one physical partition
+ * and serializes as {@code {"Range":{"min":"...","max":"..."}}}, where min and max are hex-encoded
+ * EPKs compared lexicographically. Sub-ranges are built by right-padding both bounds to the same
+ * width and interpolating between them as integers. The first sub-range keeps the original min and
+ * the last keeps the original max, so the sub-ranges cover exactly the original range.
+ *
+ * <p>Each sub-range can be queried and resumed on its own, which allows scanning a physical
+ * partition with several workers. FeedRanges that are not EPK ranges (e.g. logical partition
+ * ranges) are returned unsplit.
+ */
+class FeedRangeSplitter {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  /** Hex width of an EPK produced by the V2 hash (128 bits). */
+  private static final int EPK_HEX_WIDTH = 32;
+
+  /** The exclusive upper bound of the whole EPK space. */
+  private static final String MAX_EXCLUSIVE_EPK = "FF";
+
+  /**
+   * The V2 hash clears the two most significant bits of an EPK, so no document has an EPK at or
+   * above this value. Interpolating up to this bound instead of {@link #MAX_EXCLUSIVE_EPK} keeps
+   * the sub-ranges of the last physical partition evenly loaded.
+   */
+  private static final String MAX_HASHED_EPK = "40";
+
+  private FeedRangeSplitter() {}
+
+  /**
+   * Splits the given FeedRange into {@code count} contiguous sub-ranges.
+   *
+   * @return the sub-ranges in ascending EPK order, or a singleton list of the given FeedRange if it
+   *     is not an EPK range or cannot be split into that many distinct sub-ranges
+   */
+  static List<FeedRange> split(FeedRange feedRange, int count) {
+    if (count <= 0) {
+      throw new IllegalArgumentException("count must be positive: " + count);
+    }
+    if (count == 1) {
+      return Collections.singletonList(feedRange);
+    }
+
+    JsonNode range = parseRange(FeedRangeSerializer.toRangeJson(feedRange));
+    if (range == null) {
+      return Collections.singletonList(feedRange);
+    }
+    String min = range.get("min").asText();
+    String max = range.get("max").asText();
+    String upper = max.equals(MAX_EXCLUSIVE_EPK) ? MAX_HASHED_EPK : max;
+
+    int width = Math.max(EPK_HEX_WIDTH, Math.max(min.length(), upper.length()));
+    BigInteger low = toInteger(min, width);
+    BigInteger high = toInteger(upper, width);
+    BigInteger span = high.subtract(low);
+    if (span.compareTo(BigInteger.valueOf(count)) < 0) {
+      return Collections.singletonList(feedRange);
+    }
+
+    List<FeedRange> subRanges = new ArrayList<>(count);
+    String subMin = min;
+    for (int i = 1; i <= count; i++) {
+      String subMax =
+          i == count
+              ? max
+              : toHex(
+                  low.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(count))),
+                  width);
+      subRanges.add(toFeedRange((ObjectNode) range, subMin, subMax));
+      subMin = subMax;
+    }
+    return subRanges;
+  }
+
+  /** Returns the "Range" node of an EPK FeedRange JSON, or null if it is not an EPK range. */
+  @Nullable
+  static JsonNode parseRange(String json) {
+    JsonNode root;
+    try {
+      root = mapper.readTree(json);
+    } catch (Exception e) {
+      return null;
+    }
+    if (root == null) {
+      return null;
+    }
+    JsonNode range = root.get("Range");
+    if (range == null
+        || !range.isObject()
+        || !isHex(range.get("min"))
+        || !isHex(range.get("max"))
+        || range.get("max").asText().isEmpty()) {
+      return null;
+    }
+    return range;
+  }
+
+  private static boolean isHex(JsonNode node) {
+    return node != null && node.isTextual() && node.asText().matches("[0-9A-Fa-f]*");
+  }
+
+  private static BigInteger toInteger(String hex, int width) {
+    StringBuilder padded = new StringBuilder(width).append(hex);
+    while (padded.length() < width) {
+      padded.append('0');
+    }
+    return new BigInteger(padded.toString(), 16);
+  }
+
+  private static String toHex(BigInteger value, int width) {
+    String hex = value.toString(16).toUpperCase(Locale.ROOT);
+    StringBuilder padded = new StringBuilder(width);
+    for (int i = hex.length(); i < width; i++) {
+      padded.append('0');
+    }
+    return padded.append(hex).toString();
+  }
+
+  /** Returns a FeedRange with the attributes of the given "Range" node and the given bounds. */
+  static FeedRange toFeedRange(ObjectNode original, String min, String max) {
+    // Keep any other attributes of the original range (e.g. inclusivity flags) as they are
+    ObjectNode range = original.deepCopy();
+    range.put("min", min);
+    range.put("max", max);
+    ObjectNode root = mapper.createObjectNode();
+    root.set("Range", range);
+    return FeedRangeSerializer.fromRangeJson(root.toString());
+  }
+}
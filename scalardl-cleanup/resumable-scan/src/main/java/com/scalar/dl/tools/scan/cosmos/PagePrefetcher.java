@@ -0,0 +1,121 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Fetches pages from a source iterator on a separate thread, at most a fixed number of pages ahead
+ * of the consumer.
+ *
+ * <p>Used by {@link CosmosScanWorker} so that the next Cosmos DB page is being fetched over the
+ * network while the current page is being handled. The consumer receives pages in the order of the
+ * source, so checkpointing the continuation token of a page after it is handled keeps the same
+ * resume semantics as a non-prefetching scan.
+ *
+ * @param <T> the page type
+ */
+@ThreadSafe
+class PagePrefetcher<T> implements AutoCloseable {
+
+  /** Marks the end of the source in the queue. */
+  private static final Object END = new Object();
+
+  private final Iterator<T> source;
+  private final Semaphore aheadPermits;
+  private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+  @Nullable private volatile Future<?> fetchTask;
+  private volatile boolean closed;
+
+  /**
+   * @param source the page source; its {@code hasNext()} and {@code next()} are only invoked from
+   *     the fetch thread
+   * @param maxPagesAhead the maximum number of pages fetched but not yet taken by the consumer
+   */
+  PagePrefetcher(Iterator<T> source, int maxPagesAhead) {
+    if (maxPagesAhead <= 0) {
+      throw new IllegalArgumentException("maxPagesAhead must be positive: " + maxPagesAhead);
+    }
+    this.source = source;
+    this.aheadPermits = new Semaphore(maxPagesAhead);
+  }
+
+  /** Starts fetching pages on the given executor. Must be called once before {@link #take()}. */
+  void start(ExecutorService executor) {
+    fetchTask = executor.submit(this::fetchAll);
+  }
+
+  private void fetchAll() {
+    try {
+      while (!closed) {
+        aheadPermits.acquire();
+        if (closed || !source.hasNext()) {
+          break;
+        }
+        queue.add(source.next());
+      }
+      queue.add(END);
+    } catch (InterruptedException e) {
+      // Interrupted by close(); the consumer is no longer waiting for pages.
+      Thread.currentThread().interrupt();
+    } catch (Throwable t) {
+      queue.add(new FetchFailure(t));
+    }
+  }
+
+  /**
+   * Takes the next page, waiting for it to be fetched if necessary.
+   *
+   * @return the next page, or {@code null} if the source is exhausted
+   * @throws InterruptedException if interrupted while waiting
+   * @throws RuntimeException if fetching the page failed; the original unchecked exception is
+   *     rethrown as-is
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  T take() throws InterruptedException {
+    Object element = queue.take();
+    if (element == END) {
+      // Keep the marker so that subsequent calls also observe the end.
+      queue.add(END);
+      return null;
+    }
+    if (element instanceof FetchFailure) {
+      queue.add(element);
+      Throwable cause = ((FetchFailure) element).cause;
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException("Failed to fetch a page", cause);
+    }
+    aheadPermits.release();
+    return (T) element;
+  }
+
+  /** Stops fetching. Pages already fetched but not taken are discarded. */
+  @Override
+  public void close() {
+    closed = true;
+    Future<?> task = fetchTask;
+    if (task != null) {
+      task.cancel(true);
+    }
+    queue.clear();
+  }
+
+  private static final class FetchFailure {
+    private final Throwable cause;
+
+    private FetchFailure(Throwable cause) {
+      this.cause = cause;
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.scalar.db.api.Result;
+import com.scalar.dl.tools.scan.RecordHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers the records of a page to a {@link RecordHandler}.
+ *
+ * <p>With a concurrency of 1, records are handled one after another on the calling thread. With a
+ * higher concurrency, records are handed to a shared executor with at most that many of them in
+ * flight at a time. In both cases {@link #dispatch(List)} returns only after every record of the
+ * page has been handled, so the caller can checkpoint the page's continuation token afterward.
+ *
+ * <p>With an {@link AimdConcurrencyController}, a record whose handling fails because Cosmos DB
+ * throttled a request is handled again after the retry-after hint, up to {@link
+ * #MAX_THROTTLE_RETRIES} times, and the throttling is reported to the controller. In the concurrent
+ * mode the controller also limits the number of records in flight across all dispatchers sharing
+ * it, and clean outcomes are reported to let that limit grow again.
+ *
+ * <p>A handler that {@linkplain RecordHandler#handlesPages() handles whole pages} receives each
+ * page at once on the calling thread, whatever the concurrency.
+ */
+@ThreadSafe
+class RecordDispatcher {
+
+  private static final Logger logger = LoggerFactory.getLogger(RecordDispatcher.class);
+
+  @VisibleForTesting static final int MAX_THROTTLE_RETRIES = 10;
+
+  private final RecordHandler recordHandler;
+  @Nullable private final ExecutorService executor;
+  @Nullable private final Semaphore inFlightPermits;
+  @Nullable private final AimdConcurrencyController concurrencyController;
+
+  private RecordDispatcher(
+      RecordHandler recordHandler,
+      @Nullable ExecutorService executor,
+      @Nullable Semaphore inFlightPermits,
+      @Nullable AimdConcurrencyController concurrencyController) {
+    this.recordHandler = recordHandler;
+    this.executor = executor;
+    this.inFlightPermits = inFlightPermits;
+    this.concurrencyController = concurrencyController;
+  }
+
+  /** Creates a dispatcher that handles records one after another on the calling thread. */
+  static RecordDispatcher sequential(RecordHandler recordHandler) {
+    return sequential(recordHandler, null);
+  }
+
+  /**
+   * Creates a dispatcher that handles records one after another on the calling thread and retries
+   * throttled records. The calling thread is expected to be admitted by the given controller
+   * already, so the dispatcher only reports throttling to it.
+   */
+  static RecordDispatcher sequential(
+      RecordHandler recordHandler, @Nullable AimdConcurrencyController concurrencyController) {
+    return new RecordDispatcher(recordHandler, null, null, concurrencyController);
+  }
+
+  /**
+   * Creates a dispatcher that handles up to {@code concurrency} records at a time on the given
+   * executor. The executor may be shared by several dispatchers.
+   */
+  static RecordDispatcher concurrent(
+      RecordHandler recordHandler, ExecutorService executor, int concurrency) {
+    return concurrent(recordHandler, executor, concurrency, null);
+  }
+
+  /**
+   * Creates a dispatcher that handles up to {@code concurrency} records at a time on the given
+   * executor, admitting each record through the given controller and retrying throttled records.
+   * The executor and the controller may be shared by several dispatchers.
+   */
+  static RecordDispatcher concurrent(
+      RecordHandler recordHandler,
+      ExecutorService executor,
+      int concurrency,
+      @Nullable AimdConcurrencyController concurrencyController) {
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("concurrency must be positive: " + concurrency);
+    }
+    if (concurrency == 1) {
+      return sequential(recordHandler, concurrencyController);
+    }
+    return new RecordDispatcher(
+        recordHandler, executor, new Semaphore(concurrency), concurrencyController);
+  }
+
+  /**
+   * Handles all the given records and waits for them to complete.
+   *
+   * <p>If a record fails, no further records of the page are submitted, the records already in
+   * flight are awaited, and the first failure is thrown with any later ones suppressed.
+   *
+   * @param records the records of a single page
+   * @throws Exception the first exception thrown by the handler
+   */
+  void dispatch(List<Result> records) throws Exception {
+    if (recordHandler.handlesPages()) {
+      // The handler batches the page itself, so there is nothing to run concurrently here
+      recordHandler.handlePage(records);
+      return;
+    }
+    if (executor == null) {
+      for (Result record : records) {
+        handleWithRetry(record);
+      }
+      return;
+    }
+    assert inFlightPermits != null;
+
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Future<?>> futures = new ArrayList<>(records.size());
+    List<PermittedRecord> permittedRecords = new ArrayList<>(records.size());
+    try {
+      for (Result record : records) {
+        if (failure.get() != null) {
+          break;
+        }
+        inFlightPermits.acquire();
+        PermittedRecord permittedRecord = new PermittedRecord(record, failure);
+        try {
+          futures.add(executor.submit(permittedRecord));
+        } catch (RejectedExecutionException e) {
+          inFlightPermits.release();
+          throw e;
+        }
+        permittedRecords.add(permittedRecord);
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          // Already recorded in handle()
+        }
+      }
+    } catch (InterruptedException | RuntimeException e) {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+      // A record cancelled before it started never releases its permit itself
+      for (PermittedRecord permittedRecord : permittedRecords) {
+        permittedRecord.abandon();
+      }
+      throw e;
+    }
+
+    Throwable first = failure.get();
+    if (first instanceof Error) {
+      throw (Error) first;
+    } else if (first != null) {
+      throw (Exception) first;
+    }
+  }
+
+  /**
+   * A record holding an in-flight permit, released exactly once: by the record when it runs, or by
+   * {@link #abandon()} if it never started.
+   */
+  private final class PermittedRecord implements Callable<Void> {
+    private final Result record;
+    private final AtomicReference<Throwable> failure;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    private PermittedRecord(Result record, AtomicReference<Throwable> failure) {
+      this.record = record;
+      this.failure = failure;
+    }
+
+    /** Releases the permit of this record unless it has started running. */
+    void abandon() {
+      if (claimed.compareAndSet(false, true)) {
+        assert inFlightPermits != null;
+        inFlightPermits.release();
+      }
+    }
+
+    @Override
+    public Void call() throws Exception {
+      if (!claimed.compareAndSet(false, true)) {
+        // Abandoned, and the permit already released
+        return null;
+      }
+      assert inFlightPermits != null;
+      try {
+        handleWithRetry(record);
+        return null;
+      } catch (Throwable t) {
+        if (!failure.compareAndSet(null, t)) {
+          failure.get().addSuppressed(t);
+        }
+        throw t;
+      } finally {
+        inFlightPermits.release();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  int getAvailablePermits() {
+    assert inFlightPermits != null;
+    return inFlightPermits.availablePermits();
+  }
+
+  private void handleWithRetry(Result record) throws Exception {
+    if (concurrencyController == null) {
+      recordHandler.handle(record);
+      return;
+    }
+    // Only records handed to the executor are admitted here; a sequential dispatcher runs on a
+    // thread that the controller has already admitted.
+    boolean admit = executor != null;
+    for (int retries = 0; ; retries++) {
+      if (admit) {
+        concurrencyController.acquire();
+      } else {
+        concurrencyController.awaitPause();
+      }
+      try {
+        recordHandler.handle(record);
+        if (admit) {
+          concurrencyController.onSuccess();
+        }
+        return;
+      } catch (Exception e) {
+        long retryAfterMillis = CosmosThrottling.retryAfterMillis(e);
+        if (retryAfterMillis == CosmosThrottling.NOT_THROTTLED || retries >= MAX_THROTTLE_RETRIES) {
+          throw e;
+        }
+        concurrencyController.onThrottle(retryAfterMillis);
+        logger.debug("Record handling throttled; retrying after {} ms", retryAfterMillis);
+      } finally {
+        if (admit) {
+          concurrencyController.release();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.scalar.dl.tools.scan;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+class ScanConditionTest {
+
+  @Test
+  void lt_valueGiven_shouldCreateSingleValueCondition() {
+    // Act
+    ScanCondition condition = ScanCondition.lt("created_at", 100L);
+
+    // Assert
+    assertThat(condition.getColumn()).isEqualTo("created_at");
+    assertThat(condition.getOperator()).isEqualTo(ScanCondition.Operator.LT);
+    assertThat(condition.getValues()).containsExactly(100L);
+  }
+
+  @Test
+  void in_valuesGiven_shouldKeepValuesInOrder() {
+    // Act
+    ScanCondition condition = ScanCondition.in("state", 2, 1);
+
+    // Assert
+    assertThat(condition.getOperator()).isEqualTo(ScanCondition.Operator.IN);
+    assertThat(condition.getValues()).containsExactly(2, 1);
+  }
+
+  @Test
+  void in_noValuesGiven_shouldThrowIllegalArgumentException() {
+    // Act & Assert
+    assertThatThrownBy(() -> ScanCondition.in("state"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void eq_unsupportedValueTypeGiven_shouldThrowIllegalArgumentException() {
+    // Act & Assert
+    assertThatThrownBy(() -> ScanCondition.eq("data", new byte[] {1}))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void eq_nullValueGiven_shouldThrowIllegalArgumentException() {
+    // Act & Assert
+    assertThatThrownBy(() -> ScanCondition.eq("state", null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void equals_sameConditionsGiven_shouldReturnTrue() {
+    // Act & Assert
+    assertThat(ScanCondition.gte("state", 1)).isEqualTo(ScanCondition.gte("state", 1));
+    assertThat(ScanCondition.gte("state", 1)).isNotEqualTo(ScanCondition.gt("state", 1));
+    assertThat(ScanCondition.gte("state", 1)).isNotEqualTo(ScanCondition.gte("state", 1L));
+  }
+
+  @Test
+  void writtenAtOrAfter_timeGiven_shouldCreateGteConditionOnLastWrittenAt() {
+    // Act
+    ScanCondition condition = ScanCondition.writtenAtOrAfter(1_000L);
+
+    // Assert
+    assertThat(condition.getColumn()).isEqualTo(ScanCondition.LAST_WRITTEN_AT);
+    assertThat(condition.getOperator()).isEqualTo(ScanCondition.Operator.GTE);
+    assertThat(condition.getValues()).containsExactly(1_000L);
+  }
+}
@@ -0,0 +1,145 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.azure.cosmos.CosmosDiagnostics;
+import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.util.CosmosPagedIterable;
+import com.scalar.db.storage.cosmos.Record;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class AdaptivePageIteratorTest {
+
+  @SuppressWarnings("unchecked")
+  private final CosmosPagedIterable<Record> iterable = mock(CosmosPagedIterable.class);
+
+  private final AdaptivePageSizer pageSizer = mock(AdaptivePageSizer.class);
+
+  @Test
+  void next_pageSizeUnchanged_shouldReadAllPagesFromSingleQuery() {
+    // Arrange
+    FeedResponse<Record> page1 =
+        CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(2), "token-1");
+    FeedResponse<Record> page2 =
+        CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), null);
+    when(iterable.streamByPage(100)).thenReturn(Stream.of(page1, page2));
+    when(pageSizer.getPageSize()).thenReturn(100);
+    AdaptivePageIterator iterator = new AdaptivePageIterator(iterable, null, pageSizer);
+
+    // Act
+    FeedResponse<Record> first = iterator.next();
+    FeedResponse<Record> second = iterator.next();
+
+    // Assert
+    assertThat(first).isSameAs(page1);
+    assertThat(second).isSameAs(page2);
+    assertThat(iterator.hasNext()).isFalse();
+    verify(pageSizer).onPage(eq(2), anyLong(), anyDouble(), eq(-1L));
+    verify(pageSizer).onPage(eq(1), anyLong(), anyDouble(), eq(-1L));
+    verify(iterable, never()).streamByPage(eq("token-1"), eq(100));
+  }
+
+  @Test
+  void next_pageSizeChanged_shouldReopenQueryFromLastContinuationToken() {
+    // Arrange
+    FeedResponse<Record> page1 =
+        CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(2), "token-1");
+    FeedResponse<Record> page2 =
+        CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), null);
+    AtomicBoolean firstClosed = new AtomicBoolean();
+    when(iterable.streamByPage(100))
+        .thenReturn(Stream.of(page1).onClose(() -> firstClosed.set(true)));
+    when(iterable.streamByPage("token-1", 200)).thenReturn(Stream.of(page2));
+    when(pageSizer.getPageSize()).thenReturn(100, 200);
+    AdaptivePageIterator iterator = new AdaptivePageIterator(iterable, null, pageSizer);
+
+    // Act
+    FeedResponse<Record> first = iterator.next();
+    FeedResponse<Record> second = iterator.next();
+
+    // Assert
+    assertThat(first).isSameAs(page1);
+    assertThat(second).isSameAs(page2);
+    verify(iterable).streamByPage("token-1", 200);
+    assertThat(firstClosed).isTrue();
+  }
+
+  @Test
+  void hasNext_resumedWithContinuationToken_shouldStartFromToken() {
+    // Arrange
+    FeedResponse<Record> page =
+        CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), null);
+    when(iterable.streamByPage("resume-token", 100)).thenReturn(Stream.of(page));
+    when(pageSizer.getPageSize()).thenReturn(100);
+    AdaptivePageIterator iterator = new AdaptivePageIterator(iterable, "resume-token", pageSizer);
+
+    // Act
+    boolean hasNext = iterator.hasNext();
+
+    // Assert
+    assertThat(hasNext).isTrue();
+    assertThat(iterator.next()).isSameAs(page);
+  }
+
+  @Test
+  void next_contentLengthHeaderPresent_shouldReportPageBytes() {
+    // Arrange
+    FeedResponse<Record> page =
+        CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), null);
+    when(page.getRequestCharge()).thenReturn(3.5);
+    when(page.getResponseHeaders())
+        .thenReturn(Collections.singletonMap(AdaptivePageIterator.CONTENT_LENGTH_HEADER, "2048"));
+    when(iterable.streamByPage(100)).thenReturn(Stream.of(page));
+    when(pageSizer.getPageSize()).thenReturn(100);
+    AdaptivePageIterator iterator = new AdaptivePageIterator(iterable, null, pageSizer);
+
+    // Act
+    iterator.next();
+
+    // Assert
+    verify(pageSizer).onPage(eq(1), anyLong(), eq(3.5), eq(2048L));
+  }
+
+  @Test
+  void next_diagnosticsPresent_shouldReportRequestDurationAsLatency() {
+    // Arrange — the page was fetched ahead, so the request duration is what the sizer adapts on.
+    FeedResponse<Record> page =
+        CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), null);
+    CosmosDiagnostics diagnostics = mock(CosmosDiagnostics.class);
+    when(diagnostics.getDuration()).thenReturn(Duration.ofMillis(1234));
+    when(page.getCosmosDiagnostics()).thenReturn(diagnostics);
+    when(iterable.streamByPage(100)).thenReturn(Stream.of(page));
+    when(pageSizer.getPageSize()).thenReturn(100);
+    AdaptivePageIterator iterator = new AdaptivePageIterator(iterable, null, pageSizer);
+
+    // Act
+    iterator.next();
+
+    // Assert
+    verify(pageSizer).onPage(eq(1), eq(1234L), anyDouble(), anyLong());
+  }
+
+  @Test
+  void next_noMorePages_shouldThrowNoSuchElementException() {
+    // Arrange
+    when(iterable.streamByPage(100)).thenReturn(Stream.empty());
+    when(pageSizer.getPageSize()).thenReturn(100);
+    AdaptivePageIterator iterator = new AdaptivePageIterator(iterable, null, pageSizer);
+
+    // Act & Assert
+    assertThatThrownBy(iterator::next).isInstanceOf(NoSuchElementException.class);
+  }
+}
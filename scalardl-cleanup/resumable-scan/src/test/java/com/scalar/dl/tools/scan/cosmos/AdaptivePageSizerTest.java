@@ -0,0 +1,117 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptivePageSizerTest {
+
+  private static final String RANGE_ID = "range1";
+  private static final String TABLE_NAME = "ns.table";
+
+  private static AdaptivePageSizer createSizer(int initialPageSize) {
+    return new AdaptivePageSizer(RANGE_ID, TABLE_NAME, initialPageSize, 10, 1000, 500);
+  }
+
+  @Test
+  void constructor_initialPageSizeOutOfBounds_shouldClampIt() {
+    // Act
+    AdaptivePageSizer small = createSizer(1);
+    AdaptivePageSizer large = createSizer(5000);
+
+    // Assert
+    assertThat(small.getPageSize()).isEqualTo(10);
+    assertThat(large.getPageSize()).isEqualTo(1000);
+  }
+
+  @Test
+  void constructor_minGreaterThanMax_shouldThrowIllegalArgumentException() {
+    // Act & Assert
+    assertThatThrownBy(() -> new AdaptivePageSizer(RANGE_ID, TABLE_NAME, 100, 200, 100, 500))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void constructor_nonPositiveTargetLatency_shouldThrowIllegalArgumentException() {
+    // Act & Assert
+    assertThatThrownBy(() -> new AdaptivePageSizer(RANGE_ID, TABLE_NAME, 100, 10, 1000, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void onPage_fastPage_shouldGrowPageSizeByAtMostTwice() {
+    // Arrange
+    AdaptivePageSizer sizer = createSizer(100);
+
+    // Act
+    sizer.onPage(100, 10, 5.0, -1);
+
+    // Assert
+    assertThat(sizer.getPageSize()).isEqualTo(200);
+  }
+
+  @Test
+  void onPage_slowPage_shouldShrinkPageSize() {
+    // Arrange
+    AdaptivePageSizer sizer = createSizer(100);
+
+    // Act
+    sizer.onPage(100, 800, 5.0, -1);
+
+    // Assert
+    assertThat(sizer.getPageSize()).isEqualTo(63);
+  }
+
+  @Test
+  void onPage_latencyCloseToTarget_shouldKeepPageSize() {
+    // Arrange
+    AdaptivePageSizer sizer = createSizer(100);
+
+    // Act
+    sizer.onPage(100, 480, 5.0, -1);
+
+    // Assert
+    assertThat(sizer.getPageSize()).isEqualTo(100);
+  }
+
+  @Test
+  void onPage_repeatedlyFast_shouldNotExceedMaxPageSize() {
+    // Arrange
+    AdaptivePageSizer sizer = createSizer(100);
+
+    // Act
+    for (int i = 0; i < 10; i++) {
+      sizer.onPage(sizer.getPageSize(), 1, 5.0, -1);
+    }
+
+    // Assert
+    assertThat(sizer.getPageSize()).isEqualTo(1000);
+  }
+
+  @Test
+  void onPage_largeDocuments_shouldCapPageSizeByResponseSize() {
+    // Arrange
+    AdaptivePageSizer sizer = createSizer(100);
+
+    // Act
+    // 100 documents of 64 KB each; at most 48 of them fit in 3 MB
+    sizer.onPage(100, 10, 5.0, 100L * 64 * 1024);
+
+    // Assert
+    assertThat(sizer.getPageSize()).isEqualTo(48);
+  }
+
+  @Test
+  void onPage_emptyPage_shouldKeepPageSize() {
+    // Arrange
+    AdaptivePageSizer sizer = createSizer(100);
+
+    // Act
+    sizer.onPage(0, 10, 2.0, -1);
+
+    // Assert
+    assertThat(sizer.getPageSize()).isEqualTo(100);
+    assertThat(sizer.summary()).startsWith("1 pages, 0 items");
+  }
+}
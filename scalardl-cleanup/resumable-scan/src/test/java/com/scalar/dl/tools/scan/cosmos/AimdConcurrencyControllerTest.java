@@ -0,0 +1,143 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AimdConcurrencyControllerTest {
+
+  private long nowNanos;
+
+  @BeforeEach
+  void setUp() {
+    nowNanos = TimeUnit.SECONDS.toNanos(100);
+  }
+
+  private AimdConcurrencyController createController(int maxLimit) {
+    return new AimdConcurrencyController("test", maxLimit, () -> nowNanos);
+  }
+
+  @Test
+  void onThrottle_shouldHalveLimit() {
+    // Arrange
+    AimdConcurrencyController controller = createController(32);
+
+    // Act
+    controller.onThrottle(0);
+
+    // Assert
+    assertThat(controller.getLimit()).isEqualTo(16);
+  }
+
+  @Test
+  void onThrottle_repeatedWithinDecreaseInterval_shouldHalveLimitOnce() {
+    // Arrange
+    AimdConcurrencyController controller = createController(32);
+
+    // Act
+    controller.onThrottle(0);
+    controller.onThrottle(0);
+    nowNanos += AimdConcurrencyController.DECREASE_INTERVAL_NANOS;
+    controller.onThrottle(0);
+
+    // Assert
+    assertThat(controller.getLimit()).isEqualTo(8);
+  }
+
+  @Test
+  void onThrottle_manyTimes_shouldNotGoBelowOne() {
+    // Arrange
+    AimdConcurrencyController controller = createController(4);
+
+    // Act
+    for (int i = 0; i < 10; i++) {
+      controller.onThrottle(0);
+      nowNanos += AimdConcurrencyController.DECREASE_INTERVAL_NANOS;
+    }
+
+    // Assert
+    assertThat(controller.getLimit()).isEqualTo(1);
+  }
+
+  @Test
+  void onSuccess_runOfCleanOutcomesAsLongAsLimit_shouldIncreaseLimitByOne() {
+    // Arrange
+    AimdConcurrencyController controller = createController(32);
+    controller.onThrottle(0);
+
+    // Act
+    for (int i = 0; i < 16; i++) {
+      controller.onSuccess();
+    }
+
+    // Assert
+    assertThat(controller.getLimit()).isEqualTo(17);
+  }
+
+  @Test
+  void onSuccess_atMaxLimit_shouldKeepLimit() {
+    // Arrange
+    AimdConcurrencyController controller = createController(2);
+
+    // Act
+    for (int i = 0; i < 10; i++) {
+      controller.onSuccess();
+    }
+
+    // Assert
+    assertThat(controller.getLimit()).isEqualTo(2);
+  }
+
+  @Test
+  void acquire_limitReached_shouldWaitForRelease() throws Exception {
+    // Arrange
+    AimdConcurrencyController controller =
+        new AimdConcurrencyController("test", 1, System::nanoTime);
+    controller.acquire();
+    CountDownLatch acquired = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    try {
+      // Act
+      Future<?> future =
+          executor.submit(
+              () -> {
+                controller.acquire();
+                acquired.countDown();
+                controller.release();
+                return null;
+              });
+      boolean acquiredBeforeRelease = acquired.await(100, TimeUnit.MILLISECONDS);
+      controller.release();
+      future.get(5, TimeUnit.SECONDS);
+
+      // Assert
+      assertThat(acquiredBeforeRelease).isFalse();
+      assertThat(acquired.getCount()).isZero();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void summary_shouldReportTimeWeightedAverageLimit() {
+    // Arrange
+    AimdConcurrencyController controller = createController(8);
+    nowNanos += TimeUnit.SECONDS.toNanos(1);
+    controller.onThrottle(0);
+    nowNanos += TimeUnit.SECONDS.toNanos(1);
+
+    // Act
+    String summary = controller.summary();
+
+    // Assert
+    assertThat(summary)
+        .isEqualTo("test concurrency min 4, avg 6.0, max 8, final 4, 1 throttled requests");
+  }
+}
@@ -0,0 +1,217 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.scalar.dl.tools.common.InMemoryCheckpointStore;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CheckpointJournalTest {
+
+  @TempDir Path tempDir;
+  private Path path;
+
+  @BeforeEach
+  void setUp() {
+    path = tempDir.resolve("ns.table").resolve("tokens.journal");
+  }
+
+  @Test
+  void open_nonExistentJournalGiven_shouldCreateEmptyJournal() throws IOException {
+    // Act
+    try (CheckpointJournal journal = CheckpointJournal.open(path, 64, 5)) {
+      // Assert
+      assertThat(path).exists();
+      assertThat(journal.get("range1")).isNull();
+    }
+  }
+
+  @Test
+  void append_shouldMakeTokenReadableAfterReopening() throws IOException {
+    // Arrange
+    try (CheckpointJournal journal = CheckpointJournal.open(path, 64, 5)) {
+      // Act
+      journal.append("range1", "token1");
+
+      // Assert
+      assertThat(journal.get("range1")).isEqualTo("token1");
+    }
+    try (CheckpointJournal reopened = CheckpointJournal.open(path, 64, 5)) {
+      assertThat(reopened.get("range1")).isEqualTo("token1");
+    }
+  }
+
+  @Test
+  void open_severalEntriesPerRangeGiven_shouldReadLatestEntryPerRange() throws IOException {
+    // Arrange
+    try (CheckpointJournal journal = CheckpointJournal.open(path, 64, 0)) {
+      journal.append("rangeA", "tokenA1");
+      journal.append("rangeB", "tokenB1");
+      journal.append("rangeA", "tokenA2");
+    }
+
+    // Act
+    try (CheckpointJournal reopened = CheckpointJournal.open(path, 64, 0)) {
+      // Assert
+      assertThat(reopened.get("rangeA")).isEqualTo("tokenA2");
+      assertThat(reopened.get("rangeB")).isEqualTo("tokenB1");
+    }
+  }
+
+  @Test
+  void open_tornLastLineGiven_shouldDropItAndKeepAppending() throws IOException {
+    // Arrange
+    try (CheckpointJournal journal = CheckpointJournal.open(path, 64, 0)) {
+      journal.append("range1", "token1");
+    }
+    // Simulate a crash in the middle of writing a batch
+    Files.write(
+        path,
+        "{\"range\":\"range1\",\"tok".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+
+    // Act
+    try (CheckpointJournal reopened = CheckpointJournal.open(path, 64, 0)) {
+      reopened.append("range2", "token2");
+    }
+
+    // Assert
+    try (CheckpointJournal reopened = CheckpointJournal.open(path, 64, 0)) {
+      assertThat(reopened.get("range1")).isEqualTo("token1");
+      assertThat(reopened.get("range2")).isEqualTo("token2");
+    }
+  }
+
+  @Test
+  void open_malformedLineGiven_shouldThrowIOException() throws IOException {
+    // Arrange
+    Files.createDirectories(path.getParent());
+    Files.write(path, "{\"range\":\"range1\"}\n".getBytes(StandardCharsets.UTF_8));
+
+    // Act & Assert
+    assertThatThrownBy(() -> CheckpointJournal.open(path, 64, 0))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining(path.toString());
+  }
+
+  @Test
+  void append_manyUpdatesGiven_shouldCompactJournalToOneLinePerRange() throws IOException {
+    // Arrange
+    try (CheckpointJournal journal = CheckpointJournal.open(path, 64, 0, 8)) {
+      // Act
+      for (int i = 0; i < 100; i++) {
+        journal.append("rangeA", "tokenA-" + i);
+        journal.append("rangeB", "tokenB-" + i);
+      }
+    }
+
+    // Assert
+    assertThat(Files.readAllLines(path, StandardCharsets.UTF_8)).hasSizeLessThan(8);
+    try (CheckpointJournal reopened = CheckpointJournal.open(path, 64, 0)) {
+      assertThat(reopened.get("rangeA")).isEqualTo("tokenA-99");
+      assertThat(reopened.get("rangeB")).isEqualTo("tokenB-99");
+    }
+  }
+
+  @Test
+  void append_compactionFailingGiven_shouldKeepAppendingToJournal() throws IOException {
+    // Arrange — a non-empty directory at the temporary path makes every compaction fail.
+    Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    Files.createDirectories(tmp);
+    Files.write(tmp.resolve("blocker"), new byte[0]);
+
+    try (CheckpointJournal journal = CheckpointJournal.open(path, 64, 0, 8)) {
+      // Act
+      for (int i = 0; i < 20; i++) {
+        journal.append("rangeA", "tokenA-" + i);
+        journal.append("rangeB", "tokenB-" + i);
+      }
+    }
+
+    // Assert — every update reached the journal at its path, none was compacted away.
+    assertThat(Files.readAllLines(path, StandardCharsets.UTF_8)).hasSize(40);
+    try (CheckpointJournal reopened = CheckpointJournal.open(path, 64, 0)) {
+      assertThat(reopened.get("rangeA")).isEqualTo("tokenA-19");
+      assertThat(reopened.get("rangeB")).isEqualTo("tokenB-19");
+    }
+  }
+
+  @Test
+  void append_concurrentWorkersGiven_shouldWriteEveryLatestToken() throws Exception {
+    // Arrange
+    int workers = 8;
+    int updatesPerWorker = 50;
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    try (CheckpointJournal journal = CheckpointJournal.open(path, 4, 5, 16)) {
+      // Act
+      List<Future<?>> futures = new ArrayList<>();
+      for (int w = 0; w < workers; w++) {
+        String rangeId = "range" + w;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < updatesPerWorker; i++) {
+                    journal.append(rangeId, rangeId + "-" + i);
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Assert
+    try (CheckpointJournal reopened = CheckpointJournal.open(path, 4, 5)) {
+      for (int w = 0; w < workers; w++) {
+        assertThat(reopened.get("range" + w)).isEqualTo("range" + w + "-" + (updatesPerWorker - 1));
+      }
+    }
+  }
+
+  @Test
+  void append_storeJournalGiven_shouldWriteTokenEntriesToStore() throws IOException {
+    // Arrange
+    InMemoryCheckpointStore store = new InMemoryCheckpointStore();
+    Path tableDir = tempDir.resolve("ns.table");
+
+    // Act
+    try (CheckpointJournal journal = CheckpointJournal.open(store, tableDir, 64, 0)) {
+      journal.append("range1", "token1");
+      journal.append("range1", "token2");
+      journal.append("range2", "token3");
+
+      // Assert
+      assertThat(journal.get("range1")).isEqualTo("token2");
+    }
+    assertThat(tableDir).doesNotExist();
+    assertThat(store.read(tableDir.resolve("range1.token")))
+        .isEqualTo("token2".getBytes(StandardCharsets.UTF_8));
+    assertThat(store.read(tableDir.resolve("range2.token")))
+        .isEqualTo("token3".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void append_closedJournalGiven_shouldThrowIllegalStateException() throws IOException {
+    // Arrange
+    CheckpointJournal journal = CheckpointJournal.open(path, 64, 5);
+    journal.close();
+
+    // Act & Assert
+    assertThatThrownBy(() -> journal.append("range1", "token1"))
+        .isInstanceOf(IllegalStateException.class);
+  }
+}
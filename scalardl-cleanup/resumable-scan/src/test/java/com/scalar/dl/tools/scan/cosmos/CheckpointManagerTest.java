@@ -4,10 +4,12 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import com.scalar.dl.tools.common.InMemoryCheckpointStore;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -22,6 +24,19 @@ class CheckpointManagerTest {
     manager = new CheckpointManager(tempDir.resolve("checkpoint"));
   }
 
+  @AfterEach
+  void tearDown() {
+    manager.close();
+  }
+
+  /** Loads a token as a resumed scan does, with a new manager reading the journal from disk. */
+  private String loadAfterRestart(String tableName, String rangeId) {
+    manager.close();
+    try (CheckpointManager restarted = new CheckpointManager(tempDir.resolve("checkpoint"))) {
+      return restarted.loadContinuationToken(tableName, rangeId);
+    }
+  }
+
   @Test
   void loadContinuationToken_nonExistentTokenGiven_shouldReturnNull() {
     // Arrange
@@ -76,7 +91,7 @@ class CheckpointManagerTest {
   }
 
   @Test
-  void persistContinuationToken_shouldWriteToken() throws IOException {
+  void persistContinuationToken_shouldWriteTokenToJournal() {
     // Arrange
     manager.initCheckpointFor("ns.table");
 
@@ -84,25 +99,43 @@ class CheckpointManagerTest {
     manager.persistContinuationToken("ns.table", "range1", "token-abc");
 
     // Assert
-    Path tokenPath = tempDir.resolve("checkpoint").resolve("ns.table").resolve("range1.token");
-    assertThat(new String(Files.readAllBytes(tokenPath), StandardCharsets.UTF_8))
-        .isEqualTo("token-abc");
+    assertThat(tempDir.resolve("checkpoint").resolve("ns.table").resolve("tokens.journal"))
+        .isNotEmptyFile();
+    assertThat(manager.loadContinuationToken("ns.table", "range1")).isEqualTo("token-abc");
+    assertThat(loadAfterRestart("ns.table", "range1")).isEqualTo("token-abc");
   }
 
   @Test
-  void persistContinuationToken_existingTokenGiven_shouldOverwriteToken() throws IOException {
+  void persistContinuationToken_legacyTokenFileGiven_shouldTakePrecedenceOverIt()
+      throws IOException {
     // Arrange
     Path dir = tempDir.resolve("checkpoint").resolve("ns.table");
     Files.createDirectories(dir);
-    Path tokenPath = dir.resolve("range1.token");
-    Files.write(tokenPath, "first".getBytes(StandardCharsets.UTF_8));
+    Files.write(dir.resolve("range1.token"), "first".getBytes(StandardCharsets.UTF_8));
 
     // Act
     manager.persistContinuationToken("ns.table", "range1", "second");
 
     // Assert
-    assertThat(new String(Files.readAllBytes(tokenPath), StandardCharsets.UTF_8))
-        .isEqualTo("second");
+    assertThat(manager.loadContinuationToken("ns.table", "range1")).isEqualTo("second");
+    assertThat(loadAfterRestart("ns.table", "range1")).isEqualTo("second");
+  }
+
+  @Test
+  void persistContinuationToken_calledRepeatedly_shouldResumeFromLatestTokenPerRange() {
+    // Arrange
+    manager.initCheckpointFor("ns.table");
+
+    // Act
+    for (int i = 0; i < 10; i++) {
+      manager.persistContinuationToken("ns.table", "rangeA", "tokenA-" + i);
+      manager.persistContinuationToken("ns.table", "rangeB", "tokenB-" + i);
+    }
+    manager.persistContinuationToken("ns.table", "rangeA", "tokenA-last");
+
+    // Assert
+    assertThat(loadAfterRestart("ns.table", "rangeA")).isEqualTo("tokenA-last");
+    assertThat(loadAfterRestart("ns.table", "rangeB")).isEqualTo("tokenB-9");
   }
 
   @Test
@@ -131,8 +164,7 @@ class CheckpointManagerTest {
   }
 
   @Test
-  void persistContinuationToken_shouldStoreTokensIndependentlyPerRangeAndTable()
-      throws IOException {
+  void persistContinuationToken_shouldStoreTokensIndependentlyPerRangeAndTable() {
     // Arrange
     manager.initCheckpointFor("ns.table");
     manager.initCheckpointFor("ns.table2");
@@ -143,12 +175,48 @@ class CheckpointManagerTest {
     manager.persistContinuationToken("ns.table2", "rangeA", "tokenC");
 
     // Assert
-    Path pathA = tempDir.resolve("checkpoint").resolve("ns.table").resolve("rangeA.token");
-    Path pathB = tempDir.resolve("checkpoint").resolve("ns.table").resolve("rangeB.token");
-    Path pathC = tempDir.resolve("checkpoint").resolve("ns.table2").resolve("rangeA.token");
-    assertThat(new String(Files.readAllBytes(pathA), StandardCharsets.UTF_8)).isEqualTo("tokenA");
-    assertThat(new String(Files.readAllBytes(pathB), StandardCharsets.UTF_8)).isEqualTo("tokenB");
-    assertThat(new String(Files.readAllBytes(pathC), StandardCharsets.UTF_8)).isEqualTo("tokenC");
+    assertThat(loadAfterRestart("ns.table", "rangeA")).isEqualTo("tokenA");
+    assertThat(loadAfterRestart("ns.table", "rangeB")).isEqualTo("tokenB");
+    assertThat(loadAfterRestart("ns.table2", "rangeA")).isEqualTo("tokenC");
+  }
+
+  @Test
+  void persistContinuationToken_nonFileStoreGiven_shouldResumeFromStoreWithoutFiles() {
+    // Arrange
+    InMemoryCheckpointStore store = new InMemoryCheckpointStore();
+    Path checkpointDir = tempDir.resolve("shared");
+    try (CheckpointManager storeManager = new CheckpointManager(store, checkpointDir, 64, 5)) {
+      storeManager.initCheckpointFor("ns.table");
+      storeManager.persistFeedRanges("ns.table", "[\"range1\"]");
+
+      // Act
+      storeManager.persistContinuationToken("ns.table", "range1", "token1");
+    }
+
+    // Assert
+    assertThat(checkpointDir).doesNotExist();
+    try (CheckpointManager restarted = new CheckpointManager(store, checkpointDir, 64, 5)) {
+      assertThat(restarted.loadContinuationToken("ns.table", "range1")).isEqualTo("token1");
+      assertThat(restarted.loadFeedRanges("ns.table")).isEqualTo("[\"range1\"]");
+    }
+  }
+
+  @Test
+  void clearCheckpointFor_nonFileStoreGiven_shouldDeleteEntriesOfTable() {
+    // Arrange
+    InMemoryCheckpointStore store = new InMemoryCheckpointStore();
+    Path checkpointDir = tempDir.resolve("shared");
+    try (CheckpointManager storeManager = new CheckpointManager(store, checkpointDir, 64, 5)) {
+      storeManager.persistContinuationToken("ns.table", "range1", "token1");
+      storeManager.persistContinuationToken("ns.table2", "range1", "token2");
+
+      // Act
+      storeManager.clearCheckpointFor("ns.table");
+
+      // Assert
+      assertThat(storeManager.loadContinuationToken("ns.table", "range1")).isNull();
+      assertThat(storeManager.loadContinuationToken("ns.table2", "range1")).isEqualTo("token2");
+    }
   }
 
   @Test
@@ -330,4 +398,29 @@ class CheckpointManagerTest {
     // Act & Assert
     assertThatCode(() -> manager.clearCheckpointFor("ns.nonexistent")).doesNotThrowAnyException();
   }
+
+  @Test
+  void clearCheckpointFor_journalOpenGiven_shouldCloseItAndStartOver() {
+    // Arrange
+    manager.persistContinuationToken("ns.table", "range1", "token");
+
+    // Act
+    manager.clearCheckpointFor("ns.table");
+
+    // Assert
+    assertThat(tempDir.resolve("checkpoint").resolve("ns.table")).doesNotExist();
+    assertThat(manager.loadContinuationToken("ns.table", "range1")).isNull();
+  }
+
+  @Test
+  void close_shouldKeepPersistedTokensAndAllowReopening() {
+    // Arrange
+    manager.persistContinuationToken("ns.table", "range1", "token");
+
+    // Act
+    manager.close();
+
+    // Assert
+    assertThat(manager.loadContinuationToken("ns.table", "range1")).isEqualTo("token");
+  }
 }
@@ -0,0 +1,351 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.CosmosBulkItemResponse;
+import com.azure.cosmos.models.CosmosBulkOperationResponse;
+import com.azure.cosmos.models.CosmosContainerProperties;
+import com.azure.cosmos.models.CosmosContainerResponse;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosItemOperationType;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
+import com.scalar.dl.tools.common.ScalarDlCleanupException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CosmosBulkDeleterTest {
+
+  private CosmosContainer container;
+  private List<List<CosmosItemOperation>> sentBatches;
+
+  @BeforeEach
+  void setUp() {
+    container = mock(CosmosContainer.class);
+    sentBatches = new CopyOnWriteArrayList<>();
+  }
+
+  private CosmosBulkDeleter createDeleter(int batchSize, int maxInFlightBatches) {
+    return new CosmosBulkDeleter(
+        "ns.table",
+        () -> container,
+        RequestUnitLimiter.unlimited(),
+        batchSize,
+        maxInFlightBatches,
+        () -> {});
+  }
+
+  /** Makes the container answer every operation with the status code given for its id. */
+  @SuppressWarnings("unchecked")
+  private void answerWith(Function<String, Integer> statusCodeOfId) {
+    when(container.executeBulkOperations(any(Iterable.class)))
+        .thenAnswer(
+            invocation -> {
+              List<CosmosItemOperation> batch = new ArrayList<>();
+              Iterable<CosmosItemOperation> operations = invocation.getArgument(0);
+              operations.forEach(batch::add);
+              sentBatches.add(batch);
+              List<CosmosBulkOperationResponse<Object>> responses = new ArrayList<>();
+              for (CosmosItemOperation operation : batch) {
+                responses.add(createResponse(operation, statusCodeOfId.apply(operation.getId())));
+              }
+              return responses;
+            });
+  }
+
+  @SuppressWarnings("unchecked")
+  private static CosmosBulkOperationResponse<Object> createResponse(
+      CosmosItemOperation operation, int statusCode) {
+    CosmosBulkItemResponse itemResponse = mock(CosmosBulkItemResponse.class);
+    when(itemResponse.getStatusCode()).thenReturn(statusCode);
+    when(itemResponse.isSuccessStatusCode()).thenReturn(statusCode >= 200 && statusCode < 300);
+    CosmosBulkOperationResponse<Object> response = mock(CosmosBulkOperationResponse.class);
+    when(response.getOperation()).thenReturn(operation);
+    when(response.getResponse()).thenReturn(itemResponse);
+    return response;
+  }
+
+  @Test
+  void deleteAll_shouldSendDeletesInBatchesWithKeyAsIdAndPartitionKey() throws Exception {
+    // Arrange
+    answerWith(id -> 204);
+    List<String> keys = Arrays.asList("k1", "k2", "k3", "k4", "k5");
+
+    // Act
+    try (CosmosBulkDeleter deleter = createDeleter(2, 2)) {
+      deleter.deleteAll(keys);
+    }
+
+    // Assert
+    assertThat(sentBatches).hasSize(3);
+    List<String> ids = new ArrayList<>();
+    for (List<CosmosItemOperation> batch : sentBatches) {
+      assertThat(batch).hasSizeLessThanOrEqualTo(2);
+      for (CosmosItemOperation operation : batch) {
+        assertThat(operation.getOperationType()).isEqualTo(CosmosItemOperationType.DELETE);
+        ids.add(operation.getId());
+      }
+    }
+    assertThat(ids).containsExactlyInAnyOrderElementsOf(keys);
+  }
+
+  @Test
+  void deleteAll_alreadyDeletedDocumentGiven_shouldSucceed() throws Exception {
+    // Arrange
+    answerWith(id -> id.equals("gone") ? CosmosBulkDeleter.NOT_FOUND : 204);
+
+    // Act & Assert
+    try (CosmosBulkDeleter deleter = createDeleter(100, 1)) {
+      deleter.deleteAll(Arrays.asList("k1", "gone"));
+    }
+    assertThat(sentBatches).hasSize(1);
+  }
+
+  @Test
+  void deleteAll_failedStatusGiven_shouldThrowRuntimeException() {
+    // Arrange
+    answerWith(id -> id.equals("bad") ? 429 : 204);
+
+    // Act & Assert
+    try (CosmosBulkDeleter deleter = createDeleter(100, 1)) {
+      assertThatThrownBy(() -> deleter.deleteAll(Arrays.asList("k1", "bad")))
+          .isInstanceOf(RuntimeException.class)
+          .hasMessageContaining("bad")
+          .hasMessageContaining("429");
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void deleteAll_neitherResponseNorExceptionGiven_shouldThrowRuntimeException() {
+    // Arrange
+    when(container.executeBulkOperations(any(Iterable.class)))
+        .thenAnswer(
+            invocation -> {
+              Iterable<CosmosItemOperation> operations = invocation.getArgument(0);
+              CosmosItemOperation operation = operations.iterator().next();
+              CosmosBulkOperationResponse<Object> response =
+                  mock(CosmosBulkOperationResponse.class);
+              when(response.getOperation()).thenReturn(operation);
+              return Collections.singletonList(response);
+            });
+
+    // Act & Assert
+    try (CosmosBulkDeleter deleter = createDeleter(100, 1)) {
+      assertThatThrownBy(() -> deleter.deleteAll(Collections.singletonList("k1")))
+          .isInstanceOf(RuntimeException.class)
+          .hasMessageContaining("k1")
+          .hasMessageContaining("no response");
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void deleteAll_operationExceptionGiven_shouldThrowWithCause() {
+    // Arrange
+    CosmosException cosmosException = mock(CosmosException.class);
+    when(container.executeBulkOperations(any(Iterable.class)))
+        .thenAnswer(
+            invocation -> {
+              Iterable<CosmosItemOperation> operations = invocation.getArgument(0);
+              CosmosItemOperation operation = operations.iterator().next();
+              CosmosBulkOperationResponse<Object> response =
+                  mock(CosmosBulkOperationResponse.class);
+              when(response.getOperation()).thenReturn(operation);
+              when(response.getException()).thenReturn(cosmosException);
+              return Collections.singletonList(response);
+            });
+
+    // Act & Assert
+    try (CosmosBulkDeleter deleter = createDeleter(100, 1)) {
+      assertThatThrownBy(() -> deleter.deleteAll(Collections.singletonList("k1")))
+          .isInstanceOf(RuntimeException.class)
+          .hasCause(cosmosException);
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void deleteAll_shouldNotExceedMaxInFlightBatches() throws Exception {
+    // Arrange
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    when(container.executeBulkOperations(any(Iterable.class)))
+        .thenAnswer(
+            invocation -> {
+              int current = inFlight.incrementAndGet();
+              maxInFlight.accumulateAndGet(current, Math::max);
+              Thread.sleep(10);
+              inFlight.decrementAndGet();
+              return Collections.emptyList();
+            });
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      keys.add("k" + i);
+    }
+
+    // Act
+    try (CosmosBulkDeleter deleter = createDeleter(2, 3)) {
+      deleter.deleteAll(keys);
+    }
+
+    // Assert
+    verify(container, times(20)).executeBulkOperations(any(Iterable.class));
+    assertThat(maxInFlight.get()).isLessThanOrEqualTo(3);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void deleteAll_emptyKeysGiven_shouldNotTouchContainer() throws Exception {
+    // Arrange
+    AtomicBoolean supplied = new AtomicBoolean();
+    CosmosBulkDeleter deleter =
+        new CosmosBulkDeleter(
+            "ns.table",
+            () -> {
+              supplied.set(true);
+              return container;
+            },
+            RequestUnitLimiter.unlimited(),
+            100,
+            1,
+            () -> {});
+
+    // Act
+    deleter.deleteAll(Collections.emptyList());
+    deleter.close();
+
+    // Assert
+    assertThat(supplied).isFalse();
+    verify(container, never()).executeBulkOperations(any(Iterable.class));
+  }
+
+  @Test
+  void close_shouldRunOnClose() {
+    // Arrange
+    AtomicBoolean closed = new AtomicBoolean();
+    CosmosBulkDeleter deleter =
+        new CosmosBulkDeleter(
+            "ns.table",
+            () -> container,
+            RequestUnitLimiter.unlimited(),
+            100,
+            1,
+            () -> closed.set(true));
+
+    // Act
+    deleter.close();
+
+    // Assert
+    assertThat(closed).isTrue();
+  }
+
+  @Test
+  void deleteAll_expiringDeleterGiven_shouldSendPatchesInsteadOfDeletes() throws Exception {
+    // Arrange
+    answerWith(id -> 200);
+    CosmosBulkDeleter deleter =
+        new CosmosBulkDeleter(
+            "ns.table", () -> container, RequestUnitLimiter.unlimited(), 100, 1, () -> {}, 1);
+
+    // Act
+    try {
+      deleter.deleteAll(Arrays.asList("k1", "k2"));
+    } finally {
+      deleter.close();
+    }
+
+    // Assert
+    assertThat(deleter.isExpiring()).isTrue();
+    assertThat(sentBatches).hasSize(1);
+    assertThat(sentBatches.get(0))
+        .extracting(CosmosItemOperation::getOperationType)
+        .containsOnly(CosmosItemOperationType.PATCH);
+  }
+
+  @Test
+  void isExpiring_deletingDeleterGiven_shouldReturnFalse() {
+    // Arrange
+    try (CosmosBulkDeleter deleter = createDeleter(100, 1)) {
+      // Act & Assert
+      assertThat(deleter.isExpiring()).isFalse();
+    }
+  }
+
+  private CosmosContainerProperties mockContainerProperties(Integer defaultTimeToLive) {
+    CosmosContainerProperties properties = mock(CosmosContainerProperties.class);
+    when(properties.getDefaultTimeToLiveInSeconds()).thenReturn(defaultTimeToLive);
+    CosmosContainerResponse response = mock(CosmosContainerResponse.class);
+    when(response.getProperties()).thenReturn(properties);
+    when(container.read()).thenReturn(response);
+    return properties;
+  }
+
+  @Test
+  void ensureTimeToLive_enabledTtlGiven_shouldNotReplaceContainer() {
+    // Arrange
+    mockContainerProperties(-1);
+
+    // Act
+    CosmosBulkDeleter.ensureTimeToLive(container, "ns.table", false);
+
+    // Assert
+    verify(container, never()).replace(any(CosmosContainerProperties.class));
+  }
+
+  @Test
+  void ensureTimeToLive_disabledTtlGivenAndNotAllowedToEnable_shouldThrowException() {
+    // Arrange
+    mockContainerProperties(null);
+
+    // Act & Assert
+    assertThatThrownBy(() -> CosmosBulkDeleter.ensureTimeToLive(container, "ns.table", false))
+        .isInstanceOf(ScalarDlCleanupException.class)
+        .hasMessageContaining("ns.table");
+    verify(container, never()).replace(any(CosmosContainerProperties.class));
+  }
+
+  @Test
+  void ensureTimeToLive_disabledTtlGivenAndAllowedToEnable_shouldEnableTtlWithoutDefault() {
+    // Arrange
+    CosmosContainerProperties properties = mockContainerProperties(null);
+
+    // Act
+    CosmosBulkDeleter.ensureTimeToLive(container, "ns.table", true);
+
+    // Assert
+    verify(properties).setDefaultTimeToLiveInSeconds(-1);
+    verify(container).replace(properties);
+  }
+
+  @Test
+  void createExpiring_nonPositiveTtlGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    CosmosScanSession session = mock(CosmosScanSession.class);
+    CosmosResumableScannerConfig config = mock(CosmosResumableScannerConfig.class);
+
+    // Act & Assert
+    assertThatThrownBy(
+            () ->
+                CosmosBulkDeleter.createExpiring(
+                    session, "ns", "table", config, RequestUnitLimiter.unlimited(), 0, true))
+        .isInstanceOf(IllegalArgumentException.class);
+    verify(session, never()).retain();
+  }
+}
@@ -0,0 +1,44 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.scalar.dl.tools.scan.ResumableScanner;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+class CosmosContainerStatsTest {
+
+  @Test
+  void documentCount_usageHeaderGiven_shouldReturnDocumentsCount() {
+    // Act
+    long count =
+        CosmosContainerStats.documentCount(
+            Collections.singletonMap(
+                CosmosContainerStats.RESOURCE_USAGE_HEADER,
+                "functions=0;documentSize=512;documentsSize=524288; documentsCount=42;"));
+
+    // Assert
+    assertThat(count).isEqualTo(42);
+  }
+
+  @Test
+  void documentCount_noUsageHeaderGiven_shouldReturnUnknown() {
+    // Act
+    long count = CosmosContainerStats.documentCount(Collections.emptyMap());
+
+    // Assert
+    assertThat(count).isEqualTo(ResumableScanner.UNKNOWN_RECORD_COUNT);
+  }
+
+  @Test
+  void documentCount_malformedCountGiven_shouldReturnUnknown() {
+    // Act
+    long count =
+        CosmosContainerStats.documentCount(
+            Collections.singletonMap(
+                CosmosContainerStats.RESOURCE_USAGE_HEADER, "documentsCount=many"));
+
+    // Assert
+    assertThat(count).isEqualTo(ResumableScanner.UNKNOWN_RECORD_COUNT);
+  }
+}
@@ -10,6 +10,7 @@ import static org.mockito.Mockito.when;
 import com.azure.cosmos.CosmosContainer;
 import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.models.SqlQuerySpec;
 import com.azure.cosmos.util.CosmosPagedIterable;
 import com.scalar.db.api.Result;
 import com.scalar.db.storage.cosmos.Record;
@@ -31,12 +32,16 @@ final class CosmosMockHelper {
     return page;
   }
 
-  /** Create a mock CosmosPagedIterable that returns the given pages via iterableByPage(). */
+  /**
+   * Create a mock CosmosPagedIterable that returns the given pages via iterableByPage() and
+   * streamByPage().
+   */
   @SuppressWarnings("unchecked")
   static CosmosPagedIterable<Record> createMockPagedIterable(List<FeedResponse<Record>> pages) {
     CosmosPagedIterable<Record> iterable = mock(CosmosPagedIterable.class);
     when(iterable.iterableByPage()).thenReturn(pages);
     when(iterable.iterableByPage(anyInt())).thenReturn(pages);
+    when(iterable.streamByPage(anyInt())).thenAnswer(invocation -> pages.stream());
     return iterable;
   }
 
@@ -52,6 +57,9 @@ final class CosmosMockHelper {
     when(iterable.iterableByPage(anyInt())).thenReturn(pages);
     when(iterable.iterableByPage(anyString())).thenReturn(resumePages);
     when(iterable.iterableByPage(anyString(), anyInt())).thenReturn(resumePages);
+    when(iterable.streamByPage(anyInt())).thenAnswer(invocation -> pages.stream());
+    when(iterable.streamByPage(anyString(), anyInt()))
+        .thenAnswer(invocation -> resumePages.stream());
     return iterable;
   }
 
@@ -59,7 +67,8 @@ final class CosmosMockHelper {
   static CosmosContainer createMockContainer(
       CosmosPagedIterable<Record> pagedIterable, List<FeedRange> feedRanges) {
     CosmosContainer container = mock(CosmosContainer.class);
-    when(container.queryItems(anyString(), any(), eq(Record.class))).thenReturn(pagedIterable);
+    when(container.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(pagedIterable);
     when(container.getFeedRanges()).thenReturn(feedRanges);
     return container;
   }
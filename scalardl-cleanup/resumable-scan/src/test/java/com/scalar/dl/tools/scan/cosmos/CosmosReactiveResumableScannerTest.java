@@ -0,0 +1,326 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.azure.cosmos.CosmosAsyncClient;
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.CosmosAsyncDatabase;
+import com.azure.cosmos.models.FeedRange;
+import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.azure.cosmos.util.CosmosPagedFlux;
+import com.scalar.db.api.DistributedStorageAdmin;
+import com.scalar.db.api.Result;
+import com.scalar.db.api.TableMetadata;
+import com.scalar.db.io.DataType;
+import com.scalar.db.storage.cosmos.Record;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
+import com.scalar.dl.tools.scan.RecordHandler;
+import com.scalar.dl.tools.scan.ScanResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+class CosmosReactiveResumableScannerTest {
+
+  private static final String NAMESPACE = "ns";
+  private static final String TABLE = "table";
+  private static final String QUALIFIED_TABLE = NAMESPACE + "." + TABLE;
+  private static final int MAX_THREADS = 4;
+  private static final int MAX_ITEM_COUNT = 100;
+  private static final int DEFAULT_SUB_RANGES_PER_PARTITION = 1;
+  private static final int MAX_CONCURRENT_RANGES = 256;
+
+  private final RecordHandler recordHandler = mock(RecordHandler.class);
+
+  private CosmosAsyncClient cosmosClient;
+  private CosmosAsyncContainer cosmosContainer;
+  private CheckpointManager checkpointManager;
+  private DistributedStorageAdmin storageAdmin;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    cosmosClient = mock(CosmosAsyncClient.class);
+    CosmosAsyncDatabase cosmosDatabase = mock(CosmosAsyncDatabase.class);
+    cosmosContainer = mock(CosmosAsyncContainer.class);
+    checkpointManager = mock(CheckpointManager.class);
+    storageAdmin = mock(DistributedStorageAdmin.class);
+
+    when(cosmosClient.getDatabase(NAMESPACE)).thenReturn(cosmosDatabase);
+    when(cosmosDatabase.getContainer(TABLE)).thenReturn(cosmosContainer);
+    when(checkpointManager.loadFeedRanges(QUALIFIED_TABLE)).thenReturn(null);
+    when(checkpointManager.loadContinuationToken(anyString(), anyString())).thenReturn(null);
+
+    TableMetadata metadata =
+        TableMetadata.newBuilder().addColumn("id", DataType.TEXT).addPartitionKey("id").build();
+    when(storageAdmin.getTableMetadata(NAMESPACE, TABLE)).thenReturn(metadata);
+  }
+
+  private CosmosReactiveResumableScanner createScanner(int handlerConcurrency) {
+    return new CosmosReactiveResumableScanner(
+        cosmosClient,
+        checkpointManager,
+        storageAdmin,
+        MAX_THREADS,
+        MAX_ITEM_COUNT,
+        handlerConcurrency,
+        DEFAULT_SUB_RANGES_PER_PARTITION,
+        MAX_CONCURRENT_RANGES,
+        RequestUnitLimiter.unlimited());
+  }
+
+  private FeedRange createMockFeedRange(String label) {
+    FeedRange feedRange = mock(FeedRange.class);
+    when(feedRange.toString()).thenReturn("{\"Range\":{\"min\":\"" + label + "\"}}");
+    return feedRange;
+  }
+
+  @SuppressWarnings("unchecked")
+  private CosmosPagedFlux<Record> setupPages(
+      List<FeedRange> feedRanges, List<FeedResponse<Record>> pages) {
+    CosmosPagedFlux<Record> pagedFlux = mock(CosmosPagedFlux.class);
+    when(pagedFlux.byPage(anyInt())).thenAnswer(invocation -> Flux.fromIterable(pages));
+    when(pagedFlux.byPage(anyString(), anyInt()))
+        .thenAnswer(invocation -> Flux.fromIterable(pages));
+    when(cosmosContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(pagedFlux);
+    when(cosmosContainer.getFeedRanges()).thenReturn(Mono.just(feedRanges));
+    return pagedFlux;
+  }
+
+  @Test
+  void scan_multipleFeedRanges_shouldHandleAllRecordsAndSumCounts() throws Exception {
+    // Arrange
+    List<FeedRange> feedRanges =
+        Arrays.asList(
+            createMockFeedRange("r1"), createMockFeedRange("r2"), createMockFeedRange("r3"));
+    List<FeedResponse<Record>> pages =
+        Arrays.asList(
+            CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(2), "token-1"),
+            CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(3), null));
+    setupPages(feedRanges, pages);
+
+    // Act
+    ScanResult result;
+    try (CosmosReactiveResumableScanner scanner = createScanner(1)) {
+      result = scanner.scan(NAMESPACE, TABLE, recordHandler);
+    }
+
+    // Assert
+    assertThat(result.getTotalScanned()).isEqualTo(15);
+    verify(recordHandler, times(15)).handle(any());
+    verify(checkpointManager).persistFeedRanges(eq(QUALIFIED_TABLE), anyString());
+    verify(checkpointManager, times(3))
+        .persistContinuationToken(eq(QUALIFIED_TABLE), anyString(), eq("token-1"));
+    verify(checkpointManager).clearCheckpointFor(QUALIFIED_TABLE);
+  }
+
+  @Test
+  void scan_continuationTokenExists_shouldResumeFromToken() throws Exception {
+    // Arrange
+    FeedRange feedRange = createMockFeedRange("full");
+    String feedRangeId = FeedRangeSerializer.toId(feedRange);
+    when(checkpointManager.loadContinuationToken(QUALIFIED_TABLE, feedRangeId))
+        .thenReturn("resume-token");
+    CosmosPagedFlux<Record> pagedFlux =
+        setupPages(
+            Collections.singletonList(feedRange),
+            Collections.singletonList(
+                CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), null)));
+
+    // Act
+    ScanResult result;
+    try (CosmosReactiveResumableScanner scanner = createScanner(1)) {
+      result = scanner.scan(NAMESPACE, TABLE, recordHandler);
+    }
+
+    // Assert
+    assertThat(result.getTotalScanned()).isEqualTo(1);
+    verify(pagedFlux).byPage("resume-token", MAX_ITEM_COUNT);
+    verify(pagedFlux, never()).byPage(anyInt());
+  }
+
+  @Test
+  void scan_multipleFeedRanges_shouldLoadContinuationTokensOnHandlerThreads() throws Exception {
+    // Arrange — ranges completed on another thread, such as the SDK's, subscribe the next ones.
+    List<FeedRange> feedRanges =
+        Arrays.asList(
+            createMockFeedRange("r1"), createMockFeedRange("r2"), createMockFeedRange("r3"));
+    CosmosPagedFlux<Record> pagedFlux =
+        setupPages(
+            feedRanges,
+            Collections.singletonList(
+                CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), null)));
+    when(pagedFlux.byPage(anyInt()))
+        .thenAnswer(
+            invocation ->
+                Flux.just(
+                        CosmosMockHelper.createMockPage(
+                            CosmosMockHelper.createMockRecords(1), null))
+                    .publishOn(Schedulers.single()));
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+    when(checkpointManager.loadContinuationToken(anyString(), anyString()))
+        .thenAnswer(
+            invocation -> {
+              threadNames.add(Thread.currentThread().getName());
+              return null;
+            });
+
+    // Act
+    ScanResult result;
+    try (CosmosReactiveResumableScanner scanner = createScanner(1)) {
+      result = scanner.scan(NAMESPACE, TABLE, recordHandler);
+    }
+
+    // Assert
+    assertThat(result.getTotalScanned()).isEqualTo(3);
+    verify(checkpointManager, times(3)).loadContinuationToken(eq(QUALIFIED_TABLE), anyString());
+    assertThat(threadNames).allMatch(name -> name.startsWith("cosmos-handler-" + QUALIFIED_TABLE));
+  }
+
+  @Test
+  void scan_withHandlerConcurrency_shouldCheckpointAfterAllRecordsOfPage() throws Exception {
+    // Arrange
+    FeedRange feedRange = createMockFeedRange("full");
+    setupPages(
+        Collections.singletonList(feedRange),
+        Collections.singletonList(
+            CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(10), "token-1")));
+    AtomicInteger handled = new AtomicInteger();
+    List<Integer> handledAtCheckpoint = new ArrayList<>();
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+    RecordHandler handler =
+        r -> {
+          threadNames.add(Thread.currentThread().getName());
+          handled.incrementAndGet();
+        };
+    doAnswer(
+            invocation -> {
+              handledAtCheckpoint.add(handled.get());
+              return null;
+            })
+        .when(checkpointManager)
+        .persistContinuationToken(anyString(), anyString(), anyString());
+
+    // Act
+    ScanResult result;
+    try (CosmosReactiveResumableScanner scanner = createScanner(4)) {
+      result = scanner.scan(NAMESPACE, TABLE, handler);
+    }
+
+    // Assert
+    assertThat(result.getTotalScanned()).isEqualTo(10);
+    assertThat(handledAtCheckpoint).containsExactly(10);
+    assertThat(threadNames).allMatch(name -> name.startsWith("cosmos-handler-" + QUALIFIED_TABLE));
+  }
+
+  @Test
+  void scan_handlerThrowsException_shouldPropagateExceptionAndKeepCheckpoints() throws Exception {
+    // Arrange
+    setupPages(
+        Collections.singletonList(createMockFeedRange("full")),
+        Collections.singletonList(
+            CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), "token-1")));
+    doThrow(new RuntimeException("handler error")).when(recordHandler).handle(any(Result.class));
+
+    // Act & Assert
+    try (CosmosReactiveResumableScanner scanner = createScanner(1)) {
+      assertThatThrownBy(() -> scanner.scan(NAMESPACE, TABLE, recordHandler))
+          .isInstanceOf(RuntimeException.class)
+          .hasMessage("handler error");
+    }
+    verify(checkpointManager, never()).persistContinuationToken(anyString(), anyString(), any());
+    verify(checkpointManager, never()).clearCheckpointFor(anyString());
+  }
+
+  @Test
+  void scan_checkedExceptionFromHandler_shouldPropagateExceptionAsIs() throws Exception {
+    // Arrange
+    setupPages(
+        Collections.singletonList(createMockFeedRange("full")),
+        Collections.singletonList(
+            CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), null)));
+    Exception failure = new Exception("checked error");
+    doThrow(failure).when(recordHandler).handle(any(Result.class));
+
+    // Act & Assert
+    try (CosmosReactiveResumableScanner scanner = createScanner(2)) {
+      assertThatThrownBy(() -> scanner.scan(NAMESPACE, TABLE, recordHandler)).isSameAs(failure);
+    }
+  }
+
+  @Test
+  void scan_requestUnitLimiterGiven_shouldChargeEveryPageBeforeHandlingIt() throws Exception {
+    // Arrange
+    FeedResponse<Record> page =
+        CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), null);
+    when(page.getRequestCharge()).thenReturn(42.0);
+    setupPages(Collections.singletonList(createMockFeedRange("full")), Arrays.asList(page));
+    RequestUnitLimiter limiter = mock(RequestUnitLimiter.class);
+
+    // Act
+    try (CosmosReactiveResumableScanner scanner =
+        new CosmosReactiveResumableScanner(
+            cosmosClient,
+            checkpointManager,
+            storageAdmin,
+            MAX_THREADS,
+            MAX_ITEM_COUNT,
+            1,
+            DEFAULT_SUB_RANGES_PER_PARTITION,
+            MAX_CONCURRENT_RANGES,
+            limiter)) {
+      scanner.scan(NAMESPACE, TABLE, recordHandler);
+    }
+
+    // Assert
+    InOrder inOrder = inOrder(limiter, recordHandler);
+    inOrder.verify(limiter).charge(42.0);
+    inOrder.verify(recordHandler).handle(any());
+  }
+
+  @Test
+  void scan_tableMetadataNotFound_shouldThrowIllegalStateException() throws Exception {
+    // Arrange
+    when(storageAdmin.getTableMetadata(NAMESPACE, TABLE)).thenReturn(null);
+
+    // Act & Assert
+    try (CosmosReactiveResumableScanner scanner = createScanner(1)) {
+      assertThatThrownBy(() -> scanner.scan(NAMESPACE, TABLE, recordHandler))
+          .isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test
+  void close_shouldCloseClientAndStorageAdmin() {
+    // Act
+    createScanner(1).close();
+
+    // Assert
+    verify(storageAdmin).close();
+    verify(cosmosClient).close();
+  }
+}
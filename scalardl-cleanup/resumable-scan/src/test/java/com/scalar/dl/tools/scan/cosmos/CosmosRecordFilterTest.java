@@ -0,0 +1,163 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.scalar.db.api.TableMetadata;
+import com.scalar.db.io.DataType;
+import com.scalar.db.storage.cosmos.Record;
+import com.scalar.dl.tools.scan.ScanCondition;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class CosmosRecordFilterTest {
+
+  private static final TableMetadata METADATA =
+      TableMetadata.newBuilder()
+          .addColumn("pk", DataType.TEXT)
+          .addColumn("ck", DataType.INT)
+          .addColumn("state", DataType.INT)
+          .addColumn("created_at", DataType.BIGINT)
+          .addColumn("payload", DataType.TEXT)
+          .addColumn("deleted", DataType.BOOLEAN)
+          .addPartitionKey("pk")
+          .addClusteringKey("ck")
+          .build();
+
+  private static Record createRecord(String pk, int ck, Map<String, Object> values) {
+    Record record = mock(Record.class);
+    when(record.getPartitionKey()).thenReturn(Collections.singletonMap("pk", pk));
+    when(record.getClusteringKey()).thenReturn(Collections.singletonMap("ck", ck));
+    when(record.getValues()).thenReturn(values);
+    return record;
+  }
+
+  private static Record createRecord(String column, Object value) {
+    Map<String, Object> values = new HashMap<>();
+    values.put(column, value);
+    return createRecord("p", 0, values);
+  }
+
+  private static boolean matches(ScanCondition condition, Record record) {
+    return CosmosRecordFilter.of(METADATA, Collections.singletonList(condition)).matches(record);
+  }
+
+  @Test
+  void of_noConditionsGiven_shouldMatchAllRecords() {
+    // Act
+    CosmosRecordFilter filter = CosmosRecordFilter.of(METADATA, Collections.emptyList());
+
+    // Assert
+    assertThat(filter.matchesAll()).isTrue();
+    assertThat(filter.matches(createRecord("state", null))).isTrue();
+  }
+
+  @Test
+  void of_unknownColumnGiven_shouldThrowIllegalArgumentException() {
+    // Act & Assert
+    assertThatThrownBy(
+            () ->
+                CosmosRecordFilter.of(
+                    METADATA, Collections.singletonList(ScanCondition.eq("nope", 1))))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("nope");
+  }
+
+  @Test
+  void matches_comparisonOperatorsGiven_shouldCompareNumbers() {
+    // Arrange
+    Record record = createRecord("state", 2);
+
+    // Act & Assert
+    assertThat(matches(ScanCondition.eq("state", 2), record)).isTrue();
+    assertThat(matches(ScanCondition.ne("state", 2), record)).isFalse();
+    assertThat(matches(ScanCondition.lt("state", 3), record)).isTrue();
+    assertThat(matches(ScanCondition.lte("state", 2), record)).isTrue();
+    assertThat(matches(ScanCondition.gt("state", 2), record)).isFalse();
+    assertThat(matches(ScanCondition.gte("state", 3), record)).isFalse();
+  }
+
+  @Test
+  void matches_numbersOfDifferentTypesGiven_shouldCompareTheirValues() {
+    // Arrange
+    Record record = createRecord("created_at", 1700000000000L);
+
+    // Act & Assert
+    assertThat(matches(ScanCondition.eq("created_at", 1700000000000.0), record)).isTrue();
+    assertThat(matches(ScanCondition.gt("created_at", 1), record)).isTrue();
+    assertThat(matches(ScanCondition.eq("state", 0L), createRecord("state", -0.0))).isTrue();
+  }
+
+  @Test
+  void matches_stringsAndBooleansGiven_shouldCompareThem() {
+    // Act & Assert
+    assertThat(matches(ScanCondition.lt("payload", "b"), createRecord("payload", "a"))).isTrue();
+    assertThat(matches(ScanCondition.gte("payload", "b"), createRecord("payload", "a"))).isFalse();
+    assertThat(matches(ScanCondition.eq("deleted", true), createRecord("deleted", true))).isTrue();
+    assertThat(matches(ScanCondition.ne("deleted", true), createRecord("deleted", false)))
+        .isTrue();
+  }
+
+  @Test
+  void matches_nullOrMissingValueGiven_shouldNotMatchAnyOperator() {
+    // Arrange
+    Record nullValue = createRecord("state", null);
+    Record missingValue = createRecord("p", 0, Collections.emptyMap());
+
+    // Act & Assert
+    assertThat(matches(ScanCondition.eq("state", 1), nullValue)).isFalse();
+    assertThat(matches(ScanCondition.ne("state", 1), nullValue)).isFalse();
+    assertThat(matches(ScanCondition.eq("state", 1), missingValue)).isFalse();
+    assertThat(matches(ScanCondition.ne("state", 1), missingValue)).isFalse();
+  }
+
+  @Test
+  void matches_valueOfDifferentTypeGiven_shouldNotMatchAnyOperator() {
+    // Arrange
+    Record record = createRecord("state", "1");
+
+    // Act & Assert
+    assertThat(matches(ScanCondition.eq("state", 1), record)).isFalse();
+    assertThat(matches(ScanCondition.ne("state", 1), record)).isFalse();
+    assertThat(matches(ScanCondition.lt("state", 2), record)).isFalse();
+  }
+
+  @Test
+  void matches_inConditionGiven_shouldMatchAnyOfTheValues() {
+    // Arrange
+    ScanCondition condition = ScanCondition.in("state", 1, 3);
+
+    // Act & Assert
+    assertThat(matches(condition, createRecord("state", 3))).isTrue();
+    assertThat(matches(condition, createRecord("state", 2))).isFalse();
+  }
+
+  @Test
+  void matches_keyColumnConditionsGiven_shouldReadThemFromKeyFields() {
+    // Arrange
+    CosmosRecordFilter filter =
+        CosmosRecordFilter.of(
+            METADATA, Arrays.asList(ScanCondition.eq("pk", "a"), ScanCondition.gt("ck", 1)));
+
+    // Act & Assert
+    assertThat(filter.matches(createRecord("a", 2, Collections.emptyMap()))).isTrue();
+    assertThat(filter.matches(createRecord("a", 1, Collections.emptyMap()))).isFalse();
+    assertThat(filter.matches(createRecord("b", 2, Collections.emptyMap()))).isFalse();
+  }
+
+  @Test
+  void of_lastWrittenAtConditionGiven_shouldLeaveItOut() {
+    // Act
+    CosmosRecordFilter filter =
+        CosmosRecordFilter.of(
+            METADATA, Collections.singletonList(ScanCondition.writtenAtOrAfter(1_000L)));
+
+    // Assert
+    assertThat(filter.matchesAll()).isTrue();
+  }
+}
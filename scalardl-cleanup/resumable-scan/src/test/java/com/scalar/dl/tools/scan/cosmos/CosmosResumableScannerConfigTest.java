@@ -29,6 +29,22 @@ class CosmosResumableScannerConfigTest {
     // Assert
     assertThat(config.getMaxWorkerThreads()).isEqualTo(32);
     assertThat(config.getMaxItemCount()).isEqualTo(100);
+    assertThat(config.getPrefetchPages()).isEqualTo(1);
+    assertThat(config.getHandlerConcurrency()).isEqualTo(1);
+    assertThat(config.getSubRangesPerPartition()).isEqualTo(1);
+    assertThat(config.isAdaptivePageSize()).isFalse();
+    assertThat(config.getMinPageSize()).isEqualTo(10);
+    assertThat(config.getMaxPageSize()).isEqualTo(1000);
+    assertThat(config.getTargetPageLatencyMillis()).isEqualTo(500);
+    assertThat(config.isAdaptiveConcurrency()).isFalse();
+    assertThat(config.isVirtualThreads()).isFalse();
+    assertThat(config.isBulkDelete()).isFalse();
+    assertThat(config.getBulkDeleteBatchSize()).isEqualTo(100);
+    assertThat(config.getBulkDeleteMaxInFlightBatches()).isEqualTo(8);
+    assertThat(config.getEngine()).isEqualTo(CosmosResumableScannerConfig.Engine.THREADED);
+    assertThat(config.getMaxConcurrentRanges()).isEqualTo(256);
+    assertThat(config.getCheckpointBatchSize()).isEqualTo(64);
+    assertThat(config.getCheckpointFlushIntervalMillis()).isEqualTo(5);
   }
 
   @Test
@@ -37,6 +53,9 @@ class CosmosResumableScannerConfigTest {
     Properties extra = new Properties();
     extra.setProperty(CosmosResumableScannerConfig.PROP_MAX_SCAN_THREADS, "16");
     extra.setProperty(CosmosResumableScannerConfig.PROP_SCAN_PAGE_SIZE, "50");
+    extra.setProperty(CosmosResumableScannerConfig.PROP_PREFETCH_PAGES, "4");
+    extra.setProperty(CosmosResumableScannerConfig.PROP_HANDLER_CONCURRENCY, "8");
+    extra.setProperty(CosmosResumableScannerConfig.PROP_SUB_RANGES_PER_PARTITION, "4");
     DatabaseConfig databaseConfig = createConfig(extra);
 
     // Act
@@ -45,6 +64,77 @@ class CosmosResumableScannerConfigTest {
     // Assert
     assertThat(config.getMaxWorkerThreads()).isEqualTo(16);
     assertThat(config.getMaxItemCount()).isEqualTo(50);
+    assertThat(config.getPrefetchPages()).isEqualTo(4);
+    assertThat(config.getHandlerConcurrency()).isEqualTo(8);
+    assertThat(config.getSubRangesPerPartition()).isEqualTo(4);
+  }
+
+  @Test
+  void constructor_autoSubRangesPerPartition_shouldReturnAutoValue() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_SUB_RANGES_PER_PARTITION, "auto");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act
+    CosmosResumableScannerConfig config = new CosmosResumableScannerConfig(databaseConfig);
+
+    // Assert
+    assertThat(config.getSubRangesPerPartition())
+        .isEqualTo(CosmosResumableScannerConfig.AUTO_SUB_RANGES_PER_PARTITION);
+  }
+
+  @Test
+  void constructor_invalidSubRangesPerPartition_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_SUB_RANGES_PER_PARTITION, "many");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act & Assert
+    assertThatThrownBy(() -> new CosmosResumableScannerConfig(databaseConfig))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(CosmosResumableScannerConfig.PROP_SUB_RANGES_PER_PARTITION);
+  }
+
+  @Test
+  void constructor_zeroHandlerConcurrency_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_HANDLER_CONCURRENCY, "0");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act & Assert
+    assertThatThrownBy(() -> new CosmosResumableScannerConfig(databaseConfig))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(CosmosResumableScannerConfig.PROP_HANDLER_CONCURRENCY);
+  }
+
+  @Test
+  void constructor_zeroPrefetchPages_shouldDisablePrefetch() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_PREFETCH_PAGES, "0");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act
+    CosmosResumableScannerConfig config = new CosmosResumableScannerConfig(databaseConfig);
+
+    // Assert
+    assertThat(config.getPrefetchPages()).isZero();
+  }
+
+  @Test
+  void constructor_negativePrefetchPages_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_PREFETCH_PAGES, "-1");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act & Assert
+    assertThatThrownBy(() -> new CosmosResumableScannerConfig(databaseConfig))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(CosmosResumableScannerConfig.PROP_PREFETCH_PAGES);
   }
 
   @Test
@@ -60,6 +150,25 @@ class CosmosResumableScannerConfigTest {
         .hasMessageContaining(CosmosResumableScannerConfig.PROP_MAX_SCAN_THREADS);
   }
 
+  @Test
+  void constructor_integerValuesWithSurroundingSpacesGiven_shouldTrimThem() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_MAX_SCAN_THREADS, "8 ");
+    extra.setProperty(CosmosResumableScannerConfig.PROP_PREFETCH_PAGES, " 0");
+    extra.setProperty(CosmosResumableScannerConfig.PROP_SUB_RANGES_PER_PARTITION, " auto ");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act
+    CosmosResumableScannerConfig config = new CosmosResumableScannerConfig(databaseConfig);
+
+    // Assert
+    assertThat(config.getMaxWorkerThreads()).isEqualTo(8);
+    assertThat(config.getPrefetchPages()).isZero();
+    assertThat(config.getSubRangesPerPartition())
+        .isEqualTo(CosmosResumableScannerConfig.AUTO_SUB_RANGES_PER_PARTITION);
+  }
+
   @Test
   void constructor_zeroValue_shouldThrowIllegalArgumentException() {
     // Arrange
@@ -85,4 +194,181 @@ class CosmosResumableScannerConfigTest {
         .isInstanceOf(IllegalArgumentException.class)
         .hasMessageContaining(CosmosResumableScannerConfig.PROP_SCAN_PAGE_SIZE);
   }
+
+  @Test
+  void constructor_adaptivePageSizePropertiesSet_shouldUseCustomValues() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_ADAPTIVE_PAGE_SIZE, "true");
+    extra.setProperty(CosmosResumableScannerConfig.PROP_MIN_PAGE_SIZE, "20");
+    extra.setProperty(CosmosResumableScannerConfig.PROP_MAX_PAGE_SIZE, "2000");
+    extra.setProperty(CosmosResumableScannerConfig.PROP_TARGET_PAGE_LATENCY_MILLIS, "250");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act
+    CosmosResumableScannerConfig config = new CosmosResumableScannerConfig(databaseConfig);
+
+    // Assert
+    assertThat(config.isAdaptivePageSize()).isTrue();
+    assertThat(config.getMinPageSize()).isEqualTo(20);
+    assertThat(config.getMaxPageSize()).isEqualTo(2000);
+    assertThat(config.getTargetPageLatencyMillis()).isEqualTo(250);
+  }
+
+  @Test
+  void constructor_minPageSizeGreaterThanMax_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_MIN_PAGE_SIZE, "500");
+    extra.setProperty(CosmosResumableScannerConfig.PROP_MAX_PAGE_SIZE, "100");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act & Assert
+    assertThatThrownBy(() -> new CosmosResumableScannerConfig(databaseConfig))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(CosmosResumableScannerConfig.PROP_MIN_PAGE_SIZE);
+  }
+
+  @Test
+  void constructor_adaptiveConcurrencyEnabled_shouldReturnTrue() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_ADAPTIVE_CONCURRENCY, "true");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act
+    CosmosResumableScannerConfig config = new CosmosResumableScannerConfig(databaseConfig);
+
+    // Assert
+    assertThat(config.isAdaptiveConcurrency()).isTrue();
+  }
+
+  @Test
+  void constructor_reactiveEngineSet_shouldReturnReactiveEngine() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_ENGINE, "Reactive");
+    extra.setProperty(CosmosResumableScannerConfig.PROP_MAX_CONCURRENT_RANGES, "2000");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act
+    CosmosResumableScannerConfig config = new CosmosResumableScannerConfig(databaseConfig);
+
+    // Assert
+    assertThat(config.getEngine()).isEqualTo(CosmosResumableScannerConfig.Engine.REACTIVE);
+    assertThat(config.getMaxConcurrentRanges()).isEqualTo(2000);
+  }
+
+  @Test
+  void constructor_changeFeedEngineSet_shouldReturnChangeFeedEngine() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_ENGINE, "change_feed");
+
+    // Act
+    CosmosResumableScannerConfig config = new CosmosResumableScannerConfig(createConfig(extra));
+
+    // Assert
+    assertThat(config.getEngine()).isEqualTo(CosmosResumableScannerConfig.Engine.CHANGE_FEED);
+  }
+
+  @Test
+  void constructor_unknownEngine_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_ENGINE, "fast");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act & Assert
+    assertThatThrownBy(() -> new CosmosResumableScannerConfig(databaseConfig))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(CosmosResumableScannerConfig.PROP_ENGINE);
+  }
+
+  @Test
+  void constructor_virtualThreadsEnabled_shouldReturnTrue() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_VIRTUAL_THREADS, "true");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act
+    CosmosResumableScannerConfig config = new CosmosResumableScannerConfig(databaseConfig);
+
+    // Assert
+    assertThat(config.isVirtualThreads()).isTrue();
+  }
+
+  @Test
+  void constructor_checkpointJournalPropertiesSet_shouldUseCustomValues() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_CHECKPOINT_BATCH_SIZE, "256");
+    extra.setProperty(CosmosResumableScannerConfig.PROP_CHECKPOINT_FLUSH_INTERVAL_MILLIS, "0");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act
+    CosmosResumableScannerConfig config = new CosmosResumableScannerConfig(databaseConfig);
+
+    // Assert
+    assertThat(config.getCheckpointBatchSize()).isEqualTo(256);
+    assertThat(config.getCheckpointFlushIntervalMillis()).isEqualTo(0);
+  }
+
+  @Test
+  void constructor_zeroCheckpointBatchSize_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_CHECKPOINT_BATCH_SIZE, "0");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act & Assert
+    assertThatThrownBy(() -> new CosmosResumableScannerConfig(databaseConfig))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(CosmosResumableScannerConfig.PROP_CHECKPOINT_BATCH_SIZE);
+  }
+
+  @Test
+  void constructor_negativeCheckpointFlushInterval_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_CHECKPOINT_FLUSH_INTERVAL_MILLIS, "-1");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act & Assert
+    assertThatThrownBy(() -> new CosmosResumableScannerConfig(databaseConfig))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(CosmosResumableScannerConfig.PROP_CHECKPOINT_FLUSH_INTERVAL_MILLIS);
+  }
+
+  @Test
+  void constructor_bulkDeletePropertiesSet_shouldUseCustomValues() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_BULK_DELETE, "true");
+    extra.setProperty(CosmosResumableScannerConfig.PROP_BULK_DELETE_BATCH_SIZE, "50");
+    extra.setProperty(CosmosResumableScannerConfig.PROP_BULK_DELETE_MAX_IN_FLIGHT_BATCHES, "2");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act
+    CosmosResumableScannerConfig config = new CosmosResumableScannerConfig(databaseConfig);
+
+    // Assert
+    assertThat(config.isBulkDelete()).isTrue();
+    assertThat(config.getBulkDeleteBatchSize()).isEqualTo(50);
+    assertThat(config.getBulkDeleteMaxInFlightBatches()).isEqualTo(2);
+  }
+
+  @Test
+  void constructor_zeroBulkDeleteBatchSize_shouldThrowIllegalArgumentException() {
+    // Arrange
+    Properties extra = new Properties();
+    extra.setProperty(CosmosResumableScannerConfig.PROP_BULK_DELETE_BATCH_SIZE, "0");
+    DatabaseConfig databaseConfig = createConfig(extra);
+
+    // Act & Assert
+    assertThatThrownBy(() -> new CosmosResumableScannerConfig(databaseConfig))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(CosmosResumableScannerConfig.PROP_BULK_DELETE_BATCH_SIZE);
+  }
 }
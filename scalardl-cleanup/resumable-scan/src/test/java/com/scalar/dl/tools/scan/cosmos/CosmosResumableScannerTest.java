@@ -6,39 +6,61 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.azure.cosmos.CosmosAsyncClient;
 import com.azure.cosmos.CosmosClient;
 import com.azure.cosmos.CosmosContainer;
 import com.azure.cosmos.CosmosDatabase;
+import com.azure.cosmos.models.CosmosContainerRequestOptions;
+import com.azure.cosmos.models.CosmosContainerResponse;
 import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.models.SqlQuerySpec;
 import com.azure.cosmos.util.CosmosPagedIterable;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.scalar.db.api.DistributedStorageAdmin;
 import com.scalar.db.api.Result;
 import com.scalar.db.api.TableMetadata;
+import com.scalar.db.config.DatabaseConfig;
 import com.scalar.db.io.DataType;
 import com.scalar.db.storage.cosmos.Record;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
 import com.scalar.dl.tools.scan.RecordHandler;
+import com.scalar.dl.tools.scan.ResumableScanner;
+import com.scalar.dl.tools.scan.ScanCondition;
 import com.scalar.dl.tools.scan.ScanResult;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 
 class CosmosResumableScannerTest {
 
   private static final String NAMESPACE = "ns";
   private static final String TABLE = "table";
   private static final String QUALIFIED_TABLE = NAMESPACE + "." + TABLE;
+  private static final int DEFAULT_PREFETCH_PAGES = 1;
+  private static final int DEFAULT_HANDLER_CONCURRENCY = 1;
+  private static final int DEFAULT_SUB_RANGES_PER_PARTITION = 1;
 
   private final RecordHandler recordHandler = mock(RecordHandler.class);
 
@@ -66,7 +88,37 @@ class CosmosResumableScannerTest {
   }
 
   private CosmosResumableScanner createScanner() {
-    return new CosmosResumableScanner(cosmosClient, checkpointManager, storageAdmin, 32, 100);
+    return new CosmosResumableScanner(
+        cosmosClient,
+        checkpointManager,
+        storageAdmin,
+        32,
+        100,
+        DEFAULT_PREFETCH_PAGES,
+        DEFAULT_HANDLER_CONCURRENCY,
+        DEFAULT_SUB_RANGES_PER_PARTITION);
+  }
+
+  private CosmosResumableScanner createScannerWithVirtualThreads(
+      int maxWorkerThreads, int handlerConcurrency) {
+    return new CosmosResumableScanner(
+        cosmosClient,
+        checkpointManager,
+        storageAdmin,
+        maxWorkerThreads,
+        100,
+        DEFAULT_PREFETCH_PAGES,
+        handlerConcurrency,
+        DEFAULT_SUB_RANGES_PER_PARTITION,
+        false,
+        100,
+        100,
+        Integer.MAX_VALUE,
+        RequestUnitLimiter.unlimited(),
+        false,
+        true,
+        new Semaphore(maxWorkerThreads, true),
+        false);
   }
 
   private FeedRange createMockFeedRange(String label) {
@@ -84,7 +136,8 @@ class CosmosResumableScannerTest {
     CosmosPagedIterable<Record> iterable =
         CosmosMockHelper.createMockPagedIterable(Collections.singletonList(page));
 
-    when(cosmosContainer.queryItems(anyString(), any(), eq(Record.class))).thenReturn(iterable);
+    when(cosmosContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(iterable);
     when(cosmosContainer.getFeedRanges()).thenReturn(feedRanges);
   }
 
@@ -121,7 +174,8 @@ class CosmosResumableScannerTest {
     FeedResponse<Record> page = CosmosMockHelper.createMockPage(records, null);
     CosmosPagedIterable<Record> iterable =
         CosmosMockHelper.createMockPagedIterable(Collections.singletonList(page));
-    when(cosmosContainer.queryItems(anyString(), any(), eq(Record.class))).thenReturn(iterable);
+    when(cosmosContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(iterable);
 
     // Act
     try (CosmosResumableScanner scanner = createScanner()) {
@@ -129,11 +183,54 @@ class CosmosResumableScannerTest {
     }
 
     // Assert
-    verify(cosmosContainer, never()).getFeedRanges();
     verify(checkpointManager, never()).persistFeedRanges(anyString(), anyString());
     verify(checkpointManager).loadFeedRanges(QUALIFIED_TABLE);
   }
 
+  @Test
+  void scan_persistedFeedRangeSplitSincePersisted_shouldResumeChildrenFromMappedTokens()
+      throws Exception {
+    // Arrange
+    FeedRange parent = FeedRange.forFullRange();
+    FeedRange left = FeedRangeSerializer.fromRangeJson("{\"Range\":{\"min\":\"\",\"max\":\"80\"}}");
+    FeedRange right =
+        FeedRangeSerializer.fromRangeJson("{\"Range\":{\"min\":\"80\",\"max\":\"FF\"}}");
+    String persistedJson =
+        new ObjectMapper()
+            .writeValueAsString(Collections.singletonList(FeedRangeSerializer.toJson(parent)));
+    when(checkpointManager.loadFeedRanges(QUALIFIED_TABLE)).thenReturn(persistedJson);
+    when(checkpointManager.loadContinuationToken(
+            QUALIFIED_TABLE, FeedRangeSerializer.toId(parent)))
+        .thenReturn("{\"token\":\"backend\",\"range\":{\"min\":\"\",\"max\":\"FF\"}}");
+    when(cosmosContainer.getFeedRanges()).thenReturn(Arrays.asList(left, right));
+
+    List<Record> records = CosmosMockHelper.createMockRecords(1);
+    FeedResponse<Record> page = CosmosMockHelper.createMockPage(records, null);
+    CosmosPagedIterable<Record> iterable =
+        CosmosMockHelper.createMockPagedIterableWithResume(
+            Collections.singletonList(page), Collections.singletonList(page));
+    when(cosmosContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(iterable);
+
+    // Act
+    ScanResult result;
+    try (CosmosResumableScanner scanner = createScanner()) {
+      result = scanner.scan(NAMESPACE, TABLE, recordHandler);
+    }
+
+    // Assert
+    assertThat(result.getTotalScanned()).isEqualTo(2);
+    verify(checkpointManager)
+        .persistContinuationToken(
+            eq(QUALIFIED_TABLE), eq(FeedRangeSerializer.toId(left)), contains("backend"));
+    verify(checkpointManager)
+        .persistContinuationToken(
+            eq(QUALIFIED_TABLE), eq(FeedRangeSerializer.toId(right)), contains("backend"));
+    ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+    verify(checkpointManager).persistFeedRanges(eq(QUALIFIED_TABLE), json.capture());
+    assertThat(new ObjectMapper().readValue(json.getValue(), List.class)).hasSize(2);
+  }
+
   @Test
   void scan_singleFeedRange_shouldReturnTotalScanned() throws Exception {
     // Arrange
@@ -161,7 +258,8 @@ class CosmosResumableScannerTest {
     CosmosPagedIterable<Record> iterable =
         CosmosMockHelper.createMockPagedIterable(Collections.singletonList(page));
 
-    when(cosmosContainer.queryItems(anyString(), any(), eq(Record.class))).thenReturn(iterable);
+    when(cosmosContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(iterable);
     when(cosmosContainer.getFeedRanges()).thenReturn(feedRanges);
     setupNoCheckpoint();
 
@@ -189,7 +287,8 @@ class CosmosResumableScannerTest {
     List<FeedResponse<Record>> resumePages = Collections.singletonList(page);
     CosmosPagedIterable<Record> iterable =
         CosmosMockHelper.createMockPagedIterableWithResume(Collections.emptyList(), resumePages);
-    when(cosmosContainer.queryItems(anyString(), any(), eq(Record.class))).thenReturn(iterable);
+    when(cosmosContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(iterable);
 
     // Act
     try (CosmosResumableScanner scanner = createScanner()) {
@@ -254,9 +353,11 @@ class CosmosResumableScannerTest {
     CosmosPagedIterable<Record> iterable =
         CosmosMockHelper.createMockPagedIterable(Collections.singletonList(emptyPage));
 
-    when(cosmosContainer.queryItems(anyString(), any(), eq(Record.class))).thenReturn(iterable);
+    when(cosmosContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(iterable);
     when(cosmosContainer.getFeedRanges()).thenReturn(feedRanges);
-    when(container2.queryItems(anyString(), any(), eq(Record.class))).thenReturn(iterable);
+    when(container2.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(iterable);
     when(container2.getFeedRanges()).thenReturn(feedRanges);
     when(checkpointManager.loadFeedRanges(QUALIFIED_TABLE)).thenReturn(null);
     when(checkpointManager.loadFeedRanges(qualifiedTable2)).thenReturn(null);
@@ -320,7 +421,8 @@ class CosmosResumableScannerTest {
     CosmosPagedIterable<Record> iterable =
         CosmosMockHelper.createMockPagedIterable(Collections.singletonList(page));
 
-    when(cosmosContainer.queryItems(anyString(), any(), eq(Record.class))).thenReturn(iterable);
+    when(cosmosContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(iterable);
     when(cosmosContainer.getFeedRanges()).thenReturn(feedRanges);
     setupNoCheckpoint();
 
@@ -329,7 +431,14 @@ class CosmosResumableScannerTest {
     // Act
     try (CosmosResumableScanner scanner =
         new CosmosResumableScanner(
-            cosmosClient, checkpointManager, storageAdmin, maxWorkerThreads, maxItemCount)) {
+            cosmosClient,
+            checkpointManager,
+            storageAdmin,
+            maxWorkerThreads,
+            maxItemCount,
+            DEFAULT_PREFETCH_PAGES,
+            DEFAULT_HANDLER_CONCURRENCY,
+            DEFAULT_SUB_RANGES_PER_PARTITION)) {
       scanner.scan(NAMESPACE, TABLE, r -> threadNames.add(Thread.currentThread().getName()));
     }
 
@@ -337,6 +446,371 @@ class CosmosResumableScannerTest {
     assertThat(threadNames).hasSize(maxWorkerThreads);
   }
 
+  @Test
+  void scan_withAdaptiveConcurrency_shouldHandleAllRecords() throws Exception {
+    // Arrange
+    setupSingleFeedRange(10);
+    setupNoCheckpoint();
+
+    // Act
+    ScanResult result;
+    try (CosmosResumableScanner scanner =
+        new CosmosResumableScanner(
+            cosmosClient,
+            checkpointManager,
+            storageAdmin,
+            32,
+            100,
+            DEFAULT_PREFETCH_PAGES,
+            4,
+            DEFAULT_SUB_RANGES_PER_PARTITION,
+            false,
+            100,
+            100,
+            Integer.MAX_VALUE,
+            RequestUnitLimiter.unlimited(),
+            true,
+            false,
+            new Semaphore(32, true),
+            false)) {
+      result = scanner.scan(NAMESPACE, TABLE, recordHandler);
+    }
+
+    // Assert
+    assertThat(result.getTotalScanned()).isEqualTo(10);
+    verify(recordHandler, times(10)).handle(any());
+  }
+
+  @Test
+  void scan_withHandlerConcurrency_shouldHandleRecordsOnHandlerThreads() throws Exception {
+    // Arrange
+    setupSingleFeedRange(10);
+    setupNoCheckpoint();
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+
+    // Act
+    ScanResult result;
+    try (CosmosResumableScanner scanner =
+        new CosmosResumableScanner(
+            cosmosClient,
+            checkpointManager,
+            storageAdmin,
+            32,
+            100,
+            DEFAULT_PREFETCH_PAGES,
+            4,
+            DEFAULT_SUB_RANGES_PER_PARTITION)) {
+      result =
+          scanner.scan(NAMESPACE, TABLE, r -> threadNames.add(Thread.currentThread().getName()));
+    }
+
+    // Assert
+    assertThat(result.getTotalScanned()).isEqualTo(10);
+    assertThat(threadNames).isNotEmpty().allMatch(name -> name.startsWith("cosmos-handler-"));
+  }
+
+  @Test
+  void scan_withVirtualThreads_shouldHandleRecordsOnVirtualThreads() throws Exception {
+    // Arrange
+    setupSingleFeedRange(10);
+    setupNoCheckpoint();
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+    AtomicBoolean platformThreadSeen = new AtomicBoolean();
+
+    // Act
+    ScanResult result;
+    try (CosmosResumableScanner scanner = createScannerWithVirtualThreads(32, 4)) {
+      result =
+          scanner.scan(
+              NAMESPACE,
+              TABLE,
+              r -> {
+                threadNames.add(Thread.currentThread().getName());
+                if (!Thread.currentThread().isVirtual()) {
+                  platformThreadSeen.set(true);
+                }
+              });
+    }
+
+    // Assert
+    assertThat(result.getTotalScanned()).isEqualTo(10);
+    assertThat(platformThreadSeen).isFalse();
+    assertThat(threadNames).isNotEmpty().allMatch(name -> name.startsWith("cosmos-handler-"));
+  }
+
+  @Test
+  void scan_withVirtualThreads_shouldCapRunningWorkersAtMaxWorkerThreads() throws Exception {
+    // Arrange
+    List<FeedRange> feedRanges = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      feedRanges.add(createMockFeedRange("r" + i));
+    }
+    List<Record> records = CosmosMockHelper.createMockRecords(1);
+    FeedResponse<Record> page = CosmosMockHelper.createMockPage(records, null);
+    CosmosPagedIterable<Record> iterable =
+        CosmosMockHelper.createMockPagedIterable(Collections.singletonList(page));
+    when(cosmosContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(iterable);
+    when(cosmosContainer.getFeedRanges()).thenReturn(feedRanges);
+    setupNoCheckpoint();
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+
+    // Act
+    ScanResult result;
+    try (CosmosResumableScanner scanner = createScannerWithVirtualThreads(2, 1)) {
+      result =
+          scanner.scan(
+              NAMESPACE,
+              TABLE,
+              r -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                running.decrementAndGet();
+              });
+    }
+
+    // Assert
+    assertThat(result.getTotalScanned()).isEqualTo(6);
+    assertThat(maxRunning.get()).isBetween(1, 2);
+  }
+
+  @Test
+  void scan_sharedWorkerBudgetGiven_shouldCapRunningWorkersAtBudget() throws Exception {
+    // Arrange
+    List<FeedRange> feedRanges = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      feedRanges.add(createMockFeedRange("r" + i));
+    }
+    List<Record> records = CosmosMockHelper.createMockRecords(1);
+    FeedResponse<Record> page = CosmosMockHelper.createMockPage(records, null);
+    CosmosPagedIterable<Record> iterable =
+        CosmosMockHelper.createMockPagedIterable(Collections.singletonList(page));
+    when(cosmosContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(iterable);
+    when(cosmosContainer.getFeedRanges()).thenReturn(feedRanges);
+    setupNoCheckpoint();
+    Semaphore workerBudget = new Semaphore(1, true);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+
+    // Act
+    ScanResult result;
+    try (CosmosResumableScanner scanner =
+        new CosmosResumableScanner(
+            cosmosClient,
+            checkpointManager,
+            storageAdmin,
+            4,
+            100,
+            DEFAULT_PREFETCH_PAGES,
+            DEFAULT_HANDLER_CONCURRENCY,
+            DEFAULT_SUB_RANGES_PER_PARTITION,
+            false,
+            100,
+            100,
+            Integer.MAX_VALUE,
+            RequestUnitLimiter.unlimited(),
+            false,
+            false,
+            workerBudget,
+            false)) {
+      result =
+          scanner.scan(
+              NAMESPACE,
+              TABLE,
+              r -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                running.decrementAndGet();
+              });
+    }
+
+    // Assert
+    assertThat(result.getTotalScanned()).isEqualTo(4);
+    assertThat(maxRunning.get()).isEqualTo(1);
+    assertThat(workerBudget.availablePermits()).isEqualTo(1);
+  }
+
+  @Test
+  void estimateRecordCount_quotaInfoReturned_shouldReturnDocumentCount() {
+    // Arrange
+    CosmosContainerResponse response = mock(CosmosContainerResponse.class);
+    when(response.getResponseHeaders())
+        .thenReturn(
+            Collections.singletonMap(
+                CosmosContainerStats.RESOURCE_USAGE_HEADER,
+                "documentSize=10;documentsCount=1234;collectionSize=20"));
+    when(cosmosContainer.read(any(CosmosContainerRequestOptions.class))).thenReturn(response);
+
+    // Act
+    long count;
+    try (CosmosResumableScanner scanner = createScanner()) {
+      count = scanner.estimateRecordCount(NAMESPACE, TABLE);
+    }
+
+    // Assert
+    assertThat(count).isEqualTo(1234);
+  }
+
+  @Test
+  void estimateRecordCount_readFails_shouldReturnUnknown() {
+    // Arrange
+    when(cosmosContainer.read(any(CosmosContainerRequestOptions.class)))
+        .thenThrow(new RuntimeException("unavailable"));
+
+    // Act
+    long count;
+    try (CosmosResumableScanner scanner = createScanner()) {
+      count = scanner.estimateRecordCount(NAMESPACE, TABLE);
+    }
+
+    // Assert
+    assertThat(count).isEqualTo(ResumableScanner.UNKNOWN_RECORD_COUNT);
+  }
+
+  @Test
+  void scan_withSubRangesPerPartition_shouldSplitAndPersistFeedRanges() throws Exception {
+    // Arrange
+    List<Record> records = CosmosMockHelper.createMockRecords(1);
+    FeedResponse<Record> page = CosmosMockHelper.createMockPage(records, null);
+    CosmosPagedIterable<Record> iterable =
+        CosmosMockHelper.createMockPagedIterable(Collections.singletonList(page));
+    when(cosmosContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(iterable);
+    when(cosmosContainer.getFeedRanges())
+        .thenReturn(Collections.singletonList(FeedRange.forFullRange()));
+    setupNoCheckpoint();
+
+    // Act
+    ScanResult result;
+    try (CosmosResumableScanner scanner =
+        new CosmosResumableScanner(
+            cosmosClient,
+            checkpointManager,
+            storageAdmin,
+            32,
+            100,
+            DEFAULT_PREFETCH_PAGES,
+            DEFAULT_HANDLER_CONCURRENCY,
+            4)) {
+      result = scanner.scan(NAMESPACE, TABLE, recordHandler);
+    }
+
+    // Assert
+    assertThat(result.getTotalScanned()).isEqualTo(4);
+    ArgumentCaptor<String> json = ArgumentCaptor.forClass(String.class);
+    verify(checkpointManager).persistFeedRanges(eq(QUALIFIED_TABLE), json.capture());
+    assertThat(new ObjectMapper().readValue(json.getValue(), List.class)).hasSize(4);
+  }
+
+  @Test
+  void scan_withAutoSubRangesPerPartition_shouldDeriveCountFromMaxWorkerThreads()
+      throws Exception {
+    // Arrange
+    List<Record> records = CosmosMockHelper.createMockRecords(1);
+    FeedResponse<Record> page = CosmosMockHelper.createMockPage(records, null);
+    CosmosPagedIterable<Record> iterable =
+        CosmosMockHelper.createMockPagedIterable(Collections.singletonList(page));
+    when(cosmosContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(iterable);
+    when(cosmosContainer.getFeedRanges())
+        .thenReturn(Collections.singletonList(FeedRange.forFullRange()));
+    setupNoCheckpoint();
+
+    // Act
+    ScanResult result;
+    try (CosmosResumableScanner scanner =
+        new CosmosResumableScanner(
+            cosmosClient,
+            checkpointManager,
+            storageAdmin,
+            8,
+            100,
+            DEFAULT_PREFETCH_PAGES,
+            DEFAULT_HANDLER_CONCURRENCY,
+            CosmosResumableScannerConfig.AUTO_SUB_RANGES_PER_PARTITION)) {
+      result = scanner.scan(NAMESPACE, TABLE, recordHandler);
+    }
+
+    // Assert
+    assertThat(result.getTotalScanned()).isEqualTo(8);
+    verify(cosmosContainer, times(8))
+        .queryItems(any(SqlQuerySpec.class), any(), eq(Record.class));
+  }
+
+  @Test
+  void scan_handlerWithoutProjections_shouldSelectAllColumns() throws Exception {
+    // Arrange
+    setupSingleFeedRange(1);
+    setupNoCheckpoint();
+
+    // Act
+    try (CosmosResumableScanner scanner = createScanner()) {
+      scanner.scan(NAMESPACE, TABLE, recordHandler);
+    }
+
+    // Assert
+    ArgumentCaptor<SqlQuerySpec> querySpec = ArgumentCaptor.forClass(SqlQuerySpec.class);
+    verify(cosmosContainer).queryItems(querySpec.capture(), any(), eq(Record.class));
+    assertThat(querySpec.getValue().getQueryText()).isEqualTo(CosmosScanQuery.SELECT_ALL);
+  }
+
+  @Test
+  void scan_handlerWithProjections_shouldSelectOnlyProjectedAndKeyColumns() throws Exception {
+    // Arrange
+    TableMetadata metadata =
+        TableMetadata.newBuilder()
+            .addColumn("id", DataType.TEXT)
+            .addColumn("state", DataType.INT)
+            .addColumn("payload", DataType.TEXT)
+            .addPartitionKey("id")
+            .build();
+    when(storageAdmin.getTableMetadata(NAMESPACE, TABLE)).thenReturn(metadata);
+    setupSingleFeedRange(1);
+    setupNoCheckpoint();
+    when(recordHandler.getProjections()).thenReturn(Collections.singletonList("state"));
+
+    // Act
+    try (CosmosResumableScanner scanner = createScanner()) {
+      scanner.scan(NAMESPACE, TABLE, recordHandler);
+    }
+
+    // Assert
+    ArgumentCaptor<SqlQuerySpec> querySpec = ArgumentCaptor.forClass(SqlQuerySpec.class);
+    verify(cosmosContainer).queryItems(querySpec.capture(), any(), eq(Record.class));
+    assertThat(querySpec.getValue().getQueryText())
+        .contains("\"state\"")
+        .doesNotContain("payload");
+  }
+
+  @Test
+  void scan_conditionsGiven_shouldQueryWithWhereClause() throws Exception {
+    // Arrange
+    TableMetadata metadata =
+        TableMetadata.newBuilder()
+            .addColumn("id", DataType.TEXT)
+            .addColumn("state", DataType.INT)
+            .addPartitionKey("id")
+            .build();
+    when(storageAdmin.getTableMetadata(NAMESPACE, TABLE)).thenReturn(metadata);
+    setupSingleFeedRange(1);
+    setupNoCheckpoint();
+
+    // Act
+    try (CosmosResumableScanner scanner = createScanner()) {
+      scanner.scan(
+          NAMESPACE, TABLE, Collections.singletonList(ScanCondition.eq("state", 1)), recordHandler);
+    }
+
+    // Assert
+    ArgumentCaptor<SqlQuerySpec> querySpec = ArgumentCaptor.forClass(SqlQuerySpec.class);
+    verify(cosmosContainer).queryItems(querySpec.capture(), any(), eq(Record.class));
+    assertThat(querySpec.getValue().getQueryText())
+        .isEqualTo("SELECT * FROM c WHERE c[\"values\"][\"state\"] = @p0");
+    assertThat(querySpec.getValue().getParameters()).hasSize(1);
+  }
+
   @Test
   void scan_withCustomMaxItemCount_shouldPassMaxItemCountToWorkers() throws Exception {
     // Arrange
@@ -350,14 +824,22 @@ class CosmosResumableScannerTest {
     CosmosPagedIterable<Record> iterable =
         CosmosMockHelper.createMockPagedIterable(Collections.singletonList(page));
 
-    when(cosmosContainer.queryItems(anyString(), any(), eq(Record.class))).thenReturn(iterable);
+    when(cosmosContainer.queryItems(any(SqlQuerySpec.class), any(), eq(Record.class)))
+        .thenReturn(iterable);
     when(cosmosContainer.getFeedRanges()).thenReturn(feedRanges);
     setupNoCheckpoint();
 
     // Act
     try (CosmosResumableScanner scanner =
         new CosmosResumableScanner(
-            cosmosClient, checkpointManager, storageAdmin, maxWorkerThreads, maxItemCount)) {
+            cosmosClient,
+            checkpointManager,
+            storageAdmin,
+            maxWorkerThreads,
+            maxItemCount,
+            DEFAULT_PREFETCH_PAGES,
+            DEFAULT_HANDLER_CONCURRENCY,
+            DEFAULT_SUB_RANGES_PER_PARTITION)) {
       scanner.scan(NAMESPACE, TABLE, recordHandler);
     }
 
@@ -381,6 +863,43 @@ class CosmosResumableScannerTest {
     verify(storageAdmin).close();
   }
 
+  @Test
+  void close_sharedSessionGiven_shouldCloseClientOnlyAfterLastReferenceReleased(
+      @TempDir Path checkpointDir) throws Exception {
+    // Arrange
+    setupSingleFeedRange(0);
+    Properties props = new Properties();
+    props.setProperty(DatabaseConfig.STORAGE, "cosmos");
+    props.setProperty(DatabaseConfig.CONTACT_POINTS, "https://localhost:8081");
+    props.setProperty(DatabaseConfig.PASSWORD, "dummy");
+    DatabaseConfig databaseConfig = new DatabaseConfig(props);
+    CosmosScanSession session =
+        new CosmosScanSession(
+            () -> cosmosClient, () -> mock(CosmosAsyncClient.class), () -> storageAdmin);
+    session.retain();
+
+    // Act
+    for (int i = 0; i < 2; i++) {
+      try (CosmosResumableScanner scanner =
+          new CosmosResumableScanner(
+              databaseConfig,
+              session,
+              checkpointDir,
+              RequestUnitLimiter.unlimited(),
+              new Semaphore(32, true))) {
+        scanner.scan(NAMESPACE, TABLE, recordHandler);
+      }
+    }
+
+    // Assert
+    verify(cosmosClient, never()).close();
+    verify(storageAdmin, never()).close();
+    verify(cosmosContainer).openConnectionsAndInitCaches();
+    session.release();
+    verify(cosmosClient).close();
+    verify(storageAdmin).close();
+  }
+
   @Test
   void close_withoutPriorScan_shouldNotThrowException() {
     // Arrange
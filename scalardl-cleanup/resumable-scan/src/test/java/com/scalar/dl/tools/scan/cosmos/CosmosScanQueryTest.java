@@ -0,0 +1,167 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.scalar.db.api.TableMetadata;
+import com.scalar.db.io.DataType;
+import com.scalar.dl.tools.scan.ScanCondition;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CosmosScanQueryTest {
+
+  private static final TableMetadata METADATA =
+      TableMetadata.newBuilder()
+          .addColumn("pk", DataType.TEXT)
+          .addColumn("ck", DataType.INT)
+          .addColumn("state", DataType.INT)
+          .addColumn("created_at", DataType.BIGINT)
+          .addColumn("payload", DataType.TEXT)
+          .addPartitionKey("pk")
+          .addClusteringKey("ck")
+          .build();
+
+  @Test
+  void resolveProjections_emptyProjectionsGiven_shouldReturnEmptyList() {
+    // Act
+    List<String> resolved =
+        CosmosScanQuery.resolveProjections(METADATA, Collections.emptyList());
+
+    // Assert
+    assertThat(resolved).isEmpty();
+  }
+
+  @Test
+  void resolveProjections_projectionsGiven_shouldAddKeyColumns() {
+    // Act
+    List<String> resolved =
+        CosmosScanQuery.resolveProjections(METADATA, Arrays.asList("state", "pk"));
+
+    // Assert
+    assertThat(resolved).containsExactly("pk", "ck", "state");
+  }
+
+  @Test
+  void resolveProjections_unknownColumnGiven_shouldThrowIllegalArgumentException() {
+    // Act & Assert
+    assertThatThrownBy(
+            () -> CosmosScanQuery.resolveProjections(METADATA, Collections.singletonList("nope")))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("nope");
+  }
+
+  @Test
+  void build_emptyProjectionsGiven_shouldSelectWholeDocument() {
+    // Act
+    SqlQuerySpec query =
+        CosmosScanQuery.build(METADATA, Collections.emptyList(), Collections.emptyList());
+
+    // Assert
+    assertThat(query.getQueryText()).isEqualTo("SELECT * FROM c");
+    assertThat(query.getParameters()).isEmpty();
+  }
+
+  @Test
+  void build_projectionsGiven_shouldSelectKeysAndProjectedValuesOnly() {
+    // Arrange
+    List<String> projections = Arrays.asList("pk", "ck", "state", "created_at");
+
+    // Act
+    SqlQuerySpec query = CosmosScanQuery.build(METADATA, projections, Collections.emptyList());
+
+    // Assert
+    assertThat(query.getQueryText())
+        .isEqualTo(
+            "SELECT VALUE {\"id\":c.id,\"concatenatedPartitionKey\":c.concatenatedPartitionKey,"
+                + "\"partitionKey\":c.partitionKey,\"clusteringKey\":c.clusteringKey,"
+                + "\"values\":{\"state\":c[\"values\"][\"state\"],"
+                + "\"created_at\":c[\"values\"][\"created_at\"]}} FROM c");
+  }
+
+  @Test
+  void build_conditionsGiven_shouldAddParameterizedWhereClause() {
+    // Arrange
+    List<ScanCondition> conditions =
+        Arrays.asList(
+            ScanCondition.in("state", 1, 2),
+            ScanCondition.lt("created_at", 100L),
+            ScanCondition.eq("pk", "a"),
+            ScanCondition.ne("ck", 3));
+
+    // Act
+    SqlQuerySpec query = CosmosScanQuery.build(METADATA, Collections.emptyList(), conditions);
+
+    // Assert
+    assertThat(query.getQueryText())
+        .isEqualTo(
+            "SELECT * FROM c WHERE c[\"values\"][\"state\"] IN (@p0,@p1)"
+                + " AND c[\"values\"][\"created_at\"] < @p2"
+                + " AND c[\"partitionKey\"][\"pk\"] = @p3"
+                + " AND c[\"clusteringKey\"][\"ck\"] != @p4");
+    assertThat(query.getParameters())
+        .extracting(SqlParameter::getName)
+        .containsExactly("@p0", "@p1", "@p2", "@p3", "@p4");
+    assertThat(query.getParameters().get(2).getValue(Long.class)).isEqualTo(100L);
+    assertThat(query.getParameters().get(3).getValue(String.class)).isEqualTo("a");
+  }
+
+  @Test
+  void build_projectionsAndConditionsGiven_shouldCombineThem() {
+    // Arrange
+    List<String> projections = Arrays.asList("pk", "ck", "state");
+
+    // Act
+    SqlQuerySpec query =
+        CosmosScanQuery.build(
+            METADATA, projections, Collections.singletonList(ScanCondition.gte("state", 2)));
+
+    // Assert
+    assertThat(query.getQueryText())
+        .startsWith("SELECT VALUE {")
+        .endsWith("} FROM c WHERE c[\"values\"][\"state\"] >= @p0");
+  }
+
+  @Test
+  void build_conditionOnUnknownColumnGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    List<ScanCondition> conditions = Collections.singletonList(ScanCondition.lt("nope", 1L));
+
+    // Act & Assert
+    assertThatThrownBy(() -> CosmosScanQuery.build(METADATA, Collections.emptyList(), conditions))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("nope");
+  }
+
+  @Test
+  void build_lastWrittenAtConditionGiven_shouldFilterOnTimestampInSeconds() {
+    // Arrange
+    List<ScanCondition> conditions =
+        Arrays.asList(
+            ScanCondition.eq("state", 2), ScanCondition.writtenAtOrAfter(1_700_000_000_999L));
+
+    // Act
+    SqlQuerySpec query = CosmosScanQuery.build(METADATA, Collections.emptyList(), conditions);
+
+    // Assert
+    assertThat(query.getQueryText())
+        .isEqualTo("SELECT * FROM c WHERE c[\"values\"][\"state\"] = @p0 AND c[\"_ts\"] >= @p1");
+    assertThat(query.getParameters().get(1).getValue(Long.class)).isEqualTo(1_700_000_000L);
+  }
+
+  @Test
+  void build_otherConditionOnLastWrittenAtGiven_shouldThrowIllegalArgumentException() {
+    // Arrange
+    List<ScanCondition> conditions =
+        Collections.singletonList(ScanCondition.lt(ScanCondition.LAST_WRITTEN_AT, 1L));
+
+    // Act & Assert
+    assertThatThrownBy(() -> CosmosScanQuery.build(METADATA, Collections.emptyList(), conditions))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(ScanCondition.LAST_WRITTEN_AT);
+  }
+}
@@ -0,0 +1,207 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.azure.cosmos.ConsistencyLevel;
+import com.azure.cosmos.CosmosAsyncClient;
+import com.azure.cosmos.CosmosClient;
+import com.azure.cosmos.CosmosClientBuilder;
+import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.CosmosDatabase;
+import com.scalar.db.api.DistributedStorageAdmin;
+import com.scalar.db.config.DatabaseConfig;
+import com.scalar.db.storage.cosmos.CosmosConfig;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedConstruction;
+
+class CosmosScanSessionTest {
+
+  private CosmosClient cosmosClient;
+  private CosmosAsyncClient cosmosAsyncClient;
+  private DistributedStorageAdmin storageAdmin;
+  private CosmosContainer cosmosContainer;
+  private AtomicInteger clientBuilds;
+  private CosmosScanSession session;
+
+  @BeforeEach
+  void setUp() {
+    cosmosClient = mock(CosmosClient.class);
+    cosmosAsyncClient = mock(CosmosAsyncClient.class);
+    storageAdmin = mock(DistributedStorageAdmin.class);
+    cosmosContainer = mock(CosmosContainer.class);
+    CosmosDatabase cosmosDatabase = mock(CosmosDatabase.class);
+    when(cosmosClient.getDatabase("ns")).thenReturn(cosmosDatabase);
+    when(cosmosDatabase.getContainer("table")).thenReturn(cosmosContainer);
+    clientBuilds = new AtomicInteger();
+    session =
+        new CosmosScanSession(
+            () -> {
+              clientBuilds.incrementAndGet();
+              return cosmosClient;
+            },
+            () -> cosmosAsyncClient,
+            () -> storageAdmin);
+  }
+
+  @Test
+  void getClient_calledRepeatedly_shouldBuildClientOnce() {
+    // Arrange
+    session.retain();
+
+    // Act
+    CosmosClient first = session.getClient();
+    CosmosClient second = session.getClient();
+
+    // Assert
+    assertThat(first).isSameAs(cosmosClient);
+    assertThat(second).isSameAs(cosmosClient);
+    assertThat(clientBuilds.get()).isEqualTo(1);
+  }
+
+  @Test
+  void release_otherReferencesRemain_shouldKeepClientAndAdminOpen() {
+    // Arrange
+    session.retain();
+    session.retain();
+    session.getClient();
+    session.getStorageAdmin();
+
+    // Act
+    session.release();
+
+    // Assert
+    verify(cosmosClient, never()).close();
+    verify(storageAdmin, never()).close();
+  }
+
+  @Test
+  void release_lastReferenceReleased_shouldCloseClientAndAdmin() {
+    // Arrange
+    session.retain();
+    session.retain();
+    session.getClient();
+    session.getStorageAdmin();
+
+    // Act
+    session.release();
+    session.release();
+
+    // Assert
+    verify(cosmosClient).close();
+    verify(storageAdmin).close();
+    verify(cosmosAsyncClient, never()).close();
+  }
+
+  @Test
+  void release_nothingBuilt_shouldNotBuildAnything() {
+    // Arrange
+    session.retain();
+
+    // Act
+    session.release();
+
+    // Assert
+    assertThat(clientBuilds.get()).isZero();
+  }
+
+  @Test
+  void retain_afterLastReferenceReleased_shouldThrowIllegalStateException() {
+    // Arrange
+    session.retain();
+    session.release();
+
+    // Act & Assert
+    assertThatThrownBy(session::retain).isInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(session::getClient).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void getContainer_sameTableRequestedTwice_shouldWarmUpContainerOnce() {
+    // Arrange
+    session.retain();
+
+    // Act
+    session.getContainer("ns", "table");
+    CosmosContainer container = session.getContainer("ns", "table");
+
+    // Assert
+    assertThat(container).isSameAs(cosmosContainer);
+    verify(cosmosContainer).openConnectionsAndInitCaches();
+  }
+
+  @Test
+  void getContainer_warmUpFails_shouldStillReturnContainer() {
+    // Arrange
+    session.retain();
+    doThrow(new RuntimeException("unavailable"))
+        .when(cosmosContainer)
+        .openConnectionsAndInitCaches();
+
+    // Act
+    CosmosContainer container = session.getContainer("ns", "table");
+
+    // Assert
+    assertThat(container).isSameAs(cosmosContainer);
+  }
+
+  @Test
+  void create_consistencyLevelConfigured_shouldBuildBothClientsWithIt() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(DatabaseConfig.STORAGE, "cosmos");
+    props.setProperty(DatabaseConfig.CONTACT_POINTS, "https://localhost:8081/");
+    props.setProperty(DatabaseConfig.PASSWORD, "key");
+    props.setProperty(CosmosConfig.CONSISTENCY_LEVEL, "bounded_staleness");
+
+    try (MockedConstruction<CosmosClientBuilder> builders =
+        mockConstruction(CosmosClientBuilder.class, withSettings().defaultAnswer(RETURNS_SELF))) {
+      CosmosScanSession created = CosmosScanSession.create(new DatabaseConfig(props));
+      created.retain();
+
+      // Act
+      created.getClient();
+      created.getAsyncClient();
+
+      // Assert — the sync and the async client are built with the same settings.
+      assertThat(builders.constructed()).hasSize(2);
+      for (CosmosClientBuilder builder : builders.constructed()) {
+        verify(builder).endpoint("https://localhost:8081/");
+        verify(builder).key("key");
+        verify(builder).directMode();
+        verify(builder).consistencyLevel(ConsistencyLevel.BOUNDED_STALENESS);
+      }
+      verify(builders.constructed().get(0)).buildClient();
+      verify(builders.constructed().get(1)).buildAsyncClient();
+    }
+  }
+
+  @Test
+  void newClientBuilder_consistencyLevelNotConfigured_shouldDefaultToStrong() {
+    // Arrange
+    Properties props = new Properties();
+    props.setProperty(DatabaseConfig.STORAGE, "cosmos");
+    props.setProperty(DatabaseConfig.CONTACT_POINTS, "https://localhost:8081/");
+    props.setProperty(DatabaseConfig.PASSWORD, "key");
+
+    try (MockedConstruction<CosmosClientBuilder> builders =
+        mockConstruction(CosmosClientBuilder.class, withSettings().defaultAnswer(RETURNS_SELF))) {
+      // Act
+      CosmosScanSession.newClientBuilder(new CosmosConfig(new DatabaseConfig(props)));
+
+      // Assert
+      verify(builders.constructed().get(0)).consistencyLevel(ConsistencyLevel.STRONG);
+    }
+  }
+}
@@ -3,28 +3,49 @@ package com.scalar.dl.tools.scan.cosmos;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.azure.cosmos.CosmosContainer;
+import com.azure.cosmos.CosmosDiagnostics;
+import com.azure.cosmos.CosmosDiagnosticsContext;
+import com.azure.cosmos.models.CosmosChangeFeedRequestOptions;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
 import com.azure.cosmos.models.FeedRange;
 import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.models.SqlQuerySpec;
 import com.azure.cosmos.util.CosmosPagedIterable;
 import com.scalar.db.api.Result;
+import com.scalar.db.api.TableMetadata;
+import com.scalar.db.io.DataType;
 import com.scalar.db.storage.cosmos.Record;
 import com.scalar.db.storage.cosmos.ResultInterpreter;
+import com.scalar.dl.tools.common.RequestUnitLimiter;
 import com.scalar.dl.tools.scan.RecordHandler;
+import com.scalar.dl.tools.scan.ScanCondition;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.MockedStatic;
 
 class CosmosScanWorkerTest {
 
@@ -38,12 +59,21 @@ class CosmosScanWorkerTest {
   private FeedRange feedRange;
   private CheckpointManager checkpointManager;
   private ResultInterpreter resultInterpreter;
+  private RequestUnitLimiter requestUnitLimiter;
+  private ExecutorService prefetchExecutor;
 
   @BeforeEach
   void setUp() {
     feedRange = mock(FeedRange.class);
     checkpointManager = mock(CheckpointManager.class);
     resultInterpreter = CosmosMockHelper.createMockResultInterpreter();
+    requestUnitLimiter = mock(RequestUnitLimiter.class);
+    prefetchExecutor = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterEach
+  void tearDown() {
+    prefetchExecutor.shutdownNow();
   }
 
   private CosmosScanWorker createWorker(String continuationToken) {
@@ -53,14 +83,104 @@ class CosmosScanWorkerTest {
   private CosmosScanWorker createWorker(String continuationToken, int maxItemCount) {
     return new CosmosScanWorker(
         container,
+        CosmosScanSource.query(new SqlQuerySpec(CosmosScanQuery.SELECT_ALL)),
+        feedRange,
+        RANGE_ID,
+        TABLE_NAME,
+        continuationToken,
+        RecordDispatcher.sequential(recordHandler),
+        resultInterpreter,
+        checkpointManager,
+        requestUnitLimiter,
+        maxItemCount,
+        0,
+        null,
+        null,
+        null);
+  }
+
+  private CosmosScanWorker createPrefetchingWorker(int prefetchPages) {
+    return new CosmosScanWorker(
+        container,
+        CosmosScanSource.query(new SqlQuerySpec(CosmosScanQuery.SELECT_ALL)),
+        feedRange,
+        RANGE_ID,
+        TABLE_NAME,
+        null,
+        RecordDispatcher.sequential(recordHandler),
+        resultInterpreter,
+        checkpointManager,
+        requestUnitLimiter,
+        DEFAULT_MAX_ITEM_COUNT,
+        prefetchPages,
+        prefetchExecutor,
+        null,
+        null);
+  }
+
+  private CosmosScanWorker createAdaptiveWorker(AdaptivePageSizer pageSizer) {
+    return new CosmosScanWorker(
+        container,
+        CosmosScanSource.query(new SqlQuerySpec(CosmosScanQuery.SELECT_ALL)),
+        feedRange,
+        RANGE_ID,
+        TABLE_NAME,
+        null,
+        RecordDispatcher.sequential(recordHandler),
+        resultInterpreter,
+        checkpointManager,
+        requestUnitLimiter,
+        DEFAULT_MAX_ITEM_COUNT,
+        0,
+        null,
+        pageSizer,
+        null);
+  }
+
+  private CosmosScanWorker createControlledWorker(
+      AimdConcurrencyController concurrencyController) {
+    return new CosmosScanWorker(
+        container,
+        CosmosScanSource.query(new SqlQuerySpec(CosmosScanQuery.SELECT_ALL)),
+        feedRange,
+        RANGE_ID,
+        TABLE_NAME,
+        null,
+        RecordDispatcher.sequential(recordHandler),
+        resultInterpreter,
+        checkpointManager,
+        requestUnitLimiter,
+        DEFAULT_MAX_ITEM_COUNT,
+        0,
+        null,
+        null,
+        concurrencyController);
+  }
+
+  private CosmosScanWorker createChangeFeedWorker(
+      CosmosRecordFilter filter, FeedRange feedRange, String continuationToken) {
+    return new CosmosScanWorker(
+        container,
+        CosmosScanSource.changeFeed(filter, null),
         feedRange,
         RANGE_ID,
         TABLE_NAME,
         continuationToken,
-        recordHandler,
+        RecordDispatcher.sequential(recordHandler),
         resultInterpreter,
         checkpointManager,
-        maxItemCount);
+        requestUnitLimiter,
+        DEFAULT_MAX_ITEM_COUNT,
+        0,
+        null,
+        null,
+        null);
+  }
+
+  private static Record createMockRecordWithValue(String column, Object value) {
+    Record record = mock(Record.class);
+    when(record.getValues()).thenReturn(Collections.singletonMap(column, value));
+    return record;
   }
 
   @Test
@@ -236,4 +356,307 @@ class CosmosScanWorkerTest {
         .isInstanceOf(RuntimeException.class)
         .hasMessage("handler error");
   }
+
+  @Test
+  void call_prefetchEnabled_shouldProcessAllPagesInOrder() throws Exception {
+    // Arrange
+    List<Record> page1Records = CosmosMockHelper.createMockRecords(2);
+    List<Record> page2Records = CosmosMockHelper.createMockRecords(1);
+    List<Record> page3Records = CosmosMockHelper.createMockRecords(3);
+    FeedResponse<Record> page1 = CosmosMockHelper.createMockPage(page1Records, "token-1");
+    FeedResponse<Record> page2 = CosmosMockHelper.createMockPage(page2Records, "token-2");
+    FeedResponse<Record> page3 = CosmosMockHelper.createMockPage(page3Records, null);
+    CosmosPagedIterable<Record> iterable =
+        CosmosMockHelper.createMockPagedIterable(Arrays.asList(page1, page2, page3));
+    container = CosmosMockHelper.createMockContainer(iterable, Collections.emptyList());
+
+    List<Record> handledRecords = new ArrayList<>();
+    when(resultInterpreter.interpret(any(Record.class)))
+        .thenAnswer(
+            invocation -> {
+              handledRecords.add(invocation.getArgument(0));
+              return mock(Result.class);
+            });
+
+    // Act
+    long count = createPrefetchingWorker(1).call();
+
+    // Assert
+    assertThat(count).isEqualTo(6);
+    List<Record> expected = new ArrayList<>(page1Records);
+    expected.addAll(page2Records);
+    expected.addAll(page3Records);
+    assertThat(handledRecords).containsExactlyElementsOf(expected);
+  }
+
+  @Test
+  void call_prefetchEnabled_shouldCheckpointEachPageAfterHandlingIt() throws Exception {
+    // Arrange
+    List<Record> records1 = CosmosMockHelper.createMockRecords(1);
+    List<Record> records2 = CosmosMockHelper.createMockRecords(1);
+    FeedResponse<Record> page1 = CosmosMockHelper.createMockPage(records1, "token-1");
+    FeedResponse<Record> page2 = CosmosMockHelper.createMockPage(records2, "token-2");
+    CosmosPagedIterable<Record> iterable =
+        CosmosMockHelper.createMockPagedIterable(Arrays.asList(page1, page2));
+    container = CosmosMockHelper.createMockContainer(iterable, Collections.emptyList());
+
+    // Act
+    createPrefetchingWorker(2).call();
+
+    // Assert
+    InOrder inOrder = inOrder(recordHandler, checkpointManager);
+    inOrder.verify(recordHandler).handle(any(Result.class));
+    inOrder.verify(checkpointManager).persistContinuationToken(TABLE_NAME, RANGE_ID, "token-1");
+    inOrder.verify(recordHandler).handle(any(Result.class));
+    inOrder.verify(checkpointManager).persistContinuationToken(TABLE_NAME, RANGE_ID, "token-2");
+  }
+
+  @Test
+  void call_prefetchEnabledAndHandlerThrowsException_shouldPropagateException() throws Exception {
+    // Arrange
+    List<Record> records = CosmosMockHelper.createMockRecords(1);
+    FeedResponse<Record> page = CosmosMockHelper.createMockPage(records, "token-1");
+    CosmosPagedIterable<Record> iterable =
+        CosmosMockHelper.createMockPagedIterable(Collections.singletonList(page));
+    container = CosmosMockHelper.createMockContainer(iterable, Collections.emptyList());
+
+    doThrow(new RuntimeException("handler error")).when(recordHandler).handle(any(Result.class));
+
+    // Act & Assert
+    assertThatThrownBy(() -> createPrefetchingWorker(1).call())
+        .isInstanceOf(RuntimeException.class)
+        .hasMessage("handler error");
+    verify(checkpointManager, never())
+        .persistContinuationToken(anyString(), anyString(), anyString());
+  }
+
+  @Test
+  void call_adaptivePageSizeEnabled_shouldRequestPagesWithSizerPageSize() throws Exception {
+    // Arrange
+    List<Record> records = CosmosMockHelper.createMockRecords(2);
+    FeedResponse<Record> page = CosmosMockHelper.createMockPage(records, null);
+    CosmosPagedIterable<Record> iterable =
+        CosmosMockHelper.createMockPagedIterable(Collections.singletonList(page));
+    container = CosmosMockHelper.createMockContainer(iterable, Collections.emptyList());
+    AdaptivePageSizer pageSizer = new AdaptivePageSizer(RANGE_ID, TABLE_NAME, 50, 10, 1000, 500);
+
+    // Act
+    long count = createAdaptiveWorker(pageSizer).call();
+
+    // Assert
+    assertThat(count).isEqualTo(2);
+    verify(iterable).streamByPage(50);
+  }
+
+  @Test
+  void call_multiplePages_shouldChargeRequestChargeOfEachPageBeforeHandlingIt() throws Exception {
+    // Arrange
+    FeedResponse<Record> page1 =
+        CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), "token-1");
+    FeedResponse<Record> page2 =
+        CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), null);
+    when(page1.getRequestCharge()).thenReturn(12.5);
+    when(page2.getRequestCharge()).thenReturn(3.0);
+    CosmosPagedIterable<Record> iterable =
+        CosmosMockHelper.createMockPagedIterable(Arrays.asList(page1, page2));
+    container = CosmosMockHelper.createMockContainer(iterable, Collections.emptyList());
+
+    // Act
+    createWorker(null).call();
+
+    // Assert
+    InOrder inOrder = inOrder(requestUnitLimiter, recordHandler);
+    inOrder.verify(requestUnitLimiter).charge(12.5);
+    inOrder.verify(recordHandler).handle(any(Result.class));
+    inOrder.verify(requestUnitLimiter).charge(3.0);
+    inOrder.verify(recordHandler).handle(any(Result.class));
+  }
+
+  @Test
+  void call_limiterInterrupted_shouldPropagateExceptionWithoutCheckpointing() throws Exception {
+    // Arrange
+    FeedResponse<Record> page =
+        CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), "token-1");
+    CosmosPagedIterable<Record> iterable =
+        CosmosMockHelper.createMockPagedIterable(Collections.singletonList(page));
+    container = CosmosMockHelper.createMockContainer(iterable, Collections.emptyList());
+    doThrow(new InterruptedException()).when(requestUnitLimiter).charge(anyDouble());
+
+    // Act & Assert
+    assertThatThrownBy(() -> createWorker(null).call()).isInstanceOf(InterruptedException.class);
+    verify(recordHandler, never()).handle(any(Result.class));
+    verify(checkpointManager, never())
+        .persistContinuationToken(anyString(), anyString(), anyString());
+  }
+
+  @Test
+  void call_concurrencyControllerGiven_shouldReportEachPageAndHandleItWhileAdmitted()
+      throws Exception {
+    // Arrange
+    FeedResponse<Record> retriedPage =
+        CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), "token-1");
+    CosmosDiagnostics diagnostics = mock(CosmosDiagnostics.class);
+    CosmosDiagnosticsContext diagnosticsContext = mock(CosmosDiagnosticsContext.class);
+    when(retriedPage.getCosmosDiagnostics()).thenReturn(diagnostics);
+    when(diagnostics.getDiagnosticsContext()).thenReturn(diagnosticsContext);
+    when(diagnosticsContext.getRetryCount()).thenReturn(2);
+    FeedResponse<Record> cleanPage =
+        CosmosMockHelper.createMockPage(CosmosMockHelper.createMockRecords(1), null);
+    CosmosPagedIterable<Record> iterable =
+        CosmosMockHelper.createMockPagedIterable(Arrays.asList(retriedPage, cleanPage));
+    container = CosmosMockHelper.createMockContainer(iterable, Collections.emptyList());
+    AimdConcurrencyController concurrencyController = mock(AimdConcurrencyController.class);
+
+    // Act
+    long count = createControlledWorker(concurrencyController).call();
+
+    // Assert
+    assertThat(count).isEqualTo(2);
+    InOrder inOrder = inOrder(concurrencyController, recordHandler);
+    inOrder.verify(concurrencyController).onThrottle(0);
+    inOrder.verify(concurrencyController).acquire();
+    inOrder.verify(recordHandler).handle(any(Result.class));
+    inOrder.verify(concurrencyController).release();
+    inOrder.verify(concurrencyController).onSuccess();
+    inOrder.verify(concurrencyController).acquire();
+    inOrder.verify(recordHandler).handle(any(Result.class));
+    inOrder.verify(concurrencyController).release();
+  }
+
+  @Test
+  void call_changeFeedSource_shouldReadChangeFeedAndHandleMatchedRecordsOnly() throws Exception {
+    // Arrange
+    TableMetadata metadata =
+        TableMetadata.newBuilder()
+            .addColumn("id", DataType.TEXT)
+            .addColumn("state", DataType.INT)
+            .addPartitionKey("id")
+            .build();
+    CosmosRecordFilter filter =
+        CosmosRecordFilter.of(metadata, Collections.singletonList(ScanCondition.eq("state", 1)));
+    List<Record> records =
+        Arrays.asList(
+            createMockRecordWithValue("state", 1),
+            createMockRecordWithValue("state", 3),
+            createMockRecordWithValue("state", 1));
+    FeedResponse<Record> page = CosmosMockHelper.createMockPage(records, "change-feed-token");
+    CosmosPagedIterable<Record> iterable =
+        CosmosMockHelper.createMockPagedIterable(Collections.singletonList(page));
+    container = mock(CosmosContainer.class);
+    when(container.queryChangeFeed(any(CosmosChangeFeedRequestOptions.class), eq(Record.class)))
+        .thenReturn(iterable);
+
+    // Act
+    long count = createChangeFeedWorker(filter, FeedRange.forFullRange(), null).call();
+
+    // Assert
+    assertThat(count).isEqualTo(2);
+    verify(recordHandler, times(2)).handle(any(Result.class));
+    verify(container, never()).queryItems(any(SqlQuerySpec.class), any(), eq(Record.class));
+    verify(checkpointManager)
+        .persistContinuationToken(TABLE_NAME, RANGE_ID, "change-feed-token");
+  }
+
+  @Test
+  void call_changeFeedSourceWithQueryToken_shouldThrowIllegalStateException() {
+    // Arrange
+    container = mock(CosmosContainer.class);
+    CosmosScanWorker worker =
+        createChangeFeedWorker(
+            CosmosRecordFilter.of(mock(TableMetadata.class), Collections.emptyList()),
+            FeedRange.forFullRange(),
+            "{\"token\":\"query-token\",\"range\":{\"min\":\"\",\"max\":\"FF\"}}");
+
+    // Act & Assert
+    assertThatThrownBy(worker::call)
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("change feed");
+    verify(recordHandler, never()).handle(any());
+  }
+
+  @Test
+  void call_querySourceWithChangeFeedToken_shouldThrowIllegalStateException() {
+    // Arrange
+    container = mock(CosmosContainer.class);
+    CosmosScanWorker worker =
+        new CosmosScanWorker(
+            container,
+            CosmosScanSource.query(new SqlQuerySpec(CosmosScanQuery.SELECT_ALL)),
+            FeedRange.forFullRange(),
+            RANGE_ID,
+            TABLE_NAME,
+            "change-feed-token",
+            RecordDispatcher.sequential(recordHandler),
+            resultInterpreter,
+            checkpointManager,
+            requestUnitLimiter,
+            DEFAULT_MAX_ITEM_COUNT,
+            0,
+            null,
+            null,
+            null);
+
+    try (MockedStatic<CosmosChangeFeedRequestOptions> optionsStatic =
+        mockStatic(CosmosChangeFeedRequestOptions.class)) {
+      optionsStatic
+          .when(
+              () ->
+                  CosmosChangeFeedRequestOptions.createForProcessingFromContinuation(
+                      "change-feed-token"))
+          .thenReturn(mock(CosmosChangeFeedRequestOptions.class));
+
+      // Act & Assert
+      assertThatThrownBy(worker::call)
+          .isInstanceOf(IllegalStateException.class)
+          .hasMessageContaining("change feed");
+      verify(container, never())
+          .queryItems(
+              any(SqlQuerySpec.class), any(CosmosQueryRequestOptions.class), eq(Record.class));
+      verify(recordHandler, never()).handle(any());
+    }
+  }
+
+  @Test
+  void call_changeFeedSourceWithLastWrittenAtCondition_shouldReadFromThatTime() throws Exception {
+    // Arrange
+    FeedResponse<Record> page = CosmosMockHelper.createMockPage(Collections.emptyList(), null);
+    CosmosPagedIterable<Record> iterable =
+        CosmosMockHelper.createMockPagedIterable(Collections.singletonList(page));
+    container = mock(CosmosContainer.class);
+    when(container.queryChangeFeed(any(CosmosChangeFeedRequestOptions.class), eq(Record.class)))
+        .thenReturn(iterable);
+    CosmosScanWorker worker =
+        new CosmosScanWorker(
+            container,
+            CosmosScanSource.changeFeed(
+                mock(TableMetadata.class),
+                Collections.singletonList(ScanCondition.writtenAtOrAfter(1_700_000_000_500L))),
+            FeedRange.forFullRange(),
+            RANGE_ID,
+            TABLE_NAME,
+            null,
+            RecordDispatcher.sequential(recordHandler),
+            resultInterpreter,
+            checkpointManager,
+            requestUnitLimiter,
+            DEFAULT_MAX_ITEM_COUNT,
+            0,
+            null,
+            null,
+            null);
+
+    try (MockedStatic<CosmosChangeFeedRequestOptions> optionsStatic =
+        mockStatic(CosmosChangeFeedRequestOptions.class, CALLS_REAL_METHODS)) {
+      // Act
+      worker.call();
+
+      // Assert
+      optionsStatic.verify(
+          () ->
+              CosmosChangeFeedRequestOptions.createForProcessingFromPointInTime(
+                  Instant.ofEpochSecond(1_700_000_000L), FeedRange.forFullRange()));
+      optionsStatic.verify(
+          () -> CosmosChangeFeedRequestOptions.createForProcessingFromBeginning(any()), never());
+    }
+  }
 }
@@ -0,0 +1,79 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.azure.cosmos.CosmosDiagnostics;
+import com.azure.cosmos.CosmosDiagnosticsContext;
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.FeedResponse;
+import com.scalar.db.exception.storage.ExecutionException;
+import com.scalar.db.storage.cosmos.Record;
+import java.time.Duration;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+class CosmosThrottlingTest {
+
+  private static CosmosException createCosmosException(int statusCode, Duration retryAfter) {
+    CosmosException exception = mock(CosmosException.class);
+    when(exception.getStatusCode()).thenReturn(statusCode);
+    when(exception.getRetryAfterDuration()).thenReturn(retryAfter);
+    return exception;
+  }
+
+  @Test
+  void wasRetried_pageWithRetries_shouldReturnTrue() {
+    // Arrange
+    FeedResponse<Record> page = CosmosMockHelper.createMockPage(Collections.emptyList(), null);
+    CosmosDiagnostics diagnostics = mock(CosmosDiagnostics.class);
+    CosmosDiagnosticsContext context = mock(CosmosDiagnosticsContext.class);
+    when(page.getCosmosDiagnostics()).thenReturn(diagnostics);
+    when(diagnostics.getDiagnosticsContext()).thenReturn(context);
+    when(context.getRetryCount()).thenReturn(1);
+
+    // Act & Assert
+    assertThat(CosmosThrottling.wasRetried(page)).isTrue();
+  }
+
+  @Test
+  void wasRetried_pageWithoutDiagnostics_shouldReturnFalse() {
+    // Arrange
+    FeedResponse<Record> page = CosmosMockHelper.createMockPage(Collections.emptyList(), null);
+
+    // Act & Assert
+    assertThat(CosmosThrottling.wasRetried(page)).isFalse();
+  }
+
+  @Test
+  void retryAfterMillis_wrappedThrottlingException_shouldReturnRetryAfterHint() {
+    // Arrange
+    CosmosException cause = createCosmosException(429, Duration.ofMillis(250));
+    ExecutionException exception = new ExecutionException("delete failed", cause);
+
+    // Act & Assert
+    assertThat(CosmosThrottling.retryAfterMillis(exception)).isEqualTo(250);
+  }
+
+  @Test
+  void retryAfterMillis_throttlingExceptionWithoutHint_shouldReturnZero() {
+    // Arrange
+    CosmosException exception = createCosmosException(429, null);
+
+    // Act & Assert
+    assertThat(CosmosThrottling.retryAfterMillis(exception)).isZero();
+  }
+
+  @Test
+  void retryAfterMillis_otherFailure_shouldReturnNotThrottled() {
+    // Arrange
+    CosmosException exception = createCosmosException(503, Duration.ZERO);
+
+    // Act & Assert
+    assertThat(CosmosThrottling.retryAfterMillis(exception))
+        .isEqualTo(CosmosThrottling.NOT_THROTTLED);
+    assertThat(CosmosThrottling.retryAfterMillis(new IllegalStateException()))
+        .isEqualTo(CosmosThrottling.NOT_THROTTLED);
+  }
+}
@@ -0,0 +1,138 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.azure.cosmos.models.FeedRange;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class FeedRangeReconcilerTest {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private static FeedRange range(String min, String max) {
+    return FeedRangeSerializer.fromRangeJson(
+        "{\"Range\":{\"min\":\"" + min + "\",\"max\":\"" + max + "\"}}");
+  }
+
+  private static String token(String min, String max) {
+    return "{\"token\":\"backend\",\"range\":{\"min\":\"" + min + "\",\"max\":\"" + max + "\"}}";
+  }
+
+  private static JsonNode bounds(FeedRange feedRange) throws Exception {
+    return mapper.readTree(FeedRangeSerializer.toRangeJson(feedRange)).get("Range");
+  }
+
+  private static JsonNode tokenRange(String token) throws Exception {
+    return mapper.readTree(token).get("range");
+  }
+
+  @Test
+  void reconcile_rangeWithinSinglePartition_shouldReturnRangeUnchanged() {
+    // Arrange
+    FeedRange persisted = range("", "80");
+    List<FeedRange> physical = Arrays.asList(range("", "80"), range("80", "FF"));
+
+    // Act
+    List<FeedRangeReconciler.Assignment> assignments =
+        FeedRangeReconciler.reconcile(persisted, token("", "80"), physical);
+
+    // Assert
+    assertThat(assignments).hasSize(1);
+    assertThat(assignments.get(0).feedRange).isSameAs(persisted);
+    assertThat(assignments.get(0).continuationToken).isEqualTo(token("", "80"));
+  }
+
+  @Test
+  void reconcile_mergedPartitions_shouldReturnRangeUnchanged() {
+    // Arrange
+    FeedRange persisted = range("80", "FF");
+    List<FeedRange> physical = Collections.singletonList(range("", "FF"));
+
+    // Act
+    List<FeedRangeReconciler.Assignment> assignments =
+        FeedRangeReconciler.reconcile(persisted, token("80", "FF"), physical);
+
+    // Assert
+    assertThat(assignments).hasSize(1);
+    assertThat(assignments.get(0).feedRange).isSameAs(persisted);
+  }
+
+  @Test
+  void reconcile_splitPartitionWithoutToken_shouldReturnChildrenWithoutTokens() throws Exception {
+    // Arrange
+    FeedRange persisted = range("", "FF");
+    List<FeedRange> physical = Arrays.asList(range("80", "FF"), range("", "80"));
+
+    // Act
+    List<FeedRangeReconciler.Assignment> assignments =
+        FeedRangeReconciler.reconcile(persisted, null, physical);
+
+    // Assert
+    assertThat(assignments).hasSize(2);
+    assertThat(bounds(assignments.get(0).feedRange).get("min").asText()).isEmpty();
+    assertThat(bounds(assignments.get(0).feedRange).get("max").asText()).isEqualTo("80");
+    assertThat(bounds(assignments.get(1).feedRange).get("min").asText()).isEqualTo("80");
+    assertThat(bounds(assignments.get(1).feedRange).get("max").asText()).isEqualTo("FF");
+    assertThat(assignments).allMatch(a -> a.continuationToken == null);
+  }
+
+  @Test
+  void reconcile_splitPartitionWithToken_shouldNarrowTokenRangeToEachChild() throws Exception {
+    // Arrange
+    FeedRange persisted = range("", "FF");
+    List<FeedRange> physical = Arrays.asList(range("", "80"), range("80", "FF"));
+
+    // Act
+    List<FeedRangeReconciler.Assignment> assignments =
+        FeedRangeReconciler.reconcile(persisted, token("", "FF"), physical);
+
+    // Assert
+    assertThat(assignments).hasSize(2);
+    assertThat(tokenRange(assignments.get(0).continuationToken).get("max").asText())
+        .isEqualTo("80");
+    assertThat(tokenRange(assignments.get(1).continuationToken).get("min").asText())
+        .isEqualTo("80");
+    assertThat(mapper.readTree(assignments.get(1).continuationToken).get("token").asText())
+        .isEqualTo("backend");
+  }
+
+  @Test
+  void reconcile_tokenPastFirstChild_shouldDropScannedChildAndKeepUnscannedChildWithoutToken()
+      throws Exception {
+    // Arrange
+    FeedRange persisted = range("", "FF");
+    List<FeedRange> physical = Arrays.asList(range("", "40"), range("40", "80"), range("80", "FF"));
+
+    // Act
+    List<FeedRangeReconciler.Assignment> assignments =
+        FeedRangeReconciler.reconcile(persisted, token("40", "80"), physical);
+
+    // Assert
+    assertThat(assignments).hasSize(2);
+    assertThat(bounds(assignments.get(0).feedRange).get("min").asText()).isEqualTo("40");
+    assertThat(assignments.get(0).continuationToken).isNotNull();
+    assertThat(bounds(assignments.get(1).feedRange).get("min").asText()).isEqualTo("80");
+    assertThat(assignments.get(1).continuationToken).isNull();
+  }
+
+  @Test
+  void reconcile_tokenOfUnknownForm_shouldReturnRangeUnchanged() {
+    // Arrange
+    FeedRange persisted = range("", "FF");
+    List<FeedRange> physical = Arrays.asList(range("", "80"), range("80", "FF"));
+
+    // Act
+    List<FeedRangeReconciler.Assignment> assignments =
+        FeedRangeReconciler.reconcile(persisted, "opaque-token", physical);
+
+    // Assert
+    assertThat(assignments).hasSize(1);
+    assertThat(assignments.get(0).feedRange).isSameAs(persisted);
+    assertThat(assignments.get(0).continuationToken).isEqualTo("opaque-token");
+  }
+}
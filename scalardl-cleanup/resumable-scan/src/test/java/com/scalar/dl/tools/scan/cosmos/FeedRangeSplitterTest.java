@@ -0,0 +1,121 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.azure.cosmos.models.FeedRange;
+import com.azure.cosmos.models.PartitionKey;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class FeedRangeSplitterTest {
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private static String min(FeedRange feedRange) throws Exception {
+    return range(feedRange).get("min").asText();
+  }
+
+  private static String max(FeedRange feedRange) throws Exception {
+    return range(feedRange).get("max").asText();
+  }
+
+  private static JsonNode range(FeedRange feedRange) throws Exception {
+    return mapper.readTree(FeedRangeSerializer.toRangeJson(feedRange)).get("Range");
+  }
+
+  @Test
+  void split_fullRangeGiven_shouldReturnContiguousSubRangesCoveringOriginalRange()
+      throws Exception {
+    // Arrange
+    FeedRange fullRange = FeedRange.forFullRange();
+
+    // Act
+    List<FeedRange> subRanges = FeedRangeSplitter.split(fullRange, 4);
+
+    // Assert
+    assertThat(subRanges).hasSize(4);
+    assertThat(min(subRanges.get(0))).isEqualTo(min(fullRange));
+    assertThat(max(subRanges.get(3))).isEqualTo(max(fullRange));
+    for (int i = 1; i < subRanges.size(); i++) {
+      assertThat(min(subRanges.get(i))).isEqualTo(max(subRanges.get(i - 1)));
+      assertThat(min(subRanges.get(i))).isGreaterThan(min(subRanges.get(i - 1)));
+    }
+  }
+
+  @Test
+  void split_fullRangeGiven_shouldSplitHashedKeySpaceEvenly() throws Exception {
+    // Arrange
+    FeedRange fullRange = FeedRange.forFullRange();
+
+    // Act
+    List<FeedRange> subRanges = FeedRangeSplitter.split(fullRange, 4);
+
+    // Assert
+    assertThat(max(subRanges.get(0))).isEqualTo("10000000000000000000000000000000");
+    assertThat(max(subRanges.get(1))).isEqualTo("20000000000000000000000000000000");
+    assertThat(max(subRanges.get(2))).isEqualTo("30000000000000000000000000000000");
+  }
+
+  @Test
+  void split_boundedRangeGiven_shouldInterpolateBetweenBounds() throws Exception {
+    // Arrange
+    FeedRange range = FeedRange.fromString("{\"Range\":{\"min\":\"20\",\"max\":\"30\"}}");
+
+    // Act
+    List<FeedRange> subRanges = FeedRangeSplitter.split(range, 2);
+
+    // Assert
+    assertThat(subRanges).hasSize(2);
+    assertThat(min(subRanges.get(0))).isEqualTo("20");
+    assertThat(max(subRanges.get(0))).isEqualTo("28000000000000000000000000000000");
+    assertThat(min(subRanges.get(1))).isEqualTo("28000000000000000000000000000000");
+    assertThat(max(subRanges.get(1))).isEqualTo("30");
+  }
+
+  @Test
+  void split_sameInputGiven_shouldReturnSameSubRanges() {
+    // Act
+    List<FeedRange> first = FeedRangeSplitter.split(FeedRange.forFullRange(), 3);
+    List<FeedRange> second = FeedRangeSplitter.split(FeedRange.forFullRange(), 3);
+
+    // Assert
+    for (int i = 0; i < first.size(); i++) {
+      assertThat(FeedRangeSerializer.toId(first.get(i)))
+          .isEqualTo(FeedRangeSerializer.toId(second.get(i)));
+    }
+  }
+
+  @Test
+  void split_countOneGiven_shouldReturnOriginalRange() {
+    // Arrange
+    FeedRange fullRange = FeedRange.forFullRange();
+
+    // Act
+    List<FeedRange> subRanges = FeedRangeSplitter.split(fullRange, 1);
+
+    // Assert
+    assertThat(subRanges).containsExactly(fullRange);
+  }
+
+  @Test
+  void split_logicalPartitionRangeGiven_shouldReturnOriginalRange() {
+    // Arrange
+    FeedRange range = FeedRange.forLogicalPartition(new PartitionKey("key1"));
+
+    // Act
+    List<FeedRange> subRanges = FeedRangeSplitter.split(range, 4);
+
+    // Assert
+    assertThat(subRanges).containsExactly(range);
+  }
+
+  @Test
+  void split_nonPositiveCountGiven_shouldThrowIllegalArgumentException() {
+    // Act & Assert
+    assertThatThrownBy(() -> FeedRangeSplitter.split(FeedRange.forFullRange(), 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,127 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PagePrefetcherTest {
+
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void take_sourceGiven_shouldReturnPagesInOrderThenNull() throws Exception {
+    // Arrange
+    try (PagePrefetcher<String> prefetcher =
+        new PagePrefetcher<>(Arrays.asList("p1", "p2", "p3").iterator(), 2)) {
+      prefetcher.start(executor);
+
+      // Act & Assert
+      assertThat(prefetcher.take()).isEqualTo("p1");
+      assertThat(prefetcher.take()).isEqualTo("p2");
+      assertThat(prefetcher.take()).isEqualTo("p3");
+      assertThat(prefetcher.take()).isNull();
+      assertThat(prefetcher.take()).isNull();
+    }
+  }
+
+  @Test
+  void take_emptySourceGiven_shouldReturnNull() throws Exception {
+    // Arrange
+    try (PagePrefetcher<String> prefetcher =
+        new PagePrefetcher<>(Collections.<String>emptyIterator(), 1)) {
+      prefetcher.start(executor);
+
+      // Act & Assert
+      assertThat(prefetcher.take()).isNull();
+    }
+  }
+
+  @Test
+  void start_slowConsumerGiven_shouldNotFetchMoreThanMaxPagesAhead() throws Exception {
+    // Arrange
+    AtomicInteger fetched = new AtomicInteger();
+    Iterator<Integer> source =
+        new Iterator<Integer>() {
+          @Override
+          public boolean hasNext() {
+            return true;
+          }
+
+          @Override
+          public Integer next() {
+            return fetched.incrementAndGet();
+          }
+        };
+
+    try (PagePrefetcher<Integer> prefetcher = new PagePrefetcher<>(source, 2)) {
+      // Act
+      prefetcher.start(executor);
+      TimeUnit.MILLISECONDS.sleep(200);
+
+      // Assert
+      assertThat(fetched.get()).isEqualTo(2);
+      assertThat(prefetcher.take()).isEqualTo(1);
+      TimeUnit.MILLISECONDS.sleep(200);
+      assertThat(fetched.get()).isEqualTo(3);
+    }
+  }
+
+  @Test
+  void take_sourceThrowsException_shouldRethrowAfterPrecedingPages() throws Exception {
+    // Arrange
+    Iterator<String> source =
+        new Iterator<String>() {
+          private int count;
+
+          @Override
+          public boolean hasNext() {
+            return true;
+          }
+
+          @Override
+          public String next() {
+            if (count++ == 0) {
+              return "p1";
+            }
+            throw new IllegalStateException("fetch error");
+          }
+        };
+
+    try (PagePrefetcher<String> prefetcher = new PagePrefetcher<>(source, 1)) {
+      prefetcher.start(executor);
+
+      // Act & Assert
+      assertThat(prefetcher.take()).isEqualTo("p1");
+      assertThatThrownBy(prefetcher::take)
+          .isInstanceOf(IllegalStateException.class)
+          .hasMessage("fetch error");
+    }
+  }
+
+  @Test
+  void constructor_nonPositiveMaxPagesAheadGiven_shouldThrowIllegalArgumentException() {
+    // Act & Assert
+    assertThatThrownBy(() -> new PagePrefetcher<>(Collections.emptyIterator(), 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,325 @@
+package com.scalar.dl.tools.scan.cosmos;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.azure.cosmos.CosmosException;
+import com.scalar.db.api.Result;
+import com.scalar.dl.tools.scan.RecordHandler;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RecordDispatcherTest {
+
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setUp() {
+    executor = Executors.newFixedThreadPool(8);
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private static Exception createThrottledException(long retryAfterMillis) {
+    CosmosException cosmosException = mock(CosmosException.class);
+    when(cosmosException.getStatusCode()).thenReturn(CosmosThrottling.TOO_MANY_REQUESTS);
+    when(cosmosException.getRetryAfterDuration()).thenReturn(Duration.ofMillis(retryAfterMillis));
+    return new ExecutionException("throttled", cosmosException);
+  }
+
+  private static List<Result> createResults(int count) {
+    List<Result> results = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      results.add(mock(Result.class));
+    }
+    return results;
+  }
+
+  @Test
+  void dispatch_sequential_shouldHandleRecordsInOrderOnCallingThread() throws Exception {
+    // Arrange
+    List<Result> results = createResults(3);
+    List<Result> handled = new ArrayList<>();
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    RecordDispatcher dispatcher =
+        RecordDispatcher.sequential(
+            r -> {
+              handled.add(r);
+              threads.add(Thread.currentThread());
+            });
+
+    // Act
+    dispatcher.dispatch(results);
+
+    // Assert
+    assertThat(handled).containsExactlyElementsOf(results);
+    assertThat(threads).containsExactly(Thread.currentThread());
+  }
+
+  @Test
+  void dispatch_concurrent_shouldHandleAllRecordsBeforeReturning() throws Exception {
+    // Arrange
+    List<Result> results = createResults(50);
+    Set<Result> handled = ConcurrentHashMap.newKeySet();
+    RecordDispatcher dispatcher =
+        RecordDispatcher.concurrent(
+            r -> {
+              TimeUnit.MILLISECONDS.sleep(1);
+              handled.add(r);
+            },
+            executor,
+            4);
+
+    // Act
+    dispatcher.dispatch(results);
+
+    // Assert
+    assertThat(handled).containsExactlyInAnyOrderElementsOf(results);
+  }
+
+  @Test
+  void dispatch_concurrent_shouldNotExceedConcurrency() throws Exception {
+    // Arrange
+    int concurrency = 3;
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    RecordHandler handler =
+        r -> {
+          int current = inFlight.incrementAndGet();
+          maxInFlight.accumulateAndGet(current, Math::max);
+          TimeUnit.MILLISECONDS.sleep(5);
+          inFlight.decrementAndGet();
+        };
+    RecordDispatcher dispatcher = RecordDispatcher.concurrent(handler, executor, concurrency);
+
+    // Act
+    dispatcher.dispatch(createResults(30));
+
+    // Assert
+    assertThat(maxInFlight.get()).isGreaterThan(1).isLessThanOrEqualTo(concurrency);
+  }
+
+  @Test
+  void dispatch_concurrentAndInterruptedGiven_shouldReleasePermitsOfRecordsNeverStarted()
+      throws Exception {
+    // Arrange — a single thread runs the first record, which blocks, so the others never start.
+    ExecutorService singleThread = Executors.newSingleThreadExecutor();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch never = new CountDownLatch(1);
+    RecordDispatcher dispatcher =
+        RecordDispatcher.concurrent(
+            r -> {
+              started.countDown();
+              never.await();
+            },
+            singleThread,
+            3);
+    AtomicReference<Throwable> thrown = new AtomicReference<>();
+    Thread dispatching =
+        new Thread(
+            () -> {
+              try {
+                dispatcher.dispatch(createResults(3));
+              } catch (Throwable t) {
+                thrown.set(t);
+              }
+            });
+
+    try {
+      // Act
+      dispatching.start();
+      assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+      dispatching.interrupt();
+      dispatching.join(TimeUnit.SECONDS.toMillis(10));
+
+      // Assert — every permit comes back, including those of the cancelled records.
+      assertThat(thrown.get()).isInstanceOf(InterruptedException.class);
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (dispatcher.getAvailablePermits() < 3 && System.nanoTime() < deadline) {
+        TimeUnit.MILLISECONDS.sleep(10);
+      }
+      assertThat(dispatcher.getAvailablePermits()).isEqualTo(3);
+    } finally {
+      singleThread.shutdownNow();
+    }
+  }
+
+  @Test
+  void dispatch_concurrentAndHandlerThrowsException_shouldThrowFirstFailure() {
+    // Arrange
+    List<Result> results = createResults(10);
+    Result failing = results.get(5);
+    RecordDispatcher dispatcher =
+        RecordDispatcher.concurrent(
+            r -> {
+              if (r == failing) {
+                throw new IllegalStateException("handler error");
+              }
+            },
+            executor,
+            4);
+
+    // Act & Assert
+    assertThatThrownBy(() -> dispatcher.dispatch(results))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("handler error");
+  }
+
+  @Test
+  void dispatch_emptyRecordsGiven_shouldReturnImmediately() throws Exception {
+    // Arrange
+    AtomicInteger count = new AtomicInteger();
+    RecordDispatcher dispatcher =
+        RecordDispatcher.concurrent(r -> count.incrementAndGet(), executor, 4);
+
+    // Act
+    dispatcher.dispatch(Collections.emptyList());
+
+    // Assert
+    assertThat(count.get()).isZero();
+  }
+
+  @Test
+  void dispatch_pageHandlerGiven_shouldHandleWholePageOnCallingThread() throws Exception {
+    // Arrange
+    List<List<Result>> pages = new ArrayList<>();
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    RecordHandler handler =
+        new RecordHandler() {
+          @Override
+          public void handle(Result record) {
+            throw new AssertionError("Records must be delivered as a page");
+          }
+
+          @Override
+          public boolean handlesPages() {
+            return true;
+          }
+
+          @Override
+          public void handlePage(List<Result> records) {
+            threads.add(Thread.currentThread());
+            pages.add(records);
+          }
+        };
+    RecordDispatcher dispatcher = RecordDispatcher.concurrent(handler, executor, 4);
+    List<Result> records = createResults(10);
+
+    // Act
+    dispatcher.dispatch(records);
+
+    // Assert
+    assertThat(pages).containsExactly(records);
+    assertThat(threads).containsExactly(Thread.currentThread());
+  }
+
+  @Test
+  void concurrent_nonPositiveConcurrencyGiven_shouldThrowIllegalArgumentException() {
+    // Act & Assert
+    assertThatThrownBy(() -> RecordDispatcher.concurrent(r -> {}, executor, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void dispatch_sequentialWithControllerAndThrottledRecord_shouldRetryRecord() throws Exception {
+    // Arrange
+    AimdConcurrencyController controller = mock(AimdConcurrencyController.class);
+    AtomicInteger attempts = new AtomicInteger();
+    RecordDispatcher dispatcher =
+        RecordDispatcher.sequential(
+            r -> {
+              if (attempts.incrementAndGet() == 1) {
+                throw createThrottledException(100);
+              }
+            },
+            controller);
+
+    // Act
+    dispatcher.dispatch(createResults(1));
+
+    // Assert
+    assertThat(attempts).hasValue(2);
+    verify(controller).onThrottle(100);
+    verify(controller, times(2)).awaitPause();
+    verify(controller, never()).acquire();
+  }
+
+  @Test
+  void dispatch_withControllerAndNonThrottlingFailure_shouldNotRetryRecord() {
+    // Arrange
+    AimdConcurrencyController controller = mock(AimdConcurrencyController.class);
+    AtomicInteger attempts = new AtomicInteger();
+    RecordDispatcher dispatcher =
+        RecordDispatcher.sequential(
+            r -> {
+              attempts.incrementAndGet();
+              throw new IllegalStateException("failure");
+            },
+            controller);
+
+    // Act & Assert
+    assertThatThrownBy(() -> dispatcher.dispatch(createResults(1)))
+        .isInstanceOf(IllegalStateException.class);
+    assertThat(attempts).hasValue(1);
+    verify(controller, never()).onThrottle(anyLong());
+  }
+
+  @Test
+  void dispatch_withControllerAndPersistentThrottling_shouldGiveUpAfterMaxRetries() {
+    // Arrange
+    AimdConcurrencyController controller = mock(AimdConcurrencyController.class);
+    AtomicInteger attempts = new AtomicInteger();
+    RecordDispatcher dispatcher =
+        RecordDispatcher.sequential(
+            r -> {
+              attempts.incrementAndGet();
+              throw createThrottledException(0);
+            },
+            controller);
+
+    // Act & Assert
+    assertThatThrownBy(() -> dispatcher.dispatch(createResults(1)))
+        .isInstanceOf(ExecutionException.class)
+        .hasMessage("throttled");
+    assertThat(attempts).hasValue(RecordDispatcher.MAX_THROTTLE_RETRIES + 1);
+  }
+
+  @Test
+  void dispatch_concurrentWithController_shouldAdmitEachRecordThroughController()
+      throws Exception {
+    // Arrange
+    AimdConcurrencyController controller = mock(AimdConcurrencyController.class);
+    RecordDispatcher dispatcher = RecordDispatcher.concurrent(r -> {}, executor, 4, controller);
+
+    // Act
+    dispatcher.dispatch(createResults(10));
+
+    // Assert
+    verify(controller, times(10)).acquire();
+    verify(controller, times(10)).onSuccess();
+    verify(controller, times(10)).release();
+  }
+}